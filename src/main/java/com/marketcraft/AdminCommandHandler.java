@@ -9,9 +9,14 @@
 
 package com.marketcraft;
 
+import com.marketcraft.commands.AdminHistoryCommand;
+import com.marketcraft.commands.AdminMetricsCommand;
 import com.marketcraft.commands.AdminRemoveShopCommand;
+import com.marketcraft.ledger.TransactionLedger;
 import com.marketcraft.locks.ShopLockManager;
 import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.scheduler.PlatformScheduler;
+import com.marketcraft.scheduler.WorkScheduler;
 import com.marketcraft.shops.PlayerShopManager;
 import com.marketcraft.vaults.PlayerVaultManager;
 import net.kyori.adventure.text.Component;
@@ -32,11 +37,15 @@ import java.util.List;
  * operations.
  */
 public class AdminCommandHandler implements CommandExecutor, TabCompleter {
-    private static final String[] COMMANDS = {"removeshop"};
+    private static final String[] COMMANDS = {"history", "metrics", "removeshop"};
     private final AdminRemoveShopCommand adminRemoveShopCommand;
+    private final AdminMetricsCommand adminMetricsCommand;
+    private final AdminHistoryCommand adminHistoryCommand;
 
-    public AdminCommandHandler(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager) {
+    public AdminCommandHandler(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, WorkScheduler workScheduler, PlatformScheduler platformScheduler, TransactionLedger transactionLedger) {
         this.adminRemoveShopCommand = new AdminRemoveShopCommand(playerShopManager, playerVaultManager, shopLockManager, vaultLockManager);
+        this.adminMetricsCommand = new AdminMetricsCommand(workScheduler);
+        this.adminHistoryCommand = new AdminHistoryCommand(transactionLedger, platformScheduler);
     }
 
     /**
@@ -61,6 +70,8 @@ public class AdminCommandHandler implements CommandExecutor, TabCompleter {
         String subCommand = args[0].toLowerCase();
         return switch (subCommand) {
             case "removeshop" -> adminRemoveShopCommand.handleAdminRemoveShopCommand(sender, args);
+            case "metrics" -> adminMetricsCommand.handleAdminMetricsCommand(sender);
+            case "history" -> adminHistoryCommand.handleAdminHistoryCommand(sender, args);
             default -> {
                 handleUnknownCommand(sender);
                 yield false;
@@ -9,12 +9,24 @@
 
 package com.marketcraft;
 
+import com.marketcraft.auctions.AuctionHouse;
+import com.marketcraft.cart.CartManager;
 import com.marketcraft.commands.*;
 import com.marketcraft.gui.PlayerOpenShopGUI;
+import com.marketcraft.gui.ShopBrowserGUI;
 import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.orders.BuyOrderEngine;
+import com.marketcraft.shops.DynamicPricingEngine;
 import com.marketcraft.shops.PlayerShopManager;
+import com.marketcraft.shops.ShopBlockIndex;
+import com.marketcraft.shops.ShopOrderBook;
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.stats.Leaderboards;
+import com.marketcraft.stats.PriceStatistics;
+import com.marketcraft.storefronts.StorefrontManager;
 import com.marketcraft.locks.ShopLockManager;
 import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultSessionManager;
 import net.kyori.adventure.text.Component;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -54,15 +66,47 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
     private final CreateShopCommand createShopCommand;
     private final RemoveShopCommand removeShopCommand;
     private final OpenShopCommand openShopCommand;
-    private static final String[] COMMANDS = {"createshop", "help", "openshop", "openvault", "removeshop", "version"};
+    private final BrowseCommand browseCommand;
+    private final FindCommand findCommand;
+    private final BuyBestCommand buyBestCommand;
+    private final BuyOrderCommand buyOrderCommand;
+    private final SellCommand sellCommand;
+    private final OrdersCommand ordersCommand;
+    private final AuctionCommand auctionCommand;
+    private final PricesCommand pricesCommand;
+    private final PricingCommand pricingCommand;
+    private final TopCommand topCommand;
+    private final CartCommand cartCommand;
+    private final BindCommand bindCommand;
+    private final UnbindCommand unbindCommand;
+    private final StorefrontCommand storefrontCommand;
+    private final DepositCommand depositCommand;
+    private final CollectCommand collectCommand;
+    private static final String[] COMMANDS = {"auction", "bind", "browse", "buybest", "buyorder", "cart", "collect", "createshop", "deposit", "find", "help", "openshop", "openvault", "orders", "prices", "pricing", "removeshop", "sell", "storefront", "top", "unbind", "version"};
 
-    public CommandHandler(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, MarketCraft marketCraft, PlayerOpenShopGUI playerOpenShopGUI, ShopLockManager shopLockManager, VaultLockManager vaultLockManager) {
+    public CommandHandler(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, MarketCraft marketCraft, PlayerOpenShopGUI playerOpenShopGUI, ShopBrowserGUI shopBrowserGUI, ShopOrderBook shopOrderBook, BuyOrderEngine buyOrderEngine, AuctionHouse auctionHouse, TradeListener tradeListener, PriceStatistics priceStatistics, Leaderboards leaderboards, DynamicPricingEngine dynamicPricingEngine, CartManager cartManager, ShopBlockIndex shopBlockIndex, StorefrontManager storefrontManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, VaultSessionManager vaultSessionManager) {
         this.helpCommand = new HelpCommand();
         this.versionCommand = new VersionCommand();
-        this.openVaultCommand = new OpenVaultCommand(playerVaultManager, playerShopManager, shopLockManager, vaultLockManager, marketCraft);
-        this.createShopCommand = new CreateShopCommand(playerShopManager);
+        this.openVaultCommand = new OpenVaultCommand(playerVaultManager, playerShopManager, shopLockManager, vaultLockManager, vaultSessionManager, marketCraft);
+        this.createShopCommand = new CreateShopCommand(playerShopManager, marketCraft);
         this.removeShopCommand = new RemoveShopCommand(playerShopManager, playerVaultManager, shopLockManager, vaultLockManager);
         this.openShopCommand = new OpenShopCommand(playerOpenShopGUI);
+        this.browseCommand = new BrowseCommand(playerShopManager.getShopIndex(), shopBrowserGUI);
+        this.findCommand = new FindCommand(playerShopManager.getShopIndex(), shopBrowserGUI);
+        this.buyBestCommand = new BuyBestCommand(shopOrderBook, playerShopManager.getShopIndex(), playerVaultManager, tradeListener, shopLockManager, vaultLockManager);
+        this.buyOrderCommand = new BuyOrderCommand(buyOrderEngine);
+        this.sellCommand = new SellCommand(buyOrderEngine);
+        this.ordersCommand = new OrdersCommand(buyOrderEngine);
+        this.auctionCommand = new AuctionCommand(auctionHouse, marketCraft.getPlatformScheduler());
+        this.pricesCommand = new PricesCommand(priceStatistics);
+        this.pricingCommand = new PricingCommand(playerShopManager.getShopIndex(), dynamicPricingEngine);
+        this.topCommand = new TopCommand(leaderboards);
+        this.cartCommand = new CartCommand(playerShopManager.getShopIndex(), cartManager);
+        this.bindCommand = new BindCommand(playerShopManager.getShopIndex(), shopBlockIndex);
+        this.unbindCommand = new UnbindCommand(shopBlockIndex);
+        this.storefrontCommand = new StorefrontCommand(playerShopManager.getShopIndex(), storefrontManager);
+        this.depositCommand = new DepositCommand(playerShopManager.getShopIndex(), playerVaultManager, shopLockManager);
+        this.collectCommand = new CollectCommand(playerShopManager.getShopIndex(), playerVaultManager, shopLockManager);
     }
 
     /**
@@ -94,6 +138,22 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             case "createshop" -> createShopCommand.handleCreateShopCommand(sender, args);
             case "openshop" -> openShopCommand.handleOpenShopCommand(sender, args);
             case "removeshop" -> removeShopCommand.handleRemoveShopCommand(sender, args);
+            case "browse" -> browseCommand.handleBrowseCommand(sender);
+            case "find" -> findCommand.handleFindCommand(sender, args);
+            case "buybest" -> buyBestCommand.handleBuyBestCommand(sender, args);
+            case "buyorder" -> buyOrderCommand.handleBuyOrderCommand(sender, args);
+            case "sell" -> sellCommand.handleSellCommand(sender, args);
+            case "orders" -> ordersCommand.handleOrdersCommand(sender, args);
+            case "auction" -> auctionCommand.handleAuctionCommand(sender, args);
+            case "prices" -> pricesCommand.handlePricesCommand(sender, args);
+            case "pricing" -> pricingCommand.handlePricingCommand(sender, args);
+            case "top" -> topCommand.handleTopCommand(sender, args);
+            case "cart" -> cartCommand.handleCartCommand(sender, args);
+            case "bind" -> bindCommand.handleBindCommand(sender, args);
+            case "unbind" -> unbindCommand.handleUnbindCommand(sender);
+            case "storefront" -> storefrontCommand.handleStorefrontCommand(sender, args);
+            case "deposit" -> depositCommand.handleDepositCommand(sender, args);
+            case "collect" -> collectCommand.handleCollectCommand(sender, args);
             default -> {
                 handleUnknownCommand(sender);
                 yield false;
@@ -9,18 +9,45 @@
 
 package com.marketcraft;
 
+import com.marketcraft.auctions.AuctionHouse;
+import com.marketcraft.cart.CartManager;
 import com.marketcraft.gui.PlayerOpenShopGUI;
+import com.marketcraft.gui.PlayerVaultGUI;
+import com.marketcraft.gui.ShopBrowserGUI;
+import com.marketcraft.ledger.TransactionLedger;
+import com.marketcraft.listeners.HopperRestockListener;
 import com.marketcraft.listeners.OpenShopListener;
+import com.marketcraft.listeners.ShopBlockListener;
+import com.marketcraft.listeners.ShopBrowserListener;
 import com.marketcraft.listeners.ShopSetupListener;
 import com.marketcraft.listeners.VaultInventoryListener;
 import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.orders.BuyOrderEngine;
+import com.marketcraft.shops.DynamicPricingEngine;
 import com.marketcraft.shops.PlayerShopManager;
+import com.marketcraft.shops.ShopBlockIndex;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopOrderBook;
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.stats.Leaderboards;
+import com.marketcraft.stats.PriceStatistics;
+import com.marketcraft.storage.ColdStorage;
+import com.marketcraft.storage.ShardedFolder;
+import com.marketcraft.storage.ShopArchiveTask;
+import com.marketcraft.storefronts.StorefrontManager;
 import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.scheduler.PlatformScheduler;
+import com.marketcraft.scheduler.WorkScheduler;
 import com.marketcraft.util.DebugManager;
 import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultAutosaveTask;
+import com.marketcraft.vaults.VaultRestockTask;
+import com.marketcraft.vaults.VaultSessionManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
 import java.util.Objects;
+import java.util.logging.Level;
 
 /**
  * The main class for the MarketCraft plugin.
@@ -31,6 +58,28 @@ import java.util.Objects;
 public final class MarketCraft extends JavaPlugin {
     private static String pluginVersion;
     private static int shopLimit;
+    private static int buyOrderLimit;
+    private static final long SHOP_INDEX_SNAPSHOT_INTERVAL = 6000L;
+    private static final long BUY_ORDER_MATCH_INTERVAL = 600L;
+    private static final long LEDGER_FLUSH_INTERVAL = 20L;
+    private static final long STATISTICS_SAVE_INTERVAL = 6000L;
+    private static final long PRICING_RECOMPUTE_INTERVAL = 100L;
+    private static final long PRICING_DECAY_INTERVAL = 1200L;
+    private static final long STOREFRONT_UPDATE_INTERVAL = 10L;
+    private static final long STOREFRONT_CULL_INTERVAL = 40L;
+    private static final long SHOP_ARCHIVE_INTERVAL = 72000L;
+    private static final long SHUTDOWN_ASYNC_TIMEOUT_MILLIS = 10_000L;
+    private PlatformScheduler platformScheduler;
+    private VaultAutosaveTask vaultAutosaveTask;
+    private WorkScheduler workScheduler;
+    private ShopIndex shopIndex;
+    private BuyOrderEngine buyOrderEngine;
+    private AuctionHouse auctionHouse;
+    private TransactionLedger transactionLedger;
+    private PriceStatistics priceStatistics;
+    private Leaderboards leaderboards;
+    private DynamicPricingEngine dynamicPricingEngine;
+    private StorefrontManager storefrontManager;
 
     /**
      * Initializes the plugin when it is enabled.
@@ -41,35 +90,184 @@ public final class MarketCraft extends JavaPlugin {
         // Plugin startup logic
         saveDefaultConfig();
         shopLimit = getConfig().getInt("shopLimit", 5);
+        buyOrderLimit = getConfig().getInt("buyOrderLimit", 10);
         //noinspection deprecation
         pluginVersion = this.getDescription().getVersion();
+        platformScheduler = new PlatformScheduler(this);
+        workScheduler = new WorkScheduler(platformScheduler, getConfig().getDouble("schedulerTickBudget", 2.0), getConfig().getDouble("schedulerHighMspt", 45.0));
+        platformScheduler.runGlobalTimer(workScheduler, 1L, 1L);
         ShopLockManager shopLockManager = new ShopLockManager();
         VaultLockManager vaultLockManager = new VaultLockManager();
-        PlayerVaultManager playerVaultManager = new PlayerVaultManager(getDataFolder());
-        PlayerShopManager playerShopManager = new PlayerShopManager(getDataFolder());
-        PlayerOpenShopGUI playerOpenShopGUI = new PlayerOpenShopGUI(playerShopManager, playerVaultManager, shopLockManager, vaultLockManager, this);
-        getServer().getPluginManager().registerEvents(new VaultInventoryListener(playerVaultManager, playerShopManager, shopLockManager, this), this);
+        VaultSessionManager vaultSessionManager = new VaultSessionManager();
+        ShardedFolder shopFiles = new ShardedFolder(new File(getDataFolder(), "Shops"));
+        ShardedFolder vaultFiles = new ShardedFolder(new File(getDataFolder(), "Vaults"));
+        ColdStorage coldStorage = new ColdStorage(getDataFolder(), shopFiles, vaultFiles);
+        PlayerVaultManager playerVaultManager = new PlayerVaultManager(vaultFiles, getConfig().getInt("vaultPages", 1), coldStorage);
+        shopIndex = new ShopIndex(getDataFolder(), shopFiles);
+        PlayerShopManager playerShopManager = new PlayerShopManager(shopFiles, shopIndex, coldStorage);
+        shopIndex.load(coldStorage);
+        // Files from before the folders were sharded are moved on access, move the rest in the background
+        workScheduler.submitAsync(shopFiles::migrate);
+        workScheduler.submitAsync(vaultFiles::migrate);
+        transactionLedger = new TransactionLedger(getDataFolder(), getConfig().getLong("ledgerSegmentSize", 4) * 1024 * 1024);
+        priceStatistics = new PriceStatistics(getDataFolder());
+        leaderboards = new Leaderboards(getDataFolder());
+        dynamicPricingEngine = new DynamicPricingEngine(getDataFolder(), shopIndex, playerShopManager, playerVaultManager, workScheduler);
+        TradeListener tradeListener = TradeListener.of(transactionLedger, priceStatistics, leaderboards, dynamicPricingEngine);
+        ShopOrderBook shopOrderBook = new ShopOrderBook(shopIndex, playerVaultManager, workScheduler);
+        CartManager cartManager = new CartManager(shopIndex, playerVaultManager, tradeListener, shopLockManager, vaultLockManager);
+        buyOrderEngine = new BuyOrderEngine(getDataFolder(), playerVaultManager, tradeListener, shopOrderBook, shopLockManager, vaultLockManager, platformScheduler, workScheduler);
+        auctionHouse = new AuctionHouse(getDataFolder(), playerVaultManager, workScheduler);
+        PlayerOpenShopGUI playerOpenShopGUI = new PlayerOpenShopGUI(playerShopManager, playerVaultManager, shopLockManager, vaultLockManager, priceStatistics, dynamicPricingEngine, this);
+        ShopBrowserGUI shopBrowserGUI = new ShopBrowserGUI(playerVaultManager, playerOpenShopGUI, this, workScheduler);
+        ShopBlockIndex shopBlockIndex = new ShopBlockIndex(this);
+        shopBlockIndex.indexLoadedChunks();
+        storefrontManager = new StorefrontManager(getDataFolder(), shopIndex, playerVaultManager, platformScheduler, workScheduler);
+        PlayerVaultGUI playerVaultGUI = new PlayerVaultGUI(playerVaultManager, shopLockManager, vaultLockManager, vaultSessionManager, this);
+        getServer().getPluginManager().registerEvents(new VaultInventoryListener(playerVaultManager, playerShopManager, shopLockManager, vaultSessionManager, playerVaultGUI, this), this);
         getServer().getPluginManager().registerEvents(new ShopSetupListener(playerShopManager), this);
-        getServer().getPluginManager().registerEvents(new OpenShopListener(playerVaultManager, vaultLockManager, this), this);
+        getServer().getPluginManager().registerEvents(new OpenShopListener(playerVaultManager, tradeListener, shopIndex, vaultLockManager, this), this);
+        getServer().getPluginManager().registerEvents(new ShopBrowserListener(shopBrowserGUI), this);
+        getServer().getPluginManager().registerEvents(new ShopBlockListener(shopBlockIndex, shopIndex, playerOpenShopGUI), this);
+        // Move hopper-fed stock into shop vaults, a non-positive interval disables it
+        int hopperRestockInterval = getConfig().getInt("hopperRestockInterval", 20);
+        if (hopperRestockInterval > 0) {
+            VaultRestockTask vaultRestockTask = new VaultRestockTask(playerVaultManager, shopIndex, shopBlockIndex, shopLockManager, platformScheduler);
+            getServer().getPluginManager().registerEvents(new HopperRestockListener(shopBlockIndex, vaultRestockTask), this);
+            platformScheduler.runGlobalTimer(vaultRestockTask, hopperRestockInterval, hopperRestockInterval);
+        }
         Objects.requireNonNull(getCommand("marketcraftdebug")).setExecutor(new DebugManager.ToggleDebugCommand());
-        Objects.requireNonNull(getCommand("marketcraft")).setExecutor(new CommandHandler(playerVaultManager, playerShopManager, this, playerOpenShopGUI, shopLockManager, vaultLockManager));
-        Objects.requireNonNull(getCommand("marketcraftadmin")).setExecutor(new AdminCommandHandler(playerVaultManager, playerShopManager, shopLockManager, vaultLockManager));
+        Objects.requireNonNull(getCommand("marketcraft")).setExecutor(new CommandHandler(playerVaultManager, playerShopManager, this, playerOpenShopGUI, shopBrowserGUI, shopOrderBook, buyOrderEngine, auctionHouse, tradeListener, priceStatistics, leaderboards, dynamicPricingEngine, cartManager, shopBlockIndex, storefrontManager, shopLockManager, vaultLockManager, vaultSessionManager));
+        Objects.requireNonNull(getCommand("marketcraftadmin")).setExecutor(new AdminCommandHandler(playerVaultManager, playerShopManager, shopLockManager, vaultLockManager, workScheduler, platformScheduler, transactionLedger));
+        // Autosave open vaults, a non-positive interval disables it
+        int vaultAutosaveInterval = getConfig().getInt("vaultAutosaveInterval", 60);
+        if (vaultAutosaveInterval > 0) {
+            vaultAutosaveTask = new VaultAutosaveTask(playerVaultManager, vaultSessionManager, platformScheduler, vaultAutosaveInterval * 20);
+            platformScheduler.runGlobalTimer(vaultAutosaveTask, 1L, 1L);
+        }
+        // Periodically snapshot the shop index so a restart does not rescan every shop file
+        platformScheduler.runGlobalTimer(() -> {
+            if (shopIndex.isDirty()) {
+                workScheduler.submitAsync(shopIndex::saveSnapshot);
+            }
+        }, SHOP_INDEX_SNAPSHOT_INTERVAL, SHOP_INDEX_SNAPSHOT_INTERVAL);
+        // Shop stock changes all the time, so resting buy orders are matched against shops again every 30 seconds
+        platformScheduler.runGlobalTimer(() -> workScheduler.submitAsync(buyOrderEngine::matchRestingOrders), BUY_ORDER_MATCH_INTERVAL, BUY_ORDER_MATCH_INTERVAL);
+        // Expire auctions once per second
+        platformScheduler.runGlobalTimer(auctionHouse::tick, 20L, 20L);
+        // Purchases only queue their ledger entries, write them out in one batch every second
+        platformScheduler.runGlobalTimer(() -> {
+            if (transactionLedger.hasPending()) {
+                workScheduler.submitAsync(transactionLedger::flush);
+            }
+        }, LEDGER_FLUSH_INTERVAL, LEDGER_FLUSH_INTERVAL);
+        platformScheduler.runGlobalTimer(() -> {
+            if (priceStatistics.isDirty()) {
+                workScheduler.submitAsync(priceStatistics::save);
+            }
+            if (leaderboards.isDirty()) {
+                workScheduler.submitAsync(leaderboards::save);
+            }
+        }, STATISTICS_SAVE_INTERVAL, STATISTICS_SAVE_INTERVAL);
+        // Trades and stock changes only queue dynamic shops, reprice them in the background every 5 seconds
+        platformScheduler.runGlobalTimer(() -> {
+            if (dynamicPricingEngine.hasPendingWork()) {
+                workScheduler.submitAsync(dynamicPricingEngine::recompute);
+            }
+        }, PRICING_RECOMPUTE_INTERVAL, PRICING_RECOMPUTE_INTERVAL);
+        // Once a minute every dynamic shop is repriced, so prices follow decaying sales even without new trades
+        platformScheduler.runGlobalTimer(dynamicPricingEngine::markAllDirty, PRICING_DECAY_INTERVAL, PRICING_DECAY_INTERVAL);
+        // Redraw changed storefronts at most once per interval, and only keep displays near players
+        platformScheduler.runGlobalTimer(storefrontManager::update, STOREFRONT_UPDATE_INTERVAL, STOREFRONT_UPDATE_INTERVAL);
+        platformScheduler.runGlobalTimer(storefrontManager::cull, 1L, STOREFRONT_CULL_INTERVAL);
+        // Once an hour, move the shops of long idle owners into cold storage, a non-positive number of days disables it
+        int shopArchiveIdleDays = getConfig().getInt("shopArchiveIdleDays", 90);
+        if (shopArchiveIdleDays > 0) {
+            ShopArchiveTask shopArchiveTask = new ShopArchiveTask(coldStorage, shopIndex, playerShopManager, playerVaultManager, shopLockManager, vaultLockManager, shopArchiveIdleDays);
+            platformScheduler.runGlobalTimer(() -> workScheduler.submitAsync(shopArchiveTask), SHOP_ARCHIVE_INTERVAL, SHOP_ARCHIVE_INTERVAL);
+        }
     }
 
     /**
      * Handles cleanup logic when the plugin is disabled.
      * This method is called when the server shuts down or the plugin is disabled manually.
-     * Does not currently contain any shutdown logic as none is needed.
+     * Persists the changes of any vaults that are still open so they are not lost.
+     * <p>
+     * A disabled plugin can't schedule work, so the scheduler switches to running work inline first, and the async
+     * work that is already running is given time to finish. Every step runs on its own, so one failing save doesn't
+     * skip the rest.
      */
     @Override
     public void onDisable() {
         // Plugin shutdown logic
+        if (platformScheduler != null) {
+            platformScheduler.beginShutdown();
+            if (!platformScheduler.awaitAsync(SHUTDOWN_ASYNC_TIMEOUT_MILLIS)) {
+                getLogger().warning("Async work was still running after " + SHUTDOWN_ASYNC_TIMEOUT_MILLIS + " ms, shutting down anyway.");
+            }
+        }
+        if (vaultAutosaveTask != null) {
+            shutdownStep("saving open vaults", vaultAutosaveTask::saveAll);
+        }
+        if (workScheduler != null) {
+            shutdownStep("running queued work", workScheduler::drain);
+        }
+        if (buyOrderEngine != null) {
+            shutdownStep("saving buy orders", buyOrderEngine::save);
+        }
+        if (auctionHouse != null) {
+            shutdownStep("saving auctions", auctionHouse::flush);
+        }
+        if (transactionLedger != null) {
+            shutdownStep("writing the transaction ledger", transactionLedger::flush);
+        }
+        if (priceStatistics != null) {
+            shutdownStep("saving price statistics", priceStatistics::save);
+        }
+        if (leaderboards != null) {
+            shutdownStep("saving leaderboards", leaderboards::save);
+        }
+        if (dynamicPricingEngine != null) {
+            shutdownStep("saving dynamic prices", dynamicPricingEngine::save);
+        }
+        if (storefrontManager != null) {
+            shutdownStep("removing storefronts", storefrontManager::despawnAll);
+            shutdownStep("saving storefronts", storefrontManager::save);
+        }
+        if (shopIndex != null && shopIndex.isDirty()) {
+            shutdownStep("saving the shop index snapshot", shopIndex::saveSnapshot);
+        }
+        if (platformScheduler != null) {
+            shutdownStep("cancelling scheduled tasks", platformScheduler::cancelAll);
+        }
+    }
+
+    private void shutdownStep(String description, Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            getLogger().log(Level.SEVERE, "An error has occurred while " + description + " on shutdown: ", e);
+        }
+    }
+
+    /**
+     * @return The scheduler used to route work to the thread that owns it.
+     */
+    public PlatformScheduler getPlatformScheduler() {
+        return platformScheduler;
     }
 
     public static String getPluginVersion() {
         return pluginVersion;
     }
 
+    public static int getBuyOrderLimit() {
+        if (buyOrderLimit == -1) {
+            return Integer.MAX_VALUE;
+        }
+        return buyOrderLimit;
+    }
+
     public static int getShopLimit() {
         if (shopLimit == -1) {
             return Integer.MAX_VALUE;
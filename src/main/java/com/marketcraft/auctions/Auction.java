@@ -0,0 +1,97 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.auctions;
+
+import com.marketcraft.util.TimingWheel;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * A time-limited listing in the {@link AuctionHouse}.
+ * The auctioned item and the highest bid are both held in escrow by the auction until it ends.
+ * Auctions are only mutated by the auction house, which guards them with its own monitor.
+ */
+public final class Auction {
+    private final long id;
+    private final UUID sellerUUID;
+    private final ItemStack item;
+    private final ItemStack paymentItem;
+    private final int startPrice;
+    private final long endsAt;
+    int highestBid;
+    UUID highestBidderUUID;
+    TimingWheel.Timer<Auction> expiryTimer;
+
+    Auction(long id, UUID sellerUUID, ItemStack item, ItemStack paymentItem, int startPrice, long endsAt, int highestBid, UUID highestBidderUUID) {
+        this.id = id;
+        this.sellerUUID = sellerUUID;
+        this.item = item.clone();
+        this.paymentItem = paymentItem.asOne();
+        this.startPrice = startPrice;
+        this.endsAt = endsAt;
+        this.highestBid = highestBid;
+        this.highestBidderUUID = highestBidderUUID;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public UUID getSellerUUID() {
+        return sellerUUID;
+    }
+
+    /**
+     * @return A copy of the auctioned item, including its amount.
+     */
+    public ItemStack getItem() {
+        return item.clone();
+    }
+
+    /**
+     * @return A single-item copy of the item bids are paid with.
+     */
+    public ItemStack getPaymentItem() {
+        return paymentItem.clone();
+    }
+
+    public int getStartPrice() {
+        return startPrice;
+    }
+
+    /**
+     * @return The time, in epoch milliseconds, at which the auction ends.
+     */
+    public long getEndsAt() {
+        return endsAt;
+    }
+
+    /**
+     * @return The highest bid, or zero if nobody has bid yet.
+     */
+    public int getHighestBid() {
+        return highestBid;
+    }
+
+    /**
+     * @return The UUID of the highest bidder, or null if nobody has bid yet.
+     */
+    public UUID getHighestBidderUUID() {
+        return highestBidderUUID;
+    }
+
+    /**
+     * @return The lowest amount the next bid has to offer.
+     */
+    public int getMinimumBid() {
+        return highestBidderUUID == null ? startPrice : highestBid + 1;
+    }
+}
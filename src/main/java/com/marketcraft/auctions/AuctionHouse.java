@@ -0,0 +1,326 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.auctions;
+
+import com.marketcraft.scheduler.WorkScheduler;
+import com.marketcraft.util.ItemCodec;
+import com.marketcraft.util.TimingWheel;
+import com.marketcraft.vaults.PlayerVaultManager;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Manages timed auctions in the MarketCraft plugin.
+ * <p>
+ * Every auction is registered in a {@link TimingWheel}, which is advanced once per second, so ending thousands
+ * of auctions never scans the ones that are still running. The auctioned item and the highest bid are held in
+ * escrow by the auction. When an auction ends, or a bidder is outbid, the items owed to each player are queued as
+ * settlements. Settlements are flushed in batches off the main thread into the players' auction storage, a section
+ * of their vault file written with a single {@link PlayerVaultManager#depositItems} call per player. Players take
+ * the items out with /marketcraft auction claim.
+ * <p>
+ * A flush saves the auctions file, settlements included, before it deposits anything. Ended auctions are only gone
+ * from memory until then, so depositing first could settle them a second time after a crash. The deposits carry the
+ * sequence numbers of their {@link SettlementQueue}, which makes depositing the saved settlements again harmless.
+ */
+public class AuctionHouse {
+    public static final String AUCTION_STORAGE = "auction-house";
+    private static final long WHEEL_TICK_MILLIS = 1000L;
+    private final File auctionsFile;
+    private final PlayerVaultManager playerVaultManager;
+    private final WorkScheduler workScheduler;
+    private final Map<Long, Auction> auctions = new HashMap<>();
+    private final TimingWheel<Auction> expiryWheel = new TimingWheel<>(WHEEL_TICK_MILLIS, System.currentTimeMillis());
+    private final SettlementQueue<ItemStack> settlements = new SettlementQueue<>();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private boolean dirty;
+    private long nextId = 1;
+
+    public AuctionHouse(File pluginFolder, PlayerVaultManager playerVaultManager, WorkScheduler workScheduler) {
+        this.auctionsFile = new File(pluginFolder, "auctions.yml");
+        this.playerVaultManager = playerVaultManager;
+        this.workScheduler = workScheduler;
+        // Vaults skip settlements numbered below what they already received, so even without the auctions file,
+        // numbering must start above any number handed out before
+        settlements.setNextSequence(System.currentTimeMillis() * 1000);
+        load();
+    }
+
+    /**
+     * Starts an auction. The caller must already have taken the item from the seller.
+     *
+     * @param seller         The player auctioning the item.
+     * @param item           The item to auction, including its amount.
+     * @param paymentItem    The item bids are paid with. The amount of the item is ignored.
+     * @param startPrice     The lowest accepted first bid.
+     * @param durationMillis How long the auction runs.
+     * @return The id of the new auction.
+     */
+    public synchronized long createAuction(Player seller, ItemStack item, ItemStack paymentItem, int startPrice, long durationMillis) {
+        Auction auction = new Auction(nextId++, seller.getUniqueId(), item, paymentItem, startPrice, System.currentTimeMillis() + durationMillis, 0, null);
+        register(auction);
+        dirty = true;
+        return auction.getId();
+    }
+
+    /**
+     * Places a bid. The caller must take the bid amount from the bidder if, and only if, the bid is accepted.
+     * The previous highest bid is refunded to its bidder's auction storage.
+     *
+     * @param bidder    The player bidding.
+     * @param auctionId The id of the auction.
+     * @param amount    The amount of payment items offered.
+     * @return The outcome of the bid.
+     */
+    public synchronized BidResult placeBid(Player bidder, long auctionId, int amount) {
+        Auction auction = auctions.get(auctionId);
+        if (auction == null || auction.getEndsAt() <= System.currentTimeMillis()) {
+            return BidResult.NOT_FOUND;
+        }
+        if (auction.getSellerUUID().equals(bidder.getUniqueId())) {
+            return BidResult.OWN_AUCTION;
+        }
+        if (amount < auction.getMinimumBid()) {
+            return BidResult.TOO_LOW;
+        }
+        if (auction.highestBidderUUID != null) {
+            settle(auction.highestBidderUUID, auction.getPaymentItem(), auction.highestBid);
+        }
+        auction.highestBid = amount;
+        auction.highestBidderUUID = bidder.getUniqueId();
+        dirty = true;
+        return BidResult.ACCEPTED;
+    }
+
+    /**
+     * Cancels an auction nobody has bid on yet and returns the item to the seller's auction storage.
+     *
+     * @param seller    The player cancelling the auction.
+     * @param auctionId The id of the auction.
+     * @return True if the auction was cancelled.
+     */
+    public synchronized boolean cancelAuction(Player seller, long auctionId) {
+        Auction auction = auctions.get(auctionId);
+        if (auction == null || !auction.getSellerUUID().equals(seller.getUniqueId()) || auction.highestBidderUUID != null) {
+            return false;
+        }
+        auctions.remove(auctionId);
+        expiryWheel.cancel(auction.expiryTimer);
+        settle(auction.getSellerUUID(), auction.getItem(), auction.getItem().getAmount());
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * @return All running auctions, ending soonest first.
+     */
+    public synchronized List<Auction> getActiveAuctions() {
+        List<Auction> active = new ArrayList<>(auctions.values());
+        active.sort(Comparator.comparingLong(Auction::getEndsAt));
+        return active;
+    }
+
+    /**
+     * Takes every item out of a player's auction storage.
+     * Settlements that are still queued are flushed first, so the player gets everything owed so far.
+     *
+     * @param playerUUID The UUID of the player.
+     * @return The items taken out of the storage.
+     */
+    public List<ItemStack> claim(UUID playerUUID) {
+        flush();
+        return playerVaultManager.withdrawItems(playerUUID, AUCTION_STORAGE);
+    }
+
+    /**
+     * Queues claimed items for the player's auction storage again, for when they could not be handed over.
+     * They are saved and deposited by the next flush.
+     *
+     * @param playerUUID The UUID of the player.
+     * @param items      The items taken out by {@link #claim(UUID)}.
+     */
+    public synchronized void returnClaim(UUID playerUUID, List<ItemStack> items) {
+        for (ItemStack item : items) {
+            settlements.add(playerUUID, item);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Advances the expiry wheel and settles every auction that ended. Called once per second.
+     * Settlements and the auctions file are then written by a single batched flush off the main thread.
+     */
+    public void tick() {
+        synchronized (this) {
+            for (Auction auction : expiryWheel.advance(System.currentTimeMillis())) {
+                auctions.remove(auction.getId());
+                if (auction.highestBidderUUID != null) {
+                    settle(auction.highestBidderUUID, auction.getItem(), auction.getItem().getAmount());
+                    settle(auction.getSellerUUID(), auction.getPaymentItem(), auction.highestBid);
+                } else {
+                    settle(auction.getSellerUUID(), auction.getItem(), auction.getItem().getAmount());
+                }
+                dirty = true;
+            }
+            if (!dirty) {
+                return;
+            }
+        }
+        if (flushPending.compareAndSet(false, true)) {
+            workScheduler.submitAsync(this::flush);
+        }
+    }
+
+    /**
+     * Saves the auctions file along with every queued settlement, then deposits the settlements with one vault write
+     * per player. Nothing is deposited unless the file was saved, and a settlement stays queued, and in the file,
+     * until its deposit succeeded. Flushes are serialized, so the file is never overwritten with an older state.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushPending.set(false);
+            Map<UUID, NavigableMap<Long, ItemStack>> saved;
+            String data;
+            synchronized (this) {
+                if (!dirty && settlements.isEmpty()) {
+                    return;
+                }
+                saved = settlements.snapshot();
+                data = serialize(saved);
+                dirty = false;
+            }
+            File tempFile = new File(auctionsFile.getPath() + ".tmp");
+            try {
+                Files.writeString(tempFile.toPath(), data, StandardCharsets.UTF_8);
+                Files.move(tempFile.toPath(), auctionsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving the auctions: ", e);
+                synchronized (this) {
+                    dirty = true;
+                }
+                return;
+            }
+            if (settlements.deposit(saved, (playerUUID, items) -> playerVaultManager.depositItems(playerUUID, AUCTION_STORAGE, items))) {
+                // Save the file again without the deposited settlements
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    private void settle(UUID playerUUID, ItemStack item, int amount) {
+        if (amount <= 0) {
+            return;
+        }
+        // Split into regular stacks so the storage can be handed out like any inventory contents
+        int maxStackSize = item.getMaxStackSize();
+        for (int remaining = amount; remaining > 0; remaining -= maxStackSize) {
+            ItemStack stack = item.clone();
+            stack.setAmount(Math.min(remaining, maxStackSize));
+            settlements.add(playerUUID, stack);
+        }
+    }
+
+    private void register(Auction auction) {
+        auctions.put(auction.getId(), auction);
+        auction.expiryTimer = expiryWheel.schedule(auction, auction.getEndsAt());
+    }
+
+    /**
+     * Writes the running auctions, including the settlements that are about to be deposited, as YAML.
+     * Keeping the settlements in the file until they are deposited means a crash before the deposit does not lose them.
+     *
+     * @param saved The queued settlements, as they are about to be deposited.
+     */
+    private String serialize(Map<UUID, NavigableMap<Long, ItemStack>> saved) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("nextId", nextId);
+        config.set("nextSettlement", settlements.getNextSequence());
+        for (Auction auction : auctions.values()) {
+            String path = "auctions." + auction.getId();
+            config.set(path + ".seller", auction.getSellerUUID().toString());
+            config.set(path + ".item", ItemCodec.encode(auction.getItem()));
+            config.set(path + ".payment", ItemCodec.encode(auction.getPaymentItem()));
+            config.set(path + ".startPrice", auction.getStartPrice());
+            config.set(path + ".endsAt", auction.getEndsAt());
+            if (auction.highestBidderUUID != null) {
+                config.set(path + ".highestBid", auction.highestBid);
+                config.set(path + ".highestBidder", auction.highestBidderUUID.toString());
+            }
+        }
+        for (Map.Entry<UUID, NavigableMap<Long, ItemStack>> entry : saved.entrySet()) {
+            for (Map.Entry<Long, ItemStack> settlement : entry.getValue().entrySet()) {
+                config.set("settlements." + entry.getKey() + "." + settlement.getKey(), ItemCodec.encode(settlement.getValue()));
+            }
+        }
+        return config.saveToString();
+    }
+
+    private void load() {
+        if (!auctionsFile.exists()) {
+            return;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(auctionsFile);
+        nextId = config.getLong("nextId", 1);
+        ConfigurationSection auctionsSection = config.getConfigurationSection("auctions");
+        if (auctionsSection != null) {
+            for (String key : auctionsSection.getKeys(false)) {
+                ConfigurationSection section = Objects.requireNonNull(auctionsSection.getConfigurationSection(key));
+                String highestBidder = section.getString("highestBidder");
+                // Auctions that ended while the server was down expire on the first tick
+                register(new Auction(Long.parseLong(key),
+                        UUID.fromString(Objects.requireNonNull(section.getString("seller"))),
+                        ItemCodec.decode(Objects.requireNonNull(section.getConfigurationSection("item")).getValues(false)),
+                        ItemCodec.decode(Objects.requireNonNull(section.getConfigurationSection("payment")).getValues(false)),
+                        section.getInt("startPrice"), section.getLong("endsAt"), section.getInt("highestBid"),
+                        highestBidder != null ? UUID.fromString(highestBidder) : null));
+            }
+        }
+        // Files written before settlements were numbered only have list indexes, which must not be taken as numbers
+        boolean numbered = config.contains("nextSettlement");
+        settlements.setNextSequence(config.getLong("nextSettlement", 1));
+        ConfigurationSection settlementsSection = config.getConfigurationSection("settlements");
+        if (settlementsSection != null) {
+            for (String uuidString : settlementsSection.getKeys(false)) {
+                ConfigurationSection playerSection = Objects.requireNonNull(settlementsSection.getConfigurationSection(uuidString));
+                UUID playerUUID = UUID.fromString(uuidString);
+                for (String key : playerSection.getKeys(false)) {
+                    ItemStack item = ItemCodec.decode(Objects.requireNonNull(playerSection.getConfigurationSection(key)).getValues(false));
+                    if (numbered) {
+                        settlements.restore(playerUUID, Long.parseLong(key), item);
+                    } else {
+                        settlements.add(playerUUID, item);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The outcome of a bid.
+     */
+    public enum BidResult {
+        ACCEPTED, NOT_FOUND, OWN_AUCTION, TOO_LOW
+    }
+}
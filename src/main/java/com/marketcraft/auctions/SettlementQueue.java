@@ -0,0 +1,120 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.auctions;
+
+import java.util.*;
+
+/**
+ * The items owed to players by the auction house that are not in their auction storage yet.
+ * <p>
+ * Every settlement gets a sequence number that is never reused, and the numbers are saved along with the
+ * settlements. A flush first saves a {@link #snapshot()} to the auctions file and only then deposits it, and a
+ * settlement is only dropped once its deposit succeeded. The vault remembers the highest number it received, so a
+ * snapshot that is deposited again after a crash, before the file was saved without it, is not stored twice.
+ *
+ * @param <T> The type of the settled items.
+ */
+final class SettlementQueue<T> {
+    private final Map<UUID, TreeMap<Long, T>> pending = new HashMap<>();
+    private long nextSequence = 1;
+
+    /**
+     * Queues an item owed to a player under a new sequence number.
+     *
+     * @param playerUUID The UUID of the player.
+     * @param item       The item owed.
+     */
+    synchronized void add(UUID playerUUID, T item) {
+        pending.computeIfAbsent(playerUUID, k -> new TreeMap<>()).put(nextSequence++, item);
+    }
+
+    /**
+     * Queues a settlement read back from the auctions file, keeping its sequence number.
+     *
+     * @param playerUUID The UUID of the player.
+     * @param sequence   The sequence number of the settlement.
+     * @param item       The item owed.
+     */
+    synchronized void restore(UUID playerUUID, long sequence, T item) {
+        pending.computeIfAbsent(playerUUID, k -> new TreeMap<>()).put(sequence, item);
+        nextSequence = Math.max(nextSequence, sequence + 1);
+    }
+
+    /**
+     * @return The sequence number the next settlement gets, saved so numbers are never reused.
+     */
+    synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * @param nextSequence The saved sequence number of the next settlement.
+     */
+    synchronized void setNextSequence(long nextSequence) {
+        this.nextSequence = Math.max(this.nextSequence, nextSequence);
+    }
+
+    synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * @return A copy of every queued settlement by player, each player's ordered by sequence number.
+     */
+    synchronized Map<UUID, NavigableMap<Long, T>> snapshot() {
+        Map<UUID, NavigableMap<Long, T>> snapshot = new HashMap<>();
+        for (Map.Entry<UUID, TreeMap<Long, T>> entry : pending.entrySet()) {
+            snapshot.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Deposits a snapshot that has already been saved, one deposit per player.
+     * Settlements are dropped once their deposit succeeded, those of failed deposits and those queued after the
+     * snapshot was taken stay queued.
+     *
+     * @param saved     The saved snapshot.
+     * @param depositor Stores a player's items, skipping those it already stored.
+     * @return True if any settlement was dropped, so the auctions file should be saved again.
+     */
+    boolean deposit(Map<UUID, NavigableMap<Long, T>> saved, Depositor<T> depositor) {
+        boolean dropped = false;
+        for (Map.Entry<UUID, NavigableMap<Long, T>> entry : saved.entrySet()) {
+            if (entry.getValue().isEmpty() || !depositor.deposit(entry.getKey(), entry.getValue())) {
+                continue;
+            }
+            synchronized (this) {
+                TreeMap<Long, T> playerSettlements = pending.get(entry.getKey());
+                if (playerSettlements != null) {
+                    playerSettlements.headMap(entry.getValue().lastKey(), true).clear();
+                    if (playerSettlements.isEmpty()) {
+                        pending.remove(entry.getKey());
+                    }
+                }
+            }
+            dropped = true;
+        }
+        return dropped;
+    }
+
+    /**
+     * Stores settlements in a player's auction storage.
+     */
+    @FunctionalInterface
+    interface Depositor<T> {
+        /**
+         * @param playerUUID The UUID of the player.
+         * @param items      The items to store by sequence number.
+         * @return True if the items are stored.
+         */
+        boolean deposit(UUID playerUUID, NavigableMap<Long, T> items);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.cart;
+
+import com.marketcraft.shops.ShopTradeTable;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * One line of a shopping cart: a number of lots of one trade of one shop.
+ * A lot is a single run of the trade, so the buyer receives the trade's sold amount per lot.
+ * The line keeps the items the trade sold and charged when it was added, so a trade that changed since can be
+ * refused at checkout instead of being bought at a price the buyer never saw.
+ *
+ * @param ownerUUID    The UUID of the shop owner.
+ * @param shopName     The name of the shop.
+ * @param trade        The number of the trade within the shop.
+ * @param itemToSell   The item sold per lot, with its amount, as shown to the buyer.
+ * @param itemToCharge The item charged per lot, with its amount, as shown to the buyer.
+ * @param lots         The number of times to run the trade.
+ */
+public record CartLine(UUID ownerUUID, String shopName, int trade, ItemStack itemToSell, ItemStack itemToCharge, int lots) {
+    /**
+     * @param trades The current trades of the line's shop, or null if the shop is gone.
+     * @return True if the shop still offers the trade with the items and amounts of this line.
+     */
+    public boolean matches(ShopTradeTable trades) {
+        return trades != null && trade < trades.size() && trades.isComplete(trade)
+                && trades.getItemToSell(trade).equals(itemToSell) && trades.getItemToCharge(trade).equals(itemToCharge);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.cart;
+
+import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopTradeTable;
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.util.InventoryUtils;
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultTransaction;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the shopping carts of players and checks them out in one go.
+ * <p>
+ * Carts live in memory only and are dropped when the plugin is disabled. A checkout buys every line of the cart or
+ * nothing at all. To do that it holds every affected shop and vault at once, which is only safe because they are
+ * always taken in the same global order: shops sorted by owner UUID and then shop name, and vault locks sorted by
+ * owner UUID. Two checkouts that touch the same shops therefore queue on the first shared lock rather than each
+ * holding a lock the other is waiting for, and single trades elsewhere never hold more than one vault lock.
+ * <p>
+ * With the locks held each vault file is read once into a {@link VaultTransaction}, every lot is validated and
+ * applied in memory, and only when the whole cart passed are the vaults written, once each. A line is only bought
+ * with the items and amounts it was added with; if its trade changed since, the checkout is refused.
+ */
+public class CartManager {
+    /**
+     * The most lines a cart can hold.
+     */
+    public static final int MAX_LINES = 27;
+    /**
+     * The most lots a single line can hold.
+     */
+    public static final int MAX_LOTS = 64;
+    private static final Comparator<ShopKey> SHOP_ORDER = Comparator.comparing(ShopKey::ownerUUID).thenComparing(ShopKey::shopName);
+    private final ShopIndex shopIndex;
+    private final PlayerVaultManager playerVaultManager;
+    private final TradeListener tradeListener;
+    private final ShopLockManager shopLockManager;
+    private final VaultLockManager vaultLockManager;
+    private final Map<UUID, List<CartLine>> carts = new ConcurrentHashMap<>();
+
+    public CartManager(ShopIndex shopIndex, PlayerVaultManager playerVaultManager, TradeListener tradeListener, ShopLockManager shopLockManager, VaultLockManager vaultLockManager) {
+        this.shopIndex = shopIndex;
+        this.playerVaultManager = playerVaultManager;
+        this.tradeListener = tradeListener;
+        this.shopLockManager = shopLockManager;
+        this.vaultLockManager = vaultLockManager;
+    }
+
+    /**
+     * Adds lots of a trade to a player's cart. Lots of a trade that is already in the cart are added to its line,
+     * which then takes the items of the added line, as those are the ones the buyer was just shown.
+     *
+     * @param playerUUID The UUID of the player owning the cart.
+     * @param line       The line to add.
+     * @return The line as it is now in the cart, or null if the cart is full or the line would exceed {@link #MAX_LOTS}.
+     */
+    public CartLine add(UUID playerUUID, CartLine line) {
+        List<CartLine> cart = carts.computeIfAbsent(playerUUID, k -> new ArrayList<>());
+        synchronized (cart) {
+            for (int i = 0; i < cart.size(); i++) {
+                CartLine existing = cart.get(i);
+                if (existing.ownerUUID().equals(line.ownerUUID()) && existing.shopName().equals(line.shopName()) && existing.trade() == line.trade()) {
+                    int lots = existing.lots() + line.lots();
+                    if (lots > MAX_LOTS) {
+                        return null;
+                    }
+                    CartLine merged = new CartLine(line.ownerUUID(), line.shopName(), line.trade(), line.itemToSell(), line.itemToCharge(), lots);
+                    cart.set(i, merged);
+                    return merged;
+                }
+            }
+            if (cart.size() >= MAX_LINES || line.lots() > MAX_LOTS) {
+                return null;
+            }
+            cart.add(line);
+            return line;
+        }
+    }
+
+    /**
+     * @param playerUUID The UUID of the player owning the cart.
+     * @param index      The index of the line to remove, starting at 0.
+     * @return The removed line, or null if the cart has no such line.
+     */
+    public CartLine remove(UUID playerUUID, int index) {
+        List<CartLine> cart = carts.get(playerUUID);
+        if (cart == null) {
+            return null;
+        }
+        synchronized (cart) {
+            return index >= 0 && index < cart.size() ? cart.remove(index) : null;
+        }
+    }
+
+    /**
+     * Empties a player's cart.
+     *
+     * @param playerUUID The UUID of the player owning the cart.
+     */
+    public void clear(UUID playerUUID) {
+        carts.remove(playerUUID);
+    }
+
+    /**
+     * @param playerUUID The UUID of the player owning the cart.
+     * @return A copy of the lines in the cart, in the order they were added.
+     */
+    public List<CartLine> getLines(UUID playerUUID) {
+        List<CartLine> cart = carts.get(playerUUID);
+        if (cart == null) {
+            return List.of();
+        }
+        synchronized (cart) {
+            return new ArrayList<>(cart);
+        }
+    }
+
+    /**
+     * Buys everything in a player's cart, or nothing if any line can't be bought.
+     * The player is told why a checkout failed, and the cart is only emptied by a successful checkout.
+     * Goods that don't fit in the buyer's inventory are dropped at their feet.
+     *
+     * @param player The player checking out.
+     * @return True if the cart was bought.
+     */
+    public boolean checkout(Player player) {
+        UUID buyerUUID = player.getUniqueId();
+        List<CartLine> lines = getLines(buyerUUID);
+        if (lines.isEmpty()) {
+            player.sendMessage(Component.text("Your cart is empty."));
+            return false;
+        }
+        // Resolve every line against the current shops before taking any lock
+        TreeSet<ShopKey> shops = new TreeSet<>(SHOP_ORDER);
+        TreeSet<UUID> owners = new TreeSet<>();
+        Map<ItemFingerprint, Integer> payment = new HashMap<>();
+        Map<ItemFingerprint, ItemStack> paymentItems = new HashMap<>();
+        for (CartLine line : lines) {
+            ShopListing listing = shopIndex.getShop(line.ownerUUID(), line.shopName());
+            ShopTradeTable trades = listing != null ? listing.getTrades() : null;
+            if (trades == null || line.trade() >= trades.size() || !trades.isComplete(line.trade())) {
+                player.sendMessage(Component.text("Shop '" + line.shopName() + "' no longer offers that trade. Remove it from your cart to check out."));
+                return false;
+            }
+            if (!line.matches(trades)) {
+                player.sendMessage(Component.text("A trade of shop '" + line.shopName() + "' has changed since you added it. Remove it from your cart and add it again to check out."));
+                return false;
+            }
+            shops.add(new ShopKey(line.ownerUUID(), line.shopName()));
+            owners.add(line.ownerUUID());
+            ItemFingerprint chargeFingerprint = trades.getChargeFingerprint(line.trade());
+            payment.merge(chargeFingerprint, line.itemToCharge().getAmount() * line.lots(), Integer::sum);
+            paymentItems.putIfAbsent(chargeFingerprint, line.itemToCharge());
+        }
+        List<ShopKey> claimedShops = new ArrayList<>(shops.size());
+        List<ReentrantLock> heldLocks = new ArrayList<>(owners.size());
+        try {
+            // Claim the shops like an open shop GUI would, so owners can't start editing their vaults meanwhile
+            for (ShopKey shop : shops) {
+                vaultLockManager.lockVault(shop.ownerUUID(), shop.shopName(), buyerUUID);
+                claimedShops.add(shop);
+                if (shopLockManager.isLocked(shop.ownerUUID(), shop.shopName())) {
+                    player.sendMessage(Component.text("Shop '" + shop.shopName() + "' is being edited by its owner, please try again later."));
+                    return false;
+                }
+            }
+            for (UUID ownerUUID : owners) {
+                ReentrantLock vaultLock = playerVaultManager.getVaultLock(ownerUUID);
+                vaultLock.lock();
+                heldLocks.add(vaultLock);
+            }
+            // A trade may have been repriced or edited before its shop was claimed, check again with everything held
+            for (CartLine line : lines) {
+                ShopListing listing = shopIndex.getShop(line.ownerUUID(), line.shopName());
+                if (!line.matches(listing != null ? listing.getTrades() : null)) {
+                    player.sendMessage(Component.text("A trade of shop '" + line.shopName() + "' has changed since you added it. Remove it from your cart and add it again to check out."));
+                    return false;
+                }
+            }
+            for (Map.Entry<ItemFingerprint, Integer> entry : payment.entrySet()) {
+                if (InventoryUtils.countItems(player, paymentItems.get(entry.getKey())) < entry.getValue()) {
+                    player.sendMessage(Component.text("You do not have enough items to pay for your cart."));
+                    return false;
+                }
+            }
+            // Apply every lot to the in-memory vaults, nothing is written unless all of them succeed
+            Map<UUID, VaultTransaction> transactions = new LinkedHashMap<>();
+            for (UUID ownerUUID : owners) {
+                VaultTransaction transaction = playerVaultManager.beginTransaction(ownerUUID);
+                if (transaction == null) {
+                    player.sendMessage(Component.text("A shop in your cart no longer has a vault."));
+                    return false;
+                }
+                transactions.put(ownerUUID, transaction);
+            }
+            for (CartLine line : lines) {
+                ItemStack itemBeingSold = line.itemToSell();
+                ItemStack itemCost = line.itemToCharge();
+                VaultTransaction transaction = transactions.get(line.ownerUUID());
+                for (int lot = 0; lot < line.lots(); lot++) {
+                    if (!transaction.removeItems(itemBeingSold, itemBeingSold.getAmount(), line.shopName())) {
+                        player.sendMessage(Component.text("Shop '" + line.shopName() + "' doesn't have enough stock for your cart."));
+                        return false;
+                    }
+                    if (!transaction.addItems(itemCost, itemCost.getAmount(), line.shopName())) {
+                        player.sendMessage(Component.text("Shop '" + line.shopName() + "' doesn't have enough vault space for your payment."));
+                        return false;
+                    }
+                }
+            }
+            if (!playerVaultManager.commitTransactions(new ArrayList<>(transactions.values()))) {
+                player.sendMessage(Component.text("The checkout failed, nothing was bought."));
+                return false;
+            }
+            for (Map.Entry<ItemFingerprint, Integer> entry : payment.entrySet()) {
+                InventoryUtils.removeItems(player, paymentItems.get(entry.getKey()), entry.getValue());
+            }
+            for (CartLine line : lines) {
+                ItemStack itemBeingSold = line.itemToSell();
+                ItemStack itemCost = line.itemToCharge();
+                InventoryUtils.giveItems(player, itemBeingSold, itemBeingSold.getAmount() * line.lots());
+                for (int lot = 0; lot < line.lots(); lot++) {
+                    tradeListener.onTrade(line.ownerUUID(), line.shopName(), buyerUUID, itemBeingSold, itemCost);
+                }
+            }
+        } finally {
+            // Release in the reverse order of taking
+            for (int i = heldLocks.size() - 1; i >= 0; i--) {
+                heldLocks.get(i).unlock();
+            }
+            for (int i = claimedShops.size() - 1; i >= 0; i--) {
+                ShopKey shop = claimedShops.get(i);
+                vaultLockManager.unlockVault(shop.ownerUUID(), shop.shopName(), buyerUUID);
+            }
+        }
+        clear(buyerUUID);
+        player.sendMessage(Component.text("Checked out " + lines.size() + (lines.size() == 1 ? " line" : " lines") + " from " + shops.size() + (shops.size() == 1 ? " shop." : " shops.")));
+        return true;
+    }
+
+    private record ShopKey(UUID ownerUUID, String shopName) {
+    }
+}
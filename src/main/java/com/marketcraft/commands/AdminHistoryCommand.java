@@ -0,0 +1,136 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.ledger.LedgerEntry;
+import com.marketcraft.ledger.TransactionLedger;
+import com.marketcraft.scheduler.PlatformScheduler;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Command handler for the `history` subcommand within the MarketCraft plugin for the admin command set.
+ */
+public class AdminHistoryCommand {
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 100;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private final TransactionLedger transactionLedger;
+    private final PlatformScheduler platformScheduler;
+
+    public AdminHistoryCommand(TransactionLedger transactionLedger, PlatformScheduler platformScheduler) {
+        this.transactionLedger = transactionLedger;
+        this.platformScheduler = platformScheduler;
+    }
+
+    /**
+     * Handles the 'history' subcommand of the /marketcraftadmin command set.
+     * Lists the most recent purchases from a shop owner's shops, by a buyer, or of an item, newest first.
+     * The ledger is read off the main thread and the results are sent once the lookup is done.
+     *
+     * @param sender The sender of the command; expected to be an administrator with the appropriate permissions.
+     * @param args   The arguments provided with the command: owner, buyer or item, the player name or item
+     *               (or 'hand'), and an optional limit.
+     * @return true if the lookup was started, false if there is an error such as incorrect usage.
+     */
+    public boolean handleAdminHistoryCommand(CommandSender sender, String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            sender.sendMessage(Component.text("Usage: /marketcraftadmin history <owner|buyer|item> <player|item|hand> [limit]"));
+            return false;
+        }
+        int limit = DEFAULT_LIMIT;
+        if (args.length == 4) {
+            try {
+                limit = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                sender.sendMessage(Component.text("The limit must be a number between 1 and " + MAX_LIMIT + "."));
+                return false;
+            }
+        }
+        int maxEntries = limit;
+        String target = args[2];
+        Supplier<List<LedgerEntry>> lookup;
+        switch (args[1].toLowerCase()) {
+            // Name lookups may hit the disk, so they happen off the main thread with the query
+            case "owner" -> lookup = () -> transactionLedger.findByOwner(Bukkit.getOfflinePlayer(target).getUniqueId(), maxEntries);
+            case "buyer" -> lookup = () -> transactionLedger.findByBuyer(Bukkit.getOfflinePlayer(target).getUniqueId(), maxEntries);
+            case "item" -> {
+                ItemStack item = resolveItem(sender, target);
+                if (item == null) {
+                    return false;
+                }
+                lookup = () -> transactionLedger.findByItem(item, maxEntries);
+            }
+            default -> {
+                sender.sendMessage(Component.text("Usage: /marketcraftadmin history <owner|buyer|item> <player|item|hand> [limit]"));
+                return false;
+            }
+        }
+        platformScheduler.runAsync(() -> {
+            List<LedgerEntry> entries = lookup.get();
+            Component message = formatEntries(args[1].toLowerCase() + " " + target, entries);
+            if (sender instanceof Player player) {
+                platformScheduler.runForEntity(player, () -> player.sendMessage(message));
+            } else {
+                platformScheduler.runGlobal(() -> sender.sendMessage(message));
+            }
+        });
+        return true;
+    }
+
+    private ItemStack resolveItem(CommandSender sender, String target) {
+        if (target.equalsIgnoreCase("hand")) {
+            if (!(sender instanceof Player player) || player.getInventory().getItemInMainHand().getType() == Material.AIR) {
+                sender.sendMessage(Component.text("You need to hold the item to look up."));
+                return null;
+            }
+            return player.getInventory().getItemInMainHand().clone();
+        }
+        Material material = Material.matchMaterial(target);
+        if (material == null) {
+            sender.sendMessage(Component.text("Unknown item: " + target));
+            return null;
+        }
+        return new ItemStack(material);
+    }
+
+    private Component formatEntries(String title, List<LedgerEntry> entries) {
+        TextComponent.Builder messageBuilder = Component.text();
+        messageBuilder.append(Component.text("MarketCraft purchase history for " + title + " (" + entries.size() + " shown)"));
+        for (LedgerEntry entry : entries) {
+            messageBuilder.append(Component.newline())
+                    .append(Component.text(TIME_FORMAT.format(Instant.ofEpochMilli(entry.getTimestamp())) + " "
+                            + playerName(entry.getBuyerUUID()) + " bought " + entry.getSoldAmount() + " " + entry.getSoldType()
+                            + " for " + entry.getCostAmount() + " " + entry.getCostType()
+                            + " from " + playerName(entry.getOwnerUUID()) + "'s shop '" + entry.getShopName() + "'"));
+        }
+        return messageBuilder.build();
+    }
+
+    private static String playerName(UUID playerUUID) {
+        String name = Bukkit.getOfflinePlayer(playerUUID).getName();
+        return name != null ? name : playerUUID.toString();
+    }
+}
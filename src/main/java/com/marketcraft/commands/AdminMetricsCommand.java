@@ -0,0 +1,54 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.scheduler.WorkPriority;
+import com.marketcraft.scheduler.WorkScheduler;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Command handler for the `metrics` subcommand within the MarketCraft plugin for the admin command set.
+ */
+public class AdminMetricsCommand {
+    private final WorkScheduler workScheduler;
+
+    public AdminMetricsCommand(WorkScheduler workScheduler) {
+        this.workScheduler = workScheduler;
+    }
+
+    /**
+     * Handles the 'metrics' subcommand of the /marketcraftadmin command set.
+     * Displays the state of the plugin's background work scheduler, including the queue depth of each
+     * priority class, how much work has been executed and how often background work was deferred.
+     *
+     * @param sender The sender of the command; expected to be an administrator with the appropriate permissions.
+     * @return true after displaying the metrics.
+     */
+    public boolean handleAdminMetricsCommand(CommandSender sender) {
+        TextComponent.Builder messageBuilder = Component.text();
+        messageBuilder.append(Component.text("MarketCraft Scheduler Metrics"))
+                .append(Component.newline());
+        for (WorkPriority priority : WorkPriority.values()) {
+            messageBuilder.append(Component.text("Queued " + priority.name() + ": " + workScheduler.getQueueDepth(priority)))
+                    .append(Component.newline());
+        }
+        messageBuilder.append(Component.text("Executed: " + workScheduler.getExecutedCount() + " (async: " + workScheduler.getAsyncCount() + ")"))
+                .append(Component.newline())
+                .append(Component.text("Ticks with deferred background work: " + workScheduler.getDeferredTicks()))
+                .append(Component.newline())
+                .append(Component.text("Ticks over budget: " + workScheduler.getOverBudgetTicks()))
+                .append(Component.newline())
+                .append(Component.text(String.format("Last tick: %.3f ms", workScheduler.getLastTickMillis())));
+        sender.sendMessage(messageBuilder.build());
+        return true;
+    }
+}
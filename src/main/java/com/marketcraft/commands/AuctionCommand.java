@@ -0,0 +1,208 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.auctions.Auction;
+import com.marketcraft.auctions.AuctionHouse;
+import com.marketcraft.scheduler.PlatformScheduler;
+import com.marketcraft.util.InventoryUtils;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Command handler for the 'auction' subcommand within the MarketCraft plugin.
+ */
+public class AuctionCommand {
+    private static final int PAGE_SIZE = 8;
+    private static final int MAX_PRICE = 2304;
+    private static final int MAX_MINUTES = 10080; // One week
+    private final AuctionHouse auctionHouse;
+    private final PlatformScheduler platformScheduler;
+
+    public AuctionCommand(AuctionHouse auctionHouse, PlatformScheduler platformScheduler) {
+        this.auctionHouse = auctionHouse;
+        this.platformScheduler = platformScheduler;
+    }
+
+    /**
+     * Handles the 'auction' subcommand of the /marketcraft command set.
+     * 'auction list [page]' shows the running auctions, 'auction sell' auctions the held stack, 'auction bid' bids
+     * on an auction, 'auction cancel' cancels an auction without bids and 'auction claim' hands out won items,
+     * proceeds and refunds.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command.
+     * @return true if the command was handled, false if there is an error such as incorrect usage.
+     */
+    public boolean handleAuctionCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        String action = args.length > 1 ? args[1].toLowerCase() : "list";
+        return switch (action) {
+            case "list" -> handleList(player, args);
+            case "sell" -> handleSell(player, args);
+            case "bid" -> handleBid(player, args);
+            case "cancel" -> handleCancel(player, args);
+            case "claim" -> handleClaim(player);
+            default -> {
+                player.sendMessage(Component.text("Usage: /marketcraft auction [list [page]|sell <startPrice> <paymentItem> <minutes>|bid <id> <amount>|cancel <id>|claim]"));
+                yield false;
+            }
+        };
+    }
+
+    private boolean handleList(Player player, String[] args) {
+        List<Auction> auctions = auctionHouse.getActiveAuctions();
+        if (auctions.isEmpty()) {
+            player.sendMessage(Component.text("There are no running auctions."));
+            return true;
+        }
+        int pages = (auctions.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        int page = args.length > 2 ? parseNumber(args[2]) : 1;
+        if (page < 1 || page > pages) {
+            player.sendMessage(Component.text("Page must be between 1 and " + pages + "."));
+            return false;
+        }
+        player.sendMessage(Component.text("Auctions, page " + page + " of " + pages + ":"));
+        long now = System.currentTimeMillis();
+        for (Auction auction : auctions.subList((page - 1) * PAGE_SIZE, Math.min(page * PAGE_SIZE, auctions.size()))) {
+            ItemStack item = auction.getItem();
+            String bid = auction.getHighestBidderUUID() == null ? "no bids, starts at " + auction.getStartPrice() : "highest bid " + auction.getHighestBid();
+            long minutesLeft = Math.max(0, (auction.getEndsAt() - now) / 60000);
+            player.sendMessage(Component.text("#" + auction.getId() + ": " + item.getAmount() + " " + item.getType().getKey().getKey()
+                    + ", " + bid + " " + auction.getPaymentItem().getType().getKey().getKey() + ", " + minutesLeft + " minutes left"));
+        }
+        return true;
+    }
+
+    private boolean handleSell(Player player, String[] args) {
+        if (args.length != 5) {
+            player.sendMessage(Component.text("Usage: /marketcraft auction sell <startPrice> <paymentItem> <minutes>"));
+            return false;
+        }
+        ItemStack item = player.getInventory().getItemInMainHand();
+        if (item.getType() == Material.AIR) {
+            player.sendMessage(Component.text("You need to hold the items you want to auction."));
+            return false;
+        }
+        Material paymentMaterial = Material.matchMaterial(args[3]);
+        if (paymentMaterial == null) {
+            player.sendMessage(Component.text("Unknown item: " + args[3]));
+            return false;
+        }
+        int startPrice = parseNumber(args[2]);
+        int minutes = parseNumber(args[4]);
+        if (startPrice < 1 || startPrice > MAX_PRICE || minutes < 1 || minutes > MAX_MINUTES) {
+            player.sendMessage(Component.text("The start price must be between 1 and " + MAX_PRICE + " and the duration between 1 and " + MAX_MINUTES + " minutes."));
+            return false;
+        }
+        // The auction holds the whole stack in escrow until it ends
+        player.getInventory().setItemInMainHand(null);
+        long auctionId = auctionHouse.createAuction(player, item, new ItemStack(paymentMaterial), startPrice, minutes * 60000L);
+        player.sendMessage(Component.text("Started auction #" + auctionId + " for " + item.getAmount() + " " + item.getType().getKey().getKey() + "."));
+        return true;
+    }
+
+    private boolean handleBid(Player player, String[] args) {
+        if (args.length != 4) {
+            player.sendMessage(Component.text("Usage: /marketcraft auction bid <id> <amount>"));
+            return false;
+        }
+        long auctionId = parseId(args[2]);
+        int amount = parseNumber(args[3]);
+        if (auctionId < 0 || amount < 1) {
+            player.sendMessage(Component.text("The id and amount must be positive numbers."));
+            return false;
+        }
+        Auction auction = auctionHouse.getActiveAuctions().stream().filter(a -> a.getId() == auctionId).findFirst().orElse(null);
+        if (auction == null) {
+            player.sendMessage(Component.text("There is no running auction #" + auctionId + "."));
+            return false;
+        }
+        ItemStack paymentItem = auction.getPaymentItem();
+        if (InventoryUtils.countItems(player, paymentItem) < amount) {
+            player.sendMessage(Component.text("You need " + amount + " " + paymentItem.getType().getKey().getKey() + " to place this bid."));
+            return false;
+        }
+        switch (auctionHouse.placeBid(player, auctionId, amount)) {
+            case ACCEPTED -> {
+                InventoryUtils.removeItems(player, paymentItem, amount);
+                player.sendMessage(Component.text("You are now the highest bidder on auction #" + auctionId + "."));
+                return true;
+            }
+            case OWN_AUCTION -> player.sendMessage(Component.text("You cannot bid on your own auction."));
+            case TOO_LOW -> player.sendMessage(Component.text("Your bid must be at least " + auction.getMinimumBid() + "."));
+            case NOT_FOUND -> player.sendMessage(Component.text("There is no running auction #" + auctionId + "."));
+        }
+        return false;
+    }
+
+    private boolean handleCancel(Player player, String[] args) {
+        if (args.length != 3) {
+            player.sendMessage(Component.text("Usage: /marketcraft auction cancel <id>"));
+            return false;
+        }
+        long auctionId = parseId(args[2]);
+        if (auctionId < 0 || !auctionHouse.cancelAuction(player, auctionId)) {
+            player.sendMessage(Component.text("You have no auction #" + args[2] + " without bids."));
+            return false;
+        }
+        player.sendMessage(Component.text("Cancelled auction #" + auctionId + ", use /marketcraft auction claim to get your items back."));
+        return true;
+    }
+
+    private boolean handleClaim(Player player) {
+        // Claiming reads and writes the vault file, so do it off the main thread and hand the items over afterwards
+        UUID playerUUID = player.getUniqueId();
+        platformScheduler.runAsync(() -> {
+            List<ItemStack> items = auctionHouse.claim(playerUUID);
+            // The items are out of the storage by now, so put them back if the player is gone before receiving them
+            platformScheduler.runForEntity(player, () -> {
+                if (items.isEmpty()) {
+                    player.sendMessage(Component.text("There is nothing to claim."));
+                    return;
+                }
+                for (ItemStack item : items) {
+                    InventoryUtils.giveItems(player, item, item.getAmount());
+                }
+                player.sendMessage(Component.text("Claimed your items from the auction house."));
+            }, () -> {
+                if (!items.isEmpty()) {
+                    auctionHouse.returnClaim(playerUUID, items);
+                }
+            });
+        });
+        return true;
+    }
+
+    private static long parseId(String argument) {
+        try {
+            return Long.parseLong(argument.replace("#", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int parseNumber(String argument) {
+        try {
+            return Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
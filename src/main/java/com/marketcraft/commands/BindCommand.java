@@ -0,0 +1,68 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.shops.ShopBlockIndex;
+import com.marketcraft.shops.ShopIndex;
+import net.kyori.adventure.text.Component;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Command handler for the 'bind' subcommand within the MarketCraft plugin.
+ */
+public class BindCommand {
+    private static final int MAX_DISTANCE = 5;
+    private final ShopIndex shopIndex;
+    private final ShopBlockIndex shopBlockIndex;
+
+    public BindCommand(ShopIndex shopIndex, ShopBlockIndex shopBlockIndex) {
+        this.shopIndex = shopIndex;
+        this.shopBlockIndex = shopBlockIndex;
+    }
+
+    /**
+     * Handles the 'bind' subcommand of the /marketcraft command set.
+     * Binds the sign or container the player is looking at to one of their shops, so right-clicking it opens the shop.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command: the name of the shop.
+     * @return true if the block was bound, false if there is an error such as incorrect usage or an unsuitable block.
+     */
+    public boolean handleBindCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length != 2) {
+            sender.sendMessage(Component.text("Usage: /marketcraft bind <shopName>"));
+            return false;
+        }
+        String shopName = args[1];
+        if (shopIndex.getShop(player.getUniqueId(), shopName) == null) {
+            player.sendMessage(Component.text("You have no shop named '" + shopName + "'."));
+            return false;
+        }
+        Block block = player.getTargetBlockExact(MAX_DISTANCE);
+        if (block == null || !ShopBlockIndex.isShopBlock(block)) {
+            player.sendMessage(Component.text("Look at a sign or a container to bind it to your shop."));
+            return false;
+        }
+        ShopBlockIndex.ShopBinding current = shopBlockIndex.getBinding(block);
+        if (current != null && !current.ownerUUID().equals(player.getUniqueId())) {
+            player.sendMessage(Component.text("That block is already bound to someone else's shop."));
+            return false;
+        }
+        shopBlockIndex.bind(block, new ShopBlockIndex.ShopBinding(player.getUniqueId(), shopName));
+        player.sendMessage(Component.text("Bound the block to shop '" + shopName + "'. Sneak while clicking it to use the block itself."));
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.gui.ShopBrowserGUI;
+import com.marketcraft.shops.ShopIndex;
+import net.kyori.adventure.text.Component;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Command handler for the 'browse' subcommand within the MarketCraft plugin.
+ */
+public class BrowseCommand {
+    private final ShopIndex shopIndex;
+    private final ShopBrowserGUI shopBrowserGUI;
+
+    public BrowseCommand(ShopIndex shopIndex, ShopBrowserGUI shopBrowserGUI) {
+        this.shopIndex = shopIndex;
+        this.shopBrowserGUI = shopBrowserGUI;
+    }
+
+    /**
+     * Handles the 'browse' subcommand of the /marketcraft command set.
+     * Opens the marketplace GUI listing every shop on the server.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @return true if the marketplace was opened, false if the sender is not a player.
+     */
+    public boolean handleBrowseCommand(CommandSender sender) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        shopBrowserGUI.openBrowser(player, "Marketplace", shopIndex.getAllShops());
+        return true;
+    }
+}
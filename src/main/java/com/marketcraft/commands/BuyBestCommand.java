@@ -0,0 +1,189 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopOrderBook;
+import com.marketcraft.shops.ShopTransaction;
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.vaults.PlayerVaultManager;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Command handler for the 'buybest' subcommand within the MarketCraft plugin.
+ */
+public class BuyBestCommand {
+    private static final int MAX_QUANTITY = 2304; // A full player inventory of 64-stacks
+    private final ShopOrderBook shopOrderBook;
+    private final ShopTransaction shopTransaction;
+    private final ShopLockManager shopLockManager;
+    private final VaultLockManager vaultLockManager;
+
+    public BuyBestCommand(ShopOrderBook shopOrderBook, ShopIndex shopIndex, PlayerVaultManager playerVaultManager, TradeListener tradeListener, ShopLockManager shopLockManager, VaultLockManager vaultLockManager) {
+        this.shopOrderBook = shopOrderBook;
+        this.shopTransaction = new ShopTransaction(playerVaultManager, tradeListener, shopIndex);
+        this.shopLockManager = shopLockManager;
+        this.vaultLockManager = vaultLockManager;
+    }
+
+    /**
+     * Handles the 'buybest' subcommand of the /marketcraft command set.
+     * Buys an amount of an item from the cheapest shops that have it in stock, filling across several shops in
+     * price order. Trades are whole, so the buyer may receive slightly more than requested when a shop sells in
+     * bundles. If the item is sold for several cost items, the cost item has to be named and the best price for
+     * each of them is listed instead.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command: the item, the quantity and an optional cost item.
+     * @return true if the order was routed, false if there is an error such as incorrect usage or an unknown item.
+     */
+    public boolean handleBuyBestCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length != 3 && args.length != 4) {
+            sender.sendMessage(Component.text("Usage: /marketcraft buybest <item|hand> <quantity> [costItem]"));
+            return false;
+        }
+        ItemStack itemToBuy = parseItem(player, args[1]);
+        if (itemToBuy == null) {
+            player.sendMessage(Component.text("Unknown item: " + args[1]));
+            return false;
+        }
+        int quantity;
+        try {
+            quantity = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            quantity = -1;
+        }
+        if (quantity < 1 || quantity > MAX_QUANTITY) {
+            player.sendMessage(Component.text("The quantity must be a number between 1 and " + MAX_QUANTITY + "."));
+            return false;
+        }
+        ItemFingerprint buyFingerprint = ItemFingerprint.of(itemToBuy);
+        ItemFingerprint costFingerprint;
+        if (args.length == 4) {
+            Material costMaterial = Material.matchMaterial(args[3]);
+            if (costMaterial == null) {
+                player.sendMessage(Component.text("Unknown item: " + args[3]));
+                return false;
+            }
+            costFingerprint = ItemFingerprint.of(new ItemStack(costMaterial));
+        } else {
+            List<ShopOrderBook.Offer> bestPerCurrency = shopOrderBook.getBestOfferPerCurrency(buyFingerprint);
+            if (bestPerCurrency.isEmpty()) {
+                player.sendMessage(Component.text("No shops have that item in stock."));
+                return true;
+            }
+            if (bestPerCurrency.size() > 1) {
+                player.sendMessage(Component.text("That item is sold for several items, please add the one to pay with:"));
+                for (ShopOrderBook.Offer offer : bestPerCurrency) {
+                    player.sendMessage(Component.text("- " + describePrice(offer)));
+                }
+                return true;
+            }
+            ShopOrderBook.Offer best = bestPerCurrency.get(0);
+            costFingerprint = best.getListing().getTrades().getChargeFingerprint(best.getTrade());
+        }
+        fillOrder(player, buyFingerprint, costFingerprint, quantity);
+        return true;
+    }
+
+    /**
+     * Buys from the cheapest offers until the quantity is reached, the market runs out, or a trade fails.
+     *
+     * @param player          The buyer.
+     * @param buyFingerprint  The fingerprint of the item to buy.
+     * @param costFingerprint The fingerprint of the item to pay with.
+     * @param quantity        The amount of items to buy.
+     */
+    private void fillOrder(Player player, ItemFingerprint buyFingerprint, ItemFingerprint costFingerprint, int quantity) {
+        UUID playerUUID = player.getUniqueId();
+        int bought = 0;
+        int shopsUsed = 0;
+        boolean tradeFailed = false;
+        for (ShopOrderBook.Offer offer : shopOrderBook.getBestOffers(buyFingerprint, costFingerprint, quantity)) {
+            if (bought >= quantity || tradeFailed) {
+                break;
+            }
+            ShopListing listing = offer.getListing();
+            UUID ownerUUID = listing.getOwnerUUID();
+            String shopName = listing.getShopName();
+            if (ownerUUID.equals(playerUUID)) {
+                continue; // Never buy from your own shop
+            }
+            // Claim the vault like an open shop GUI would, and skip shops whose owner is editing the vault
+            vaultLockManager.lockVault(ownerUUID, shopName, playerUUID);
+            try {
+                if (shopLockManager.isLocked(ownerUUID, shopName)) {
+                    continue;
+                }
+                ItemStack itemBeingSold = offer.getItemToSell();
+                ItemStack itemCost = offer.getItemToCharge();
+                int tradesWanted = (quantity - bought + itemBeingSold.getAmount() - 1) / itemBeingSold.getAmount();
+                int tradesAvailable = offer.getStock() / itemBeingSold.getAmount();
+                int tradesDone = 0;
+                while (tradesDone < Math.min(tradesWanted, tradesAvailable)) {
+                    if (!shopTransaction.purchase(player, ownerUUID, shopName, offer.getTrade(), itemBeingSold, itemCost)) {
+                        // The reason was already sent to the buyer, stop instead of repeating it for every shop
+                        player.sendMessage(Component.text("The order was stopped early."));
+                        tradeFailed = true;
+                        break;
+                    }
+                    tradesDone++;
+                    bought += itemBeingSold.getAmount();
+                }
+                if (tradesDone > 0) {
+                    shopsUsed++;
+                }
+            } finally {
+                vaultLockManager.unlockVault(ownerUUID, shopName, playerUUID);
+            }
+        }
+        if (bought == 0) {
+            player.sendMessage(Component.text("Nothing could be bought."));
+        } else {
+            player.sendMessage(Component.text("Bought " + bought + " from " + shopsUsed + (shopsUsed == 1 ? " shop." : " shops.")));
+        }
+    }
+
+    /**
+     * Parses the item argument of the command.
+     *
+     * @param player   The player running the command.
+     * @param argument Either a material name or 'hand' for the item held in the main hand.
+     * @return The item, or null if the argument does not name an item.
+     */
+    private ItemStack parseItem(Player player, String argument) {
+        if (argument.equalsIgnoreCase("hand")) {
+            ItemStack heldItem = player.getInventory().getItemInMainHand();
+            return heldItem.getType() != Material.AIR ? heldItem : null;
+        }
+        Material material = Material.matchMaterial(argument);
+        return material != null ? new ItemStack(material) : null;
+    }
+
+    private String describePrice(ShopOrderBook.Offer offer) {
+        ItemStack itemToCharge = offer.getItemToCharge();
+        return itemToCharge.getType().getKey().getKey() + ": " + offer.getChargeAmount() + " for " + offer.getSellAmount() + " at " + offer.getListing().getShopName();
+    }
+}
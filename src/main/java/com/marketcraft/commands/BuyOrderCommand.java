@@ -0,0 +1,100 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.MarketCraft;
+import com.marketcraft.orders.BuyOrderEngine;
+import com.marketcraft.util.InventoryUtils;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Command handler for the 'buyorder' subcommand within the MarketCraft plugin.
+ */
+public class BuyOrderCommand {
+    private static final int MAX_QUANTITY = 2304; // A full player inventory of 64-stacks
+    private static final int MAX_PRICE = 2304;
+    private final BuyOrderEngine buyOrderEngine;
+
+    public BuyOrderCommand(BuyOrderEngine buyOrderEngine) {
+        this.buyOrderEngine = buyOrderEngine;
+    }
+
+    /**
+     * Handles the 'buyorder' subcommand of the /marketcraft command set.
+     * Posts a request to buy an amount of an item at a price per item. The payment for the whole order is taken
+     * from the player's inventory and held in escrow until the order is filled or cancelled.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command: the item, the quantity, the price per item and the payment item.
+     * @return true if the order was posted, false if there is an error such as incorrect usage or missing payment.
+     */
+    public boolean handleBuyOrderCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length != 5) {
+            sender.sendMessage(Component.text("Usage: /marketcraft buyorder <item|hand> <quantity> <pricePerItem> <paymentItem>"));
+            return false;
+        }
+        ItemStack item;
+        if (args[1].equalsIgnoreCase("hand")) {
+            item = player.getInventory().getItemInMainHand();
+            if (item.getType() == Material.AIR) {
+                player.sendMessage(Component.text("You need to hold the item you want to buy."));
+                return false;
+            }
+        } else {
+            Material material = Material.matchMaterial(args[1]);
+            if (material == null) {
+                player.sendMessage(Component.text("Unknown item: " + args[1]));
+                return false;
+            }
+            item = new ItemStack(material);
+        }
+        Material paymentMaterial = Material.matchMaterial(args[4]);
+        if (paymentMaterial == null) {
+            player.sendMessage(Component.text("Unknown item: " + args[4]));
+            return false;
+        }
+        int quantity = parseAmount(args[2]);
+        int pricePerItem = parseAmount(args[3]);
+        if (quantity < 1 || quantity > MAX_QUANTITY || pricePerItem < 1 || pricePerItem > MAX_PRICE) {
+            player.sendMessage(Component.text("The quantity and price must be numbers between 1 and " + MAX_QUANTITY + "."));
+            return false;
+        }
+        if (buyOrderEngine.getOrders(player.getUniqueId()).size() >= MarketCraft.getBuyOrderLimit()) {
+            player.sendMessage(Component.text("You have reached the maximum number of open buy orders."));
+            return false;
+        }
+        ItemStack paymentItem = new ItemStack(paymentMaterial);
+        int escrow = quantity * pricePerItem;
+        if (InventoryUtils.countItems(player, paymentItem) < escrow) {
+            player.sendMessage(Component.text("You need " + escrow + " " + paymentMaterial.getKey().getKey() + " to post this order."));
+            return false;
+        }
+        InventoryUtils.removeItems(player, paymentItem, escrow);
+        long orderId = buyOrderEngine.postOrder(player, item, paymentItem, pricePerItem, quantity);
+        player.sendMessage(Component.text("Posted buy order #" + orderId + ", " + escrow + " " + paymentMaterial.getKey().getKey() + " are held in escrow."));
+        return true;
+    }
+
+    private static int parseAmount(String argument) {
+        try {
+            return Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
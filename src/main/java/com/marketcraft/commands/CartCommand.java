@@ -0,0 +1,162 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.cart.CartLine;
+import com.marketcraft.cart.CartManager;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopTradeTable;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Command handler for the 'cart' subcommand within the MarketCraft plugin.
+ */
+public class CartCommand {
+    private static final String USAGE = "Usage: /marketcraft cart <add <playerName> <shopName> [trade] [lots]|list|remove <line>|clear|checkout>";
+    private final ShopIndex shopIndex;
+    private final CartManager cartManager;
+
+    public CartCommand(ShopIndex shopIndex, CartManager cartManager) {
+        this.shopIndex = shopIndex;
+        this.cartManager = cartManager;
+    }
+
+    /**
+     * Handles the 'cart' subcommand of the /marketcraft command set.
+     * Players collect lots from several shops in their cart and buy all of them at once with 'cart checkout'.
+     * Trades and lines are numbered from 1, as they are shown to the player.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command.
+     * @return true if the cart action was carried out, false if there is an error such as incorrect usage.
+     */
+    public boolean handleCartCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length < 2) {
+            sender.sendMessage(Component.text(USAGE));
+            return false;
+        }
+        return switch (args[1].toLowerCase()) {
+            case "add" -> handleAdd(player, args);
+            case "list" -> handleList(player);
+            case "remove" -> handleRemove(player, args);
+            case "clear" -> {
+                cartManager.clear(player.getUniqueId());
+                player.sendMessage(Component.text("Your cart is now empty."));
+                yield true;
+            }
+            case "checkout" -> cartManager.checkout(player);
+            default -> {
+                player.sendMessage(Component.text(USAGE));
+                yield false;
+            }
+        };
+    }
+
+    private boolean handleAdd(Player player, String[] args) {
+        if (args.length < 4 || args.length > 6) {
+            player.sendMessage(Component.text("Usage: /marketcraft cart add <playerName> <shopName> [trade] [lots]"));
+            return false;
+        }
+        UUID ownerUUID = Bukkit.getOfflinePlayer(args[2]).getUniqueId();
+        String shopName = args[3];
+        ShopListing listing = shopIndex.getShop(ownerUUID, shopName);
+        if (listing == null) {
+            player.sendMessage(Component.text("There is no shop named '" + shopName + "' owned by " + args[2] + "."));
+            return false;
+        }
+        if (ownerUUID.equals(player.getUniqueId())) {
+            player.sendMessage(Component.text("You can't buy from your own shop."));
+            return false;
+        }
+        ShopTradeTable trades = listing.getTrades();
+        int trade = args.length >= 5 ? parsePositive(args[4]) - 1 : 0;
+        if (trade < 0 || trade >= trades.size() || !trades.isComplete(trade)) {
+            player.sendMessage(Component.text("Shop '" + shopName + "' offers trades 1 to " + trades.size() + "."));
+            return false;
+        }
+        int lots = args.length == 6 ? parsePositive(args[5]) : 1;
+        if (lots < 1 || lots > CartManager.MAX_LOTS) {
+            player.sendMessage(Component.text("The lots must be a number between 1 and " + CartManager.MAX_LOTS + "."));
+            return false;
+        }
+        CartLine line = cartManager.add(player.getUniqueId(), new CartLine(ownerUUID, shopName, trade, trades.getItemToSell(trade), trades.getItemToCharge(trade), lots));
+        if (line == null) {
+            player.sendMessage(Component.text("Your cart can hold " + CartManager.MAX_LINES + " lines of up to " + CartManager.MAX_LOTS + " lots each."));
+            return false;
+        }
+        player.sendMessage(Component.text("Your cart now holds " + line.lots() + " x " + describeTrade(trades, trade) + " from " + shopName + "."));
+        return true;
+    }
+
+    private boolean handleList(Player player) {
+        List<CartLine> lines = cartManager.getLines(player.getUniqueId());
+        if (lines.isEmpty()) {
+            player.sendMessage(Component.text("Your cart is empty."));
+            return true;
+        }
+        TextComponent.Builder messageBuilder = Component.text();
+        messageBuilder.append(Component.text("Your cart:"));
+        int number = 1;
+        for (CartLine line : lines) {
+            ShopListing listing = shopIndex.getShop(line.ownerUUID(), line.shopName());
+            String description = describe(line.itemToSell(), line.itemToCharge());
+            if (!line.matches(listing != null ? listing.getTrades() : null)) {
+                description += " (changed since added)";
+            }
+            messageBuilder.append(Component.newline())
+                    .append(Component.text(number++ + ". " + line.lots() + " x " + description + " from " + line.shopName()));
+        }
+        player.sendMessage(messageBuilder.build());
+        return true;
+    }
+
+    private boolean handleRemove(Player player, String[] args) {
+        if (args.length != 3) {
+            player.sendMessage(Component.text("Usage: /marketcraft cart remove <line>"));
+            return false;
+        }
+        CartLine removed = cartManager.remove(player.getUniqueId(), parsePositive(args[2]) - 1);
+        if (removed == null) {
+            player.sendMessage(Component.text("Your cart has no line " + args[2] + "."));
+            return false;
+        }
+        player.sendMessage(Component.text("Removed " + removed.shopName() + " from your cart."));
+        return true;
+    }
+
+    private static String describeTrade(ShopTradeTable trades, int trade) {
+        return describe(trades.getItemToSell(trade), trades.getItemToCharge(trade));
+    }
+
+    private static String describe(ItemStack sold, ItemStack charged) {
+        return sold.getAmount() + " " + sold.getType().getKey().getKey() + " for " + charged.getAmount() + " " + charged.getType().getKey().getKey();
+    }
+
+    private static int parsePositive(String argument) {
+        try {
+            return Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultTransaction;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Command handler for the 'collect' subcommand within the MarketCraft plugin.
+ */
+public class CollectCommand {
+    private final ShopIndex shopIndex;
+    private final PlayerVaultManager playerVaultManager;
+    private final ShopLockManager shopLockManager;
+
+    public CollectCommand(ShopIndex shopIndex, PlayerVaultManager playerVaultManager, ShopLockManager shopLockManager) {
+        this.shopIndex = shopIndex;
+        this.playerVaultManager = playerVaultManager;
+        this.shopLockManager = shopLockManager;
+    }
+
+    /**
+     * Handles the 'collect' subcommand of the /marketcraft command set.
+     * Moves the payments out of the vault of one shop, or of all the player's shops, into the player's inventory.
+     * The vault file holds every shop of the player, so all shops are collected with a single write.
+     * Only what fits in the inventory is taken, the rest stays in the vault.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command: a shop name or 'all', which is the default.
+     * @return true if the payments were collected, false if there is an error such as incorrect usage or an unknown shop.
+     */
+    public boolean handleCollectCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length > 2) {
+            sender.sendMessage(Component.text("Usage: /marketcraft collect [shopName|all]"));
+            return false;
+        }
+        UUID playerUUID = player.getUniqueId();
+        List<String> shopNames = new ArrayList<>();
+        if (args.length == 1 || args[1].equalsIgnoreCase("all")) {
+            for (ShopListing listing : shopIndex.getShops(playerUUID)) {
+                shopNames.add(listing.getShopName());
+            }
+        } else if (shopIndex.getShop(playerUUID, args[1]) != null) {
+            shopNames.add(args[1]);
+        } else {
+            player.sendMessage(Component.text("You have no shop named '" + args[1] + "'."));
+            return false;
+        }
+        PlayerInventory inventory = player.getInventory();
+        // Fill a copy of the inventory first, so exactly what fits is taken out of the vault
+        Inventory simulated = Bukkit.createInventory(null, 36);
+        ItemStack[] contents = inventory.getStorageContents();
+        for (int slot = 0; slot < contents.length && slot < simulated.getSize(); slot++) {
+            simulated.setItem(slot, contents[slot] != null ? contents[slot].clone() : null);
+        }
+        List<ItemStack> collected = new ArrayList<>();
+        int skippedShops = 0;
+        ReentrantLock vaultLock = playerVaultManager.getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            VaultTransaction transaction = playerVaultManager.beginTransaction(playerUUID);
+            if (transaction == null) {
+                player.sendMessage(Component.text("You have no vault to collect from."));
+                return false;
+            }
+            for (String shopName : shopNames) {
+                // An open vault is saved from its inventory when closed, which would undo the collection
+                if (shopLockManager.isLocked(playerUUID, shopName)) {
+                    skippedShops++;
+                    continue;
+                }
+                for (Map.Entry<Integer, ItemStack> payment : transaction.getPayments(shopName).entrySet()) {
+                    ItemStack item = payment.getValue();
+                    int leftover = 0;
+                    for (ItemStack rest : simulated.addItem(item.clone()).values()) {
+                        leftover += rest.getAmount();
+                    }
+                    int taken = item.getAmount() - leftover;
+                    if (taken > 0) {
+                        transaction.takeFromSlot(shopName, payment.getKey(), taken);
+                        ItemStack collectedItem = item.clone();
+                        collectedItem.setAmount(taken);
+                        collected.add(collectedItem);
+                    }
+                }
+            }
+            if (!collected.isEmpty()) {
+                if (!playerVaultManager.commitTransactions(List.of(transaction))) {
+                    player.sendMessage(Component.text("The collection failed, your vault was not changed."));
+                    return false;
+                }
+                inventory.setStorageContents(simulated.getContents());
+            }
+        } finally {
+            vaultLock.unlock();
+        }
+        int total = collected.stream().mapToInt(ItemStack::getAmount).sum();
+        if (total == 0) {
+            player.sendMessage(Component.text("There was nothing to collect, or your inventory is full."));
+        } else {
+            player.sendMessage(Component.text("Collected " + total + " items."));
+        }
+        if (skippedShops > 0) {
+            player.sendMessage(Component.text("Skipped " + skippedShops + (skippedShops == 1 ? " shop whose vault is" : " shops whose vaults are") + " open."));
+        }
+        return true;
+    }
+}
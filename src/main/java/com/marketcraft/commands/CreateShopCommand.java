@@ -9,6 +9,7 @@
 
 package com.marketcraft.commands;
 
+import com.marketcraft.MarketCraft;
 import com.marketcraft.gui.PlayerShopSetupGUI;
 import com.marketcraft.shops.PlayerShopManager;
 import net.kyori.adventure.text.Component;
@@ -22,9 +23,9 @@ public class CreateShopCommand {
     private final PlayerShopSetupGUI playerShopSetupGUI;
     private final PlayerShopManager playerShopManager;
 
-    public CreateShopCommand(PlayerShopManager playerShopManager) {
+    public CreateShopCommand(PlayerShopManager playerShopManager, MarketCraft marketCraft) {
         this.playerShopManager = playerShopManager;
-        this.playerShopSetupGUI = new PlayerShopSetupGUI();
+        this.playerShopSetupGUI = new PlayerShopSetupGUI(marketCraft);
     }
 
     /**
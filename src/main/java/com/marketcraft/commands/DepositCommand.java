@@ -0,0 +1,117 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopTradeTable;
+import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultTransaction;
+import net.kyori.adventure.text.Component;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Command handler for the 'deposit' subcommand within the MarketCraft plugin.
+ */
+public class DepositCommand {
+    private final ShopIndex shopIndex;
+    private final PlayerVaultManager playerVaultManager;
+    private final ShopLockManager shopLockManager;
+
+    public DepositCommand(ShopIndex shopIndex, PlayerVaultManager playerVaultManager, ShopLockManager shopLockManager) {
+        this.shopIndex = shopIndex;
+        this.playerVaultManager = playerVaultManager;
+        this.shopLockManager = shopLockManager;
+    }
+
+    /**
+     * Handles the 'deposit' subcommand of the /marketcraft command set.
+     * Moves every stack in the player's inventory that the shop sells into the selling slots of its vault,
+     * in one pass over the inventory and with a single write of the vault. Stacks that don't fit stay with the player.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command: the name of the shop.
+     * @return true if the deposit was carried out, false if there is an error such as incorrect usage or an unknown shop.
+     */
+    public boolean handleDepositCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length != 2) {
+            sender.sendMessage(Component.text("Usage: /marketcraft deposit <shopName>"));
+            return false;
+        }
+        String shopName = args[1];
+        UUID playerUUID = player.getUniqueId();
+        ShopListing listing = shopIndex.getShop(playerUUID, shopName);
+        if (listing == null) {
+            player.sendMessage(Component.text("You have no shop named '" + shopName + "'."));
+            return false;
+        }
+        if (shopLockManager.isLocked(playerUUID, shopName)) {
+            player.sendMessage(Component.text("Close the vault of shop '" + shopName + "' first."));
+            return false;
+        }
+        ShopTradeTable trades = listing.getTrades();
+        PlayerInventory inventory = player.getInventory();
+        ItemStack[] contents = inventory.getStorageContents();
+        int deposited = 0;
+        ReentrantLock vaultLock = playerVaultManager.getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            VaultTransaction transaction = playerVaultManager.beginTransaction(playerUUID);
+            if (transaction == null) {
+                player.sendMessage(Component.text("Shop '" + shopName + "' has no vault yet, open it once first."));
+                return false;
+            }
+            List<int[]> removals = new ArrayList<>();
+            for (int slot = 0; slot < contents.length; slot++) {
+                ItemStack item = contents[slot];
+                if (item == null || !trades.sells(item)) {
+                    continue;
+                }
+                int added = transaction.addStock(item, item.getAmount(), shopName);
+                if (added > 0) {
+                    removals.add(new int[]{slot, added});
+                    deposited += added;
+                }
+            }
+            if (removals.isEmpty()) {
+                player.sendMessage(Component.text("You have nothing the shop sells, or its vault is full."));
+                return true;
+            }
+            if (!playerVaultManager.commitTransactions(List.of(transaction))) {
+                player.sendMessage(Component.text("The deposit failed, your items were not moved."));
+                return false;
+            }
+            // Only take the items once the vault holds them
+            for (int[] removal : removals) {
+                ItemStack item = contents[removal[0]];
+                item.setAmount(item.getAmount() - removal[1]);
+                contents[removal[0]] = item.getAmount() > 0 ? item : null;
+            }
+            inventory.setStorageContents(contents);
+        } finally {
+            vaultLock.unlock();
+        }
+        player.sendMessage(Component.text("Deposited " + deposited + " items into shop '" + shopName + "'."));
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.gui.ShopBrowserGUI;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+
+/**
+ * Command handler for the 'find' subcommand within the MarketCraft plugin.
+ */
+public class FindCommand {
+    private final ShopIndex shopIndex;
+    private final ShopBrowserGUI shopBrowserGUI;
+
+    public FindCommand(ShopIndex shopIndex, ShopBrowserGUI shopBrowserGUI) {
+        this.shopIndex = shopIndex;
+        this.shopBrowserGUI = shopBrowserGUI;
+    }
+
+    /**
+     * Handles the 'find' subcommand of the /marketcraft command set.
+     * Searches the shop index for shops selling an item and opens the marketplace GUI with the results.
+     * The item is either a material name, which matches the material regardless of meta, or 'hand',
+     * which matches shops selling exactly the item held in the player's main hand.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command, including the item to search for.
+     * @return true if the search was performed, false if there is an error such as incorrect usage or an unknown item.
+     */
+    public boolean handleFindCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length != 2) {
+            sender.sendMessage(Component.text("Usage: /marketcraft find <item|hand>"));
+            return false;
+        }
+        List<ShopListing> results;
+        String title;
+        if (args[1].equalsIgnoreCase("hand")) {
+            ItemStack heldItem = player.getInventory().getItemInMainHand();
+            if (heldItem.getType() == Material.AIR) {
+                player.sendMessage(Component.text("You need to hold the item you want to search for."));
+                return false;
+            }
+            results = shopIndex.findByItem(heldItem);
+            title = "Shops selling " + heldItem.getType().getKey().getKey();
+        } else {
+            Material material = Material.matchMaterial(args[1]);
+            if (material == null) {
+                player.sendMessage(Component.text("Unknown item: " + args[1]));
+                return false;
+            }
+            results = shopIndex.findByMaterial(material);
+            title = "Shops selling " + material.getKey().getKey();
+        }
+        if (results.isEmpty()) {
+            player.sendMessage(Component.text("No shops are selling that item."));
+            return true;
+        }
+        shopBrowserGUI.openBrowser(player, title, results);
+        return true;
+    }
+}
@@ -10,6 +10,7 @@
 package com.marketcraft.commands;
 
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
 import org.bukkit.command.CommandSender;
 
 /**
@@ -20,22 +21,56 @@ public class HelpCommand {
     /**
      * Handles the 'help' subcommand of the /marketcraft command set.
      * This method provides a help message to users, offering an overview of the MarketCraft plugin,
-     * its purpose, and basic instructions for use. The message includes a welcoming greeting and
-     * essential information to guide users in their initial interaction with the plugin.
+     * its purpose, and a line for each subcommand. Admin commands are only listed to senders
+     * with the 'marketcraft.admin' permission.
      *
      * @param sender The sender of the command. Can be a player or the console.
      * @return true after displaying the help message.
      */
     public boolean handleHelpCommand(CommandSender sender) {
-        Component welcomeMessage = Component.text()
+        TextComponent.Builder messageBuilder = Component.text()
                 .append(Component.text("Welcome to MarketCraft!"))
                 .append(Component.newline())
                 .append(Component.text("This is a Spigot plugin that allows users to make custom shops using an item for item transaction system."))
                 .append(Component.newline())
-                // TODO Don't forget to add instructions!
-                .append(Component.text("To begin [PLACEHOLDER TO FILL LATER WITH INSTRUCTIONS]"))
-                .build();
-        sender.sendMessage(welcomeMessage);
+                .append(Component.text("Available Commands:"));
+        // Shops and vaults
+        appendCommand(messageBuilder, "/marketcraft createshop <name>", "Create a new shop.");
+        appendCommand(messageBuilder, "/marketcraft removeshop <shopName>", "Remove one of your shops.");
+        appendCommand(messageBuilder, "/marketcraft openshop <playerName> <shopName>", "Open a player's shop to buy from it.");
+        appendCommand(messageBuilder, "/marketcraft openvault <shopName> [page]", "Open the vault of one of your shops.");
+        appendCommand(messageBuilder, "/marketcraft browse", "Browse every shop on the server.");
+        appendCommand(messageBuilder, "/marketcraft find <item|hand>", "Find the shops selling an item, cheapest first.");
+        appendCommand(messageBuilder, "/marketcraft buybest <item|hand> <quantity> [costItem]", "Buy an item from the cheapest shops.");
+        appendCommand(messageBuilder, "/marketcraft buyorder <item|hand> <quantity> <pricePerItem> <paymentItem>", "Post a buy order, paying the escrow up front.");
+        appendCommand(messageBuilder, "/marketcraft sell <quantity> <paymentItem> [minPricePerItem]", "Sell the item in your hand to the best buy orders.");
+        appendCommand(messageBuilder, "/marketcraft orders [cancel <id>|collect]", "List, cancel or collect from your buy orders.");
+        appendCommand(messageBuilder, "/marketcraft auction [list [page]|sell <startPrice> <paymentItem> <minutes>|bid <id> <amount>|cancel <id>|claim]", "Browse, start, bid on or claim timed auctions.");
+        appendCommand(messageBuilder, "/marketcraft prices <item|hand> [costItem]", "Show the recent prices and volume of an item.");
+        appendCommand(messageBuilder, "/marketcraft top <shops|items|earners <paymentItem|hand>>", "Show the leaderboards, earners ranked by one payment item.");
+        appendCommand(messageBuilder, "/marketcraft pricing <shopName> [<min> <max>|off]", "Turn dynamic pricing of one of your shops on or off.");
+        appendCommand(messageBuilder, "/marketcraft cart <add <playerName> <shopName> [trade] [lots]|list|remove <line>|clear|checkout>", "Collect trades from several shops and buy them in one go.");
+        appendCommand(messageBuilder, "/marketcraft bind <shopName>", "Bind one of your shops to the sign or container you are looking at.");
+        appendCommand(messageBuilder, "/marketcraft unbind", "Unbind the sign or container you are looking at.");
+        appendCommand(messageBuilder, "/marketcraft storefront <shopName> [remove]", "Place or remove a floating storefront for one of your shops.");
+        appendCommand(messageBuilder, "/marketcraft deposit <shopName>", "Deposit the stock in your inventory into a shop's vault.");
+        appendCommand(messageBuilder, "/marketcraft collect [shopName|all]", "Collect the payments from your shops' vaults.");
+        appendCommand(messageBuilder, "/marketcraft version", "Show the plugin version.");
+        appendCommand(messageBuilder, "/marketcraft help", "Show this help message.");
+        if (sender.hasPermission("marketcraft.admin")) {
+            messageBuilder.append(Component.newline())
+                    .append(Component.text("Admin Commands:"));
+            appendCommand(messageBuilder, "/marketcraftadmin removeshop <shopName> <shopOwnerName>", "Remove a player's shop.");
+            appendCommand(messageBuilder, "/marketcraftadmin metrics", "Show the background work scheduler's metrics.");
+            appendCommand(messageBuilder, "/marketcraftadmin history <owner|buyer|item> <player|item|hand> [limit]", "Show the most recent purchases from the transaction ledger.");
+        }
+        sender.sendMessage(messageBuilder.build());
         return true;
     }
-}
\ No newline at end of file
+
+    private static void appendCommand(TextComponent.Builder messageBuilder, String usage, String description) {
+        messageBuilder.append(Component.newline())
+                .append(Component.text(usage))
+                .append(Component.text(" - " + description));
+    }
+}
@@ -15,6 +15,7 @@ import com.marketcraft.locks.VaultLockManager;
 import com.marketcraft.shops.PlayerShopManager;
 import com.marketcraft.locks.ShopLockManager;
 import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultSessionManager;
 import net.kyori.adventure.text.Component;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -30,10 +31,10 @@ public class OpenVaultCommand {
     private final PlayerVaultGUI playerVaultGUI;
     private final PlayerShopManager playerShopManager;
 
-    public OpenVaultCommand(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, MarketCraft marketCraft) {
+    public OpenVaultCommand(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, VaultSessionManager vaultSessionManager, MarketCraft marketCraft) {
         this.playerVaultManager = playerVaultManager;
         this.vaultLockManager = vaultLockManager;
-        this.playerVaultGUI = new PlayerVaultGUI(playerVaultManager, shopLockManager, marketCraft);
+        this.playerVaultGUI = new PlayerVaultGUI(playerVaultManager, shopLockManager, vaultLockManager, vaultSessionManager, marketCraft);
         this.playerShopManager = playerShopManager;
     }
 
@@ -44,10 +45,11 @@ public class OpenVaultCommand {
      * for displaying the vault's contents to the player. This command is intended for player use and
      * not for console. It ensures the specified shop exists for the player before attempting to open
      * or create a vault, thereby providing a secure and controlled way of managing player's vaults
-     * associated with their shops.
+     * associated with their shops. Vaults with several pages open on the first page unless another is given.
      *
      * @param sender The sender of the command, expected to be a player.
-     * @param args   The arguments provided with the command, including the shop name associated with the vault.
+     * @param args   The arguments provided with the command, including the shop name associated with the vault
+     *               and optionally the page to open.
      * @return true if the vault is successfully opened or created for the specified shop, false if there is
      * an error such as the command not being used by a player, incorrect usage, or if the shop does not exist.
      */
@@ -56,11 +58,24 @@ public class OpenVaultCommand {
             sender.sendMessage(Component.text("This command can only be used by players."));
             return false;
         }
-        if (args.length != 2) {
-            sender.sendMessage(Component.text("Usage: /marketcraft openvault <shopName>"));
+        if (args.length < 2 || args.length > 3) {
+            sender.sendMessage(Component.text("Usage: /marketcraft openvault <shopName> [page]"));
             return false;
         }
         String shopName = args[1];
+        int pages = playerVaultManager.getLayout().getPages();
+        int page = 1;
+        if (args.length == 3) {
+            try {
+                page = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                page = -1;
+            }
+            if (page < 1 || page > pages) {
+                sender.sendMessage(Component.text("The page must be a number between 1 and " + pages + "."));
+                return false;
+            }
+        }
         UUID playerUUID = player.getUniqueId();
         if (!playerShopManager.doesPlayerShopExist(playerUUID, shopName)) {
             sender.sendMessage(Component.text("The shop '" + shopName + "' does not exist, create a shop first."));
@@ -72,11 +87,11 @@ public class OpenVaultCommand {
         }
         if (playerVaultManager.doesPlayerVaultExist(playerUUID)) {
             sender.sendMessage(Component.text("Opening your existing vault for shop: " + shopName));
-            playerVaultGUI.openVault(player, shopName);
+            playerVaultGUI.openVault(player, shopName, page - 1);
         } else {
             sender.sendMessage(Component.text("Creating and opening a new vault for shop: " + shopName));
             playerVaultManager.createPlayerVaultFile(player, shopName);
-            playerVaultGUI.openVault(player, shopName);
+            playerVaultGUI.openVault(player, shopName, page - 1);
         }
         return true;
     }
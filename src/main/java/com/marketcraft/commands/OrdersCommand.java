@@ -0,0 +1,89 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.orders.BuyOrder;
+import com.marketcraft.orders.BuyOrderEngine;
+import net.kyori.adventure.text.Component;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+/**
+ * Command handler for the 'orders' subcommand within the MarketCraft plugin.
+ */
+public class OrdersCommand {
+    private final BuyOrderEngine buyOrderEngine;
+
+    public OrdersCommand(BuyOrderEngine buyOrderEngine) {
+        this.buyOrderEngine = buyOrderEngine;
+    }
+
+    /**
+     * Handles the 'orders' subcommand of the /marketcraft command set.
+     * Without arguments it lists the player's open buy orders. 'orders cancel <id>' cancels an order and refunds
+     * its escrow, and 'orders collect' hands out bought items, sale proceeds and refunds that are waiting.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command.
+     * @return true if the command was handled, false if there is an error such as incorrect usage.
+     */
+    public boolean handleOrdersCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length == 1) {
+            listOrders(player);
+            return true;
+        }
+        if (args.length == 2 && args[1].equalsIgnoreCase("collect")) {
+            if (buyOrderEngine.deliver(player) == 0) {
+                player.sendMessage(Component.text("There is nothing to collect."));
+            } else {
+                player.sendMessage(Component.text("Collected your items from the market."));
+            }
+            return true;
+        }
+        if (args.length == 3 && args[1].equalsIgnoreCase("cancel")) {
+            long orderId;
+            try {
+                orderId = Long.parseLong(args[2].replace("#", ""));
+            } catch (NumberFormatException e) {
+                player.sendMessage(Component.text("Invalid order id: " + args[2]));
+                return false;
+            }
+            if (!buyOrderEngine.cancelOrder(player, orderId)) {
+                player.sendMessage(Component.text("You have no open order #" + orderId + "."));
+                return false;
+            }
+            player.sendMessage(Component.text("Cancelled order #" + orderId + ", the remaining escrow was refunded."));
+            return true;
+        }
+        sender.sendMessage(Component.text("Usage: /marketcraft orders [cancel <id>|collect]"));
+        return false;
+    }
+
+    private void listOrders(Player player) {
+        List<BuyOrder> orders = buyOrderEngine.getOrders(player.getUniqueId());
+        if (orders.isEmpty()) {
+            player.sendMessage(Component.text("You have no open buy orders."));
+        }
+        for (BuyOrder order : orders) {
+            player.sendMessage(Component.text("#" + order.getId() + ": " + order.getRemaining() + " more "
+                    + order.getItem().getType().getKey().getKey() + " at " + order.getPricePerItem() + " "
+                    + order.getPaymentItem().getType().getKey().getKey() + " each (" + order.getFilled() + " bought so far)"));
+        }
+        if (buyOrderEngine.hasDeliveries(player.getUniqueId())) {
+            player.sendMessage(Component.text("You have items waiting, use /marketcraft orders collect to receive them."));
+        }
+    }
+}
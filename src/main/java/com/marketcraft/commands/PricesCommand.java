@@ -0,0 +1,98 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.stats.PriceStatistics;
+import com.marketcraft.stats.PriceSummary;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+
+/**
+ * Command handler for the 'prices' subcommand within the MarketCraft plugin.
+ */
+public class PricesCommand {
+    private static final int MAX_CURRENCIES = 5;
+    private final PriceStatistics priceStatistics;
+
+    public PricesCommand(PriceStatistics priceStatistics) {
+        this.priceStatistics = priceStatistics;
+    }
+
+    /**
+     * Handles the 'prices' subcommand of the /marketcraft command set.
+     * Shows how often an item traded over the last hour, day and 30 days, how many were sold and the
+     * min/avg/max price per item. Without a cost item the most traded cost items are listed.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command: the item (or 'hand') and an optional cost item.
+     * @return true if the statistics were shown, false if there is an error such as incorrect usage or an unknown item.
+     */
+    public boolean handlePricesCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length < 2 || args.length > 3) {
+            sender.sendMessage(Component.text("Usage: /marketcraft prices <item|hand> [costItem]"));
+            return false;
+        }
+        ItemStack item;
+        if (args[1].equalsIgnoreCase("hand")) {
+            item = player.getInventory().getItemInMainHand();
+            if (item.getType() == Material.AIR) {
+                player.sendMessage(Component.text("You need to hold the item you want to look up."));
+                return false;
+            }
+        } else {
+            Material material = Material.matchMaterial(args[1]);
+            if (material == null) {
+                player.sendMessage(Component.text("Unknown item: " + args[1]));
+                return false;
+            }
+            item = new ItemStack(material);
+        }
+        String itemName = item.getType().getKey().getKey();
+        TextComponent.Builder messageBuilder = Component.text();
+        messageBuilder.append(Component.text("Price statistics for " + itemName));
+        if (args.length == 3) {
+            Material costMaterial = Material.matchMaterial(args[2]);
+            if (costMaterial == null) {
+                player.sendMessage(Component.text("Unknown item: " + args[2]));
+                return false;
+            }
+            ItemStack costItem = new ItemStack(costMaterial);
+            for (PriceStatistics.Resolution resolution : PriceStatistics.Resolution.values()) {
+                PriceSummary summary = priceStatistics.getSummary(item, costItem, resolution, resolution.getBuckets());
+                messageBuilder.append(Component.newline()).append(Component.text("Last " + resolution.getSpan() + ": " + summary.describe()));
+            }
+        } else {
+            boolean any = false;
+            for (PriceStatistics.Resolution resolution : PriceStatistics.Resolution.values()) {
+                List<PriceSummary> summaries = priceStatistics.getSummaries(item, resolution);
+                for (PriceSummary summary : summaries.subList(0, Math.min(MAX_CURRENCIES, summaries.size()))) {
+                    messageBuilder.append(Component.newline()).append(Component.text("Last " + resolution.getSpan() + " in " + summary.getCostType() + ": " + summary.describe()));
+                    any = true;
+                }
+            }
+            if (!any) {
+                player.sendMessage(Component.text("No " + itemName + " was traded in the last 30 days."));
+                return true;
+            }
+        }
+        player.sendMessage(messageBuilder.build());
+        return true;
+    }
+}
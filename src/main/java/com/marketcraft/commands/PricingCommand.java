@@ -0,0 +1,91 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.shops.DynamicPricingEngine;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import net.kyori.adventure.text.Component;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Command handler for the 'pricing' subcommand within the MarketCraft plugin.
+ */
+public class PricingCommand {
+    private final ShopIndex shopIndex;
+    private final DynamicPricingEngine dynamicPricingEngine;
+
+    public PricingCommand(ShopIndex shopIndex, DynamicPricingEngine dynamicPricingEngine) {
+        this.shopIndex = shopIndex;
+        this.dynamicPricingEngine = dynamicPricingEngine;
+    }
+
+    /**
+     * Handles the 'pricing' subcommand of the /marketcraft command set.
+     * 'pricing <shopName> <min> <max>' lets the shop's price follow supply and demand between the given bounds,
+     * 'pricing <shopName> off' fixes the price at its current value again and 'pricing <shopName>' shows the setting.
+     * In shops with several trades this prices the first trade.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command.
+     * @return true if the command was handled, false if there is an error such as incorrect usage or an unknown shop.
+     */
+    public boolean handlePricingCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length < 2 || args.length > 4 || args.length == 3 && !args[2].equalsIgnoreCase("off")) {
+            sender.sendMessage(Component.text("Usage: /marketcraft pricing <shopName> [<min> <max>|off]"));
+            return false;
+        }
+        String shopName = args[1];
+        ShopListing listing = shopIndex.getShop(player.getUniqueId(), shopName);
+        if (listing == null) {
+            player.sendMessage(Component.text("You have no shop named '" + shopName + "'."));
+            return false;
+        }
+        if (args.length == 2) {
+            int[] bounds = dynamicPricingEngine.getBounds(player.getUniqueId(), shopName);
+            if (bounds == null) {
+                player.sendMessage(Component.text("Shop '" + shopName + "' has a fixed price of " + listing.getChargeAmount() + "."));
+            } else {
+                player.sendMessage(Component.text("Shop '" + shopName + "' charges " + listing.getChargeAmount() + ", priced dynamically between " + bounds[0] + " and " + bounds[1] + "."));
+            }
+            return true;
+        }
+        if (args.length == 3) {
+            if (!dynamicPricingEngine.disable(player.getUniqueId(), shopName)) {
+                player.sendMessage(Component.text("Shop '" + shopName + "' doesn't use dynamic pricing."));
+                return false;
+            }
+            player.sendMessage(Component.text("Shop '" + shopName + "' now has a fixed price of " + listing.getChargeAmount() + "."));
+            return true;
+        }
+        int maxStackSize = listing.getItemToCharge().getMaxStackSize();
+        int minPrice;
+        int maxPrice;
+        try {
+            minPrice = Integer.parseInt(args[2]);
+            maxPrice = Integer.parseInt(args[3]);
+        } catch (NumberFormatException e) {
+            minPrice = -1;
+            maxPrice = -1;
+        }
+        if (minPrice < 1 || maxPrice < minPrice || maxPrice > maxStackSize) {
+            player.sendMessage(Component.text("The bounds must be numbers with 1 <= min <= max <= " + maxStackSize + "."));
+            return false;
+        }
+        dynamicPricingEngine.enable(player.getUniqueId(), shopName, minPrice, maxPrice);
+        player.sendMessage(Component.text("Shop '" + shopName + "' is now priced dynamically between " + minPrice + " and " + maxPrice + "."));
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.orders.BuyOrderEngine;
+import com.marketcraft.util.InventoryUtils;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Command handler for the 'sell' subcommand within the MarketCraft plugin.
+ */
+public class SellCommand {
+    private final BuyOrderEngine buyOrderEngine;
+
+    public SellCommand(BuyOrderEngine buyOrderEngine) {
+        this.buyOrderEngine = buyOrderEngine;
+    }
+
+    /**
+     * Handles the 'sell' subcommand of the /marketcraft command set.
+     * Sells an amount of the item held in the main hand to the highest buy orders paying with the given item.
+     * The items are taken right away, and the proceeds together with anything that could not be sold are
+     * delivered once the orders have been matched.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command: the quantity, the payment item and an optional minimum price per item.
+     * @return true if the items were offered to the market, false if there is an error such as incorrect usage.
+     */
+    public boolean handleSellCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length != 3 && args.length != 4) {
+            sender.sendMessage(Component.text("Usage: /marketcraft sell <quantity> <paymentItem> [minPricePerItem]"));
+            return false;
+        }
+        ItemStack heldItem = player.getInventory().getItemInMainHand();
+        if (heldItem.getType() == Material.AIR) {
+            player.sendMessage(Component.text("You need to hold the item you want to sell."));
+            return false;
+        }
+        Material paymentMaterial = Material.matchMaterial(args[2]);
+        if (paymentMaterial == null) {
+            player.sendMessage(Component.text("Unknown item: " + args[2]));
+            return false;
+        }
+        int quantity;
+        int minPrice;
+        try {
+            quantity = Integer.parseInt(args[1]);
+            minPrice = args.length == 4 ? Integer.parseInt(args[3]) : 1;
+        } catch (NumberFormatException e) {
+            player.sendMessage(Component.text("The quantity and price must be numbers."));
+            return false;
+        }
+        if (quantity < 1 || minPrice < 1) {
+            player.sendMessage(Component.text("The quantity and price must be at least 1."));
+            return false;
+        }
+        ItemStack item = heldItem.clone();
+        if (InventoryUtils.countItems(player, item) < quantity) {
+            player.sendMessage(Component.text("You don't have " + quantity + " of that item."));
+            return false;
+        }
+        InventoryUtils.removeItems(player, item, quantity);
+        buyOrderEngine.sell(player, item, new ItemStack(paymentMaterial), quantity, minPrice);
+        player.sendMessage(Component.text("Offered " + quantity + " items to the market."));
+        return true;
+    }
+}
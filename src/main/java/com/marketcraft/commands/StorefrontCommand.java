@@ -0,0 +1,72 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.storefronts.StorefrontManager;
+import net.kyori.adventure.text.Component;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Command handler for the 'storefront' subcommand within the MarketCraft plugin.
+ */
+public class StorefrontCommand {
+    private static final int MAX_DISTANCE = 5;
+    private final ShopIndex shopIndex;
+    private final StorefrontManager storefrontManager;
+
+    public StorefrontCommand(ShopIndex shopIndex, StorefrontManager storefrontManager) {
+        this.shopIndex = shopIndex;
+        this.storefrontManager = storefrontManager;
+    }
+
+    /**
+     * Handles the 'storefront' subcommand of the /marketcraft command set.
+     * 'storefront <shopName>' anchors a floating display of the shop's trades and stock above the block the player
+     * is looking at, and 'storefront <shopName> remove' takes it down again.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @param args   The arguments provided with the command.
+     * @return true if the storefront was placed or removed, false if there is an error such as incorrect usage.
+     */
+    public boolean handleStorefrontCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        if (args.length != 2 && (args.length != 3 || !args[2].equalsIgnoreCase("remove"))) {
+            sender.sendMessage(Component.text("Usage: /marketcraft storefront <shopName> [remove]"));
+            return false;
+        }
+        String shopName = args[1];
+        if (shopIndex.getShop(player.getUniqueId(), shopName) == null) {
+            player.sendMessage(Component.text("You have no shop named '" + shopName + "'."));
+            return false;
+        }
+        if (args.length == 3) {
+            if (!storefrontManager.remove(player.getUniqueId(), shopName)) {
+                player.sendMessage(Component.text("Shop '" + shopName + "' has no storefront."));
+                return false;
+            }
+            player.sendMessage(Component.text("Removed the storefront of shop '" + shopName + "'."));
+            return true;
+        }
+        Block block = player.getTargetBlockExact(MAX_DISTANCE);
+        if (block == null) {
+            player.sendMessage(Component.text("Look at the block the storefront should float above."));
+            return false;
+        }
+        storefrontManager.place(player.getUniqueId(), shopName, block.getLocation());
+        player.sendMessage(Component.text("Placed the storefront of shop '" + shopName + "'."));
+        return true;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.stats.Leaderboards;
+import com.marketcraft.util.TopK;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Command handler for the 'top' subcommand within the MarketCraft plugin.
+ */
+public class TopCommand {
+    private static final int ENTRIES = 10;
+    private static final String USAGE = "Usage: /marketcraft top <shops|items|earners <paymentItem|hand>>";
+    private final Leaderboards leaderboards;
+
+    public TopCommand(Leaderboards leaderboards) {
+        this.leaderboards = leaderboards;
+    }
+
+    /**
+     * Handles the 'top' subcommand of the /marketcraft command set.
+     * Shows the top-selling shops, the most traded items, or the shop owners who received the most of a payment item
+     * of all time. Counts are estimates that may be slightly high, but never low.
+     *
+     * @param sender The sender of the command. Can be a player or the console.
+     * @param args   The arguments provided with the command: the leaderboard to show, and the payment item for earners.
+     * @return true if the leaderboard was shown, false if there is an error such as incorrect usage.
+     */
+    public boolean handleTopCommand(CommandSender sender, String[] args) {
+        if (args.length == 3 && args[1].equalsIgnoreCase("earners")) {
+            return handleEarners(sender, args[2]);
+        }
+        Leaderboards.Board board = null;
+        if (args.length == 2) {
+            switch (args[1].toLowerCase()) {
+                case "shops" -> board = Leaderboards.Board.SHOPS;
+                case "items" -> board = Leaderboards.Board.ITEMS;
+            }
+        }
+        if (board == null) {
+            sender.sendMessage(Component.text(USAGE));
+            return false;
+        }
+        List<TopK.Entry> entries = leaderboards.getTop(board, ENTRIES);
+        if (entries.isEmpty()) {
+            sender.sendMessage(Component.text("Nothing has been traded yet."));
+            return true;
+        }
+        TextComponent.Builder messageBuilder = Component.text();
+        messageBuilder.append(Component.text(switch (board) {
+            case SHOPS -> "Top-selling shops (items sold)";
+            case ITEMS -> "Most traded items (items sold)";
+        }));
+        int rank = 1;
+        for (TopK.Entry entry : entries) {
+            messageBuilder.append(Component.newline())
+                    .append(Component.text(rank++ + ". " + describe(board, entry.key()) + ": " + entry.count()));
+        }
+        sender.sendMessage(messageBuilder.build());
+        return true;
+    }
+
+    private boolean handleEarners(CommandSender sender, String currencyArgument) {
+        ItemStack currency;
+        if (currencyArgument.equalsIgnoreCase("hand")) {
+            if (!(sender instanceof Player player) || player.getInventory().getItemInMainHand().getType() == Material.AIR) {
+                sender.sendMessage(Component.text("You need to hold the payment item you want to look up."));
+                return false;
+            }
+            currency = player.getInventory().getItemInMainHand();
+        } else {
+            Material material = Material.matchMaterial(currencyArgument);
+            if (material == null) {
+                sender.sendMessage(Component.text("Unknown item: " + currencyArgument));
+                return false;
+            }
+            currency = new ItemStack(material);
+        }
+        String currencyName = currency.getType().getKey().getKey();
+        List<TopK.Entry> entries = leaderboards.getTopEarners(currency, ENTRIES);
+        if (entries.isEmpty()) {
+            sender.sendMessage(Component.text("Nothing has been paid for with " + currencyName + " yet."));
+            return true;
+        }
+        TextComponent.Builder messageBuilder = Component.text();
+        messageBuilder.append(Component.text("Top earners (" + currencyName + " received)"));
+        int rank = 1;
+        for (TopK.Entry entry : entries) {
+            messageBuilder.append(Component.newline())
+                    .append(Component.text(rank++ + ". " + playerName(entry.key()) + ": " + entry.count()));
+        }
+        sender.sendMessage(messageBuilder.build());
+        return true;
+    }
+
+    private static String describe(Leaderboards.Board board, String key) {
+        return switch (board) {
+            case SHOPS -> {
+                int separator = key.indexOf('/');
+                yield playerName(key.substring(0, separator)) + "'s " + key.substring(separator + 1);
+            }
+            // Items with custom meta share the type name, but are ranked separately
+            case ITEMS -> key.substring(0, key.indexOf('/'));
+        };
+    }
+
+    private static String playerName(String uuidString) {
+        String name = Bukkit.getOfflinePlayer(UUID.fromString(uuidString)).getName();
+        return name != null ? name : uuidString;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.commands;
+
+import com.marketcraft.shops.ShopBlockIndex;
+import net.kyori.adventure.text.Component;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Command handler for the 'unbind' subcommand within the MarketCraft plugin.
+ */
+public class UnbindCommand {
+    private static final int MAX_DISTANCE = 5;
+    private final ShopBlockIndex shopBlockIndex;
+
+    public UnbindCommand(ShopBlockIndex shopBlockIndex) {
+        this.shopBlockIndex = shopBlockIndex;
+    }
+
+    /**
+     * Handles the 'unbind' subcommand of the /marketcraft command set.
+     * Removes the shop binding of the block the player is looking at. Only the shop owner or an admin can do this.
+     *
+     * @param sender The sender of the command, expected to be a player.
+     * @return true if the block was unbound, false if it was not a shop block of the player.
+     */
+    public boolean handleUnbindCommand(CommandSender sender) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(Component.text("This command can only be used by players."));
+            return false;
+        }
+        Block block = player.getTargetBlockExact(MAX_DISTANCE);
+        ShopBlockIndex.ShopBinding binding = block != null ? shopBlockIndex.getBinding(block) : null;
+        if (binding == null) {
+            player.sendMessage(Component.text("You are not looking at a shop block."));
+            return false;
+        }
+        if (!binding.ownerUUID().equals(player.getUniqueId()) && !player.hasPermission("marketcraft.admin")) {
+            player.sendMessage(Component.text("That block belongs to someone else's shop."));
+            return false;
+        }
+        shopBlockIndex.unbind(block);
+        player.sendMessage(Component.text("The block is no longer bound to shop '" + binding.shopName() + "'."));
+        return true;
+    }
+}
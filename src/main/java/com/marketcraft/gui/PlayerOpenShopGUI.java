@@ -11,8 +11,12 @@ package com.marketcraft.gui;
 
 import com.marketcraft.MarketCraft;
 import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.shops.DynamicPricingEngine;
 import com.marketcraft.shops.PlayerShopManager;
+import com.marketcraft.shops.ShopTradeTable;
 import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.stats.PriceStatistics;
+import com.marketcraft.stats.PriceSummary;
 import com.marketcraft.vaults.PlayerVaultManager;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
@@ -24,6 +28,8 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static com.marketcraft.util.GUIUtils.createNamedItem;
@@ -32,33 +38,39 @@ import static com.marketcraft.util.GUIUtils.createPlayerHead;
 /**
  * Manages the graphical user interface (GUI) for players to open and interact with shops in the MarketCraft plugin.
  * This class is responsible for creating and displaying the shop inventory interface, enabling players to view items for sale, understand their costs, and check available stock.
+ * <p>
+ * Every trade of a shop is shown on its own row of the same screen: the sold item, the cost tag, the charged item,
+ * the stock and a buy button. The owner's head sits on the top row and the close button on the bottom row,
+ * so buying from a shop with several trades takes one screen, one vault lock and one stock lookup.
  */
 public class PlayerOpenShopGUI {
-    private static final int INVENTORY_SIZE = 27;
-    private static final int SELL_TAG_SLOT = 10;
-    private static final int CHARGE_TAG_SLOT = 14;
-    private static final int CANCEL_SLOT = 22;
-    private static final int CONFIRM_SLOT = 16;
-    private static final int SELL_SLOT = 11;
-    private static final int CHARGE_SLOT = 15;
-    public static final int STOCK_INDICATOR_SLOT = 20;
+    public static final int ROW_SIZE = 9;
+    public static final int SELL_COLUMN = 1;
+    public static final int CHARGE_TAG_COLUMN = 2;
+    public static final int CHARGE_COLUMN = 3;
+    public static final int STOCK_INDICATOR_COLUMN = 5;
+    public static final int CONFIRM_COLUMN = 7;
     public static final int OWNER_HEAD_SLOT = 4;
     private final PlayerShopManager playerShopManager;
     private final PlayerVaultManager playerVaultManager;
     private final ShopLockManager shopLockManager;
     private final VaultLockManager vaultLockManager;
+    private final PriceStatistics priceStatistics;
+    private final DynamicPricingEngine dynamicPricingEngine;
     private final MarketCraft marketCraft;
 
-    public PlayerOpenShopGUI(PlayerShopManager playerShopManager, PlayerVaultManager playerVaultManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, MarketCraft marketCraft) {
+    public PlayerOpenShopGUI(PlayerShopManager playerShopManager, PlayerVaultManager playerVaultManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, PriceStatistics priceStatistics, DynamicPricingEngine dynamicPricingEngine, MarketCraft marketCraft) {
         this.playerShopManager = playerShopManager;
         this.playerVaultManager = playerVaultManager;
         this.shopLockManager = shopLockManager;
         this.vaultLockManager = vaultLockManager;
+        this.priceStatistics = priceStatistics;
+        this.dynamicPricingEngine = dynamicPricingEngine;
         this.marketCraft = marketCraft;
     }
 
     /**
-     * Opens the shop GUI for the specified player, showing items for sale, their costs, and stock availability.
+     * Opens the shop GUI for the specified player, showing every trade of the shop with its items, cost and stock.
      * The method sets up the shop inventory based on the shop owner's UUID, displaying items for sale and purchase options.
      *
      * @param player        The player for whom the shop GUI is to be opened.
@@ -66,48 +78,131 @@ public class PlayerOpenShopGUI {
      * @param shopName      The name of the shop that the player is accessing.
      */
     public void openPlayerShopGUI(Player player, UUID shopOwnerUUID, String shopName) {
-        // Check if the shop is locked
+        // Lock the vault first and only then check the shop lock, so an owner opening the vault
+        // on another region thread at the same time can't pass its own check as well
+        vaultLockManager.lockVault(shopOwnerUUID, shopName, player.getUniqueId());
         if (shopLockManager.isLocked(shopOwnerUUID, shopName)) {
+            vaultLockManager.unlockVault(shopOwnerUUID, shopName, player.getUniqueId());
             player.sendMessage(Component.text("This shop is currently being modified. Please try again later."));
             return;
         }
         // If the method returns null, we can assume the shop does not exist or is invalid
-        ItemStack[] shopItems = playerShopManager.getPlayerShopItems(shopOwnerUUID, shopName);
-        if (shopItems == null) {
+        ShopTradeTable trades = playerShopManager.getShopTrades(shopOwnerUUID, shopName);
+        if (trades == null || trades.size() == 0 || !trades.isComplete(0)) {
+            vaultLockManager.unlockVault(shopOwnerUUID, shopName, player.getUniqueId());
             player.sendMessage("Shop does not exist or is invalid");
             return;
         }
-        Inventory shopInventory = Bukkit.createInventory(player, INVENTORY_SIZE, Component.text("Shop"));
-        ItemStack itemBeingSoldTag = createNamedItem(Material.NAME_TAG, "Selling");
-        ItemStack itemCostTag = createNamedItem(Material.NAME_TAG, "Cost");
-        ItemStack confirmSelection = createNamedItem(Material.LIME_STAINED_GLASS_PANE, "Buy");
-        ItemStack cancelSelection = createNamedItem(Material.RED_STAINED_GLASS_PANE, "Close shop");
-        // Create the customized items
-        ItemStack itemBeingSold = shopItems[0];
-        ItemStack itemCost = shopItems[1];
-        int stockCount = playerVaultManager.getItemCountInPlayerVault(shopOwnerUUID, itemBeingSold, shopName);
-        ItemStack stockIndicator = createNamedItem(Material.NAME_TAG, "Shop has " + stockCount + " in stock");
+        int inventorySize = getInventorySize(trades.size());
+        Inventory shopInventory = Bukkit.createInventory(player, inventorySize, Component.text("Shop"));
+        // Fill the entire inventory with the background
+        for (int i = 0; i < inventorySize; i++) {
+            shopInventory.setItem(i, createNamedItem(Material.GRAY_STAINED_GLASS_PANE, "")); // Empty name
+        }
         ItemStack ownerIdentifier = createPlayerHead(shopOwnerUUID);
         ItemMeta meta = ownerIdentifier.getItemMeta();
         meta.getPersistentDataContainer().set(new NamespacedKey(marketCraft, "shopOwnerUUID"), PersistentDataType.STRING, shopOwnerUUID.toString());
         meta.getPersistentDataContainer().set(new NamespacedKey(marketCraft, "shopName"), PersistentDataType.STRING, shopName);
         ownerIdentifier.setItemMeta(meta);
-        // Fill the entire inventory with the background
-        for (int i = 0; i < INVENTORY_SIZE; i++) {
-            shopInventory.setItem(i, createNamedItem(Material.GRAY_STAINED_GLASS_PANE, "")); // Empty name
-        }
-        // Replacing certain slots with the menu items
-        shopInventory.setItem(SELL_TAG_SLOT, itemBeingSoldTag);
-        shopInventory.setItem(CHARGE_TAG_SLOT, itemCostTag);
-        shopInventory.setItem(CANCEL_SLOT, cancelSelection);
-        shopInventory.setItem(CONFIRM_SLOT, confirmSelection);
-        shopInventory.setItem(STOCK_INDICATOR_SLOT, stockIndicator);
-        shopInventory.setItem(SELL_SLOT, itemBeingSold);
-        shopInventory.setItem(CHARGE_SLOT, itemCost);
         shopInventory.setItem(OWNER_HEAD_SLOT, ownerIdentifier);
-        // Setup is done, create the inventory
-        player.openInventory(shopInventory);
-        // After setting up the shop GUI, lock the vault for the shop
-        vaultLockManager.lockVault(shopOwnerUUID, shopName, player.getUniqueId());
+        // Count the stock of every trade with a single vault read
+        ItemStack[] itemsBeingSold = new ItemStack[trades.size()];
+        for (int trade = 0; trade < trades.size(); trade++) {
+            itemsBeingSold[trade] = trades.getItemToSell(trade);
+        }
+        int[] stockCounts = playerVaultManager.getCachedItemCounts(shopOwnerUUID, itemsBeingSold, shopName);
+        for (int trade = 0; trade < trades.size(); trade++) {
+            if (!trades.isComplete(trade)) {
+                continue;
+            }
+            int rowStart = getTradeRowStart(trade);
+            ItemStack itemCost = trades.getItemToCharge(trade);
+            ItemStack itemCostTag = createNamedItem(Material.NAME_TAG, "Cost");
+            addPriceHistory(itemCostTag, shopOwnerUUID, shopName, trade, itemsBeingSold[trade], itemCost);
+            shopInventory.setItem(rowStart + SELL_COLUMN, itemsBeingSold[trade]);
+            shopInventory.setItem(rowStart + CHARGE_TAG_COLUMN, itemCostTag);
+            shopInventory.setItem(rowStart + CHARGE_COLUMN, itemCost);
+            shopInventory.setItem(rowStart + STOCK_INDICATOR_COLUMN, createStockIndicator(stockCounts[trade]));
+            shopInventory.setItem(rowStart + CONFIRM_COLUMN, createNamedItem(Material.LIME_STAINED_GLASS_PANE, "Buy"));
+        }
+        shopInventory.setItem(getCancelSlot(inventorySize), createNamedItem(Material.RED_STAINED_GLASS_PANE, "Close shop"));
+        // Setup is done, open the inventory on the thread that owns the player
+        // If the player is gone before it opens, the close event never fires, so release the vault claim here
+        marketCraft.getPlatformScheduler().runForEntity(player, () -> player.openInventory(shopInventory),
+                () -> vaultLockManager.unlockVault(shopOwnerUUID, shopName, player.getUniqueId()));
+    }
+
+    /**
+     * @param tradeCount The number of trades of the shop.
+     * @return The size of the shop inventory: one row per trade, plus the owner and close rows.
+     */
+    public static int getInventorySize(int tradeCount) {
+        return (tradeCount + 2) * ROW_SIZE;
+    }
+
+    /**
+     * @param trade The number of the trade, starting at 0.
+     * @return The first slot of the row showing the trade.
+     */
+    public static int getTradeRowStart(int trade) {
+        return (trade + 1) * ROW_SIZE;
+    }
+
+    /**
+     * @param inventorySize The size of the shop inventory.
+     * @return The slot of the close button.
+     */
+    public static int getCancelSlot(int inventorySize) {
+        return inventorySize - ROW_SIZE / 2 - 1;
+    }
+
+    /**
+     * @param slot          A raw slot of the shop inventory.
+     * @param inventorySize The size of the shop inventory.
+     * @return The number of the trade whose buy button is in the slot, or -1 if the slot holds no buy button.
+     */
+    public static int getTradeForConfirmSlot(int slot, int inventorySize) {
+        int row = slot / ROW_SIZE;
+        if (slot % ROW_SIZE != CONFIRM_COLUMN || row < 1 || row >= inventorySize / ROW_SIZE - 1) {
+            return -1;
+        }
+        return row - 1;
+    }
+
+    /**
+     * @param stockCount The stock of the sold item.
+     * @return The name tag showing the stock of a trade.
+     */
+    public static ItemStack createStockIndicator(int stockCount) {
+        return createNamedItem(Material.NAME_TAG, "Shop has " + stockCount + " in stock");
+    }
+
+    /**
+     * Adds how this item recently traded for this cost item to the lore of the cost tag.
+     * The tag is used instead of the items themselves, since those are handed out as they are displayed.
+     * A dynamically priced trade also shows its price bounds.
+     *
+     * @param costTag       The cost tag to add the lore to.
+     * @param shopOwnerUUID The UUID of the shop owner.
+     * @param shopName      The name of the shop.
+     * @param trade         The number of the trade.
+     * @param itemBeingSold The item being sold.
+     * @param itemCost      The item being charged.
+     */
+    private void addPriceHistory(ItemStack costTag, UUID shopOwnerUUID, String shopName, int trade, ItemStack itemBeingSold, ItemStack itemCost) {
+        ItemMeta meta = costTag.getItemMeta();
+        List<Component> lore = new ArrayList<>();
+        lore.add(Component.text("Market prices for this trade:"));
+        for (PriceStatistics.Resolution resolution : PriceStatistics.Resolution.values()) {
+            PriceSummary summary = priceStatistics.getSummary(itemBeingSold, itemCost, resolution, resolution.getBuckets());
+            lore.add(Component.text("Last " + resolution.getSpan() + ": " + summary.describe()));
+        }
+        // Only the first trade of a shop is priced dynamically
+        int[] bounds = trade == 0 ? dynamicPricingEngine.getBounds(shopOwnerUUID, shopName) : null;
+        if (bounds != null) {
+            lore.add(Component.text("Priced by demand between " + bounds[0] + " and " + bounds[1]));
+        }
+        meta.lore(lore);
+        costTag.setItemMeta(meta);
     }
-}
\ No newline at end of file
+}
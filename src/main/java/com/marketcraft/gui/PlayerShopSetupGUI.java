@@ -9,6 +9,8 @@
 
 package com.marketcraft.gui;
 
+import com.marketcraft.MarketCraft;
+import com.marketcraft.shops.ShopTradeTable;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -22,16 +24,25 @@ import static com.marketcraft.util.GUIUtils.createNamedItem;
  * Handles the graphical user interface for setting up a player's shop in the game.
  * This class is responsible for creating and managing the inventory interface
  * where players can configure the items they wish to sell and the price for each item.
+ * <p>
+ * The interface has one row per trade, up to {@link ShopTradeTable#MAX_TRADES}, each with a slot for the item
+ * to sell and a slot for the item to charge. Rows left empty are not part of the shop.
  */
 public class PlayerShopSetupGUI {
-    private static final int INVENTORY_SIZE = 27;
-    private static final int SELL_TAG_SLOT = 10;
-    private static final int CHARGE_TAG_SLOT = 15;
-    private static final int CANCEL_SLOT = 21;
-    private static final int CONFIRM_SLOT = 23;
-    private static final int SELL_SLOT = 11;
-    private static final int CHARGE_SLOT = 16;
-    private static final int SHOP_NAME_TAG_SLOT = 4;
+    public static final int ROW_SIZE = 9;
+    public static final int INVENTORY_SIZE = (ShopTradeTable.MAX_TRADES + 2) * ROW_SIZE;
+    public static final int SELL_COLUMN = 2;
+    public static final int CHARGE_COLUMN = 6;
+    public static final int CANCEL_SLOT = INVENTORY_SIZE - ROW_SIZE + 3;
+    public static final int CONFIRM_SLOT = INVENTORY_SIZE - ROW_SIZE + 5;
+    public static final int SHOP_NAME_TAG_SLOT = 4;
+    private static final int SELL_TAG_COLUMN = 1;
+    private static final int CHARGE_TAG_COLUMN = 5;
+    private final MarketCraft marketCraft;
+
+    public PlayerShopSetupGUI(MarketCraft marketCraft) {
+        this.marketCraft = marketCraft;
+    }
 
     /**
      * Opens the shop setup GUI for the specified player.
@@ -46,8 +57,6 @@ public class PlayerShopSetupGUI {
         Inventory shopSetupInventory = Bukkit.createInventory(player, INVENTORY_SIZE, Component.text("Shop Setup"));
         // Create the generic items for the inventory
         ItemStack shopNameTag = createNamedItem(Material.NAME_TAG, shopName);
-        ItemStack itemToSellTag = createNamedItem(Material.NAME_TAG, "Place item to sell to the right");
-        ItemStack itemToChargeTag = createNamedItem(Material.NAME_TAG, "Place item to charge to the right");
         ItemStack cancelSelection = createNamedItem(Material.RED_STAINED_GLASS_PANE, "Click to cancel selection");
         ItemStack confirmSelection = createNamedItem(Material.LIME_STAINED_GLASS_PANE, "Click to confirm selection");
         // Fill the entire inventory with the background
@@ -56,14 +65,35 @@ public class PlayerShopSetupGUI {
         }
         // Replacing certain slots with the menu items
         shopSetupInventory.setItem(SHOP_NAME_TAG_SLOT, shopNameTag);
-        shopSetupInventory.setItem(SELL_TAG_SLOT, itemToSellTag);
-        shopSetupInventory.setItem(CHARGE_TAG_SLOT, itemToChargeTag);
+        for (int trade = 0; trade < ShopTradeTable.MAX_TRADES; trade++) {
+            int rowStart = getTradeRowStart(trade);
+            shopSetupInventory.setItem(rowStart + SELL_TAG_COLUMN, createNamedItem(Material.NAME_TAG, "Trade " + (trade + 1) + ": place item to sell to the right"));
+            shopSetupInventory.setItem(rowStart + CHARGE_TAG_COLUMN, createNamedItem(Material.NAME_TAG, "Trade " + (trade + 1) + ": place item to charge to the right"));
+            // Clearing these slots to accept buy and sell items
+            shopSetupInventory.clear(rowStart + SELL_COLUMN);
+            shopSetupInventory.clear(rowStart + CHARGE_COLUMN);
+        }
         shopSetupInventory.setItem(CANCEL_SLOT, cancelSelection);
         shopSetupInventory.setItem(CONFIRM_SLOT, confirmSelection);
-        // Clearing these slots to accept buy and sell items
-        shopSetupInventory.clear(SELL_SLOT);
-        shopSetupInventory.clear(CHARGE_SLOT);
-        // Setup is done, create the inventory
-        player.openInventory(shopSetupInventory);
+        // Setup is done, open the inventory on the thread that owns the player
+        marketCraft.getPlatformScheduler().runForEntity(player, () -> player.openInventory(shopSetupInventory));
+    }
+
+    /**
+     * @param trade The number of the trade, starting at 0.
+     * @return The first slot of the row configuring the trade.
+     */
+    public static int getTradeRowStart(int trade) {
+        return (trade + 1) * ROW_SIZE;
+    }
+
+    /**
+     * @param slot A raw slot of the setup inventory.
+     * @return True if players may place an item in the slot.
+     */
+    public static boolean isItemSlot(int slot) {
+        int row = slot / ROW_SIZE;
+        int column = slot % ROW_SIZE;
+        return row >= 1 && row <= ShopTradeTable.MAX_TRADES && (column == SELL_COLUMN || column == CHARGE_COLUMN);
     }
-}
\ No newline at end of file
+}
@@ -11,13 +11,14 @@ package com.marketcraft.gui;
 
 import com.marketcraft.MarketCraft;
 import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.locks.VaultLockManager;
 import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultLayout;
+import com.marketcraft.vaults.VaultSessionManager;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
@@ -25,7 +26,9 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 
 import java.io.File;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 import static com.marketcraft.util.GUIUtils.createNamedItem;
 
@@ -37,14 +40,25 @@ import static com.marketcraft.util.GUIUtils.createNamedItem;
 public class PlayerVaultGUI {
     private final PlayerVaultManager playerVaultManager;
     private final ShopLockManager shopLockManager;
+    private final VaultLockManager vaultLockManager;
+    private final VaultSessionManager vaultSessionManager;
     private final MarketCraft marketCraft;
-    private static final int VAULT_SIZE = 54;
     private static final int[] DIVIDER_LINE_SLOTS = {13, 22, 31, 40, 49};
     private static final int INFO_BOOK_SLOT = 4;
+    /**
+     * The divider slot holding the button to the previous page, if there is one.
+     */
+    public static final int PREVIOUS_PAGE_SLOT = 40;
+    /**
+     * The divider slot holding the button to the next page, if there is one.
+     */
+    public static final int NEXT_PAGE_SLOT = 49;
 
-    public PlayerVaultGUI(PlayerVaultManager playerVaultManager, ShopLockManager shopLockManager, MarketCraft marketCraft) {
+    public PlayerVaultGUI(PlayerVaultManager playerVaultManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, VaultSessionManager vaultSessionManager, MarketCraft marketCraft) {
         this.playerVaultManager = playerVaultManager;
         this.shopLockManager = shopLockManager;
+        this.vaultLockManager = vaultLockManager;
+        this.vaultSessionManager = vaultSessionManager;
         this.marketCraft = marketCraft;
     }
 
@@ -55,11 +69,17 @@ public class PlayerVaultGUI {
      * ensures that the vault is personalized for the player and the specified shop, and it loads
      * the current state of the vault from the stored data. If the vault file does not exist or
      * an error occurs, the player is notified with an appropriate message.
+     * <p>
+     * A vault with several pages shows one page at a time, with buttons in the divider to turn the page.
+     * Only the opened page is loaded, and once loaded its contents are snapshotted in a
+     * {@link com.marketcraft.vaults.VaultSession} so that only the slots changed by the player are persisted
+     * when the page is closed.
      *
      * @param player   The player for whom the vault is being opened.
      * @param shopName The name of the shop associated with the vault to be opened.
+     * @param page     The page to open, starting at 0.
      */
-    public void openVault(Player player, String shopName) {
+    public void openVault(Player player, String shopName, int page) {
         UUID playerUUID = player.getUniqueId();
         File playerVaultFile = playerVaultManager.getPlayerVaultFile(playerUUID);
         if (playerVaultFile == null) {
@@ -67,18 +87,28 @@ public class PlayerVaultGUI {
             player.sendMessage(Component.text("An unexpected error has occurred, please wait a moment then try again."));
             return;
         }
-        // Lock the shop linked to this vault
+        // Lock the shop linked to this vault, then make sure no buyer locked the vault in the meantime
         shopLockManager.lockShop(playerUUID, shopName, playerUUID);
-        Inventory vaultInventory = Bukkit.createInventory(player, VAULT_SIZE, Component.text("Your Vault"));
+        if (vaultLockManager.isLocked(playerUUID, shopName)) {
+            shopLockManager.unlockShop(playerUUID, shopName, playerUUID);
+            player.sendMessage(Component.text("The shop linked to this vault is currently in use. Please try again later."));
+            return;
+        }
+        int pages = playerVaultManager.getLayout().getPages();
+        Inventory vaultInventory = Bukkit.createInventory(player, VaultLayout.PAGE_SIZE, Component.text("Your Vault"));
         ItemStack infoBook = new ItemStack(Material.KNOWLEDGE_BOOK);
         ItemMeta meta = infoBook.getItemMeta();
         meta.getPersistentDataContainer().set(new NamespacedKey(marketCraft, "shopName"), PersistentDataType.STRING, shopName);
+        meta.getPersistentDataContainer().set(new NamespacedKey(marketCraft, "vaultPage"), PersistentDataType.INTEGER, page);
         // Set the lore text for the book
-        List<Component> lore = List.of(
+        List<Component> lore = new ArrayList<>(List.of(
                 Component.text("Currently open shop vault " + shopName + "."),
                 Component.text("Items you are buying are on the right."),
                 Component.text("Items you are selling are on the left.")
-        );
+        ));
+        if (pages > 1) {
+            lore.add(Component.text("Page " + (page + 1) + " of " + pages + "."));
+        }
         meta.lore(lore);
         infoBook.setItemMeta(meta);
         // Divider line
@@ -86,19 +116,24 @@ public class PlayerVaultGUI {
             vaultInventory.setItem(slot, createNamedItem(Material.GRAY_STAINED_GLASS_PANE, "")); // Empty name
         }
         vaultInventory.setItem(INFO_BOOK_SLOT, infoBook);
-        // Continue with loading the rest of the vault
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-        String shopVaultPath = "vault." + shopName;
-        if (config.contains(shopVaultPath)) {
-            ConfigurationSection shopVaultSection = config.getConfigurationSection(shopVaultPath);
-            Set<String> keys = Objects.requireNonNull(shopVaultSection).getKeys(false);
-            for (String key : keys) {
-                Map<String, Object> itemData = Objects.requireNonNull(shopVaultSection.getConfigurationSection(key)).getValues(false);
-                ItemStack item = ItemStack.deserialize(itemData);
-                int slot = Integer.parseInt(key.replace("slot_", ""));
-                vaultInventory.setItem(slot, item);
+        if (page > 0) {
+            vaultInventory.setItem(PREVIOUS_PAGE_SLOT, createNamedItem(Material.ARROW, "Previous page"));
+        }
+        if (page + 1 < pages) {
+            vaultInventory.setItem(NEXT_PAGE_SLOT, createNamedItem(Material.ARROW, "Next page"));
+        }
+        // Continue with loading the items of this page only
+        ItemStack[] items = playerVaultManager.getPlayerVaultPage(playerUUID, shopName, page);
+        for (int slot = 0; slot < items.length; slot++) {
+            if (items[slot] != null) {
+                vaultInventory.setItem(slot, items[slot]);
             }
         }
-        player.openInventory(vaultInventory);
+        vaultSessionManager.startSession(playerUUID, shopName, page, vaultInventory);
+        // If the player is gone before it opens, nothing was changed, so only drop the session and the shop lock
+        marketCraft.getPlatformScheduler().runForEntity(player, () -> player.openInventory(vaultInventory), () -> {
+            vaultSessionManager.endSession(playerUUID, shopName);
+            shopLockManager.unlockShop(playerUUID, shopName, playerUUID);
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,277 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.gui;
+
+import com.marketcraft.MarketCraft;
+import com.marketcraft.scheduler.WorkScheduler;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopTradeTable;
+import com.marketcraft.vaults.PlayerVaultManager;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.marketcraft.util.GUIUtils.createNamedItem;
+
+/**
+ * Manages the paged marketplace GUI that lists shops found in the shop index.
+ * Each page only resolves the listings that are visible on it, so the stock and owner of a shop are looked up
+ * when its page is rendered rather than for every result of a search.
+ * <p>
+ * Rendering never reads a vault. Stock is shown from a cache of counts per shop, and the shops on a page whose counts
+ * are missing or outdated by a vault write are counted off the main thread, after which the page is drawn again.
+ */
+public class ShopBrowserGUI {
+    public static final int INVENTORY_SIZE = 54;
+    public static final int RESULTS_PER_PAGE = 45;
+    public static final int PREVIOUS_PAGE_SLOT = 45;
+    public static final int PAGE_INFO_SLOT = 49;
+    public static final int NEXT_PAGE_SLOT = 53;
+    private final PlayerVaultManager playerVaultManager;
+    private final PlayerOpenShopGUI playerOpenShopGUI;
+    private final MarketCraft marketCraft;
+    private final WorkScheduler workScheduler;
+    private final Map<UUID, BrowseSession> sessions = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<String, StockCounts>> stockCounts = new ConcurrentHashMap<>();
+
+    public ShopBrowserGUI(PlayerVaultManager playerVaultManager, PlayerOpenShopGUI playerOpenShopGUI, MarketCraft marketCraft, WorkScheduler workScheduler) {
+        this.playerVaultManager = playerVaultManager;
+        this.playerOpenShopGUI = playerOpenShopGUI;
+        this.marketCraft = marketCraft;
+        this.workScheduler = workScheduler;
+        // Stock listeners run while the vault is being written, so only flag the owner's counts here
+        playerVaultManager.addStockListener(ownerUUID -> {
+            Map<String, StockCounts> ownerCounts = stockCounts.get(ownerUUID);
+            if (ownerCounts != null) {
+                for (StockCounts counts : ownerCounts.values()) {
+                    counts.stale = true;
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens the marketplace GUI on its first page.
+     *
+     * @param player  The player browsing the marketplace.
+     * @param title   The title of the GUI, describing what was searched for.
+     * @param results The listings to show. They are sorted by shop name for stable paging.
+     */
+    public void openBrowser(Player player, String title, List<ShopListing> results) {
+        List<ShopListing> sortedResults = new ArrayList<>(results);
+        sortedResults.sort(Comparator.comparing(ShopListing::getShopName, String.CASE_INSENSITIVE_ORDER));
+        Inventory inventory = Bukkit.createInventory(player, INVENTORY_SIZE, Component.text(title));
+        BrowseSession session = new BrowseSession(player, inventory, sortedResults);
+        renderPage(session, 0);
+        sessions.put(player.getUniqueId(), session);
+        marketCraft.getPlatformScheduler().runForEntity(player, () -> player.openInventory(inventory), () -> endSession(player, inventory));
+    }
+
+    /**
+     * Returns the browse session of a player if the given inventory belongs to it.
+     *
+     * @param player    The player interacting with an inventory.
+     * @param inventory The inventory being interacted with.
+     * @return The session, or null if the inventory is not an open marketplace GUI of the player.
+     */
+    public BrowseSession getSession(Player player, Inventory inventory) {
+        BrowseSession session = sessions.get(player.getUniqueId());
+        return session != null && session.inventory == inventory ? session : null;
+    }
+
+    /**
+     * Forgets the browse session of a player after the marketplace GUI was closed.
+     *
+     * @param player    The player that closed an inventory.
+     * @param inventory The inventory that was closed.
+     */
+    public void endSession(Player player, Inventory inventory) {
+        sessions.computeIfPresent(player.getUniqueId(), (k, session) -> session.inventory == inventory ? null : session);
+    }
+
+    /**
+     * Handles a click on a slot of the marketplace GUI, either turning the page or opening the clicked shop.
+     *
+     * @param player  The player that clicked.
+     * @param session The browse session of the player.
+     * @param slot    The raw slot that was clicked.
+     */
+    public void handleClick(Player player, BrowseSession session, int slot) {
+        if (slot == PREVIOUS_PAGE_SLOT && session.page > 0) {
+            renderPage(session, session.page - 1);
+        } else if (slot == NEXT_PAGE_SLOT && session.page < session.getPageCount() - 1) {
+            renderPage(session, session.page + 1);
+        } else if (slot >= 0 && slot < RESULTS_PER_PAGE) {
+            int index = session.page * RESULTS_PER_PAGE + slot;
+            if (index < session.results.size()) {
+                ShopListing listing = session.results.get(index);
+                player.closeInventory();
+                playerOpenShopGUI.openPlayerShopGUI(player, listing.getOwnerUUID(), listing.getShopName());
+            }
+        }
+    }
+
+    /**
+     * Fills the inventory with one page of results, resolving only the listings on that page.
+     * Listings whose stock counts are missing or outdated are counted in the background, and the page is drawn
+     * again once they are.
+     *
+     * @param session The browse session to render.
+     * @param page    The zero-based page to show.
+     */
+    private void renderPage(BrowseSession session, int page) {
+        session.page = page;
+        Inventory inventory = session.inventory;
+        inventory.clear();
+        int start = page * RESULTS_PER_PAGE;
+        int end = Math.min(start + RESULTS_PER_PAGE, session.results.size());
+        List<StockCounts> toCount = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            ShopListing listing = session.results.get(i);
+            inventory.setItem(i - start, createListingItem(listing, getStockCounts(listing, toCount)));
+        }
+        if (!toCount.isEmpty()) {
+            workScheduler.submitAsync(() -> {
+                for (StockCounts counts : toCount) {
+                    counts.count(playerVaultManager);
+                }
+                marketCraft.getPlatformScheduler().runForEntity(session.player, () -> {
+                    if (sessions.get(session.player.getUniqueId()) == session && session.page == page) {
+                        renderPage(session, page);
+                    }
+                });
+            });
+        }
+        // Navigation row
+        for (int slot = RESULTS_PER_PAGE; slot < INVENTORY_SIZE; slot++) {
+            inventory.setItem(slot, createNamedItem(Material.GRAY_STAINED_GLASS_PANE, "")); // Empty name
+        }
+        if (page > 0) {
+            inventory.setItem(PREVIOUS_PAGE_SLOT, createNamedItem(Material.ARROW, "Previous page"));
+        }
+        if (page < session.getPageCount() - 1) {
+            inventory.setItem(NEXT_PAGE_SLOT, createNamedItem(Material.ARROW, "Next page"));
+        }
+        String pageInfo = session.results.isEmpty() ? "No shops found" : "Page " + (page + 1) + " of " + session.getPageCount();
+        inventory.setItem(PAGE_INFO_SLOT, createNamedItem(Material.PAPER, pageInfo));
+    }
+
+    /**
+     * Returns the last stock counts of a listing, and queues the listing for counting if they are missing or outdated.
+     *
+     * @param listing The listing to look up.
+     * @param toCount Collects the counts to refresh.
+     * @return The last counts of every trade, or null if the listing was never counted.
+     */
+    private int[] getStockCounts(ShopListing listing, List<StockCounts> toCount) {
+        Map<String, StockCounts> ownerCounts = stockCounts.computeIfAbsent(listing.getOwnerUUID(), k -> new ConcurrentHashMap<>());
+        StockCounts counts = ownerCounts.get(listing.getShopName());
+        if (counts != null && counts.listing == listing && !counts.stale) {
+            return counts.counts;
+        }
+        int[] previous = counts != null && counts.listing == listing ? counts.counts : null;
+        // Cached before counting, so a vault write during the count flags the new entry as outdated
+        StockCounts refreshed = new StockCounts(listing, previous);
+        ownerCounts.put(listing.getShopName(), refreshed);
+        toCount.add(refreshed);
+        return previous;
+    }
+
+    /**
+     * Creates the icon of a single listing, showing the sold item along with its price, owner and stock.
+     * Shops with several trades show the first trade's item, and list the other trades in the lore.
+     *
+     * @param listing The listing to show.
+     * @param stock   The stock of every trade, or null while the listing is being counted.
+     * @return The icon of the listing.
+     */
+    private ItemStack createListingItem(ShopListing listing, int[] stock) {
+        ShopTradeTable trades = listing.getTrades();
+        ItemStack itemToSell = listing.getItemToSell();
+        ItemStack itemToCharge = listing.getItemToCharge();
+        if (itemToSell == null || itemToCharge == null) {
+            return createNamedItem(Material.BARRIER, listing.getShopName() + " (not set up)");
+        }
+        String ownerName = Bukkit.getOfflinePlayer(listing.getOwnerUUID()).getName();
+        ItemStack[] itemsToSell = new ItemStack[trades.size()];
+        for (int trade = 0; trade < trades.size(); trade++) {
+            itemsToSell[trade] = trades.getItemToSell(trade);
+        }
+        ItemStack icon = itemToSell.clone();
+        ItemMeta meta = icon.getItemMeta();
+        List<Component> lore = meta.lore() != null ? new ArrayList<>(meta.lore()) : new ArrayList<>();
+        lore.add(Component.text("Shop: " + listing.getShopName()));
+        lore.add(Component.text("Owner: " + (ownerName != null ? ownerName : "Unknown")));
+        lore.add(Component.text("Price: " + itemToCharge.getAmount() + " x " + itemToCharge.getType().getKey().getKey()));
+        lore.add(Component.text("Stock: " + (stock != null ? stock[0] : "counting...")));
+        for (int trade = 1; trade < trades.size(); trade++) {
+            if (!trades.isComplete(trade)) {
+                continue;
+            }
+            ItemStack tradeCharge = trades.getItemToCharge(trade);
+            lore.add(Component.text("Also: " + itemsToSell[trade].getAmount() + " x " + itemsToSell[trade].getType().getKey().getKey()
+                    + " for " + tradeCharge.getAmount() + " x " + tradeCharge.getType().getKey().getKey() + " (stock: " + (stock != null ? stock[trade] : "counting...") + ")"));
+        }
+        lore.add(Component.text("Click to open this shop."));
+        meta.lore(lore);
+        icon.setItemMeta(meta);
+        return icon;
+    }
+
+    /**
+     * The stock of every trade of a listing as last counted.
+     */
+    private static final class StockCounts {
+        private final ShopListing listing;
+        private volatile int[] counts;
+        private volatile boolean stale;
+
+        private StockCounts(ShopListing listing, int[] counts) {
+            this.listing = listing;
+            this.counts = counts;
+        }
+
+        private void count(PlayerVaultManager playerVaultManager) {
+            ShopTradeTable trades = listing.getTrades();
+            ItemStack[] itemsToSell = new ItemStack[trades.size()];
+            for (int trade = 0; trade < trades.size(); trade++) {
+                itemsToSell[trade] = trades.getItemToSell(trade);
+            }
+            counts = playerVaultManager.getCachedItemCounts(listing.getOwnerUUID(), itemsToSell, listing.getShopName());
+        }
+    }
+
+    /**
+     * The state of one player's marketplace GUI.
+     */
+    public static final class BrowseSession {
+        private final Player player;
+        private final Inventory inventory;
+        private final List<ShopListing> results;
+        private volatile int page;
+
+        private BrowseSession(Player player, Inventory inventory, List<ShopListing> results) {
+            this.player = player;
+            this.inventory = inventory;
+            this.results = results;
+        }
+
+        private int getPageCount() {
+            return Math.max(1, (results.size() + RESULTS_PER_PAGE - 1) / RESULTS_PER_PAGE);
+        }
+    }
+}
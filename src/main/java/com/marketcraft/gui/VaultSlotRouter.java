@@ -0,0 +1,162 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.gui;
+
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.vaults.VaultLayout;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Routes items between a player's inventory and the two sides of the vault GUI using slot bitmasks.
+ * <p>
+ * The 54 slots of a vault page fit in a long, so each side of the vault is a constant mask: the selling side left of
+ * the divider and the buying side right of it. Every page of a vault has the same layout and shares the masks.
+ * A {@link Route} scans its side once to build a mask of the slots holding the routed item with room to spare and a
+ * mask of the empty slots, and then places any number of stacks by taking the lowest set bit of those masks.
+ * Moving every stack of an item type therefore costs one pass over the side plus one step per slot filled, instead
+ * of a scan of the side per stack.
+ */
+public final class VaultSlotRouter {
+    /**
+     * The slots of the selling side, columns 0 to 3.
+     */
+    public static final long SELLING_MASK = columns(0, 3);
+    /**
+     * The slots of the buying side, columns 5 to 8.
+     */
+    public static final long BUYING_MASK = columns(5, 8);
+    private static final int ROW_SIZE = 9;
+
+    private VaultSlotRouter() {
+    }
+
+    /**
+     * @param slot A raw slot index of the vault inventory.
+     * @return The mask of the side containing the slot, or 0 for the divider and slots outside the vault.
+     */
+    public static long sideOf(int slot) {
+        if (slot < 0 || slot >= VaultLayout.PAGE_SIZE) {
+            return 0;
+        }
+        long bit = 1L << slot;
+        return (SELLING_MASK & bit) != 0 ? SELLING_MASK : (BUYING_MASK & bit) != 0 ? BUYING_MASK : 0;
+    }
+
+    /**
+     * @param vault       The vault inventory.
+     * @param sideMask    The side to search.
+     * @param fingerprint The item to look for.
+     * @return The mask of the slots on the side holding the item.
+     */
+    public static long matchingSlots(Inventory vault, long sideMask, ItemFingerprint fingerprint) {
+        long matching = 0;
+        for (long remaining = sideMask; remaining != 0; remaining &= remaining - 1) {
+            int slot = Long.numberOfTrailingZeros(remaining);
+            if (fingerprint.matches(vault.getItem(slot))) {
+                matching |= 1L << slot;
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Starts routing one item type into a side of the vault.
+     *
+     * @param vault    The vault inventory.
+     * @param sideMask The side to place the item on.
+     * @param item     The item to route. The amount of the item is ignored.
+     * @return A route that places stacks of the item on the side.
+     */
+    public static Route route(Inventory vault, long sideMask, ItemStack item) {
+        ItemFingerprint fingerprint = ItemFingerprint.of(item);
+        int maxStackSize = item.getMaxStackSize();
+        long partial = 0;
+        long free = 0;
+        for (long remaining = sideMask; remaining != 0; remaining &= remaining - 1) {
+            int slot = Long.numberOfTrailingZeros(remaining);
+            ItemStack itemInSlot = vault.getItem(slot);
+            if (itemInSlot == null || itemInSlot.getType().isAir()) {
+                free |= 1L << slot;
+            } else if (itemInSlot.getAmount() < maxStackSize && fingerprint.matches(itemInSlot)) {
+                partial |= 1L << slot;
+            }
+        }
+        return new Route(vault, item, maxStackSize, partial, free);
+    }
+
+    /**
+     * Places stacks of one item type on a side of the vault, topping up partial stacks before using empty slots.
+     * A route is only valid until the vault is changed by anything else.
+     */
+    public static final class Route {
+        private final Inventory vault;
+        private final ItemStack item;
+        private final int maxStackSize;
+        private long partial;
+        private long free;
+
+        private Route(Inventory vault, ItemStack item, int maxStackSize, long partial, long free) {
+            this.vault = vault;
+            this.item = item;
+            this.maxStackSize = maxStackSize;
+            this.partial = partial;
+            this.free = free;
+        }
+
+        /**
+         * @param amount The amount to place.
+         * @return The amount that was placed, which is less than requested once the side is full.
+         */
+        public int add(int amount) {
+            int remaining = amount;
+            while (remaining > 0 && partial != 0) {
+                int slot = Long.numberOfTrailingZeros(partial);
+                ItemStack itemInSlot = vault.getItem(slot);
+                int added = Math.min(remaining, maxStackSize - itemInSlot.getAmount());
+                itemInSlot.setAmount(itemInSlot.getAmount() + added);
+                remaining -= added;
+                if (itemInSlot.getAmount() >= maxStackSize) {
+                    partial &= partial - 1;
+                }
+            }
+            while (remaining > 0 && free != 0) {
+                int slot = Long.numberOfTrailingZeros(free);
+                free &= free - 1;
+                ItemStack stack = item.clone();
+                stack.setAmount(Math.min(remaining, maxStackSize));
+                vault.setItem(slot, stack);
+                remaining -= stack.getAmount();
+                if (stack.getAmount() < maxStackSize) {
+                    partial |= 1L << slot;
+                }
+            }
+            return amount - remaining;
+        }
+
+        /**
+         * @return True if the side has no more room for the item.
+         */
+        public boolean isFull() {
+            return partial == 0 && free == 0;
+        }
+    }
+
+    private static long columns(int firstColumn, int lastColumn) {
+        long mask = 0;
+        for (int slot = 0; slot < VaultLayout.PAGE_SIZE; slot++) {
+            int column = slot % ROW_SIZE;
+            if (column >= firstColumn && column <= lastColumn) {
+                mask |= 1L << slot;
+            }
+        }
+        return mask;
+    }
+}
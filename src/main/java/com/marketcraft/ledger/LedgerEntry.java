@@ -0,0 +1,140 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.ledger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A single completed purchase recorded in the {@link TransactionLedger}.
+ * Items are recorded by their type and {@link com.marketcraft.util.ItemFingerprint} hash, which is enough to
+ * tell items with custom meta apart without storing the full item.
+ */
+public final class LedgerEntry {
+    private final long timestamp;
+    private final UUID ownerUUID;
+    private final String shopName;
+    private final UUID buyerUUID;
+    private final String soldType;
+    private final long soldHash;
+    private final int soldAmount;
+    private final String costType;
+    private final long costHash;
+    private final int costAmount;
+
+    public LedgerEntry(long timestamp, UUID ownerUUID, String shopName, UUID buyerUUID, String soldType, long soldHash, int soldAmount, String costType, long costHash, int costAmount) {
+        this.timestamp = timestamp;
+        this.ownerUUID = ownerUUID;
+        this.shopName = shopName;
+        this.buyerUUID = buyerUUID;
+        this.soldType = soldType;
+        this.soldHash = soldHash;
+        this.soldAmount = soldAmount;
+        this.costType = costType;
+        this.costHash = costHash;
+        this.costAmount = costAmount;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public UUID getOwnerUUID() {
+        return ownerUUID;
+    }
+
+    public String getShopName() {
+        return shopName;
+    }
+
+    public UUID getBuyerUUID() {
+        return buyerUUID;
+    }
+
+    /**
+     * @return The key of the sold item's type, such as "diamond".
+     */
+    public String getSoldType() {
+        return soldType;
+    }
+
+    /**
+     * @return The fingerprint hash of the sold item.
+     */
+    public long getSoldHash() {
+        return soldHash;
+    }
+
+    public int getSoldAmount() {
+        return soldAmount;
+    }
+
+    /**
+     * @return The key of the cost item's type, such as "emerald".
+     */
+    public String getCostType() {
+        return costType;
+    }
+
+    /**
+     * @return The fingerprint hash of the cost item.
+     */
+    public long getCostHash() {
+        return costHash;
+    }
+
+    public int getCostAmount() {
+        return costAmount;
+    }
+
+    /**
+     * Writes the entry in the ledger's binary record format, without the length prefix.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(timestamp);
+        out.writeLong(ownerUUID.getMostSignificantBits());
+        out.writeLong(ownerUUID.getLeastSignificantBits());
+        out.writeLong(buyerUUID.getMostSignificantBits());
+        out.writeLong(buyerUUID.getLeastSignificantBits());
+        out.writeLong(soldHash);
+        out.writeInt(soldAmount);
+        out.writeUTF(soldType);
+        out.writeLong(costHash);
+        out.writeInt(costAmount);
+        out.writeUTF(costType);
+        out.writeUTF(shopName);
+    }
+
+    /**
+     * Reads an entry written by {@link #write(DataOutput)}.
+     *
+     * @param in The input to read from.
+     * @return The entry.
+     * @throws IOException If the input fails or ends early.
+     */
+    static LedgerEntry read(DataInput in) throws IOException {
+        long timestamp = in.readLong();
+        UUID ownerUUID = new UUID(in.readLong(), in.readLong());
+        UUID buyerUUID = new UUID(in.readLong(), in.readLong());
+        long soldHash = in.readLong();
+        int soldAmount = in.readInt();
+        String soldType = in.readUTF();
+        long costHash = in.readLong();
+        int costAmount = in.readInt();
+        String costType = in.readUTF();
+        String shopName = in.readUTF();
+        return new LedgerEntry(timestamp, ownerUUID, shopName, buyerUUID, soldType, soldHash, soldAmount, costType, costHash, costAmount);
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.ledger;
+
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.logging.Level;
+
+/**
+ * An append-only binary ledger of completed purchases.
+ * <p>
+ * Every record is an int length prefix followed by a {@link LedgerEntry}. Records are appended to the newest
+ * segment file in the ledger folder, and a new segment is started once the current one reaches the configured
+ * size, so no single file grows without bound. Segments are never rewritten.
+ * <p>
+ * Recording a purchase only adds the entry to a queue. The queue is written out in one batch by {@link #flush()},
+ * which runs off the main thread. The position of every record is kept in per-owner, per-buyer and per-item
+ * indexes, so a history query reads exactly the records it returns instead of scanning the segments.
+ * The indexes are rebuilt with one sequential pass over the segments when the plugin starts.
+ */
+public class TransactionLedger implements TradeListener {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private final File ledgerFolder;
+    private final long segmentMaxBytes;
+    private final Deque<LedgerEntry> pending = new ConcurrentLinkedDeque<>();
+    private final Map<UUID, PositionList> byOwner = new HashMap<>();
+    private final Map<UUID, PositionList> byBuyer = new HashMap<>();
+    private final Map<Long, PositionList> byItem = new HashMap<>();
+    private final Object flushLock = new Object();
+    private int activeSegment;
+    private long activeSegmentSize;
+    private long entryCount;
+
+    /**
+     * @param pluginFolder    The plugin's data folder.
+     * @param segmentMaxBytes The size at which a segment is closed and a new one is started.
+     */
+    public TransactionLedger(File pluginFolder, long segmentMaxBytes) {
+        this.ledgerFolder = new File(pluginFolder, "ledger");
+        this.segmentMaxBytes = segmentMaxBytes;
+        load();
+    }
+
+    /**
+     * Records a completed purchase. This only queues the entry, it is written by the next {@link #flush()}.
+     */
+    @Override
+    public void onTrade(UUID ownerUUID, String shopName, UUID buyerUUID, ItemStack sold, ItemStack cost) {
+        record(new LedgerEntry(System.currentTimeMillis(), ownerUUID, shopName, buyerUUID,
+                sold.getType().getKey().getKey(), ItemFingerprint.of(sold).getHash(), sold.getAmount(),
+                cost.getType().getKey().getKey(), ItemFingerprint.of(cost).getHash(), cost.getAmount()));
+    }
+
+    /**
+     * Queues an entry to be written by the next {@link #flush()}.
+     *
+     * @param entry The entry to record.
+     */
+    void record(LedgerEntry entry) {
+        pending.add(entry);
+    }
+
+    /**
+     * @return True if there are recorded purchases that have not been written yet.
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Writes every queued entry to the ledger, starting new segments as needed, and indexes the written records.
+     * Entries are only indexed once they are on disk, so queries never point past the end of a segment.
+     * If a write fails, whatever part of it reached the disk is cut off again, and the unwritten entries are queued
+     * ahead of newer ones for the next flush.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            List<LedgerEntry> batchEntries = new ArrayList<>();
+            List<Long> batchPositions = new ArrayList<>();
+            LedgerEntry entry;
+            LedgerEntry unbatched = null;
+            try {
+                while ((entry = pending.poll()) != null) {
+                    unbatched = entry;
+                    byte[] record = encode(entry);
+                    if (activeSegmentSize + batch.size() > 0 && activeSegmentSize + batch.size() + record.length > segmentMaxBytes) {
+                        // The record doesn't fit, write what is batched for this segment and start the next one
+                        writeBatch(batch, batchEntries, batchPositions);
+                        activeSegment++;
+                        activeSegmentSize = 0;
+                    }
+                    batchPositions.add(position(activeSegment, activeSegmentSize + batch.size()));
+                    batchEntries.add(entry);
+                    batch.write(record);
+                    unbatched = null;
+                }
+                writeBatch(batch, batchEntries, batchPositions);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while writing the transaction ledger: ", e);
+                discardPartialWrite();
+                if (unbatched != null) {
+                    pending.addFirst(unbatched);
+                }
+                for (int i = batchEntries.size() - 1; i >= 0; i--) {
+                    pending.addFirst(batchEntries.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the most recent purchases from a shop owner's shops.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param limit     The maximum number of entries to return.
+     * @return The entries, newest first.
+     */
+    public List<LedgerEntry> findByOwner(UUID ownerUUID, int limit) {
+        return query(byOwner, ownerUUID, limit);
+    }
+
+    /**
+     * Finds the most recent purchases made by a player.
+     *
+     * @param buyerUUID The UUID of the buyer.
+     * @param limit     The maximum number of entries to return.
+     * @return The entries, newest first.
+     */
+    public List<LedgerEntry> findByBuyer(UUID buyerUUID, int limit) {
+        return query(byBuyer, buyerUUID, limit);
+    }
+
+    /**
+     * Finds the most recent purchases of an item.
+     *
+     * @param item  The sold item to look for. The amount of the item is ignored.
+     * @param limit The maximum number of entries to return.
+     * @return The entries, newest first.
+     */
+    public List<LedgerEntry> findByItem(ItemStack item, int limit) {
+        return query(byItem, ItemFingerprint.of(item).getHash(), limit);
+    }
+
+    /**
+     * @return The number of purchases written to the ledger.
+     */
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    private <K> List<LedgerEntry> query(Map<K, PositionList> index, K key, int limit) {
+        long[] positions;
+        synchronized (this) {
+            PositionList list = index.get(key);
+            if (list == null) {
+                return Collections.emptyList();
+            }
+            positions = list.lastPositions(limit);
+        }
+        List<LedgerEntry> entries = new ArrayList<>(positions.length);
+        Map<Integer, RandomAccessFile> openSegments = new HashMap<>();
+        try {
+            // Newest first
+            for (int i = positions.length - 1; i >= 0; i--) {
+                int segment = (int) (positions[i] >>> OFFSET_BITS);
+                RandomAccessFile file = openSegments.get(segment);
+                if (file == null) {
+                    file = new RandomAccessFile(segmentFile(segment), "r");
+                    openSegments.put(segment, file);
+                }
+                file.seek((positions[i] & OFFSET_MASK) + Integer.BYTES);
+                entries.add(LedgerEntry.read(file));
+            }
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while reading the transaction ledger: ", e);
+        } finally {
+            for (RandomAccessFile file : openSegments.values()) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                    // Nothing was written through the file, so there is nothing to lose
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void writeBatch(ByteArrayOutputStream batch, List<LedgerEntry> entries, List<Long> positions) throws IOException {
+        if (batch.size() == 0) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(segmentFile(activeSegment), true)) {
+            batch.writeTo(out);
+            out.getFD().sync();
+        }
+        activeSegmentSize += batch.size();
+        synchronized (this) {
+            for (int i = 0; i < entries.size(); i++) {
+                index(entries.get(i), positions.get(i));
+            }
+        }
+        batch.reset();
+        entries.clear();
+        positions.clear();
+    }
+
+    /**
+     * Cuts the active segment back to its last fully written record after a failed write.
+     * If that fails too, the next records go to a new segment, and the broken tail is skipped when the ledger is
+     * loaded again.
+     */
+    private void discardPartialWrite() {
+        try (RandomAccessFile truncate = new RandomAccessFile(segmentFile(activeSegment), "rw")) {
+            truncate.setLength(activeSegmentSize);
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while repairing ledger segment " + activeSegment + ": ", e);
+            activeSegment++;
+            activeSegmentSize = 0;
+        }
+    }
+
+    private void index(LedgerEntry entry, long position) {
+        byOwner.computeIfAbsent(entry.getOwnerUUID(), k -> new PositionList()).add(position);
+        byBuyer.computeIfAbsent(entry.getBuyerUUID(), k -> new PositionList()).add(position);
+        byItem.computeIfAbsent(entry.getSoldHash(), k -> new PositionList()).add(position);
+        entryCount++;
+    }
+
+    private static byte[] encode(LedgerEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        entry.write(out);
+        byte[] record = bytes.toByteArray();
+        int length = record.length - Integer.BYTES;
+        record[0] = (byte) (length >>> 24);
+        record[1] = (byte) (length >>> 16);
+        record[2] = (byte) (length >>> 8);
+        record[3] = (byte) length;
+        return record;
+    }
+
+    private static long position(int segment, long offset) {
+        return ((long) segment << OFFSET_BITS) | offset;
+    }
+
+    private File segmentFile(int segment) {
+        return new File(ledgerFolder, String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Rebuilds the indexes from the segments on disk.
+     * A record cut short by a crash can only be at the end of the newest segment, and is truncated away. Older segments
+     * are sealed, so a damaged record in one is logged and skipped rather than cutting off everything after it.
+     */
+    private void load() {
+        if (!ledgerFolder.exists() && !ledgerFolder.mkdirs()) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while creating the ledger folder: " + ledgerFolder);
+            return;
+        }
+        List<Integer> segments = new ArrayList<>();
+        File[] files = ledgerFolder.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // Not one of our segments
+                }
+            }
+        }
+        Collections.sort(segments);
+        for (int i = 0; i < segments.size(); i++) {
+            activeSegment = segments.get(i);
+            activeSegmentSize = loadSegment(activeSegment, i == segments.size() - 1);
+        }
+    }
+
+    private long loadSegment(int segment, boolean newest) {
+        File file = segmentFile(segment);
+        long offset = 0;
+        long fileLength = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (offset + Integer.BYTES <= fileLength) {
+                int length = in.readInt();
+                if (length <= 0 || offset + Integer.BYTES + length > fileLength) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                try {
+                    index(LedgerEntry.read(new DataInputStream(new ByteArrayInputStream(record))), position(segment, offset));
+                } catch (IOException e) {
+                    Bukkit.getLogger().log(Level.WARNING, "Skipping a damaged record at offset " + offset + " of ledger segment " + file.getName() + ": ", e);
+                }
+                offset += Integer.BYTES + length;
+            }
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while reading ledger segment " + file.getName() + ": ", e);
+        }
+        if (offset < fileLength) {
+            if (!newest) {
+                // Nothing is appended to a sealed segment again, so leave the bytes for whoever inspects them
+                Bukkit.getLogger().log(Level.WARNING, "Ledger segment " + file.getName() + " has " + (fileLength - offset) + " unreadable bytes after offset " + offset + ", skipping them");
+                return offset;
+            }
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(offset);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while repairing ledger segment " + file.getName() + ": ", e);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * A growable list of record positions, kept as primitives to keep the indexes small.
+     */
+    private static final class PositionList {
+        private long[] positions = new long[4];
+        private int size;
+
+        void add(long position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        long[] lastPositions(int limit) {
+            int count = Math.min(limit, size);
+            return Arrays.copyOfRange(positions, size - count, size);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.listeners;
+
+import com.marketcraft.shops.ShopBlockIndex;
+import com.marketcraft.vaults.VaultRestockTask;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+
+/**
+ * Listener class that notices hoppers feeding shop-bound containers.
+ * It only queues the container for the {@link VaultRestockTask}, as this event fires for every item a hopper moves.
+ */
+public class HopperRestockListener implements Listener {
+    private final ShopBlockIndex shopBlockIndex;
+    private final VaultRestockTask vaultRestockTask;
+
+    public HopperRestockListener(ShopBlockIndex shopBlockIndex, VaultRestockTask vaultRestockTask) {
+        this.shopBlockIndex = shopBlockIndex;
+        this.vaultRestockTask = vaultRestockTask;
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryMoveItem(InventoryMoveItemEvent event) {
+        // The inventory location avoids creating a block state snapshot for every moved item
+        Location location = event.getDestination().getLocation();
+        if (location == null) {
+            return;
+        }
+        Block block = location.getBlock();
+        ShopBlockIndex.ShopBinding binding = shopBlockIndex.getBinding(block);
+        if (binding != null) {
+            vaultRestockTask.markPending(binding, block.getLocation());
+        }
+    }
+}
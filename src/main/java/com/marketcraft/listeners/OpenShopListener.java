@@ -10,10 +10,14 @@
 package com.marketcraft.listeners;
 
 import com.marketcraft.MarketCraft;
+import com.marketcraft.gui.PlayerOpenShopGUI;
 import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.shops.ShopIndex;
 import com.marketcraft.shops.ShopTransaction;
+import com.marketcraft.shops.TradeListener;
 import com.marketcraft.vaults.PlayerVaultManager;
 import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -37,12 +41,9 @@ public class OpenShopListener implements Listener {
     private final ShopTransaction shopTransaction;
     private final VaultLockManager vaultLockManager;
     private final MarketCraft marketCraft;
-    private static final int CONFIRM_SLOT = 16;
-    private static final int CANCEL_SLOT = 22;
-    private static final int OWNER_HEAD_SLOT = 4;
 
-    public OpenShopListener(PlayerVaultManager playerVaultManager, VaultLockManager vaultLockManager, MarketCraft marketCraft) {
-        this.shopTransaction = new ShopTransaction(playerVaultManager);
+    public OpenShopListener(PlayerVaultManager playerVaultManager, TradeListener tradeListener, ShopIndex shopIndex, VaultLockManager vaultLockManager, MarketCraft marketCraft) {
+        this.shopTransaction = new ShopTransaction(playerVaultManager, tradeListener, shopIndex);
         this.vaultLockManager = vaultLockManager;
         this.marketCraft = marketCraft;
     }
@@ -63,10 +64,12 @@ public class OpenShopListener implements Listener {
             event.setCancelled(true);
             Player player = (Player) event.getWhoClicked();
             int clickedSlot = event.getRawSlot();
-            if (clickedSlot == CONFIRM_SLOT) { // Buy button slot
+            int inventorySize = event.getInventory().getSize();
+            int trade = PlayerOpenShopGUI.getTradeForConfirmSlot(clickedSlot, inventorySize);
+            if (trade >= 0 && event.getCurrentItem() != null && event.getCurrentItem().getType() == Material.LIME_STAINED_GLASS_PANE) { // Buy button of a trade
                 // Retrieve the shop owner's UUID from the inventory
                 // This is used within the shop transaction logic to add and remove items from the shop owner's vault
-                ItemStack ownerIdentifier = event.getInventory().getItem(OWNER_HEAD_SLOT);
+                ItemStack ownerIdentifier = event.getInventory().getItem(PlayerOpenShopGUI.OWNER_HEAD_SLOT);
                 ItemMeta meta = Objects.requireNonNull(ownerIdentifier).getItemMeta();
                 PersistentDataContainer dataContainer = meta.getPersistentDataContainer();
                 NamespacedKey ownerKey = new NamespacedKey(marketCraft, "shopOwnerUUID");
@@ -75,8 +78,8 @@ public class OpenShopListener implements Listener {
                 NamespacedKey shopNameKey = new NamespacedKey(marketCraft, "shopName");
                 String shopName = dataContainer.get(shopNameKey, PersistentDataType.STRING);
                 // Sending the necessary information to the transaction handler
-                shopTransaction.processTransaction(player, event.getInventory(), shopOwnerUUID, shopName);
-            } else if (clickedSlot == CANCEL_SLOT) { // Close button slot
+                shopTransaction.processTransaction(player, event.getInventory(), shopOwnerUUID, shopName, trade);
+            } else if (clickedSlot == PlayerOpenShopGUI.getCancelSlot(inventorySize)) { // Close button slot
                 player.closeInventory();
             }
         }
@@ -96,7 +99,7 @@ public class OpenShopListener implements Listener {
         InventoryHolder holder = event.getInventory().getHolder();
         if (holder instanceof Player player && event.getView().title().equals(Component.text("Shop"))) {
             // Retrieve the shop owner's UUID and shop name from the inventory
-            ItemStack ownerIdentifier = event.getInventory().getItem(OWNER_HEAD_SLOT);
+            ItemStack ownerIdentifier = event.getInventory().getItem(PlayerOpenShopGUI.OWNER_HEAD_SLOT);
             if (ownerIdentifier != null && ownerIdentifier.hasItemMeta()) {
                 ItemMeta meta = ownerIdentifier.getItemMeta();
                 PersistentDataContainer dataContainer = meta.getPersistentDataContainer();
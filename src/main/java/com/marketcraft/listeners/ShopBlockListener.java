@@ -0,0 +1,114 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.listeners;
+
+import com.marketcraft.gui.PlayerOpenShopGUI;
+import com.marketcraft.shops.ShopBlockIndex;
+import com.marketcraft.shops.ShopIndex;
+import net.kyori.adventure.text.Component;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.inventory.EquipmentSlot;
+
+/**
+ * Listener class for the sign and container blocks bound to shops.
+ * It keeps the {@link ShopBlockIndex} in step with the loaded chunks, opens the shop when a bound block is
+ * right-clicked, and protects bound blocks from being broken by anyone but their owner.
+ */
+public class ShopBlockListener implements Listener {
+    private final ShopBlockIndex shopBlockIndex;
+    private final ShopIndex shopIndex;
+    private final PlayerOpenShopGUI playerOpenShopGUI;
+
+    public ShopBlockListener(ShopBlockIndex shopBlockIndex, ShopIndex shopIndex, PlayerOpenShopGUI playerOpenShopGUI) {
+        this.shopBlockIndex = shopBlockIndex;
+        this.shopIndex = shopIndex;
+        this.playerOpenShopGUI = playerOpenShopGUI;
+    }
+
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        shopBlockIndex.loadChunk(event.getChunk());
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        shopBlockIndex.unloadChunk(event.getChunk());
+    }
+
+    /**
+     * Opens the bound shop when a player right-clicks a shop block.
+     * The owner can still use the block itself, such as opening the chest, by sneaking while clicking.
+     *
+     * @param event The interact event.
+     */
+    @EventHandler
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        if (event.getAction() != Action.RIGHT_CLICK_BLOCK || event.getHand() != EquipmentSlot.HAND || event.getClickedBlock() == null) {
+            return;
+        }
+        Block block = event.getClickedBlock();
+        ShopBlockIndex.ShopBinding binding = shopBlockIndex.getBinding(block);
+        if (binding == null) {
+            return;
+        }
+        Player player = event.getPlayer();
+        if (player.getUniqueId().equals(binding.ownerUUID()) && player.isSneaking()) {
+            return;
+        }
+        // Drop bindings left behind by removed shops or by blocks that were replaced
+        if (shopIndex.getShop(binding.ownerUUID(), binding.shopName()) == null || !ShopBlockIndex.isShopBlock(block)) {
+            shopBlockIndex.unbind(block);
+            return;
+        }
+        event.setCancelled(true);
+        playerOpenShopGUI.openPlayerShopGUI(player, binding.ownerUUID(), binding.shopName());
+    }
+
+    /**
+     * Only lets the owner or an admin break a shop block, which also unbinds it.
+     *
+     * @param event The block break event.
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        ShopBlockIndex.ShopBinding binding = shopBlockIndex.getBinding(event.getBlock());
+        if (binding == null) {
+            return;
+        }
+        Player player = event.getPlayer();
+        if (!player.getUniqueId().equals(binding.ownerUUID()) && !player.hasPermission("marketcraft.admin")) {
+            event.setCancelled(true);
+            player.sendMessage(Component.text("This block belongs to the shop '" + binding.shopName() + "'."));
+            return;
+        }
+        shopBlockIndex.unbind(event.getBlock());
+        player.sendMessage(Component.text("The block is no longer bound to shop '" + binding.shopName() + "'."));
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        event.blockList().removeIf(block -> shopBlockIndex.getBinding(block) != null);
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        event.blockList().removeIf(block -> shopBlockIndex.getBinding(block) != null);
+    }
+}
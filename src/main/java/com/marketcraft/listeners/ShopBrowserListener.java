@@ -0,0 +1,72 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.listeners;
+
+import com.marketcraft.gui.ShopBrowserGUI;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+
+/**
+ * Listener class for handling inventory interactions within the MarketCraft plugin's marketplace interface.
+ * The marketplace is read-only, so every click and drag is cancelled and only used for paging and opening shops.
+ */
+public class ShopBrowserListener implements Listener {
+    private final ShopBrowserGUI shopBrowserGUI;
+
+    public ShopBrowserListener(ShopBrowserGUI shopBrowserGUI) {
+        this.shopBrowserGUI = shopBrowserGUI;
+    }
+
+    /**
+     * Handles click events within the marketplace interface.
+     *
+     * @param event The inventory click event.
+     */
+    @EventHandler
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (!(event.getWhoClicked() instanceof Player player)) {
+            return;
+        }
+        ShopBrowserGUI.BrowseSession session = shopBrowserGUI.getSession(player, event.getInventory());
+        if (session == null) {
+            return;
+        }
+        event.setCancelled(true);
+        shopBrowserGUI.handleClick(player, session, event.getRawSlot());
+    }
+
+    /**
+     * Prevents items from being dragged into the marketplace interface.
+     *
+     * @param event The inventory drag event.
+     */
+    @EventHandler
+    public void onInventoryDrag(InventoryDragEvent event) {
+        if (event.getWhoClicked() instanceof Player player && shopBrowserGUI.getSession(player, event.getInventory()) != null) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Forgets the browse session when the marketplace interface is closed.
+     *
+     * @param event The inventory close event.
+     */
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (event.getPlayer() instanceof Player player) {
+            shopBrowserGUI.endSession(player, event.getInventory());
+        }
+    }
+}
@@ -9,7 +9,9 @@
 
 package com.marketcraft.listeners;
 
+import com.marketcraft.gui.PlayerShopSetupGUI;
 import com.marketcraft.shops.PlayerShopManager;
+import com.marketcraft.shops.ShopTradeTable;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Material;
@@ -40,11 +42,6 @@ import java.util.Objects;
  */
 public class ShopSetupListener implements Listener {
     private final PlayerShopManager playerShopManager;
-    private static final int SELL_SLOT = 11;
-    private static final int CHARGE_SLOT = 16;
-    private static final int CANCEL_SLOT = 21;
-    private static final int CONFIRM_SLOT = 23;
-    private static final int SHOP_NAME_TAG_SLOT = 4;
 
     public ShopSetupListener(PlayerShopManager playerShopManager) {
         this.playerShopManager = playerShopManager;
@@ -64,13 +61,16 @@ public class ShopSetupListener implements Listener {
         if (holder instanceof Player player && event.getView().title().equals(Component.text("Shop Setup"))) {
             Inventory shopSetupInventory = event.getInventory();
             List<ItemStack> itemsToReturn = new ArrayList<>();
-            ItemStack itemToSell = shopSetupInventory.getItem(SELL_SLOT);
-            ItemStack itemToCharge = shopSetupInventory.getItem(CHARGE_SLOT);
-            if (itemToSell != null && itemToSell.getType() != Material.AIR) {
-                itemsToReturn.add(itemToSell);
-            }
-            if (itemToCharge != null && itemToCharge.getType() != Material.AIR) {
-                itemsToReturn.add(itemToCharge);
+            for (int trade = 0; trade < ShopTradeTable.MAX_TRADES; trade++) {
+                int rowStart = PlayerShopSetupGUI.getTradeRowStart(trade);
+                ItemStack itemToSell = shopSetupInventory.getItem(rowStart + PlayerShopSetupGUI.SELL_COLUMN);
+                ItemStack itemToCharge = shopSetupInventory.getItem(rowStart + PlayerShopSetupGUI.CHARGE_COLUMN);
+                if (itemToSell != null && itemToSell.getType() != Material.AIR) {
+                    itemsToReturn.add(itemToSell);
+                }
+                if (itemToCharge != null && itemToCharge.getType() != Material.AIR) {
+                    itemsToReturn.add(itemToCharge);
+                }
             }
             returnItemsToPlayer(player, itemsToReturn);
         }
@@ -144,15 +144,15 @@ public class ShopSetupListener implements Listener {
      */
     private void handleItemClick(InventoryClickEvent event, Player player) {
         int slot = event.getRawSlot();
+        if (PlayerShopSetupGUI.isItemSlot(slot)) {
+            // Allow interactions with the item slots of every trade
+            return;
+        }
         switch (slot) {
-            case SELL_SLOT:
-            case CHARGE_SLOT:
-                // Allow interactions with these slots
-                return;
-            case CANCEL_SLOT:
+            case PlayerShopSetupGUI.CANCEL_SLOT:
                 handleCancelSelectionClick(player, event);
                 break;
-            case CONFIRM_SLOT:
+            case PlayerShopSetupGUI.CONFIRM_SLOT:
                 handleConfirmSelectionClick(player, event);
                 break;
             default:
@@ -178,23 +178,36 @@ public class ShopSetupListener implements Listener {
     /**
      * Handles the confirmation of shop setup by the player.
      * Validates the setup, saves the shop details, and notifies the player upon successful setup.
+     * Every row with both items becomes a trade, rows left empty are skipped.
      *
      * @param player The player confirming the shop setup.
      * @param event  The inventory click event.
      */
     private void handleConfirmSelectionClick(Player player, InventoryClickEvent event) {
         Inventory shopSetupInventory = event.getInventory();
-        ItemStack itemToSell = shopSetupInventory.getItem(SELL_SLOT);
-        ItemStack itemToCharge = shopSetupInventory.getItem(CHARGE_SLOT);
-        ItemStack shopNameItem = shopSetupInventory.getItem(SHOP_NAME_TAG_SLOT);
+        ItemStack shopNameItem = shopSetupInventory.getItem(PlayerShopSetupGUI.SHOP_NAME_TAG_SLOT);
         ItemMeta shopNameMeta = Objects.requireNonNull(shopNameItem).getItemMeta();
         Component displayNameComponent = Objects.requireNonNull(shopNameMeta.displayName());
         String shopName = PlainTextComponentSerializer.plainText().serialize(displayNameComponent);
-        if (itemToSell != null && itemToCharge != null) {
-            playerShopManager.savePlayerShop(player, shopName, itemToSell, itemToCharge);
-            player.sendMessage(Component.text("Shop '" + shopName + "' setup confirmed!"));
+        List<ItemStack> itemsToSell = new ArrayList<>();
+        List<ItemStack> itemsToCharge = new ArrayList<>();
+        boolean incompleteTrade = false;
+        for (int trade = 0; trade < ShopTradeTable.MAX_TRADES; trade++) {
+            int rowStart = PlayerShopSetupGUI.getTradeRowStart(trade);
+            ItemStack itemToSell = shopSetupInventory.getItem(rowStart + PlayerShopSetupGUI.SELL_COLUMN);
+            ItemStack itemToCharge = shopSetupInventory.getItem(rowStart + PlayerShopSetupGUI.CHARGE_COLUMN);
+            if (itemToSell != null && itemToCharge != null) {
+                itemsToSell.add(itemToSell);
+                itemsToCharge.add(itemToCharge);
+            } else if (itemToSell != null || itemToCharge != null) {
+                incompleteTrade = true;
+            }
+        }
+        if (incompleteTrade || itemsToSell.isEmpty()) {
+            player.sendMessage(Component.text("Please place items in both the 'item to sell' and 'item to charge' slots of every trade."));
         } else {
-            player.sendMessage(Component.text("Please place items in both the 'item to sell' and 'item to charge' slots."));
+            playerShopManager.savePlayerShop(player, shopName, ShopTradeTable.of(itemsToSell, itemsToCharge));
+            player.sendMessage(Component.text("Shop '" + shopName + "' setup confirmed with " + itemsToSell.size() + (itemsToSell.size() == 1 ? " trade!" : " trades!")));
         }
         player.closeInventory();
     }
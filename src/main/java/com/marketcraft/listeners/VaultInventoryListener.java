@@ -10,9 +10,16 @@
 package com.marketcraft.listeners;
 
 import com.marketcraft.MarketCraft;
+import com.marketcraft.gui.PlayerVaultGUI;
+import com.marketcraft.gui.VaultSlotRouter;
 import com.marketcraft.locks.ShopLockManager;
 import com.marketcraft.shops.PlayerShopManager;
+import com.marketcraft.shops.ShopTradeTable;
+import com.marketcraft.util.ItemFingerprint;
 import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultLayout;
+import com.marketcraft.vaults.VaultSession;
+import com.marketcraft.vaults.VaultSessionManager;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
@@ -28,6 +35,7 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles inventory interactions within the player's vault in the MarketCraft plugin.
@@ -40,24 +48,29 @@ import java.util.*;
  * - Moving items into and out of the vault, considering both the type of item (selling or buying) and available space.
  * - Returning invalid items to the player's inventory when the vault is closed.
  * - Saving the contents of the vault upon closing.
- * - Preventing certain global and menu-specific actions within the inventory to maintain consistency and prevent errors.
+ * - Moving every stack of an item type at once on shift-clicks and double-clicks.
+ * - Turning the page of vaults with several pages.
+ * - Preventing menu-specific actions within the inventory to maintain consistency and prevent errors.
  * <p>
- * It utilizes sets of predefined slots for selling and buying items to maintain order in the vault inventory.
+ * Every page has the same layout, so items are placed on the selling or buying side of whichever page is open
+ * through the precomputed slot masks of {@link VaultSlotRouter}.
  */
 public class VaultInventoryListener implements Listener {
     private final PlayerVaultManager playerVaultManager;
     private final PlayerShopManager playerShopManager;
     private final ShopLockManager shopLockManager;
+    private final VaultSessionManager vaultSessionManager;
+    private final PlayerVaultGUI playerVaultGUI;
     private final MarketCraft marketCraft;
-    private static final Set<Integer> GUI_SLOTS = Set.of(4, 13, 22, 31, 40, 49);
-    private static final Set<Integer> SELLING_SLOTS = new LinkedHashSet<>(Arrays.asList(0, 1, 2, 3, 9, 10, 11, 12, 18, 19, 20, 21, 27, 28, 29, 30, 36, 37, 38, 39, 45, 46, 47, 48));
-    private static final Set<Integer> BUYING_SLOTS = new LinkedHashSet<>(Arrays.asList(5, 6, 7, 8, 14, 15, 16, 17, 23, 24, 25, 26, 32, 33, 34, 35, 41, 42, 43, 44, 50, 51, 52, 53));
     private static final int INFO_BOOK_SLOT = 4;
+    private final Map<UUID, ClickedItem> lastClickedItems = new ConcurrentHashMap<>();
 
-    public VaultInventoryListener(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, ShopLockManager shopLockManager, MarketCraft marketCraft) {
+    public VaultInventoryListener(PlayerVaultManager playerVaultManager, PlayerShopManager playerShopManager, ShopLockManager shopLockManager, VaultSessionManager vaultSessionManager, PlayerVaultGUI playerVaultGUI, MarketCraft marketCraft) {
         this.playerVaultManager = playerVaultManager;
         this.playerShopManager = playerShopManager;
         this.shopLockManager = shopLockManager;
+        this.vaultSessionManager = vaultSessionManager;
+        this.playerVaultGUI = playerVaultGUI;
         this.marketCraft = marketCraft;
     }
 
@@ -79,6 +92,23 @@ public class VaultInventoryListener implements Listener {
         return null; // Return null if the item doesn't exist or doesn't have the metadata
     }
 
+    /**
+     * Retrieves the open page from the info book in the inventory.
+     *
+     * @param inventory The inventory containing the item with the page metadata.
+     * @return The page number starting at 0, which is the first page if the metadata is missing.
+     */
+    private int getPageFromItem(Inventory inventory) {
+        ItemStack item = inventory.getItem(VaultInventoryListener.INFO_BOOK_SLOT);
+        if (item != null && item.hasItemMeta()) {
+            Integer page = item.getItemMeta().getPersistentDataContainer().get(new NamespacedKey(marketCraft, "vaultPage"), PersistentDataType.INTEGER);
+            if (page != null) {
+                return page;
+            }
+        }
+        return 0;
+    }
+
     /**
      * Handles player clicks within the vault inventory interface.
      * This method manages the logic for adding or removing items from the vault,
@@ -102,22 +132,154 @@ public class VaultInventoryListener implements Listener {
         if (!isVaultGUI) {
             return;
         }
-        preventInvalidGlobalActions(event);
-        if (event.isCancelled()) {
+        if (isBulkClick(event.getClick())) {
+            event.setCancelled(true);
+            if (isTopInventory) {
+                moveAllOutOfVault(event);
+            } else if (isBottomInventory) {
+                String shopName = getShopNameFromItem(player.getOpenInventory().getTopInventory());
+                moveAllIntoVault(event, shopName);
+            }
             return;
         }
+        lastClickedItems.remove(player.getUniqueId());
         if (isTopInventory) {
+            if (turnPage(event)) {
+                return;
+            }
             preventInvalidMenuSpecificActions(event);
             if (event.isCancelled()) {
                 return;
             }
+            rememberClickedItem(event);
             moveItemOutOfVault(event);
         } else if (isBottomInventory) {
             String shopName = getShopNameFromItem(player.getOpenInventory().getTopInventory());
+            rememberClickedItem(event);
             moveItemIntoVault(event, shopName);
         }
     }
 
+    /**
+     * Opens the previous or next page of the vault when its button in the divider was clicked.
+     * The open page is closed first, which saves it and releases the shop, and the other page is then opened
+     * like any vault, so only one page of a vault is ever loaded and open at a time.
+     *
+     * @param event The click in the vault.
+     * @return True if a page button was clicked.
+     */
+    private boolean turnPage(InventoryClickEvent event) {
+        int slot = event.getSlot();
+        if (slot != PlayerVaultGUI.PREVIOUS_PAGE_SLOT && slot != PlayerVaultGUI.NEXT_PAGE_SLOT) {
+            return false;
+        }
+        event.setCancelled(true);
+        Inventory vaultInventory = event.getInventory();
+        int page = getPageFromItem(vaultInventory) + (slot == PlayerVaultGUI.NEXT_PAGE_SLOT ? 1 : -1);
+        if (page < 0 || page >= playerVaultManager.getLayout().getPages()) {
+            return true; // This end of the vault has no button, only the divider
+        }
+        Player player = (Player) event.getWhoClicked();
+        String shopName = getShopNameFromItem(vaultInventory);
+        // Inventories can't be switched from within a click, so turn the page on the next tick
+        marketCraft.getPlatformScheduler().runForEntity(player, () -> {
+            player.closeInventory();
+            playerVaultGUI.openVault(player, shopName, page);
+        });
+        return true;
+    }
+
+    /**
+     * Remembers the item a single click moved, since the click that precedes a double-click has already
+     * moved the stack by the time the double-click arrives.
+     *
+     * @param event The single click.
+     */
+    private void rememberClickedItem(InventoryClickEvent event) {
+        ItemStack clickedItem = event.getCurrentItem();
+        if (clickedItem != null && clickedItem.getType() != Material.AIR) {
+            lastClickedItems.put(event.getWhoClicked().getUniqueId(), new ClickedItem(clickedItem.clone(), event.getRawSlot()));
+        }
+    }
+
+    /**
+     * @param event The shift-click or double-click.
+     * @return The item the bulk click refers to, or null if there is none.
+     */
+    private ClickedItem getBulkClickedItem(InventoryClickEvent event) {
+        ItemStack clickedItem = event.getCurrentItem();
+        if (clickedItem != null && clickedItem.getType() != Material.AIR) {
+            return new ClickedItem(clickedItem.clone(), event.getRawSlot());
+        }
+        return event.getClick() == ClickType.DOUBLE_CLICK ? lastClickedItems.remove(event.getWhoClicked().getUniqueId()) : null;
+    }
+
+    /**
+     * Moves every stack of the clicked item type from one side of the vault into the player's inventory.
+     * Stacks that don't fit stay in the vault.
+     *
+     * @param event The shift-click or double-click in the vault.
+     */
+    private void moveAllOutOfVault(InventoryClickEvent event) {
+        ClickedItem clicked = getBulkClickedItem(event);
+        long sideMask = clicked != null ? VaultSlotRouter.sideOf(clicked.rawSlot()) : 0;
+        if (sideMask == 0) {
+            return; // Nothing was clicked, or the divider was
+        }
+        Inventory vaultInventory = event.getInventory();
+        Inventory playerInventory = event.getWhoClicked().getInventory();
+        long matching = VaultSlotRouter.matchingSlots(vaultInventory, sideMask, ItemFingerprint.of(clicked.item()));
+        for (; matching != 0; matching &= matching - 1) {
+            int slot = Long.numberOfTrailingZeros(matching);
+            ItemStack itemInSlot = Objects.requireNonNull(vaultInventory.getItem(slot));
+            HashMap<Integer, ItemStack> remainingItems = playerInventory.addItem(itemInSlot.clone());
+            if (!remainingItems.isEmpty()) {
+                // The player's inventory is full, leave the rest in the vault
+                itemInSlot.setAmount(remainingItems.values().iterator().next().getAmount());
+                return;
+            }
+            vaultInventory.setItem(slot, null);
+        }
+    }
+
+    /**
+     * Moves every stack of the clicked item type from the player's inventory into the matching side of the vault.
+     * The vault side is scanned once, after which each stack is placed through the precomputed slot masks.
+     *
+     * @param event    The shift-click or double-click in the player's inventory.
+     * @param shopName The name of the shop associated with the vault.
+     */
+    private void moveAllIntoVault(InventoryClickEvent event, String shopName) {
+        ClickedItem clicked = getBulkClickedItem(event);
+        if (clicked == null) {
+            return;
+        }
+        Player player = (Player) event.getWhoClicked();
+        ShopTradeTable trades = playerShopManager.getShopTrades(player.getUniqueId(), shopName);
+        ItemStack item = clicked.item();
+        long sideMask = trades == null ? 0 : trades.sells(item) ? VaultSlotRouter.SELLING_MASK : trades.charges(item) ? VaultSlotRouter.BUYING_MASK : 0;
+        if (sideMask == 0) {
+            player.sendMessage(Component.text("This item cannot be placed in the vault."));
+            return;
+        }
+        VaultSlotRouter.Route route = VaultSlotRouter.route(event.getInventory(), sideMask, item);
+        ItemFingerprint fingerprint = ItemFingerprint.of(item);
+        ItemStack[] contents = player.getInventory().getStorageContents();
+        for (int slot = 0; slot < contents.length && !route.isFull(); slot++) {
+            ItemStack stack = contents[slot];
+            if (stack == null || !fingerprint.matches(stack)) {
+                continue;
+            }
+            int added = route.add(stack.getAmount());
+            stack.setAmount(stack.getAmount() - added);
+            contents[slot] = stack.getAmount() > 0 ? stack : null;
+        }
+        player.getInventory().setStorageContents(contents);
+        if (route.isFull()) {
+            player.sendMessage(Component.text("There is no more space in the vault for this item."));
+        }
+    }
+
     /**
      * Handles moving an item out of the vault and into the player's inventory.
      * If the player's inventory is full, the item amount in the vault is adjusted accordingly.
@@ -157,62 +319,32 @@ public class VaultInventoryListener implements Listener {
         Player player = (Player) event.getWhoClicked();
         ItemStack clickedItem = event.getCurrentItem();
         Inventory vaultInventory = event.getInventory();
-        ItemStack[] shopItems = playerShopManager.getPlayerShopItems(player.getUniqueId(), shopName);
+        ShopTradeTable trades = playerShopManager.getShopTrades(player.getUniqueId(), shopName);
         if (clickedItem == null || clickedItem.getType() == Material.AIR) {
             return; // No item was clicked or the slot is empty
         }
-        // Determine if the clicked item is a selling or buying item
-        ItemStack sellingItem = shopItems[0];
-        ItemStack buyingItem = shopItems[1];
-        boolean isSellingItem = sellingItem != null && sellingItem.isSimilar(clickedItem);
-        boolean isBuyingItem = buyingItem != null && buyingItem.isSimilar(clickedItem);
-        Set<Integer> appropriateSlots = isSellingItem ? SELLING_SLOTS : (isBuyingItem ? BUYING_SLOTS : Collections.emptySet());
-        if (appropriateSlots.isEmpty()) {
+        // Determine if the clicked item is sold or bought by any trade of the shop
+        long sideMask = trades == null ? 0 : trades.sells(clickedItem) ? VaultSlotRouter.SELLING_MASK : trades.charges(clickedItem) ? VaultSlotRouter.BUYING_MASK : 0;
+        if (sideMask == 0) {
             player.sendMessage(Component.text("This item cannot be placed in the vault."));
             return;
         }
-        ItemStack copyOfClickedItem = clickedItem.clone();
-        int amountToAdd = copyOfClickedItem.getAmount();
-        for (int slot : appropriateSlots) {
-            ItemStack itemInSlot = vaultInventory.getItem(slot);
-            if (itemInSlot != null && itemInSlot.isSimilar(copyOfClickedItem) && itemInSlot.getAmount() < itemInSlot.getMaxStackSize()) {
-                int amountCanAdd = itemInSlot.getMaxStackSize() - itemInSlot.getAmount();
-                int amountWillAdd = Math.min(amountToAdd, amountCanAdd);
-                itemInSlot.setAmount(itemInSlot.getAmount() + amountWillAdd);
-                amountToAdd -= amountWillAdd;
-                if (amountToAdd == 0) {
-                    event.setCurrentItem(new ItemStack(Material.AIR));
-                    return; // All items have been added
-                }
-            }
-        }
-        if (amountToAdd > 0) {
-            Optional<Integer> emptySlotIndex = appropriateSlots.stream()
-                    .filter(slot -> vaultInventory.getItem(slot) == null || Objects.requireNonNull(vaultInventory.getItem(slot)).getType() == Material.AIR)
-                    .findFirst();
-            if (emptySlotIndex.isPresent()) {
-                copyOfClickedItem.setAmount(amountToAdd);
-                vaultInventory.setItem(emptySlotIndex.get(), copyOfClickedItem);
-                event.setCurrentItem(new ItemStack(Material.AIR));
-            } else {
-                player.sendMessage(Component.text("There is no available space in the vault for this item."));
-                clickedItem.setAmount(amountToAdd); // Adjust the amount on the original item to reflect what couldn't be added
-            }
+        // Top up similar stacks on the side first, then use its first empty slot
+        int amountLeft = clickedItem.getAmount() - VaultSlotRouter.route(vaultInventory, sideMask, clickedItem).add(clickedItem.getAmount());
+        if (amountLeft == 0) {
+            event.setCurrentItem(new ItemStack(Material.AIR)); // All items have been added
+        } else {
+            player.sendMessage(Component.text("There is no available space in the vault for this item."));
+            clickedItem.setAmount(amountLeft); // Adjust the amount on the original item to reflect what couldn't be added
         }
     }
 
     /**
-     * Cancels invalid global actions within the vault inventory, such as shift-clicking or double-clicking,
-     * to maintain the inventory's integrity.
-     *
-     * @param event The inventory click event to be checked for invalid actions.
+     * @param click The type of click.
+     * @return True for the clicks that move a whole item type at once: shift-clicks and double-clicks.
      */
-    private void preventInvalidGlobalActions(InventoryClickEvent event) {
-        if (event.getClick() == ClickType.SHIFT_LEFT
-                || event.getClick() == ClickType.SHIFT_RIGHT
-                || event.getClick() == ClickType.DOUBLE_CLICK) {
-            event.setCancelled(true);
-        }
+    private static boolean isBulkClick(ClickType click) {
+        return click == ClickType.SHIFT_LEFT || click == ClickType.SHIFT_RIGHT || click == ClickType.DOUBLE_CLICK;
     }
 
     /**
@@ -223,7 +355,7 @@ public class VaultInventoryListener implements Listener {
      */
     private void preventInvalidMenuSpecificActions(InventoryClickEvent event) {
         // These slots are menu items and should not be interacted with
-        if (GUI_SLOTS.contains(event.getSlot())) {
+        if (VaultLayout.isDividerSlot(event.getSlot())) {
             event.setCancelled(true);
         }
     }
@@ -248,21 +380,34 @@ public class VaultInventoryListener implements Listener {
             String shopName = getShopNameFromItem(closedInventory);
             UUID playerUUID = player.getUniqueId();
             shopLockManager.unlockShop(playerUUID, shopName, playerUUID);
+            lastClickedItems.remove(playerUUID);
         }
     }
 
     /**
      * Saves the contents of the vault when the inventory is closed.
      * This method first removes any invalid items that are not part of the shop's stock,
-     * then saves the remaining valid contents of the vault.
+     * then diffs the remaining contents against the snapshot taken when the vault was opened.
+     * Nothing is written if the vault was only looked at, otherwise only the changed slots are saved.
      *
      * @param closedInventory The inventory that is being closed.
      * @param player          The player who owns the vault.
      */
     private void saveVaultContents(Inventory closedInventory, Player player) {
         String shopName = getShopNameFromItem(closedInventory);
+        int page = getPageFromItem(closedInventory);
         returnInvalidItems(player, closedInventory, shopName);
-        playerVaultManager.savePlayerVault(player, closedInventory, shopName);
+        VaultSession session = vaultSessionManager.endSession(player.getUniqueId(), shopName);
+        if (session == null) {
+            // No snapshot to diff against, fall back to saving the whole page
+            playerVaultManager.savePlayerVault(player, closedInventory, shopName, page);
+            return;
+        }
+        // Slots already written by the autosave are part of the snapshot and are not reported again
+        Map<Integer, ItemStack> changedSlots = session.collectChanges();
+        if (!changedSlots.isEmpty()) {
+            playerVaultManager.savePlayerVaultSlots(player, shopName, session.getPage(), changedSlots);
+        }
     }
 
     /**
@@ -275,21 +420,15 @@ public class VaultInventoryListener implements Listener {
      * @param shopName  The name of the shop associated with the inventory.
      */
     private void returnInvalidItems(Player player, Inventory inventory, String shopName) {
-        ItemStack[] shopItems = playerShopManager.getPlayerShopItems(player.getUniqueId(), shopName);
+        ShopTradeTable trades = playerShopManager.getShopTrades(player.getUniqueId(), shopName);
         // Iterate over the inventory slots
         for (int i = 0; i < inventory.getSize(); i++) {
-            if (!GUI_SLOTS.contains(i)) {
+            if (!VaultLayout.isDividerSlot(i)) {
                 ItemStack item = inventory.getItem(i);
                 // Check if the slot is not empty
                 if (item != null && item.getType() != Material.AIR) {
-                    // Check if the item is a shop item
-                    boolean isShopItem = false;
-                    for (ItemStack shopItem : shopItems) {
-                        if (shopItem != null && shopItem.isSimilar(item)) {
-                            isShopItem = true;
-                            break;
-                        }
-                    }
+                    // Check if the item is sold or charged by any trade of the shop
+                    boolean isShopItem = trades != null && (trades.sells(item) || trades.charges(item));
                     // If the item is not a shop item, return it to the player
                     if (!isShopItem) {
                         HashMap<Integer, ItemStack> unfittedItems = player.getInventory().addItem(item.clone());
@@ -303,4 +442,10 @@ public class VaultInventoryListener implements Listener {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * An item moved by a click, with the raw slot it was clicked in.
+     */
+    private record ClickedItem(ItemStack item, int rawSlot) {
+    }
+}
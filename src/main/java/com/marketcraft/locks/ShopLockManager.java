@@ -9,7 +9,6 @@
 
 package com.marketcraft.locks;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -30,10 +29,14 @@ public class ShopLockManager {
      * @param shopName      The name of the shop to be locked.
      * @param playerUUID    The UUID of the player who is locking the shop.
      */
-    public synchronized void lockShop(UUID shopOwnerUUID, String shopName, UUID playerUUID) {
+    public void lockShop(UUID shopOwnerUUID, String shopName, UUID playerUUID) {
+        // compute is atomic per key, so concurrent lock and unlock calls from different region threads can't interleave
         shopStatus.computeIfAbsent(shopOwnerUUID, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(shopName, k -> new HashSet<>())
-                .add(playerUUID);
+                .compute(shopName, (k, playersWithAccess) -> {
+                    Set<UUID> players = playersWithAccess != null ? playersWithAccess : ConcurrentHashMap.newKeySet();
+                    players.add(playerUUID);
+                    return players;
+                });
     }
 
     /**
@@ -44,16 +47,13 @@ public class ShopLockManager {
      * @param shopName      The name of the shop to be unlocked.
      * @param playerUUID    The UUID of the player who is unlocking the shop.
      */
-    public synchronized void unlockShop(UUID shopOwnerUUID, String shopName, UUID playerUUID) {
+    public void unlockShop(UUID shopOwnerUUID, String shopName, UUID playerUUID) {
         Map<String, Set<UUID>> shopMap = shopStatus.get(shopOwnerUUID);
         if (shopMap != null) {
-            Set<UUID> playersWithAccess = shopMap.get(shopName);
-            if (playersWithAccess != null) {
+            shopMap.computeIfPresent(shopName, (k, playersWithAccess) -> {
                 playersWithAccess.remove(playerUUID);
-                if (playersWithAccess.isEmpty()) {
-                    shopMap.remove(shopName);
-                }
-            }
+                return playersWithAccess.isEmpty() ? null : playersWithAccess;
+            });
         }
     }
 
@@ -66,6 +66,10 @@ public class ShopLockManager {
      */
     public boolean isLocked(UUID shopOwnerUUID, String shopName) {
         Map<String, Set<UUID>> shopMap = shopStatus.get(shopOwnerUUID);
-        return shopMap != null && !shopMap.getOrDefault(shopName, new HashSet<>()).isEmpty();
+        if (shopMap == null) {
+            return false;
+        }
+        Set<UUID> playersWithAccess = shopMap.get(shopName);
+        return playersWithAccess != null && !playersWithAccess.isEmpty();
     }
 }
\ No newline at end of file
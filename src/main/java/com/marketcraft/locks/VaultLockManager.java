@@ -9,7 +9,6 @@
 
 package com.marketcraft.locks;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -30,10 +29,14 @@ public class VaultLockManager {
      * @param vaultName      The name of the vault to be locked.
      * @param playerUUID     The UUID of the player who is locking the vault.
      */
-    public synchronized void lockVault(UUID vaultOwnerUUID, String vaultName, UUID playerUUID) {
+    public void lockVault(UUID vaultOwnerUUID, String vaultName, UUID playerUUID) {
+        // compute is atomic per key, so concurrent lock and unlock calls from different region threads can't interleave
         vaultStatus.computeIfAbsent(vaultOwnerUUID, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(vaultName, k -> new HashSet<>())
-                .add(playerUUID);
+                .compute(vaultName, (k, playersWithAccess) -> {
+                    Set<UUID> players = playersWithAccess != null ? playersWithAccess : ConcurrentHashMap.newKeySet();
+                    players.add(playerUUID);
+                    return players;
+                });
     }
 
     /**
@@ -44,16 +47,13 @@ public class VaultLockManager {
      * @param vaultName      The name of the vault to be unlocked.
      * @param playerUUID     The UUID of the player who is unlocking the vault.
      */
-    public synchronized void unlockVault(UUID vaultOwnerUUID, String vaultName, UUID playerUUID) {
+    public void unlockVault(UUID vaultOwnerUUID, String vaultName, UUID playerUUID) {
         Map<String, Set<UUID>> vaultMap = vaultStatus.get(vaultOwnerUUID);
         if (vaultMap != null) {
-            Set<UUID> playersWithAccess = vaultMap.get(vaultName);
-            if (playersWithAccess != null) {
+            vaultMap.computeIfPresent(vaultName, (k, playersWithAccess) -> {
                 playersWithAccess.remove(playerUUID);
-                if (playersWithAccess.isEmpty()) {
-                    vaultMap.remove(vaultName);
-                }
-            }
+                return playersWithAccess.isEmpty() ? null : playersWithAccess;
+            });
         }
     }
 
@@ -66,6 +66,10 @@ public class VaultLockManager {
      */
     public boolean isLocked(UUID vaultOwnerUUID, String vaultName) {
         Map<String, Set<UUID>> vaultMap = vaultStatus.get(vaultOwnerUUID);
-        return vaultMap != null && !vaultMap.getOrDefault(vaultName, new HashSet<>()).isEmpty();
+        if (vaultMap == null) {
+            return false;
+        }
+        Set<UUID> playersWithAccess = vaultMap.get(vaultName);
+        return playersWithAccess != null && !playersWithAccess.isEmpty();
     }
 }
\ No newline at end of file
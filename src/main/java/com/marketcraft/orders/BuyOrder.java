@@ -0,0 +1,116 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.orders;
+
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * A player's standing request to buy an amount of an item at a fixed price per item.
+ * The payment for the whole order is held in escrow when the order is posted. Fills move payment out of the
+ * escrow and add the bought items to the order, where they wait until the buyer collects them.
+ * <p>
+ * Orders are only mutated by the {@link BuyOrderEngine}, which guards them with its own monitor.
+ * While a fill is being applied to a shop's vault, its items and payment are moved from remaining and escrow to
+ * reserved and reservedEscrow, so no other fill or seller can claim them meanwhile.
+ */
+public final class BuyOrder {
+    private final long id;
+    private final UUID buyerUUID;
+    private final ItemStack item;
+    private final ItemStack paymentItem;
+    private final int pricePerItem;
+    private final long sequence;
+    private final ItemFingerprint itemFingerprint;
+    private final ItemFingerprint paymentFingerprint;
+    int remaining;
+    int filled;
+    int escrow;
+    int reserved;
+    int reservedEscrow;
+
+    BuyOrder(long id, UUID buyerUUID, ItemStack item, ItemStack paymentItem, int pricePerItem, long sequence, int remaining, int filled, int escrow) {
+        this.id = id;
+        this.buyerUUID = buyerUUID;
+        this.item = item.asOne();
+        this.paymentItem = paymentItem.asOne();
+        this.pricePerItem = pricePerItem;
+        this.sequence = sequence;
+        this.itemFingerprint = ItemFingerprint.of(this.item);
+        this.paymentFingerprint = ItemFingerprint.of(this.paymentItem);
+        this.remaining = remaining;
+        this.filled = filled;
+        this.escrow = escrow;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public UUID getBuyerUUID() {
+        return buyerUUID;
+    }
+
+    /**
+     * @return A single-item copy of the wanted item.
+     */
+    public ItemStack getItem() {
+        return item.clone();
+    }
+
+    /**
+     * @return A single-item copy of the item paid with.
+     */
+    public ItemStack getPaymentItem() {
+        return paymentItem.clone();
+    }
+
+    public int getPricePerItem() {
+        return pricePerItem;
+    }
+
+    /**
+     * @return The order in which orders were posted, used to break price ties.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public ItemFingerprint getItemFingerprint() {
+        return itemFingerprint;
+    }
+
+    public ItemFingerprint getPaymentFingerprint() {
+        return paymentFingerprint;
+    }
+
+    /**
+     * @return The amount of items still wanted, including those of fills being applied.
+     */
+    public int getRemaining() {
+        return remaining + reserved;
+    }
+
+    /**
+     * @return The amount of bought items waiting to be collected.
+     */
+    public int getFilled() {
+        return filled;
+    }
+
+    /**
+     * @return The amount of payment items still held in escrow, including those of fills being applied.
+     */
+    public int getEscrow() {
+        return escrow + reservedEscrow;
+    }
+}
@@ -0,0 +1,717 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.orders;
+
+import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.scheduler.PlatformScheduler;
+import com.marketcraft.scheduler.WorkScheduler;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopOrderBook;
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.util.InventoryUtils;
+import com.marketcraft.util.ItemCodec;
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.vaults.PlayerVaultManager;
+import com.marketcraft.vaults.VaultTransaction;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Matches buy orders against shop stock and against players selling with the sell command.
+ * <p>
+ * Open orders are kept in one book per pair of wanted item and payment item. Each book is a TreeSet in
+ * price-time priority, highest price first and oldest order first on equal prices, so posting and cancelling
+ * an order are O(log n) and the best bid is always the first entry.
+ * <p>
+ * Matching against shops is split in two. Fills are planned off the main thread under this engine's monitor, which
+ * reserves their items and escrow on the order without touching any vault. Each planned fill is then applied to the
+ * shop's vault as one {@link VaultTransaction} on the global thread, and settled back under the monitor, where the
+ * bought items are credited and whatever couldn't be bought is returned to the order. The monitor is never held
+ * during vault I/O.
+ * <p>
+ * Everything that ends up in a player's inventory, bought items, sale proceeds, refunds and unused escrow, is credited
+ * as a pending delivery first, and handed out on the player's own thread by {@link #deliver(Player)}. A delivery is
+ * only removed once the player actually received it, so nothing is lost if the player logs out in between.
+ * Orders and deliveries are saved to buy-orders.yml.
+ * <p>
+ * A fill touches two files, the shop's vault and the orders file, so it is journaled: before the vault is committed
+ * the fill gets a sequence number and the orders file is saved with it, and the vault transaction records the same
+ * number. After a crash, a journaled fill whose number reached the vault was bought, and one whose number didn't
+ * goes back to its order, so the escrow is never paid out twice or lost.
+ */
+public class BuyOrderEngine {
+    private static final Comparator<BuyOrder> PRICE_TIME_ORDER = Comparator
+            .comparingInt(BuyOrder::getPricePerItem).reversed()
+            .thenComparingLong(BuyOrder::getSequence);
+    // Claims shop vaults while a fill is applied, apart from the buyer's own claim if they have the shop open
+    private static final UUID MATCHING_CLAIMANT = UUID.nameUUIDFromBytes("MarketCraft buy order matching".getBytes(StandardCharsets.UTF_8));
+    // The name the sequence numbers of committed fills are recorded under in shop vaults
+    private static final String FILL_SEQUENCE = "buy-order-fills";
+    private final File ordersFile;
+    private final PlayerVaultManager playerVaultManager;
+    private final TradeListener tradeListener;
+    private final ShopOrderBook shopOrderBook;
+    private final ShopLockManager shopLockManager;
+    private final VaultLockManager vaultLockManager;
+    private final PlatformScheduler platformScheduler;
+    private final WorkScheduler workScheduler;
+    private final Map<ItemFingerprint, Map<ItemFingerprint, NavigableSet<BuyOrder>>> books = new HashMap<>();
+    private final Map<Long, BuyOrder> ordersById = new HashMap<>();
+    private final Map<UUID, List<ItemStack>> deliveries = new HashMap<>();
+    // Closed orders that still have fills being applied, whose reserved escrow is owed to the buyer
+    private final Set<BuyOrder> settling = new HashSet<>();
+    // Fills whose vault commit may have happened, by sequence number, saved as the journal
+    private final Map<Long, Committing> committing = new HashMap<>();
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final Object fileLock = new Object();
+    private long nextId = 1;
+    private long nextSequence = 1;
+    private long nextFillSequence = 1;
+
+    public BuyOrderEngine(File pluginFolder, PlayerVaultManager playerVaultManager, TradeListener tradeListener, ShopOrderBook shopOrderBook, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, PlatformScheduler platformScheduler, WorkScheduler workScheduler) {
+        this.ordersFile = new File(pluginFolder, "buy-orders.yml");
+        this.playerVaultManager = playerVaultManager;
+        this.tradeListener = tradeListener;
+        this.shopOrderBook = shopOrderBook;
+        this.shopLockManager = shopLockManager;
+        this.vaultLockManager = vaultLockManager;
+        this.platformScheduler = platformScheduler;
+        this.workScheduler = workScheduler;
+        load();
+    }
+
+    /**
+     * Posts a buy order. The caller must already have taken the escrow of quantity times price
+     * payment items from the buyer. The order is first matched against shop stock off the main thread,
+     * and whatever is left rests in the book.
+     *
+     * @param buyer        The player posting the order.
+     * @param item         The wanted item. The amount of the item is ignored.
+     * @param paymentItem  The item paid with. The amount of the item is ignored.
+     * @param pricePerItem The amount of payment items paid per wanted item.
+     * @param quantity     The amount of items wanted.
+     * @return The id of the new order.
+     */
+    public synchronized long postOrder(Player buyer, ItemStack item, ItemStack paymentItem, int pricePerItem, int quantity) {
+        BuyOrder order = new BuyOrder(nextId++, buyer.getUniqueId(), item, paymentItem, pricePerItem, nextSequence++, quantity, 0, quantity * pricePerItem);
+        ordersById.put(order.getId(), order);
+        getBook(order.getItemFingerprint(), order.getPaymentFingerprint()).add(order);
+        requestSave();
+        workScheduler.submitAsync(() -> {
+            List<Fill> fills = new ArrayList<>();
+            synchronized (this) {
+                if (ordersById.containsKey(order.getId())) {
+                    planFills(order, new HashMap<>(), fills);
+                }
+            }
+            applyFills(fills);
+        });
+        return order.getId();
+    }
+
+    /**
+     * Sells items to the best buy orders. The caller must already have taken the items from the seller.
+     * Matching runs off the main thread, and the proceeds as well as any unsold items are delivered afterwards.
+     *
+     * @param seller      The player selling.
+     * @param item        The item sold. The amount of the item is ignored.
+     * @param paymentItem The item the seller wants to be paid with. The amount of the item is ignored.
+     * @param quantity    The amount of items sold.
+     * @param minPrice    The lowest price per item the seller accepts.
+     */
+    public void sell(Player seller, ItemStack item, ItemStack paymentItem, int quantity, int minPrice) {
+        UUID sellerUUID = seller.getUniqueId();
+        ItemStack soldItem = item.asOne();
+        ItemStack payment = paymentItem.asOne();
+        workScheduler.submitAsync(() -> {
+            Set<UUID> credited = new HashSet<>();
+            synchronized (this) {
+                int left = quantity;
+                int earned = 0;
+                NavigableSet<BuyOrder> book = findBook(ItemFingerprint.of(soldItem), ItemFingerprint.of(payment));
+                Iterator<BuyOrder> bids = book != null ? book.iterator() : Collections.emptyIterator();
+                while (left > 0 && bids.hasNext()) {
+                    BuyOrder bid = bids.next();
+                    if (bid.getPricePerItem() < minPrice) {
+                        break; // Every later bid is cheaper still
+                    }
+                    if (bid.getBuyerUUID().equals(sellerUUID) || bid.remaining == 0) {
+                        continue; // Own bids, and bids whose rest is reserved for fills being applied
+                    }
+                    int fill = Math.min(bid.remaining, left);
+                    int paid = fill * bid.getPricePerItem();
+                    bid.remaining -= fill;
+                    bid.filled += fill;
+                    bid.escrow -= paid;
+                    credit(bid.getBuyerUUID(), soldItem, fill, credited);
+                    left -= fill;
+                    earned += paid;
+                    if (bid.remaining == 0 && bid.reserved == 0) {
+                        bids.remove();
+                        closeOrder(bid, credited);
+                    }
+                }
+                credit(sellerUUID, payment, earned, credited);
+                credit(sellerUUID, soldItem, left, credited);
+                requestSave();
+            }
+            finishMatching(credited);
+        });
+    }
+
+    /**
+     * Cancels an open order and refunds its remaining escrow.
+     *
+     * @param buyer   The player cancelling the order.
+     * @param orderId The id of the order.
+     * @return True if the order existed, belonged to the player and was cancelled.
+     */
+    public boolean cancelOrder(Player buyer, long orderId) {
+        Set<UUID> credited = new HashSet<>();
+        synchronized (this) {
+            BuyOrder order = ordersById.get(orderId);
+            if (order == null || !order.getBuyerUUID().equals(buyer.getUniqueId())) {
+                return false;
+            }
+            NavigableSet<BuyOrder> book = findBook(order.getItemFingerprint(), order.getPaymentFingerprint());
+            if (book != null) {
+                book.remove(order);
+            }
+            closeOrder(order, credited);
+            requestSave();
+        }
+        finishMatching(credited);
+        return true;
+    }
+
+    /**
+     * @param buyerUUID The UUID of the buyer.
+     * @return The open orders of the buyer, oldest first.
+     */
+    public synchronized List<BuyOrder> getOrders(UUID buyerUUID) {
+        List<BuyOrder> orders = new ArrayList<>();
+        for (BuyOrder order : ordersById.values()) {
+            if (order.getBuyerUUID().equals(buyerUUID)) {
+                orders.add(order);
+            }
+        }
+        orders.sort(Comparator.comparingLong(BuyOrder::getSequence));
+        return orders;
+    }
+
+    /**
+     * @param playerUUID The UUID of the player.
+     * @return True if items are waiting to be delivered to the player.
+     */
+    public synchronized boolean hasDeliveries(UUID playerUUID) {
+        return deliveries.containsKey(playerUUID);
+    }
+
+    /**
+     * Hands all pending deliveries to a player. This must run on the thread that owns the player.
+     * Items that don't fit in the inventory are dropped at the player's feet.
+     *
+     * @param player The player to deliver to.
+     * @return The number of item stacks delivered.
+     */
+    public int deliver(Player player) {
+        List<ItemStack> items;
+        synchronized (this) {
+            items = deliveries.remove(player.getUniqueId());
+            if (items == null) {
+                return 0;
+            }
+            requestSave();
+        }
+        for (ItemStack item : items) {
+            InventoryUtils.giveItems(player, item, item.getAmount());
+        }
+        return items.size();
+    }
+
+    /**
+     * Matches every resting order against shop stock again, best bids first.
+     * Shop stock changes all the time, so this is run periodically off the main thread.
+     */
+    public void matchRestingOrders() {
+        List<Fill> fills = new ArrayList<>();
+        synchronized (this) {
+            Map<ShopOrderBook.Offer, Integer> planned = new HashMap<>();
+            for (Map<ItemFingerprint, NavigableSet<BuyOrder>> booksByPayment : books.values()) {
+                for (NavigableSet<BuyOrder> book : booksByPayment.values()) {
+                    for (BuyOrder order : book) {
+                        if (order.remaining == 0) {
+                            continue; // Everything left is reserved for fills still being applied
+                        }
+                        // Once no shop is cheap enough for a bid, none is for any lower bid either
+                        if (!planFills(order, planned, fills)) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        applyFills(fills);
+    }
+
+    /**
+     * Plans fills of an order from the cheapest shops whose price does not exceed the order's price, and reserves
+     * their items and escrow on the order. No vault is read or written here.
+     *
+     * @param order   The order to fill.
+     * @param planned The lots already planned per offer in this pass, which are not counted as stock again.
+     * @param fills   Collects the planned fills.
+     * @return False if the cheapest offer in stock costs more than the order's price, so no lower bid can be filled
+     * either. A bid that got nothing for other reasons, such as its own shop or too little escrow, returns true.
+     */
+    private boolean planFills(BuyOrder order, Map<ShopOrderBook.Offer, Integer> planned, List<Fill> fills) {
+        boolean affordable = false;
+        int plannedItems = 0;
+        for (Map.Entry<ShopOrderBook.Offer, Integer> entry : planned.entrySet()) {
+            plannedItems += entry.getValue() * entry.getKey().getSellAmount();
+        }
+        // Ask for the stock planned in this pass as well, so offers used up by better bids don't hide the rest
+        List<ShopOrderBook.Offer> offers = shopOrderBook.getBestOffers(order.getItemFingerprint(), order.getPaymentFingerprint(), order.remaining + plannedItems);
+        for (ShopOrderBook.Offer offer : offers) {
+            if (order.remaining == 0) {
+                break;
+            }
+            int sellAmount = offer.getSellAmount();
+            int chargeAmount = offer.getChargeAmount();
+            if ((long) chargeAmount > (long) order.getPricePerItem() * sellAmount) {
+                break; // Offers are sorted by price, so every later offer is too expensive as well
+            }
+            affordable = true;
+            if (offer.getListing().getOwnerUUID().equals(order.getBuyerUUID())) {
+                continue;
+            }
+            int stockLots = offer.getStock() / sellAmount - planned.getOrDefault(offer, 0);
+            int lots = Math.min(stockLots, Math.min(order.remaining / sellAmount, order.escrow / chargeAmount));
+            if (lots <= 0) {
+                continue;
+            }
+            planned.merge(offer, lots, Integer::sum);
+            order.remaining -= lots * sellAmount;
+            order.escrow -= lots * chargeAmount;
+            order.reserved += lots * sellAmount;
+            order.reservedEscrow += lots * chargeAmount;
+            fills.add(new Fill(order, offer.getListing().getOwnerUUID(), offer.getListing().getShopName(), offer.getItemToSell(), offer.getItemToCharge(), lots));
+        }
+        return affordable;
+    }
+
+    /**
+     * Applies planned fills, each on the global thread, so vaults are only written by one matching thread at a time.
+     */
+    private void applyFills(List<Fill> fills) {
+        for (Fill fill : fills) {
+            platformScheduler.runGlobal(() -> applyFill(fill));
+        }
+    }
+
+    /**
+     * Buys as many of the planned lots as the shop can still sell, in one vault transaction under the owner's vault
+     * lock, exactly like a purchase in the shop GUI. The fill is journaled before the vault is committed, and settled
+     * before the vault lock is released, so the next fill of the same vault is only journaled once this one is
+     * settled. The fill is settled even if this fails.
+     */
+    private void applyFill(Fill fill) {
+        boolean settled = false;
+        try {
+            // Claim the vault like an open shop GUI would, and leave shops alone while their owner edits the vault
+            vaultLockManager.lockVault(fill.ownerUUID(), fill.shopName(), MATCHING_CLAIMANT);
+            ReentrantLock vaultLock = playerVaultManager.getVaultLock(fill.ownerUUID());
+            vaultLock.lock();
+            try {
+                if (shopLockManager.isLocked(fill.ownerUUID(), fill.shopName())) {
+                    return;
+                }
+                VaultTransaction transaction = playerVaultManager.beginTransaction(fill.ownerUUID());
+                if (transaction == null) {
+                    return;
+                }
+                int lots = buyLots(transaction, fill, fill.lots());
+                if (lots < fill.lots()) {
+                    // The lot that failed may be half applied, so apply only the lots that worked to a fresh copy
+                    transaction = Objects.requireNonNull(playerVaultManager.beginTransaction(fill.ownerUUID()));
+                    buyLots(transaction, fill, lots);
+                }
+                if (lots == 0) {
+                    return;
+                }
+                long fillSequence = journal(fill, lots);
+                if (fillSequence == 0) {
+                    return;
+                }
+                transaction.recordSequence(FILL_SEQUENCE, fillSequence);
+                boolean committed = playerVaultManager.commitTransactions(List.of(transaction));
+                settleFill(fill, committed ? lots : 0, fillSequence);
+                settled = true;
+                if (committed) {
+                    // Report all trades made with this shop for this fill as one
+                    ItemStack itemSold = fill.itemToSell().clone();
+                    ItemStack itemCharged = fill.itemToCharge().clone();
+                    itemSold.setAmount(itemSold.getAmount() * lots);
+                    itemCharged.setAmount(itemCharged.getAmount() * lots);
+                    tradeListener.onTrade(fill.ownerUUID(), fill.shopName(), fill.order().getBuyerUUID(), itemSold, itemCharged);
+                }
+            } finally {
+                vaultLock.unlock();
+                vaultLockManager.unlockVault(fill.ownerUUID(), fill.shopName(), MATCHING_CLAIMANT);
+            }
+        } finally {
+            if (!settled) {
+                settleFill(fill, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Journals lots of a fill that are about to be committed, and saves the orders file with them.
+     *
+     * @return The sequence number of the fill, or 0 if the journal couldn't be saved and the fill must not be committed.
+     */
+    private long journal(Fill fill, int lots) {
+        long fillSequence;
+        synchronized (this) {
+            fillSequence = nextFillSequence++;
+            committing.put(fillSequence, new Committing(fill, lots));
+        }
+        if (writeOrders()) {
+            return fillSequence;
+        }
+        synchronized (this) {
+            committing.remove(fillSequence);
+        }
+        return 0;
+    }
+
+    /**
+     * Buys lots of a fill in a vault transaction, stopping at the first lot that fails.
+     *
+     * @return The number of lots bought.
+     */
+    private static int buyLots(VaultTransaction transaction, Fill fill, int lots) {
+        ItemStack itemToSell = fill.itemToSell();
+        ItemStack itemToCharge = fill.itemToCharge();
+        for (int lot = 0; lot < lots; lot++) {
+            if (!transaction.removeItems(itemToSell, itemToSell.getAmount(), fill.shopName())
+                    || !transaction.addItems(itemToCharge, itemToCharge.getAmount(), fill.shopName())) {
+                return lot;
+            }
+        }
+        return lots;
+    }
+
+    /**
+     * Releases the reservation of an applied fill. The bought items are credited to the buyer, and the rest goes back
+     * to the order, or is refunded if the order was cancelled meanwhile.
+     *
+     * @param fill         The applied fill.
+     * @param bought       The number of lots that were bought.
+     * @param fillSequence The sequence number the fill was journaled with, or 0 if it wasn't.
+     */
+    private void settleFill(Fill fill, int bought, long fillSequence) {
+        Set<UUID> credited = new HashSet<>();
+        synchronized (this) {
+            committing.remove(fillSequence);
+            BuyOrder order = fill.order();
+            int sellAmount = fill.itemToSell().getAmount();
+            int chargeAmount = fill.itemToCharge().getAmount();
+            order.reserved -= fill.lots() * sellAmount;
+            order.reservedEscrow -= fill.lots() * chargeAmount;
+            order.filled += bought * sellAmount;
+            credit(order.getBuyerUUID(), fill.itemToSell(), bought * sellAmount, credited);
+            int unusedItems = (fill.lots() - bought) * sellAmount;
+            int unusedEscrow = (fill.lots() - bought) * chargeAmount;
+            if (ordersById.get(order.getId()) == order) {
+                order.remaining += unusedItems;
+                order.escrow += unusedEscrow;
+                if (order.remaining == 0 && order.reserved == 0) {
+                    NavigableSet<BuyOrder> book = findBook(order.getItemFingerprint(), order.getPaymentFingerprint());
+                    if (book != null) {
+                        book.remove(order);
+                    }
+                    closeOrder(order, credited);
+                }
+            } else {
+                credit(order.getBuyerUUID(), order.getPaymentItem(), unusedEscrow, credited);
+                if (order.reserved == 0) {
+                    settling.remove(order);
+                }
+            }
+            requestSave();
+        }
+        finishMatching(credited);
+    }
+
+    /**
+     * Removes a filled or cancelled order and refunds whatever escrow it has left.
+     * The order must already be removed from its book. Escrow reserved for fills still being applied is settled
+     * when they finish.
+     */
+    private void closeOrder(BuyOrder order, Set<UUID> credited) {
+        ordersById.remove(order.getId());
+        credit(order.getBuyerUUID(), order.getPaymentItem(), order.escrow, credited);
+        order.escrow = 0;
+        order.remaining = 0;
+        if (order.reserved > 0) {
+            settling.add(order);
+        }
+        NavigableSet<BuyOrder> book = findBook(order.getItemFingerprint(), order.getPaymentFingerprint());
+        if (book != null && book.isEmpty()) {
+            Map<ItemFingerprint, NavigableSet<BuyOrder>> booksByPayment = books.get(order.getItemFingerprint());
+            booksByPayment.remove(order.getPaymentFingerprint());
+            if (booksByPayment.isEmpty()) {
+                books.remove(order.getItemFingerprint());
+            }
+        }
+    }
+
+    private void credit(UUID playerUUID, ItemStack item, int amount, Set<UUID> credited) {
+        if (amount <= 0) {
+            return;
+        }
+        ItemStack delivery = item.clone();
+        delivery.setAmount(amount);
+        deliveries.computeIfAbsent(playerUUID, k -> new ArrayList<>()).add(delivery);
+        credited.add(playerUUID);
+    }
+
+    /**
+     * Hands out the deliveries of every online player that was credited, each on the player's own thread.
+     */
+    private void finishMatching(Set<UUID> credited) {
+        for (UUID playerUUID : credited) {
+            Player player = Bukkit.getPlayer(playerUUID);
+            if (player == null) {
+                continue; // Delivered when the player runs /marketcraft orders collect
+            }
+            platformScheduler.runForEntity(player, () -> {
+                if (deliver(player) > 0) {
+                    player.sendMessage(Component.text("You received items from the market."));
+                }
+            });
+        }
+    }
+
+    private NavigableSet<BuyOrder> getBook(ItemFingerprint itemFingerprint, ItemFingerprint paymentFingerprint) {
+        return books.computeIfAbsent(itemFingerprint, k -> new HashMap<>()).computeIfAbsent(paymentFingerprint, k -> new TreeSet<>(PRICE_TIME_ORDER));
+    }
+
+    private NavigableSet<BuyOrder> findBook(ItemFingerprint itemFingerprint, ItemFingerprint paymentFingerprint) {
+        Map<ItemFingerprint, NavigableSet<BuyOrder>> booksByPayment = books.get(itemFingerprint);
+        return booksByPayment != null ? booksByPayment.get(paymentFingerprint) : null;
+    }
+
+    /**
+     * Lots of one shop trade planned for an order, whose items and escrow are reserved on the order until applied.
+     */
+    private record Fill(BuyOrder order, UUID ownerUUID, String shopName, ItemStack itemToSell, ItemStack itemToCharge, int lots) {
+    }
+
+    /**
+     * Lots of a fill that are being committed to the shop's vault.
+     */
+    private record Committing(Fill fill, int lots) {
+        int items() {
+            return lots * fill.itemToSell().getAmount();
+        }
+
+        int escrow() {
+            return lots * fill.itemToCharge().getAmount();
+        }
+    }
+
+    /**
+     * Schedules a save of the orders file, coalescing saves requested while one is already pending.
+     */
+    private void requestSave() {
+        if (savePending.compareAndSet(false, true)) {
+            workScheduler.submitAsync(this::save);
+        }
+    }
+
+    /**
+     * Writes all orders and deliveries to the orders file. The file is written to a temporary file first
+     * and moved into place, so a crash mid-write never loses the escrow of every order.
+     */
+    public void save() {
+        savePending.set(false);
+        writeOrders();
+    }
+
+    /**
+     * @return True if the orders file was written.
+     */
+    private boolean writeOrders() {
+        String data;
+        synchronized (this) {
+            YamlConfiguration config = new YamlConfiguration();
+            config.set("nextId", nextId);
+            config.set("nextSequence", nextSequence);
+            config.set("nextFillSequence", nextFillSequence);
+            // Reservations are saved as if they were never made, except those of journaled fills, which are saved
+            // with the journal and resolved against the shop's vault on load
+            Map<BuyOrder, int[]> journaled = new HashMap<>();
+            for (Map.Entry<Long, Committing> entry : committing.entrySet()) {
+                Committing fill = entry.getValue();
+                BuyOrder order = fill.fill().order();
+                int[] amounts = journaled.computeIfAbsent(order, k -> new int[2]);
+                amounts[0] += fill.items();
+                amounts[1] += fill.escrow();
+                String path = "fills." + entry.getKey();
+                config.set(path + ".order", order.getId());
+                config.set(path + ".buyer", order.getBuyerUUID().toString());
+                config.set(path + ".owner", fill.fill().ownerUUID().toString());
+                config.set(path + ".item", ItemCodec.encode(order.getItem()));
+                config.set(path + ".payment", ItemCodec.encode(order.getPaymentItem()));
+                config.set(path + ".items", fill.items());
+                config.set(path + ".escrow", fill.escrow());
+            }
+            Map<UUID, List<ItemStack>> savedDeliveries = new HashMap<>(deliveries);
+            for (BuyOrder order : settling) {
+                ItemStack refund = order.getPaymentItem();
+                refund.setAmount(order.reservedEscrow - journaled.getOrDefault(order, new int[2])[1]);
+                if (refund.getAmount() <= 0) {
+                    continue;
+                }
+                List<ItemStack> items = new ArrayList<>(savedDeliveries.getOrDefault(order.getBuyerUUID(), List.of()));
+                items.add(refund);
+                savedDeliveries.put(order.getBuyerUUID(), items);
+            }
+            for (BuyOrder order : ordersById.values()) {
+                int[] amounts = journaled.getOrDefault(order, new int[2]);
+                String path = "orders." + order.getId();
+                config.set(path + ".buyer", order.getBuyerUUID().toString());
+                config.set(path + ".item", ItemCodec.encode(order.getItem()));
+                config.set(path + ".payment", ItemCodec.encode(order.getPaymentItem()));
+                config.set(path + ".price", order.getPricePerItem());
+                config.set(path + ".sequence", order.getSequence());
+                config.set(path + ".remaining", order.remaining + order.reserved - amounts[0]);
+                config.set(path + ".filled", order.filled);
+                config.set(path + ".escrow", order.escrow + order.reservedEscrow - amounts[1]);
+            }
+            for (Map.Entry<UUID, List<ItemStack>> entry : savedDeliveries.entrySet()) {
+                List<ItemStack> items = entry.getValue();
+                for (int i = 0; i < items.size(); i++) {
+                    config.set("deliveries." + entry.getKey() + "." + i, ItemCodec.encode(items.get(i)));
+                }
+            }
+            data = config.saveToString();
+        }
+        synchronized (fileLock) {
+            File tempFile = new File(ordersFile.getPath() + ".tmp");
+            try {
+                Files.writeString(tempFile.toPath(), data, StandardCharsets.UTF_8);
+                Files.move(tempFile.toPath(), ordersFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving the buy orders: ", e);
+                return false;
+            }
+        }
+    }
+
+    private void load() {
+        if (!ordersFile.exists()) {
+            return;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(ordersFile);
+        nextId = config.getLong("nextId", 1);
+        nextSequence = config.getLong("nextSequence", 1);
+        nextFillSequence = config.getLong("nextFillSequence", 1);
+        ConfigurationSection ordersSection = config.getConfigurationSection("orders");
+        if (ordersSection != null) {
+            for (String key : ordersSection.getKeys(false)) {
+                ConfigurationSection section = Objects.requireNonNull(ordersSection.getConfigurationSection(key));
+                BuyOrder order = new BuyOrder(Long.parseLong(key),
+                        UUID.fromString(Objects.requireNonNull(section.getString("buyer"))),
+                        ItemCodec.decode(Objects.requireNonNull(section.getConfigurationSection("item")).getValues(false)),
+                        ItemCodec.decode(Objects.requireNonNull(section.getConfigurationSection("payment")).getValues(false)),
+                        section.getInt("price"), section.getLong("sequence"),
+                        section.getInt("remaining"), section.getInt("filled"), section.getInt("escrow"));
+                ordersById.put(order.getId(), order);
+                getBook(order.getItemFingerprint(), order.getPaymentFingerprint()).add(order);
+            }
+        }
+        ConfigurationSection deliveriesSection = config.getConfigurationSection("deliveries");
+        if (deliveriesSection != null) {
+            for (String uuidString : deliveriesSection.getKeys(false)) {
+                ConfigurationSection playerSection = Objects.requireNonNull(deliveriesSection.getConfigurationSection(uuidString));
+                List<ItemStack> items = new ArrayList<>();
+                for (String key : playerSection.getKeys(false)) {
+                    items.add(ItemCodec.decode(Objects.requireNonNull(playerSection.getConfigurationSection(key)).getValues(false)));
+                }
+                deliveries.put(UUID.fromString(uuidString), items);
+            }
+        }
+        ConfigurationSection fillsSection = config.getConfigurationSection("fills");
+        if (fillsSection != null) {
+            replayJournal(fillsSection);
+            writeOrders();
+        }
+    }
+
+    /**
+     * Resolves the fills that were being committed when the server stopped. A fill whose sequence number reached the
+     * shop's vault was bought and its items are credited to the buyer, any other goes back to its order, or is
+     * refunded if the order was closed meanwhile.
+     */
+    private void replayJournal(ConfigurationSection fillsSection) {
+        Set<UUID> credited = new HashSet<>();
+        for (String key : fillsSection.getKeys(false)) {
+            ConfigurationSection section = Objects.requireNonNull(fillsSection.getConfigurationSection(key));
+            long fillSequence = Long.parseLong(key);
+            nextFillSequence = Math.max(nextFillSequence, fillSequence + 1);
+            UUID buyerUUID = UUID.fromString(Objects.requireNonNull(section.getString("buyer")));
+            UUID ownerUUID = UUID.fromString(Objects.requireNonNull(section.getString("owner")));
+            int items = section.getInt("items");
+            int escrow = section.getInt("escrow");
+            BuyOrder order = ordersById.get(section.getLong("order"));
+            if (playerVaultManager.getRecordedSequence(ownerUUID, FILL_SEQUENCE) >= fillSequence) {
+                credit(buyerUUID, ItemCodec.decode(Objects.requireNonNull(section.getConfigurationSection("item")).getValues(false)), items, credited);
+                if (order != null) {
+                    order.filled += items;
+                }
+            } else if (order != null) {
+                order.remaining += items;
+                order.escrow += escrow;
+            } else {
+                credit(buyerUUID, ItemCodec.decode(Objects.requireNonNull(section.getConfigurationSection("payment")).getValues(false)), escrow, credited);
+            }
+        }
+        // Orders whose whole remainder was being committed are done once their fills are resolved
+        for (BuyOrder order : new ArrayList<>(ordersById.values())) {
+            if (order.remaining == 0) {
+                NavigableSet<BuyOrder> book = findBook(order.getItemFingerprint(), order.getPaymentFingerprint());
+                if (book != null) {
+                    book.remove(order);
+                }
+                closeOrder(order, credited);
+            }
+        }
+    }
+}
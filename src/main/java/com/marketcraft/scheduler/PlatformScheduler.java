@@ -0,0 +1,201 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the plugin's work to the thread that owns it, so the plugin runs on both Paper and Folia.
+ * Folia ticks regions of the world on separate threads and has no single main thread, which means
+ * entity and inventory work must run on the scheduler of the owning entity, world work on the owning
+ * region, and everything else on the global region or async schedulers.
+ * <p>
+ * Paper implements the same region-aware schedulers on its main thread, so this class uses them
+ * unconditionally instead of the legacy BukkitScheduler, which is unsupported on Folia.
+ * <p>
+ * A disabled plugin can no longer schedule anything, so once {@link #beginShutdown()} is called, or the plugin is
+ * disabled, async and global work runs inline on the calling thread and entity and region work is dropped.
+ */
+public class PlatformScheduler {
+    private final Plugin plugin;
+    private final Object asyncLock = new Object();
+    private int runningAsync;
+    private volatile boolean shuttingDown;
+
+    public PlatformScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Runs GUI or inventory work for an entity on the thread that owns it.
+     * The work runs immediately if the current thread already owns the entity.
+     * If the entity is removed before the work runs, the work is dropped.
+     *
+     * @param entity The entity the work belongs to, usually a player.
+     * @param task   The work to run.
+     */
+    public void runForEntity(Entity entity, Runnable task) {
+        runForEntity(entity, task, null);
+    }
+
+    /**
+     * Runs GUI or inventory work for an entity on the thread that owns it, like {@link #runForEntity(Entity, Runnable)}.
+     * If the entity is removed before the work runs, the retired callback runs instead, so work that holds a lock or
+     * carries items can release or return them. The callback may run on any thread.
+     *
+     * @param entity  The entity the work belongs to, usually a player.
+     * @param task    The work to run.
+     * @param retired The work to run instead if the entity is removed first, or null to drop the work.
+     */
+    public void runForEntity(Entity entity, Runnable task, Runnable retired) {
+        if (isShuttingDown()) {
+            if (retired != null) {
+                retired.run();
+            }
+            return;
+        }
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+            return;
+        }
+        // The scheduler returns null without calling the retired callback if the entity is already gone
+        if (entity.getScheduler().run(plugin, scheduledTask -> task.run(), retired) == null && retired != null) {
+            retired.run();
+        }
+    }
+
+    /**
+     * Runs work on the thread that owns the region containing a location.
+     *
+     * @param location The location the work belongs to.
+     * @param task     The work to run.
+     */
+    public void runAtLocation(Location location, Runnable task) {
+        if (isShuttingDown()) {
+            return;
+        }
+        if (Bukkit.isOwnedByCurrentRegion(location)) {
+            task.run();
+            return;
+        }
+        Bukkit.getRegionScheduler().execute(plugin, location, task);
+    }
+
+    /**
+     * Runs work that does not belong to any entity or region on the global region thread.
+     *
+     * @param task The work to run.
+     */
+    public void runGlobal(Runnable task) {
+        if (isShuttingDown()) {
+            task.run();
+            return;
+        }
+        Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+    }
+
+    /**
+     * Repeatedly runs work on the global region thread.
+     *
+     * @param task        The work to run.
+     * @param delayTicks  The delay before the first run, at least one tick.
+     * @param periodTicks The number of ticks between runs.
+     */
+    public void runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, scheduledTask -> task.run(), Math.max(1L, delayTicks), periodTicks);
+    }
+
+    /**
+     * Runs storage or computation work off the server threads. The work must not touch the Bukkit API.
+     *
+     * @param task The work to run.
+     */
+    public void runAsync(Runnable task) {
+        if (isShuttingDown()) {
+            task.run();
+            return;
+        }
+        synchronized (asyncLock) {
+            runningAsync++;
+        }
+        try {
+            Bukkit.getAsyncScheduler().runNow(plugin, scheduledTask -> {
+                try {
+                    task.run();
+                } finally {
+                    finishAsync();
+                }
+            });
+        } catch (RuntimeException e) {
+            finishAsync();
+            throw e;
+        }
+    }
+
+    /**
+     * Switches to running work inline, so the saves and flushes of a shutting down plugin still happen.
+     */
+    public void beginShutdown() {
+        shuttingDown = true;
+    }
+
+    /**
+     * @return True once work can no longer be scheduled and runs inline instead.
+     */
+    public boolean isShuttingDown() {
+        return shuttingDown || !plugin.isEnabled();
+    }
+
+    /**
+     * Waits for the async work that was already scheduled to finish.
+     *
+     * @param timeoutMillis The longest time to wait, in milliseconds.
+     * @return True if no async work is left running.
+     */
+    public boolean awaitAsync(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (asyncLock) {
+            while (runningAsync > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    asyncLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private void finishAsync() {
+        synchronized (asyncLock) {
+            if (--runningAsync == 0) {
+                asyncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Cancels all repeating and pending work scheduled by the plugin.
+     */
+    public void cancelAll() {
+        Bukkit.getGlobalRegionScheduler().cancelTasks(plugin);
+        Bukkit.getAsyncScheduler().cancelTasks(plugin);
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.scheduler;
+
+/**
+ * Priority classes for work units submitted to the {@link WorkScheduler}.
+ * Higher priorities are drained first within each tick's budget.
+ */
+public enum WorkPriority {
+    /**
+     * Work that must not be postponed, such as persisting player data.
+     * At least one critical unit runs every tick even when the budget is exhausted.
+     */
+    CRITICAL,
+    /**
+     * Regular work that runs as soon as there is budget left in a tick.
+     */
+    NORMAL,
+    /**
+     * Non-critical work, such as cache warming or snapshots, that is deferred while the server is lagging.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,210 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.scheduler;
+
+import org.bukkit.Bukkit;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Runs the plugin's internal background work without causing TPS spikes.
+ * Work units are queued by {@link WorkPriority} and drained once per tick, but only for as long as
+ * the configured per-tick millisecond budget allows. Anything left over simply waits for the next tick.
+ * Background work is deferred entirely while the server's average tick time is above a threshold.
+ * <p>
+ * Work that does not touch the Bukkit API can be submitted with {@link #submitAsync(Runnable)},
+ * which runs it on the async scheduler instead of spending the main thread's budget on it. Once the plugin is
+ * shutting down, async work runs inline instead, since a disabled plugin can no longer schedule it.
+ * <p>
+ * The scheduler is ticked on the global region thread, so on Folia queued work units must not touch
+ * entities, inventories or blocks. Such work belongs on {@link PlatformScheduler#runForEntity}.
+ * <p>
+ * Queue depth, executed and deferred work are tracked so they can be inspected as metrics.
+ */
+public class WorkScheduler implements Runnable {
+    private final PlatformScheduler platformScheduler;
+    private final long tickBudgetNanos;
+    private final double highMsptThreshold;
+    private final Map<WorkPriority, Queue<Runnable>> queues = new EnumMap<>(WorkPriority.class);
+    private final Map<WorkPriority, AtomicInteger> queueDepths = new EnumMap<>(WorkPriority.class);
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong asyncCount = new AtomicLong();
+    private final AtomicLong deferredTicks = new AtomicLong();
+    private final AtomicLong overBudgetTicks = new AtomicLong();
+    private volatile long lastTickNanos;
+
+    /**
+     * @param platformScheduler The scheduler used to hand work to the async executor.
+     * @param tickBudgetMillis  The maximum time, in milliseconds, spent on queued work per tick.
+     * @param highMsptThreshold The average tick time, in milliseconds, above which background work is deferred.
+     */
+    public WorkScheduler(PlatformScheduler platformScheduler, double tickBudgetMillis, double highMsptThreshold) {
+        this.platformScheduler = platformScheduler;
+        this.tickBudgetNanos = (long) (tickBudgetMillis * 1_000_000L);
+        this.highMsptThreshold = highMsptThreshold;
+        for (WorkPriority priority : WorkPriority.values()) {
+            queues.put(priority, new ConcurrentLinkedQueue<>());
+            queueDepths.put(priority, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Queues a work unit to run on the main thread within a future tick's budget.
+     * Work units should be small, as a single unit is never interrupted once started.
+     *
+     * @param priority The priority class of the work.
+     * @param work     The work unit.
+     */
+    public void submit(WorkPriority priority, Runnable work) {
+        queues.get(priority).add(work);
+        queueDepths.get(priority).incrementAndGet();
+    }
+
+    /**
+     * Runs a work unit off the main thread. Only use this for work that does not touch the Bukkit API,
+     * such as file I/O on data that has already been copied.
+     *
+     * @param work The work unit.
+     */
+    public void submitAsync(Runnable work) {
+        asyncCount.incrementAndGet();
+        if (platformScheduler.isShuttingDown()) {
+            runSafely(work);
+            return;
+        }
+        platformScheduler.runAsync(() -> runSafely(work));
+    }
+
+    /**
+     * Drains the queues for one tick, highest priority first, until the budget is spent.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        long deadline = start + tickBudgetNanos;
+        // Critical work always makes progress, even on a tick with no budget left
+        runQueue(WorkPriority.CRITICAL, deadline, true);
+        runQueue(WorkPriority.NORMAL, deadline, false);
+        if (queueDepths.get(WorkPriority.BACKGROUND).get() > 0) {
+            if (getAverageTickTime() > highMsptThreshold) {
+                deferredTicks.incrementAndGet();
+            } else {
+                runQueue(WorkPriority.BACKGROUND, deadline, false);
+            }
+        }
+        lastTickNanos = System.nanoTime() - start;
+        if (lastTickNanos > tickBudgetNanos) {
+            overBudgetTicks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs every remaining work unit regardless of budget. Used when the plugin shuts down,
+     * so that queued persistence work is not lost.
+     */
+    public void drain() {
+        for (WorkPriority priority : WorkPriority.values()) {
+            runQueue(priority, Long.MAX_VALUE, false);
+        }
+    }
+
+    /**
+     * Runs work units of a single priority until the queue is empty or the deadline has passed.
+     *
+     * @param priority     The priority class to run.
+     * @param deadline     The {@link System#nanoTime()} value at which to stop.
+     * @param guaranteeOne Whether to run one unit even if the deadline has already passed.
+     */
+    private void runQueue(WorkPriority priority, long deadline, boolean guaranteeOne) {
+        Queue<Runnable> queue = queues.get(priority);
+        boolean first = guaranteeOne;
+        while (first || System.nanoTime() < deadline) {
+            first = false;
+            Runnable work = queue.poll();
+            if (work == null) {
+                return;
+            }
+            queueDepths.get(priority).decrementAndGet();
+            runSafely(work);
+            executedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the server's average tick time. Folia has no single tick time and may not support the call,
+     * in which case background work is never deferred.
+     *
+     * @return The average tick time in milliseconds, or zero if unavailable.
+     */
+    private double getAverageTickTime() {
+        try {
+            return Bukkit.getServer().getAverageTickTime();
+        } catch (UnsupportedOperationException e) {
+            return 0;
+        }
+    }
+
+    private void runSafely(Runnable work) {
+        try {
+            work.run();
+        } catch (Exception e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while running scheduled MarketCraft work: ", e);
+        }
+    }
+
+    /**
+     * @param priority The priority class.
+     * @return The number of work units waiting in that class.
+     */
+    public int getQueueDepth(WorkPriority priority) {
+        return queueDepths.get(priority).get();
+    }
+
+    /**
+     * @return The total number of main thread work units executed.
+     */
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    /**
+     * @return The total number of work units handed to the async scheduler.
+     */
+    public long getAsyncCount() {
+        return asyncCount.get();
+    }
+
+    /**
+     * @return The number of ticks on which background work was deferred because of high MSPT.
+     */
+    public long getDeferredTicks() {
+        return deferredTicks.get();
+    }
+
+    /**
+     * @return The number of ticks on which a work unit overran the budget.
+     */
+    public long getOverBudgetTicks() {
+        return overBudgetTicks.get();
+    }
+
+    /**
+     * @return The time, in milliseconds, spent on queued work during the last tick.
+     */
+    public double getLastTickMillis() {
+        return lastTickNanos / 1_000_000.0;
+    }
+}
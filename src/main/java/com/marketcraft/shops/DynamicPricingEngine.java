@@ -0,0 +1,297 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+import com.marketcraft.scheduler.WorkScheduler;
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.vaults.PlayerVaultManager;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Adjusts the price of shops that opted into dynamic pricing from their recent sales and their current stock.
+ * <p>
+ * Each dynamic shop keeps a sales velocity, an exponentially decaying count of its recent trades with a half-life of
+ * one hour, which works out to roughly its trades per hour. The price is placed between the owner's bounds by how
+ * long the stock would last at that velocity: stock for {@value #TARGET_HOURS} hours or more pulls the price towards
+ * the minimum, and stock that is about to run out pulls it towards the maximum. The bounds are in units of a single
+ * charged item, so in shops offering several trades only the first trade is priced dynamically.
+ * <p>
+ * Trades and stock changes only queue the affected shop. The queued shops, plus every dynamic shop once a minute so
+ * velocities can decay, are repriced off the main thread by {@link #recompute()}. A new price is written to the shop
+ * file through {@link PlayerShopManager#updateShopPrice}, so the shop GUI, the order book and buy orders all read it
+ * from the {@link ShopIndex} without doing any pricing work.
+ */
+public class DynamicPricingEngine implements TradeListener, ShopIndexListener {
+    private static final double TARGET_HOURS = 24.0;
+    private static final double VELOCITY_HALF_LIFE_MILLIS = 3_600_000.0;
+    private static final double MIN_VELOCITY = 0.01;
+    private final File pricingFile;
+    private final ShopIndex shopIndex;
+    private final PlayerShopManager playerShopManager;
+    private final PlayerVaultManager playerVaultManager;
+    private final WorkScheduler workScheduler;
+    private final Map<ShopKey, PricingState> states = new ConcurrentHashMap<>();
+    private final Queue<ShopKey> dirtyShops = new ConcurrentLinkedQueue<>();
+    private final Queue<UUID> dirtyOwners = new ConcurrentLinkedQueue<>();
+    private final Queue<TradeEvent> trades = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final Object recomputeLock = new Object();
+    private final Object fileLock = new Object();
+
+    public DynamicPricingEngine(File pluginFolder, ShopIndex shopIndex, PlayerShopManager playerShopManager, PlayerVaultManager playerVaultManager, WorkScheduler workScheduler) {
+        this.pricingFile = new File(pluginFolder, "dynamic-pricing.yml");
+        this.shopIndex = shopIndex;
+        this.playerShopManager = playerShopManager;
+        this.playerVaultManager = playerVaultManager;
+        this.workScheduler = workScheduler;
+        load();
+        shopIndex.addListener(this);
+        // Stock listeners run while the vault is being written, so only queue the owner here
+        playerVaultManager.addStockListener(dirtyOwners::add);
+    }
+
+    /**
+     * Turns on dynamic pricing for a shop, or changes its bounds. The shop is repriced with the next recompute.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     * @param minPrice  The lowest amount to charge.
+     * @param maxPrice  The highest amount to charge.
+     */
+    public void enable(UUID ownerUUID, String shopName, int minPrice, int maxPrice) {
+        ShopKey key = new ShopKey(ownerUUID, shopName);
+        PricingState previous = states.get(key);
+        PricingState state = new PricingState(minPrice, maxPrice);
+        if (previous != null) {
+            state.velocity = previous.velocity;
+            state.velocityUpdated = previous.velocityUpdated;
+        }
+        states.put(key, state);
+        dirtyShops.add(key);
+        requestSave();
+    }
+
+    /**
+     * Turns off dynamic pricing for a shop. The shop keeps its current price.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     * @return True if the shop used dynamic pricing.
+     */
+    public boolean disable(UUID ownerUUID, String shopName) {
+        if (states.remove(new ShopKey(ownerUUID, shopName)) == null) {
+            return false;
+        }
+        requestSave();
+        return true;
+    }
+
+    /**
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     * @return The price bounds as {min, max}, or null if the shop does not use dynamic pricing.
+     */
+    public int[] getBounds(UUID ownerUUID, String shopName) {
+        PricingState state = states.get(new ShopKey(ownerUUID, shopName));
+        return state != null ? new int[]{state.minPrice, state.maxPrice} : null;
+    }
+
+    /**
+     * @return True if there are shops waiting to be repriced.
+     */
+    public boolean hasPendingWork() {
+        return !dirtyShops.isEmpty() || !dirtyOwners.isEmpty() || !trades.isEmpty();
+    }
+
+    /**
+     * Queues every dynamic shop, so velocities decay and prices follow even when nothing is traded.
+     */
+    public void markAllDirty() {
+        dirtyShops.addAll(states.keySet());
+    }
+
+    @Override
+    public void onTrade(UUID ownerUUID, String shopName, UUID buyerUUID, ItemStack sold, ItemStack cost) {
+        ShopKey key = new ShopKey(ownerUUID, shopName);
+        if (states.containsKey(key)) {
+            trades.add(new TradeEvent(key, ItemFingerprint.of(sold), sold.getAmount(), System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public void onShopSaved(ShopListing listing, ShopListing previous) {
+        ShopKey key = new ShopKey(listing.getOwnerUUID(), listing.getShopName());
+        // Our own price updates come back through here too, only reprice when the items themselves changed
+        if (states.containsKey(key) && (previous == null || !listing.getSellFingerprint().matches(previous.getSellFingerprint())
+                || !listing.getChargeFingerprint().matches(previous.getChargeFingerprint())
+                || listing.getSellAmount() != previous.getSellAmount())) {
+            dirtyShops.add(key);
+        }
+    }
+
+    @Override
+    public void onShopRemoved(ShopListing listing) {
+        if (states.remove(new ShopKey(listing.getOwnerUUID(), listing.getShopName())) != null) {
+            requestSave();
+        }
+    }
+
+    /**
+     * Applies the queued trades and reprices the queued shops. Runs off the main thread.
+     */
+    public void recompute() {
+        synchronized (recomputeLock) {
+            long now = System.currentTimeMillis();
+            Set<ShopKey> shops = new HashSet<>();
+            ShopKey dirtyShop;
+            while ((dirtyShop = dirtyShops.poll()) != null) {
+                shops.add(dirtyShop);
+            }
+            Set<UUID> owners = new HashSet<>();
+            UUID dirtyOwner;
+            while ((dirtyOwner = dirtyOwners.poll()) != null) {
+                owners.add(dirtyOwner);
+            }
+            if (!owners.isEmpty()) {
+                for (ShopKey key : states.keySet()) {
+                    if (owners.contains(key.ownerUUID())) {
+                        shops.add(key);
+                    }
+                }
+            }
+            TradeEvent trade;
+            while ((trade = trades.poll()) != null) {
+                PricingState state = states.get(trade.shop());
+                ShopListing listing = shopIndex.getShop(trade.shop().ownerUUID(), trade.shop().shopName());
+                // Only sales of the priced trade count towards its velocity
+                if (state != null && listing != null && trade.sold().matches(listing.getSellFingerprint())) {
+                    state.decay(trade.time());
+                    state.velocity += (double) trade.amountSold() / listing.getSellAmount();
+                    shops.add(trade.shop());
+                }
+            }
+            for (ShopKey key : shops) {
+                reprice(key, now);
+            }
+        }
+    }
+
+    private void reprice(ShopKey key, long now) {
+        PricingState state = states.get(key);
+        ShopListing listing = shopIndex.getShop(key.ownerUUID(), key.shopName());
+        if (state == null || listing == null) {
+            return;
+        }
+        state.decay(now);
+        ItemStack itemToSell = listing.getItemToSell();
+        int stockTrades = playerVaultManager.getCachedItemCount(key.ownerUUID(), itemToSell, key.shopName()) / listing.getSellAmount();
+        double hoursOfStock = stockTrades / Math.max(state.velocity, MIN_VELOCITY);
+        double scarcity = TARGET_HOURS / (TARGET_HOURS + hoursOfStock);
+        // The charge amount is an item stack amount, so it can't exceed a stack of the charged item
+        int maxPrice = Math.min(state.maxPrice, listing.getItemToCharge().getMaxStackSize());
+        int minPrice = Math.min(state.minPrice, maxPrice);
+        int price = (int) Math.round(minPrice + (maxPrice - minPrice) * scarcity);
+        if (price != listing.getChargeAmount()) {
+            playerShopManager.updateShopPrice(key.ownerUUID(), key.shopName(), 0, price);
+        }
+    }
+
+    private void requestSave() {
+        if (savePending.compareAndSet(false, true)) {
+            workScheduler.submitAsync(this::save);
+        }
+    }
+
+    /**
+     * Saves the dynamic shops with their bounds and sales velocity.
+     */
+    public void save() {
+        synchronized (fileLock) {
+            savePending.set(false);
+            YamlConfiguration config = new YamlConfiguration();
+            for (Map.Entry<ShopKey, PricingState> entry : states.entrySet()) {
+                ConfigurationSection section = config.createSection(entry.getKey().ownerUUID() + "." + entry.getKey().shopName());
+                PricingState state = entry.getValue();
+                section.set("min", state.minPrice);
+                section.set("max", state.maxPrice);
+                section.set("velocity", state.velocity);
+                section.set("velocityUpdated", state.velocityUpdated);
+            }
+            File tempFile = new File(pricingFile.getPath() + ".tmp");
+            try {
+                Files.writeString(tempFile.toPath(), config.saveToString(), StandardCharsets.UTF_8);
+                Files.move(tempFile.toPath(), pricingFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving the dynamic pricing: ", e);
+            }
+        }
+    }
+
+    private void load() {
+        if (!pricingFile.exists()) {
+            return;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(pricingFile);
+        for (String uuidString : config.getKeys(false)) {
+            ConfigurationSection ownerSection = Objects.requireNonNull(config.getConfigurationSection(uuidString));
+            for (String shopName : ownerSection.getKeys(false)) {
+                ConfigurationSection section = Objects.requireNonNull(ownerSection.getConfigurationSection(shopName));
+                PricingState state = new PricingState(section.getInt("min"), section.getInt("max"));
+                state.velocity = section.getDouble("velocity");
+                state.velocityUpdated = section.getLong("velocityUpdated");
+                ShopKey key = new ShopKey(UUID.fromString(uuidString), shopName);
+                states.put(key, state);
+                dirtyShops.add(key);
+            }
+        }
+    }
+
+    private record ShopKey(UUID ownerUUID, String shopName) {
+    }
+
+    private record TradeEvent(ShopKey shop, ItemFingerprint sold, int amountSold, long time) {
+    }
+
+    /**
+     * The bounds and sales velocity of a dynamic shop. The velocity is only touched under the recompute lock.
+     */
+    private static final class PricingState {
+        private final int minPrice;
+        private final int maxPrice;
+        private double velocity;
+        private long velocityUpdated;
+
+        PricingState(int minPrice, int maxPrice) {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+        }
+
+        void decay(long now) {
+            if (velocityUpdated != 0 && now > velocityUpdated) {
+                velocity *= Math.pow(0.5, (now - velocityUpdated) / VELOCITY_HALF_LIFE_MILLIS);
+            }
+            velocityUpdated = Math.max(velocityUpdated, now);
+        }
+    }
+}
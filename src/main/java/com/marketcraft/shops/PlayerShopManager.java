@@ -10,12 +10,13 @@
 package com.marketcraft.shops;
 
 import com.marketcraft.MarketCraft;
+import com.marketcraft.storage.ColdStorage;
+import com.marketcraft.storage.ShardedFolder;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
 import java.io.IOException;
@@ -29,44 +30,60 @@ import java.util.logging.Level;
  * It interacts with the plugin's file system to store and retrieve shop data, ensuring persistence across server sessions.
  * <p>
  * Key functionalities include:
- * - Saving shop configurations set by players.
- * - Retrieving items associated with a specific shop.
+ * - Saving shop configurations set by players, each shop offering one or more trades.
+ * - Retrieving the trades of a specific shop.
  * - Listing all existing shop files for administrative purposes.
  * - Deleting shops based on player UUID and shop name.
  * - Checking the existence of a player's shop.
  * <p>
  * The shop data is stored as YAML configurations, with each player having a unique file based on their UUID.
  * The class provides a streamlined interface for other components of the plugin to interact with shop data.
+ * Every save and delete is mirrored into the {@link ShopIndex}, which serves all read-only lookups without touching disk.
+ * Writes are synchronized, since a player's shops share one file and the dynamic pricing engine updates prices off-thread.
+ * The shop files of idle owners may be in {@link ColdStorage}, they are brought back by the first write to them.
  */
 public class PlayerShopManager {
-    private final File shopsFolder;
+    private final ShardedFolder shopFiles;
+    private final ShopIndex shopIndex;
+    private final ColdStorage coldStorage;
 
-    public PlayerShopManager(File pluginFolder) {
-        this.shopsFolder = new File(pluginFolder, "Shops");
-        if (!shopsFolder.exists() && !shopsFolder.mkdirs()) {
-            Bukkit.getLogger().log(Level.SEVERE, "Failed to create the Shops directory, the plugin may fail to function correctly!");
-        }
+    public PlayerShopManager(ShardedFolder shopFiles, ShopIndex shopIndex, ColdStorage coldStorage) {
+        this.shopFiles = shopFiles;
+        this.shopIndex = shopIndex;
+        this.coldStorage = coldStorage;
+    }
+
+    /**
+     * Returns the shop file of a player, bringing it back from cold storage first if the player was archived.
+     *
+     * @param playerUUID The UUID of the player.
+     * @return The file of the player's shops, which may not exist.
+     */
+    private File shopFileOf(UUID playerUUID) {
+        coldStorage.rehydrate(playerUUID);
+        return shopFiles.fileOf(playerUUID);
     }
 
     /**
      * Saves the configuration of a player's shop to a YAML file.
-     * This includes serializing the items to sell and charge in the shop.
+     * This includes serializing the items to sell and charge of every trade in the shop.
      *
-     * @param player       The player who owns the shop.
-     * @param shopName     The name of the shop.
-     * @param itemToSell   The item to be sold in the shop.
-     * @param itemToCharge The item to be charged in the shop.
+     * @param player   The player who owns the shop.
+     * @param shopName The name of the shop.
+     * @param trades   The trades offered by the shop, replacing any it offered before.
      */
-    public void savePlayerShop(Player player, String shopName, ItemStack itemToSell, ItemStack itemToCharge) {
+    public synchronized void savePlayerShop(Player player, String shopName, ShopTradeTable trades) {
         UUID playerUUID = player.getUniqueId();
         String basePath = "shops." + shopName;
-        File playerShopFile = new File(shopsFolder, playerUUID + ".yml");
+        coldStorage.rehydrate(playerUUID);
+        File playerShopFile = shopFiles.fileToWrite(playerUUID);
         YamlConfiguration config = YamlConfiguration.loadConfiguration(playerShopFile);
         // Serialize the ItemStacks (Allows storing of NBT data)
-        config.set(basePath + ".itemToSell", itemToSell.serialize());
-        config.set(basePath + ".itemToCharge", itemToCharge.serialize());
+        trades.write(config.isConfigurationSection(basePath) ? Objects.requireNonNull(config.getConfigurationSection(basePath)) : config.createSection(basePath));
         try {
             config.save(playerShopFile);
+            shopFiles.markWritten(playerUUID);
+            shopIndex.putShop(new ShopListing(playerUUID, shopName, trades), playerShopFile.lastModified());
         } catch (IOException e) {
             Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving" + player.getName() + "'s shop: ", e);
             player.sendMessage(Component.text("An error occurred while saving your shop. Please try again later."));
@@ -74,34 +91,51 @@ public class PlayerShopManager {
     }
 
     /**
-     * Retrieves items associated with a player's shop from the shop's YAML configuration file.
-     * Returns an array of ItemStacks containing the item to sell and the item to charge.
+     * Changes the amount charged by one trade of a shop, keeping the item charged.
      *
-     * @param playerUUID The UUID of the player who owns the shop.
-     * @param shopName   The name of the shop.
-     * @return An array of ItemStacks containing the selling and charging items, or null if the shop or items do not exist.
+     * @param playerUUID   The UUID of the player who owns the shop.
+     * @param shopName     The name of the shop.
+     * @param trade        The number of the trade, starting at 0.
+     * @param chargeAmount The new amount to charge.
+     * @return True if the price was changed, false if the shop or trade does not exist or could not be saved.
      */
-    public ItemStack[] getPlayerShopItems(UUID playerUUID, String shopName) {
+    public synchronized boolean updateShopPrice(UUID playerUUID, String shopName, int trade, int chargeAmount) {
         String basePath = "shops." + shopName;
-        File playerShopFile = new File(shopsFolder, playerUUID + ".yml");
-        // This only checks if the file exists or not
-        if (!playerShopFile.exists()) {
-            return null;
+        File playerShopFile = shopFileOf(playerUUID);
+        if (!shopFiles.contains(playerUUID)) {
+            return false;
         }
         YamlConfiguration config = YamlConfiguration.loadConfiguration(playerShopFile);
-        // This then checks if the specific shop exists within the file
-        if (!config.contains(basePath)) {
-            return null;
+        ConfigurationSection shopSection = config.getConfigurationSection(basePath);
+        if (shopSection == null) {
+            return false;
         }
-        ItemStack itemToSell = null;
-        ItemStack itemToCharge = null;
-        if (config.contains(basePath + ".itemToSell")) {
-            itemToSell = ItemStack.deserialize(Objects.requireNonNull(config.getConfigurationSection(basePath + ".itemToSell")).getValues(false));
+        ShopTradeTable trades = ShopTradeTable.read(shopSection);
+        if (trade >= trades.size() || !trades.isComplete(trade)) {
+            return false;
         }
-        if (config.contains(basePath + ".itemToCharge")) {
-            itemToCharge = ItemStack.deserialize(Objects.requireNonNull(config.getConfigurationSection(basePath + ".itemToCharge")).getValues(false));
+        trades = trades.withChargeAmount(trade, chargeAmount);
+        trades.write(shopSection);
+        try {
+            config.save(playerShopFile);
+            shopIndex.putShop(new ShopListing(playerUUID, shopName, trades), playerShopFile.lastModified());
+            return true;
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while updating the price of a player's shop: ", e);
+            return false;
         }
-        return new ItemStack[]{itemToSell, itemToCharge};
+    }
+
+    /**
+     * Retrieves the trades of a player's shop from the shop index.
+     *
+     * @param playerUUID The UUID of the player who owns the shop.
+     * @param shopName   The name of the shop.
+     * @return The trades offered by the shop, or null if the shop does not exist.
+     */
+    public ShopTradeTable getShopTrades(UUID playerUUID, String shopName) {
+        ShopListing listing = shopIndex.getShop(playerUUID, shopName);
+        return listing != null ? listing.getTrades() : null;
     }
 
     /**
@@ -112,12 +146,12 @@ public class PlayerShopManager {
      * @param shopName   The name of the shop to be deleted.
      * @return True if the shop was successfully deleted, false otherwise.
      */
-    public boolean deletePlayerShop(String uuidString, String shopName) {
+    public synchronized boolean deletePlayerShop(String uuidString, String shopName) {
         String basePath = "shops." + shopName;
         UUID playerUUID = UUID.fromString(uuidString);
-        File playerShopFile = new File(shopsFolder, playerUUID + ".yml");
+        File playerShopFile = shopFileOf(playerUUID);
         // This only checks if the file exists or not
-        if (!playerShopFile.exists()) {
+        if (!shopFiles.contains(playerUUID)) {
             return false;
         }
         YamlConfiguration config = YamlConfiguration.loadConfiguration(playerShopFile);
@@ -128,6 +162,7 @@ public class PlayerShopManager {
         config.set(basePath, null);
         try {
             config.save(playerShopFile);
+            shopIndex.removeShop(playerUUID, shopName, playerShopFile.lastModified());
             return true;
         } catch (IOException e) {
             Bukkit.getLogger().log(Level.WARNING, "An error has occurred while deleting a player's shop: ", e);
@@ -137,7 +172,7 @@ public class PlayerShopManager {
 
     /**
      * Checks whether a player has reached their shop creation limit.
-     * This method examines the player's shop file to determine the number of shops they currently own,
+     * This method counts the shops the player currently owns in the shop index,
      * comparing this count to the maximum number of shops allowed per player, as specified in the plugin's configuration.
      * It returns true if the player is below their shop limit, thereby allowing the creation of additional shops.
      *
@@ -145,35 +180,26 @@ public class PlayerShopManager {
      * @return true if the player is below their shop limit, false otherwise.
      */
     public boolean isAtShopLimit(Player player) {
-        UUID playerUUID = player.getUniqueId();
-        File playerShopFile = new File(shopsFolder, playerUUID + ".yml");
-        if (!playerShopFile.exists()) {
-            return true; // No shops file means the player is below the limit.
-        }
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerShopFile);
-        ConfigurationSection shopsSection = config.getConfigurationSection("shops");
-        if (shopsSection == null) {
-            return true; // No "shops" section means the player is below the limit.
-        }
-        int shopCount = shopsSection.getKeys(false).size();
+        int shopCount = shopIndex.getShops(player.getUniqueId()).size();
         int shopLimit = MarketCraft.getShopLimit();
         return shopCount < shopLimit;
     }
 
     /**
-     * Checks if a player's shop exists in the YAML configuration file.
+     * Checks if a player's shop exists in the shop index.
      *
      * @param playerUUID The UUID of the player.
      * @param shopName   The name of the shop.
      * @return True if the shop exists, false otherwise.
      */
     public boolean doesPlayerShopExist(UUID playerUUID, String shopName) {
-        String basePath = "shops." + shopName;
-        File playerShopFile = new File(shopsFolder, playerUUID + ".yml");
-        if (!playerShopFile.exists()) {
-            return false;
-        }
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerShopFile);
-        return config.contains(basePath);
+        return shopIndex.getShop(playerUUID, shopName) != null;
+    }
+
+    /**
+     * @return The index of every shop on the server.
+     */
+    public ShopIndex getShopIndex() {
+        return shopIndex;
     }
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+import com.marketcraft.MarketCraft;
+import com.marketcraft.util.LongObjectMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.Sign;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Maps sign and container blocks to the shops they were bound to.
+ * <p>
+ * The bindings of a chunk are stored in the chunk's own persistent data, so they are saved and loaded by the server
+ * together with the chunk. While a chunk is loaded its bindings are kept in a {@link LongObjectMap} keyed by the
+ * world and chunk coordinates packed into a single long, and they are dropped again when the chunk unloads, so memory
+ * only grows with the loaded chunks. Resolving a clicked block is one primitive map lookup plus a scan of the few
+ * shop blocks in that chunk.
+ * <p>
+ * Bindings are not removed when their shop is, instead a binding whose shop no longer exists is dropped the next time
+ * its block is used. All methods must be called from the thread owning the chunk, and the map itself is guarded by
+ * this index's monitor.
+ */
+public class ShopBlockIndex {
+    // Chunk coordinates stay within +-1,875,000, which fits 22 bits, leaving 20 bits for the world
+    private static final int CHUNK_BITS = 22;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+    private final NamespacedKey bindingsKey;
+    private final LongObjectMap<ChunkBindings> chunks = new LongObjectMap<>();
+    private final Map<UUID, Integer> worldIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextWorldId = new AtomicInteger();
+
+    public ShopBlockIndex(MarketCraft marketCraft) {
+        this.bindingsKey = new NamespacedKey(marketCraft, "shopBlocks");
+    }
+
+    /**
+     * A shop bound to a block.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     */
+    public record ShopBinding(UUID ownerUUID, String shopName) {
+    }
+
+    /**
+     * Indexes the chunks that were already loaded when the plugin was enabled.
+     */
+    public void indexLoadedChunks() {
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                loadChunk(chunk);
+            }
+        }
+    }
+
+    /**
+     * Reads the bindings stored in a chunk that was just loaded.
+     *
+     * @param chunk The loaded chunk.
+     */
+    public void loadChunk(Chunk chunk) {
+        String stored = chunk.getPersistentDataContainer().get(bindingsKey, PersistentDataType.STRING);
+        if (stored == null) {
+            return;
+        }
+        ChunkBindings bindings = ChunkBindings.parse(stored);
+        if (bindings == null) {
+            Bukkit.getLogger().log(Level.WARNING, "Ignoring unreadable shop blocks in chunk " + chunk.getX() + ", " + chunk.getZ() + " of " + chunk.getWorld().getName());
+            return;
+        }
+        long key = chunkKey(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        synchronized (this) {
+            chunks.put(key, bindings);
+        }
+    }
+
+    /**
+     * Drops the bindings of a chunk that is unloading. They stay stored in the chunk itself.
+     *
+     * @param chunk The unloading chunk.
+     */
+    public void unloadChunk(Chunk chunk) {
+        long key = chunkKey(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        synchronized (this) {
+            chunks.remove(key);
+        }
+    }
+
+    /**
+     * @param block The block to look up.
+     * @return The shop bound to the block, or null if it is not a shop block.
+     */
+    public ShopBinding getBinding(Block block) {
+        ChunkBindings bindings;
+        synchronized (this) {
+            bindings = chunks.get(chunkKey(block.getWorld(), block.getX() >> 4, block.getZ() >> 4));
+        }
+        return bindings != null ? bindings.get(blockKey(block)) : null;
+    }
+
+    /**
+     * Binds a block to a shop, replacing any shop it was bound to before.
+     *
+     * @param block   The sign or container block.
+     * @param binding The shop to bind the block to.
+     */
+    public void bind(Block block, ShopBinding binding) {
+        update(block, blockKey(block), binding);
+    }
+
+    /**
+     * Removes the binding of a block.
+     *
+     * @param block The block to unbind.
+     * @return True if the block was bound to a shop.
+     */
+    public boolean unbind(Block block) {
+        if (getBinding(block) == null) {
+            return false;
+        }
+        update(block, blockKey(block), null);
+        return true;
+    }
+
+    /**
+     * @param block The block to check.
+     * @return True if the block is of a kind that can be bound to a shop: a sign or a container.
+     */
+    public static boolean isShopBlock(Block block) {
+        BlockState state = block.getState();
+        return state instanceof Sign || state instanceof Container;
+    }
+
+    private void update(Block block, int blockKey, ShopBinding binding) {
+        Chunk chunk = block.getChunk();
+        long key = chunkKey(block.getWorld(), chunk.getX(), chunk.getZ());
+        ChunkBindings updated;
+        synchronized (this) {
+            ChunkBindings current = chunks.get(key);
+            updated = (current != null ? current : ChunkBindings.EMPTY).with(blockKey, binding);
+            if (updated.isEmpty()) {
+                chunks.remove(key);
+            } else {
+                chunks.put(key, updated);
+            }
+        }
+        PersistentDataContainer container = chunk.getPersistentDataContainer();
+        if (updated.isEmpty()) {
+            container.remove(bindingsKey);
+        } else {
+            container.set(bindingsKey, PersistentDataType.STRING, updated.serialize());
+        }
+    }
+
+    private long chunkKey(World world, int chunkX, int chunkZ) {
+        long worldId = worldIds.computeIfAbsent(world.getUID(), k -> nextWorldId.getAndIncrement());
+        return worldId << (2 * CHUNK_BITS) | (chunkX & CHUNK_MASK) << CHUNK_BITS | chunkZ & CHUNK_MASK;
+    }
+
+    /**
+     * Packs the position of a block within its chunk into an int: 4 bits each for x and z, the rest for y.
+     */
+    private static int blockKey(Block block) {
+        return block.getY() << 8 | (block.getX() & 15) << 4 | block.getZ() & 15;
+    }
+
+    /**
+     * The bindings of one chunk, as parallel arrays of packed block positions and shops.
+     * Instances are immutable, so a lookup can scan them outside the index's monitor.
+     */
+    private static final class ChunkBindings {
+        private static final ChunkBindings EMPTY = new ChunkBindings(new int[0], new ShopBinding[0]);
+        private final int[] blockKeys;
+        private final ShopBinding[] bindings;
+
+        private ChunkBindings(int[] blockKeys, ShopBinding[] bindings) {
+            this.blockKeys = blockKeys;
+            this.bindings = bindings;
+        }
+
+        ShopBinding get(int blockKey) {
+            for (int i = 0; i < blockKeys.length; i++) {
+                if (blockKeys[i] == blockKey) {
+                    return bindings[i];
+                }
+            }
+            return null;
+        }
+
+        boolean isEmpty() {
+            return blockKeys.length == 0;
+        }
+
+        /**
+         * @return A copy with the binding of one block replaced, or removed if the binding is null.
+         */
+        ChunkBindings with(int blockKey, ShopBinding binding) {
+            int index = -1;
+            for (int i = 0; i < blockKeys.length; i++) {
+                if (blockKeys[i] == blockKey) {
+                    index = i;
+                    break;
+                }
+            }
+            if (binding == null) {
+                if (index < 0) {
+                    return this;
+                }
+                int[] keys = new int[blockKeys.length - 1];
+                ShopBinding[] values = new ShopBinding[bindings.length - 1];
+                System.arraycopy(blockKeys, 0, keys, 0, index);
+                System.arraycopy(blockKeys, index + 1, keys, index, keys.length - index);
+                System.arraycopy(bindings, 0, values, 0, index);
+                System.arraycopy(bindings, index + 1, values, index, values.length - index);
+                return new ChunkBindings(keys, values);
+            }
+            if (index >= 0) {
+                ShopBinding[] values = bindings.clone();
+                values[index] = binding;
+                return new ChunkBindings(blockKeys, values);
+            }
+            int[] keys = Arrays.copyOf(blockKeys, blockKeys.length + 1);
+            ShopBinding[] values = Arrays.copyOf(bindings, bindings.length + 1);
+            keys[blockKeys.length] = blockKey;
+            values[bindings.length] = binding;
+            return new ChunkBindings(keys, values);
+        }
+
+        /**
+         * Writes the bindings as one line per block: the packed position, the owner UUID and the shop name.
+         */
+        String serialize() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < blockKeys.length; i++) {
+                if (i > 0) {
+                    builder.append('\n');
+                }
+                builder.append(blockKeys[i]).append(';').append(bindings[i].ownerUUID()).append(';').append(bindings[i].shopName());
+            }
+            return builder.toString();
+        }
+
+        /**
+         * @return The parsed bindings, or null if the stored text is malformed.
+         */
+        static ChunkBindings parse(String stored) {
+            String[] lines = stored.split("\n");
+            int[] keys = new int[lines.length];
+            ShopBinding[] values = new ShopBinding[lines.length];
+            try {
+                for (int i = 0; i < lines.length; i++) {
+                    // The shop name comes last, so nothing it contains can shift the other fields
+                    String[] fields = lines[i].split(";", 3);
+                    keys[i] = Integer.parseInt(fields[0]);
+                    values[i] = new ShopBinding(UUID.fromString(fields[1]), fields[2]);
+                }
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                return null;
+            }
+            return new ChunkBindings(keys, values);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+import com.marketcraft.storage.ColdStorage;
+import com.marketcraft.storage.ShardedFolder;
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+
+/**
+ * An in-memory index of every shop on the server.
+ * Each entry records the owner, the shop name and the sold and charged items, so shops can be listed
+ * and looked up without loading any YAML file.
+ * <p>
+ * On startup the index is restored from a binary snapshot. Only shop files whose modification time
+ * differs from the snapshot are parsed again, and those are scanned in parallel on a fork-join pool.
+ * Afterwards the index is kept current by {@link PlayerShopManager} whenever a shop is saved or deleted.
+ * Shops of owners in {@link ColdStorage} stay indexed: they are restored from the snapshot like any other shop,
+ * with the time of archiving in place of the file's modification time.
+ * <p>
+ * Listings are also kept in inverted indexes by the material and by the fingerprint of every item they sell,
+ * so searching every shop on the server for an item is a single map lookup. Reads are lock-free, while every change
+ * to the listings and the inverted indexes is made under one lock, so a shop saved and removed at the same time
+ * can never leave a listing in an index it no longer belongs to.
+ */
+public class ShopIndex {
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SCAN_THRESHOLD = 16;
+    private final ShardedFolder shopFiles;
+    private final File snapshotFile;
+    private final Map<UUID, Map<String, ShopListing>> shops = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> fileStamps = new ConcurrentHashMap<>();
+    private final Map<Material, Set<ShopListing>> shopsByMaterial = new ConcurrentHashMap<>();
+    private final Map<ItemFingerprint, Set<ShopListing>> shopsByFingerprint = new ConcurrentHashMap<>();
+    private final List<ShopIndexListener> listeners = new CopyOnWriteArrayList<>();
+    // Guards every change to the listings and the inverted indexes
+    private final Object indexLock = new Object();
+    private volatile boolean dirty;
+
+    /**
+     * @param pluginFolder The data folder of the plugin, holding the snapshot.
+     * @param shopFiles    The folder of shop files.
+     */
+    public ShopIndex(File pluginFolder, ShardedFolder shopFiles) {
+        this.shopFiles = shopFiles;
+        this.snapshotFile = new File(pluginFolder, "shop-index.dat");
+    }
+
+    /**
+     * Populates the index from the snapshot and rescans any shop file that changed since it was written.
+     * Archived shops missing from the snapshot are read back from cold storage, without re-hydrating them.
+     * This is called once during startup and blocks until the parallel scan has finished.
+     *
+     * @param coldStorage The cold storage holding the shop files of idle owners.
+     */
+    public void load(ColdStorage coldStorage) {
+        Map<UUID, FileScan> snapshot = readSnapshot();
+        List<File> changedFiles = new ArrayList<>();
+        for (UUID ownerUUID : shopFiles.getPlayers()) {
+            File file = shopFiles.fileOf(ownerUUID);
+            FileScan cached = snapshot.get(ownerUUID);
+            if (cached != null && cached.lastModified == file.lastModified()) {
+                apply(cached);
+            } else {
+                changedFiles.add(file);
+            }
+        }
+        if (!changedFiles.isEmpty()) {
+            for (FileScan scan : ForkJoinPool.commonPool().invoke(new ScanTask(changedFiles, 0, changedFiles.size()))) {
+                apply(scan);
+            }
+            dirty = true;
+        }
+        for (UUID ownerUUID : coldStorage.getArchivedOwners()) {
+            FileScan cached = snapshot.get(ownerUUID);
+            if (cached != null && cached.lastModified == coldStorage.getArchivedAt(ownerUUID)) {
+                apply(cached);
+                continue;
+            }
+            String shopFile = coldStorage.readShopFile(ownerUUID);
+            if (shopFile != null) {
+                apply(scanConfig(ownerUUID, coldStorage.getArchivedAt(ownerUUID), YamlConfiguration.loadConfiguration(new StringReader(shopFile))));
+                dirty = true;
+            }
+        }
+        // Files that disappeared since the snapshot are simply never applied
+        if (snapshot.size() != fileStamps.size()) {
+            dirty = true;
+        }
+        Bukkit.getLogger().info("[MarketCraft] Indexed " + size() + " shops (" + changedFiles.size() + " shop files rescanned).");
+    }
+
+    /**
+     * Adds or replaces a shop in the index. Listeners are notified under the index lock,
+     * so they see the changes of a shop in the order they were made.
+     *
+     * @param listing      The shop to index.
+     * @param lastModified The modification time of the owner's shop file after the shop was saved.
+     */
+    public void putShop(ShopListing listing, long lastModified) {
+        synchronized (indexLock) {
+            ShopListing previous = shops.computeIfAbsent(listing.getOwnerUUID(), k -> new ConcurrentHashMap<>()).put(listing.getShopName(), listing);
+            if (previous != null) {
+                removeFromItemIndexes(previous);
+            }
+            addToItemIndexes(listing);
+            fileStamps.put(listing.getOwnerUUID(), lastModified);
+            dirty = true;
+            for (ShopIndexListener listener : listeners) {
+                listener.onShopSaved(listing, previous);
+            }
+        }
+    }
+
+    /**
+     * Removes a shop from the index.
+     *
+     * @param ownerUUID    The UUID of the shop owner.
+     * @param shopName     The name of the shop.
+     * @param lastModified The modification time of the owner's shop file after the shop was deleted.
+     * @return The removed listing, or null if the shop was not indexed.
+     */
+    public ShopListing removeShop(UUID ownerUUID, String shopName, long lastModified) {
+        synchronized (indexLock) {
+            Map<String, ShopListing> ownerShops = shops.get(ownerUUID);
+            if (ownerShops == null) {
+                return null;
+            }
+            ShopListing removed = ownerShops.remove(shopName);
+            fileStamps.put(ownerUUID, lastModified);
+            dirty = true;
+            if (removed != null) {
+                removeFromItemIndexes(removed);
+                for (ShopIndexListener listener : listeners) {
+                    listener.onShopRemoved(removed);
+                }
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Records a new stamp for an owner's shops without changing them, such as the time they were archived.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param stamp     The modification time of the shop file, or the time of archiving for archived owners.
+     */
+    public void setFileStamp(UUID ownerUUID, long stamp) {
+        fileStamps.put(ownerUUID, stamp);
+        dirty = true;
+    }
+
+    /**
+     * Registers a listener that is notified whenever a shop is saved or removed.
+     *
+     * @param listener The listener to register.
+     */
+    public void addListener(ShopIndexListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     * @return The listing of the shop, or null if it does not exist.
+     */
+    public ShopListing getShop(UUID ownerUUID, String shopName) {
+        Map<String, ShopListing> ownerShops = shops.get(ownerUUID);
+        return ownerShops != null ? ownerShops.get(shopName) : null;
+    }
+
+    /**
+     * @param ownerUUID The UUID of the shop owner.
+     * @return The listings of every shop owned by the player.
+     */
+    public Collection<ShopListing> getShops(UUID ownerUUID) {
+        Map<String, ShopListing> ownerShops = shops.get(ownerUUID);
+        return ownerShops != null ? Collections.unmodifiableCollection(ownerShops.values()) : Collections.emptyList();
+    }
+
+    /**
+     * @return The listings of every shop on the server.
+     */
+    public List<ShopListing> getAllShops() {
+        List<ShopListing> allShops = new ArrayList<>();
+        for (Map<String, ShopListing> ownerShops : shops.values()) {
+            allShops.addAll(ownerShops.values());
+        }
+        return allShops;
+    }
+
+    /**
+     * Finds every shop selling a material, regardless of the item's meta.
+     *
+     * @param material The material to search for.
+     * @return The listings of all shops selling the material.
+     */
+    public List<ShopListing> findByMaterial(Material material) {
+        Set<ShopListing> listings = shopsByMaterial.get(material);
+        return listings != null ? new ArrayList<>(listings) : new ArrayList<>();
+    }
+
+    /**
+     * Finds every shop selling an item similar to the given one.
+     *
+     * @param item The item to search for. The amount of the item is ignored.
+     * @return The listings of all shops selling a similar item.
+     */
+    public List<ShopListing> findByItem(ItemStack item) {
+        Set<ShopListing> listings = shopsByFingerprint.get(ItemFingerprint.of(item));
+        return listings != null ? new ArrayList<>(listings) : new ArrayList<>();
+    }
+
+    /**
+     * @return The number of indexed shops.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, ShopListing> ownerShops : shops.values()) {
+            size += ownerShops.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return True if the index changed since the snapshot was last written.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Writes the snapshot of the index. The snapshot is written to a temporary file first and then
+     * moved into place, so a crash mid-write never leaves a corrupt snapshot behind.
+     * This does not touch the Bukkit API beyond item serialization and may run off the main thread.
+     */
+    public synchronized void saveSnapshot() {
+        dirty = false;
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            List<UUID> owners = new ArrayList<>(fileStamps.keySet());
+            out.writeInt(owners.size());
+            for (UUID ownerUUID : owners) {
+                Collection<ShopListing> ownerShops = getShops(ownerUUID);
+                out.writeLong(ownerUUID.getMostSignificantBits());
+                out.writeLong(ownerUUID.getLeastSignificantBits());
+                out.writeLong(fileStamps.getOrDefault(ownerUUID, 0L));
+                List<ShopListing> listings = new ArrayList<>(ownerShops);
+                out.writeInt(listings.size());
+                for (ShopListing listing : listings) {
+                    ShopTradeTable trades = listing.getTrades();
+                    out.writeUTF(listing.getShopName());
+                    out.writeInt(trades.size());
+                    for (int trade = 0; trade < trades.size(); trade++) {
+                        writeItem(out, trades.getItemToSell(trade));
+                        writeItem(out, trades.getItemToCharge(trade));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            dirty = true;
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while writing the shop index snapshot: ", e);
+            return;
+        }
+        try {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while replacing the shop index snapshot: ", e);
+        }
+    }
+
+    /**
+     * Reads the snapshot written by {@link #saveSnapshot()}.
+     *
+     * @return The snapshot contents per owner, or an empty map if there is no usable snapshot.
+     */
+    private Map<UUID, FileScan> readSnapshot() {
+        Map<UUID, FileScan> snapshot = new HashMap<>();
+        if (!snapshotFile.exists()) {
+            return snapshot;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                return snapshot;
+            }
+            int ownerCount = in.readInt();
+            for (int i = 0; i < ownerCount; i++) {
+                UUID ownerUUID = new UUID(in.readLong(), in.readLong());
+                long lastModified = in.readLong();
+                int shopCount = in.readInt();
+                List<ShopListing> listings = new ArrayList<>(shopCount);
+                for (int j = 0; j < shopCount; j++) {
+                    String shopName = in.readUTF();
+                    int tradeCount = in.readInt();
+                    List<ItemStack> itemsToSell = new ArrayList<>(tradeCount);
+                    List<ItemStack> itemsToCharge = new ArrayList<>(tradeCount);
+                    for (int trade = 0; trade < tradeCount; trade++) {
+                        itemsToSell.add(readItem(in));
+                        itemsToCharge.add(readItem(in));
+                    }
+                    listings.add(new ShopListing(ownerUUID, shopName, ShopTradeTable.of(itemsToSell, itemsToCharge)));
+                }
+                snapshot.put(ownerUUID, new FileScan(ownerUUID, lastModified, listings));
+            }
+        } catch (Exception e) {
+            // A broken snapshot only costs a full rescan
+            Bukkit.getLogger().log(Level.WARNING, "The shop index snapshot could not be read, rescanning all shops: ", e);
+            snapshot.clear();
+        }
+        return snapshot;
+    }
+
+    private void apply(FileScan scan) {
+        synchronized (indexLock) {
+            Map<String, ShopListing> ownerShops = new ConcurrentHashMap<>();
+            for (ShopListing listing : scan.listings) {
+                ownerShops.put(listing.getShopName(), listing);
+                addToItemIndexes(listing);
+            }
+            shops.put(scan.ownerUUID, ownerShops);
+            fileStamps.put(scan.ownerUUID, scan.lastModified);
+        }
+    }
+
+    // Both item index updates must run under the index lock, or an add could land in a bucket being dropped as empty
+    private void addToItemIndexes(ShopListing listing) {
+        ShopTradeTable trades = listing.getTrades();
+        for (int trade = 0; trade < trades.size(); trade++) {
+            ItemFingerprint fingerprint = trades.getSellFingerprint(trade);
+            if (fingerprint == null) {
+                continue;
+            }
+            shopsByMaterial.computeIfAbsent(fingerprint.getType(), k -> ConcurrentHashMap.newKeySet()).add(listing);
+            shopsByFingerprint.computeIfAbsent(fingerprint, k -> ConcurrentHashMap.newKeySet()).add(listing);
+        }
+    }
+
+    private void removeFromItemIndexes(ShopListing listing) {
+        ShopTradeTable trades = listing.getTrades();
+        for (int trade = 0; trade < trades.size(); trade++) {
+            ItemFingerprint fingerprint = trades.getSellFingerprint(trade);
+            if (fingerprint == null) {
+                continue;
+            }
+            // Drop the buckets once empty so the indexes don't keep every material ever sold
+            shopsByMaterial.computeIfPresent(fingerprint.getType(), (k, set) -> set.remove(listing) && set.isEmpty() ? null : set);
+            shopsByFingerprint.computeIfPresent(fingerprint, (k, set) -> set.remove(listing) && set.isEmpty() ? null : set);
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, ItemStack item) throws IOException {
+        if (item == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = item.serializeAsBytes();
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static ItemStack readItem(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return ItemStack.deserializeBytes(data);
+    }
+
+    private static UUID parseOwner(File file) {
+        String name = file.getName();
+        try {
+            return UUID.fromString(name.substring(0, name.length() - ".yml".length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a single shop file into listings.
+     *
+     * @param file The shop file of one owner.
+     * @return The scanned shops of that owner.
+     */
+    private static FileScan scanFile(File file) {
+        return scanConfig(parseOwner(file), file.lastModified(), YamlConfiguration.loadConfiguration(file));
+    }
+
+    /**
+     * Parses the contents of a shop file into listings.
+     *
+     * @param ownerUUID    The UUID of the shop owner.
+     * @param lastModified The stamp to record for the file.
+     * @param config       The loaded shop file.
+     * @return The scanned shops of that owner.
+     */
+    private static FileScan scanConfig(UUID ownerUUID, long lastModified, YamlConfiguration config) {
+        List<ShopListing> listings = new ArrayList<>();
+        ConfigurationSection shopsSection = config.getConfigurationSection("shops");
+        if (shopsSection != null) {
+            for (String shopName : shopsSection.getKeys(false)) {
+                ConfigurationSection shopSection = shopsSection.getConfigurationSection(shopName);
+                ShopTradeTable trades = shopSection != null ? ShopTradeTable.read(shopSection) : ShopTradeTable.empty();
+                listings.add(new ShopListing(ownerUUID, shopName, trades));
+            }
+        }
+        return new FileScan(ownerUUID, lastModified, listings);
+    }
+
+    /**
+     * The shops found in one owner's shop file, along with the file's modification time.
+     */
+    private record FileScan(UUID ownerUUID, long lastModified, List<ShopListing> listings) {
+    }
+
+    /**
+     * Scans a range of shop files, splitting the range in half until it is small enough to parse directly.
+     */
+    private static final class ScanTask extends RecursiveTask<List<FileScan>> {
+        private static final long serialVersionUID = 1L;
+        private final List<File> files;
+        private final int from;
+        private final int to;
+
+        private ScanTask(List<File> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<FileScan> compute() {
+            if (to - from <= SCAN_THRESHOLD) {
+                List<FileScan> scans = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    try {
+                        scans.add(scanFile(files.get(i)));
+                    } catch (Exception e) {
+                        Bukkit.getLogger().log(Level.WARNING, "An error has occurred while indexing the shop file " + files.get(i).getName() + ": ", e);
+                    }
+                }
+                return scans;
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(files, from, middle);
+            left.fork();
+            List<FileScan> scans = new ScanTask(files, middle, to).compute();
+            scans.addAll(left.join());
+            return scans;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+/**
+ * Receives changes of the {@link ShopIndex}, so structures derived from it can be updated incrementally.
+ * Callbacks run on the thread that saved or deleted the shop.
+ */
+public interface ShopIndexListener {
+
+    /**
+     * Called after a shop was added to the index or replaced in it.
+     *
+     * @param listing  The new listing.
+     * @param previous The listing it replaced, or null if the shop is new.
+     */
+    void onShopSaved(ShopListing listing, ShopListing previous);
+
+    /**
+     * Called after a shop was removed from the index.
+     *
+     * @param listing The removed listing.
+     */
+    void onShopRemoved(ShopListing listing);
+}
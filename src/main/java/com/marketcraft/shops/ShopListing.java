@@ -0,0 +1,94 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * An immutable entry of the {@link ShopIndex}, describing a single shop without touching its file.
+ * A shop offers one or more trades, kept in a {@link ShopTradeTable}. The single-item accessors describe the
+ * first trade, which is the only one for shops created before shops could hold several.
+ * The items are private copies and are only handed out as clones.
+ */
+public final class ShopListing {
+    private final UUID ownerUUID;
+    private final String shopName;
+    private final ShopTradeTable trades;
+
+    public ShopListing(UUID ownerUUID, String shopName, ShopTradeTable trades) {
+        this.ownerUUID = ownerUUID;
+        this.shopName = shopName;
+        this.trades = trades;
+    }
+
+    public ShopListing(UUID ownerUUID, String shopName, ItemStack itemToSell, ItemStack itemToCharge) {
+        this(ownerUUID, shopName, ShopTradeTable.of(itemToSell, itemToCharge));
+    }
+
+    public UUID getOwnerUUID() {
+        return ownerUUID;
+    }
+
+    public String getShopName() {
+        return shopName;
+    }
+
+    /**
+     * @return Every trade offered by the shop.
+     */
+    public ShopTradeTable getTrades() {
+        return trades;
+    }
+
+    /**
+     * @return A copy of the item sold by the first trade, or null if the shop has none configured.
+     */
+    public ItemStack getItemToSell() {
+        return trades.size() > 0 ? trades.getItemToSell(0) : null;
+    }
+
+    /**
+     * @return A copy of the item charged by the first trade, or null if the shop has none configured.
+     */
+    public ItemStack getItemToCharge() {
+        return trades.size() > 0 ? trades.getItemToCharge(0) : null;
+    }
+
+    /**
+     * @return The fingerprint of the item sold by the first trade, or null if the shop has none configured.
+     */
+    public ItemFingerprint getSellFingerprint() {
+        return trades.size() > 0 ? trades.getSellFingerprint(0) : null;
+    }
+
+    /**
+     * @return The fingerprint of the item charged by the first trade, or null if the shop has none configured.
+     */
+    public ItemFingerprint getChargeFingerprint() {
+        return trades.size() > 0 ? trades.getChargeFingerprint(0) : null;
+    }
+
+    /**
+     * @return The amount of the item handed out per purchase of the first trade, or zero if the shop has none configured.
+     */
+    public int getSellAmount() {
+        return trades.size() > 0 ? trades.getSellAmount(0) : 0;
+    }
+
+    /**
+     * @return The amount of the item taken per purchase of the first trade, or zero if the shop has none configured.
+     */
+    public int getChargeAmount() {
+        return trades.size() > 0 ? trades.getChargeAmount(0) : 0;
+    }
+}
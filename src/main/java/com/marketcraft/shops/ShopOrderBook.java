@@ -0,0 +1,305 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+import com.marketcraft.scheduler.WorkScheduler;
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.vaults.PlayerVaultManager;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ranks the shops selling the same item for the same cost item by unit price.
+ * There is one book per pair of sold and charged item. Every trade of a shop is a separate offer in the book of
+ * its items, and each book keeps the offers that have stock for at least one trade in a sorted set, so the
+ * cheapest offer is always the first entry.
+ * <p>
+ * The books are updated incrementally. Shop changes arrive through {@link ShopIndexListener}, and every vault write
+ * queues the owner for a recount. Queued owners are recounted together off the main thread, with one read per vault,
+ * so a vault that changes many times before its recount is only counted once. Queries only read the books in memory,
+ * and see the stock of an offer as of its last recount.
+ */
+public class ShopOrderBook implements ShopIndexListener {
+    private static final Comparator<Offer> PRICE_ORDER = (a, b) -> {
+        // Compare charge / sell without division, the amounts are small enough that the products can't overflow
+        int byPrice = Long.compare((long) a.chargeAmount * b.sellAmount, (long) b.chargeAmount * a.sellAmount);
+        if (byPrice != 0) {
+            return byPrice;
+        }
+        int byOwner = a.listing.getOwnerUUID().compareTo(b.listing.getOwnerUUID());
+        if (byOwner != 0) {
+            return byOwner;
+        }
+        int byShop = a.listing.getShopName().compareTo(b.listing.getShopName());
+        return byShop != 0 ? byShop : Integer.compare(a.trade, b.trade);
+    };
+    private final PlayerVaultManager playerVaultManager;
+    private final WorkScheduler workScheduler;
+    private final Map<ItemFingerprint, Map<ItemFingerprint, Book>> books = new HashMap<>();
+    private final Map<UUID, Map<String, List<Offer>>> offersByOwner = new HashMap<>();
+    // Filled by vault writes while the vault lock is held, so it must never wait for this book's monitor
+    private final Queue<UUID> staleOwners = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean recountPending = new AtomicBoolean();
+
+    public ShopOrderBook(ShopIndex shopIndex, PlayerVaultManager playerVaultManager, WorkScheduler workScheduler) {
+        this.playerVaultManager = playerVaultManager;
+        this.workScheduler = workScheduler;
+        synchronized (this) {
+            for (ShopListing listing : shopIndex.getAllShops()) {
+                addOffer(listing);
+            }
+        }
+        shopIndex.addListener(this);
+        playerVaultManager.addStockListener(this::markStale);
+    }
+
+    @Override
+    public synchronized void onShopSaved(ShopListing listing, ShopListing previous) {
+        if (previous != null) {
+            removeOffer(previous);
+        }
+        addOffer(listing);
+    }
+
+    @Override
+    public synchronized void onShopRemoved(ShopListing listing) {
+        removeOffer(listing);
+    }
+
+    /**
+     * Returns the offers for an item in price order, cheapest first, until their stock covers the requested amount.
+     * Only shops with stock for at least one trade are returned.
+     *
+     * @param itemToBuy The fingerprint of the item to buy.
+     * @param costItem  The fingerprint of the item to pay with.
+     * @param quantity  The amount of items the buyer wants.
+     * @return The best offers, possibly covering less than the requested amount if the market is short.
+     */
+    public synchronized List<Offer> getBestOffers(ItemFingerprint itemToBuy, ItemFingerprint costItem, int quantity) {
+        Book book = getBook(itemToBuy, costItem);
+        List<Offer> offers = new ArrayList<>();
+        if (book == null) {
+            return offers;
+        }
+        int covered = 0;
+        for (Offer offer : book.inStock) {
+            if (covered >= quantity) {
+                break;
+            }
+            offers.add(offer);
+            covered += offer.stock - offer.stock % offer.sellAmount;
+        }
+        return offers;
+    }
+
+    /**
+     * Returns the cheapest in-stock offer of every cost item an item is sold for.
+     *
+     * @param itemToBuy The fingerprint of the item to buy.
+     * @return The best offer per cost item, in no particular order.
+     */
+    public synchronized List<Offer> getBestOfferPerCurrency(ItemFingerprint itemToBuy) {
+        List<Offer> offers = new ArrayList<>();
+        Map<ItemFingerprint, Book> booksByCost = books.get(itemToBuy);
+        if (booksByCost == null) {
+            return offers;
+        }
+        for (ItemFingerprint costFingerprint : new ArrayList<>(booksByCost.keySet())) {
+            Book book = getBook(itemToBuy, costFingerprint);
+            if (book != null && !book.inStock.isEmpty()) {
+                offers.add(book.inStock.first());
+            }
+        }
+        return offers;
+    }
+
+    /**
+     * @param sellFingerprint   The fingerprint of the sold item.
+     * @param chargeFingerprint The fingerprint of the charged item.
+     * @return The book, or null if no shop trades these items.
+     */
+    private Book getBook(ItemFingerprint sellFingerprint, ItemFingerprint chargeFingerprint) {
+        Map<ItemFingerprint, Book> booksByCost = books.get(sellFingerprint);
+        return booksByCost != null ? booksByCost.get(chargeFingerprint) : null;
+    }
+
+    /**
+     * Queues an owner whose vault was written for a recount. This is called while the vault lock is held,
+     * so it only queues the owner and schedules the recount if none is pending yet.
+     *
+     * @param ownerUUID The UUID of the owner.
+     */
+    private void markStale(UUID ownerUUID) {
+        staleOwners.add(ownerUUID);
+        if (recountPending.compareAndSet(false, true)) {
+            workScheduler.submitAsync(this::recountStaleOwners);
+        }
+    }
+
+    /**
+     * Recounts the offers of every queued owner, reading each shop's vault once for all its trades.
+     * The vaults are counted without holding this book's monitor, and the counts are only applied to offers that
+     * are still in the book. Owners written again during the recount are queued for another one.
+     */
+    private void recountStaleOwners() {
+        recountPending.set(false);
+        Set<UUID> owners = new HashSet<>();
+        UUID ownerUUID;
+        while ((ownerUUID = staleOwners.poll()) != null) {
+            owners.add(ownerUUID);
+        }
+        for (UUID owner : owners) {
+            Map<String, List<Offer>> ownerOffers;
+            synchronized (this) {
+                ownerOffers = new HashMap<>(offersByOwner.getOrDefault(owner, Collections.emptyMap()));
+            }
+            for (Map.Entry<String, List<Offer>> entry : ownerOffers.entrySet()) {
+                List<Offer> shopOffers = entry.getValue();
+                ItemStack[] items = new ItemStack[shopOffers.size()];
+                for (int i = 0; i < items.length; i++) {
+                    items[i] = shopOffers.get(i).getItemToSell();
+                }
+                int[] counts = playerVaultManager.getCachedItemCounts(owner, items, entry.getKey());
+                synchronized (this) {
+                    Map<String, List<Offer>> currentOffers = offersByOwner.get(owner);
+                    if (currentOffers == null || currentOffers.get(entry.getKey()) != shopOffers) {
+                        continue; // The shop was changed or removed meanwhile
+                    }
+                    for (int i = 0; i < counts.length; i++) {
+                        Offer offer = shopOffers.get(i);
+                        offer.book.inStock.remove(offer);
+                        offer.stock = counts[i];
+                        if (offer.stock >= offer.sellAmount) {
+                            offer.book.inStock.add(offer);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void addOffer(ShopListing listing) {
+        ShopTradeTable trades = listing.getTrades();
+        List<Offer> shopOffers = new ArrayList<>(trades.size());
+        for (int trade = 0; trade < trades.size(); trade++) {
+            ItemFingerprint sellFingerprint = trades.getSellFingerprint(trade);
+            ItemFingerprint chargeFingerprint = trades.getChargeFingerprint(trade);
+            if (sellFingerprint == null || chargeFingerprint == null || !trades.isComplete(trade)) {
+                continue;
+            }
+            Book book = books.computeIfAbsent(sellFingerprint, k -> new HashMap<>()).computeIfAbsent(chargeFingerprint, k -> new Book());
+            Offer offer = new Offer(listing, trade, book);
+            book.offerCount++;
+            shopOffers.add(offer);
+        }
+        if (!shopOffers.isEmpty()) {
+            offersByOwner.computeIfAbsent(listing.getOwnerUUID(), k -> new HashMap<>()).put(listing.getShopName(), shopOffers);
+            // New offers are out of stock until their owner is recounted
+            markStale(listing.getOwnerUUID());
+        }
+    }
+
+    private void removeOffer(ShopListing listing) {
+        Map<String, List<Offer>> ownerOffers = offersByOwner.get(listing.getOwnerUUID());
+        List<Offer> shopOffers = ownerOffers != null ? ownerOffers.remove(listing.getShopName()) : null;
+        if (shopOffers == null) {
+            return;
+        }
+        if (ownerOffers.isEmpty()) {
+            offersByOwner.remove(listing.getOwnerUUID());
+        }
+        ShopTradeTable trades = listing.getTrades();
+        for (Offer offer : shopOffers) {
+            offer.book.inStock.remove(offer);
+            offer.book.offerCount--;
+            ItemFingerprint sellFingerprint = trades.getSellFingerprint(offer.trade);
+            Map<ItemFingerprint, Book> booksByCost = books.get(sellFingerprint);
+            // Offers without stock are not in the set, so only drop the book once it has no offers at all
+            if (offer.book.offerCount == 0 && booksByCost != null) {
+                booksByCost.remove(trades.getChargeFingerprint(offer.trade));
+                if (booksByCost.isEmpty()) {
+                    books.remove(sellFingerprint);
+                }
+            }
+        }
+    }
+
+    /**
+     * The offers of all shops selling one item for one cost item.
+     */
+    private static final class Book {
+        private final NavigableSet<Offer> inStock = new TreeSet<>(PRICE_ORDER);
+        private int offerCount;
+    }
+
+    /**
+     * A single trade of a shop in a book, along with its last counted stock.
+     */
+    public static final class Offer {
+        private final ShopListing listing;
+        private final int trade;
+        private final Book book;
+        private final int sellAmount;
+        private final int chargeAmount;
+        // Recounted under the book's monitor, but read by callers holding an offer outside it
+        private volatile int stock;
+
+        private Offer(ShopListing listing, int trade, Book book) {
+            this.listing = listing;
+            this.trade = trade;
+            this.book = book;
+            this.sellAmount = listing.getTrades().getSellAmount(trade);
+            this.chargeAmount = listing.getTrades().getChargeAmount(trade);
+        }
+
+        public ShopListing getListing() {
+            return listing;
+        }
+
+        /**
+         * @return The number of the offered trade within the shop.
+         */
+        public int getTrade() {
+            return trade;
+        }
+
+        /**
+         * @return A copy of the item handed out per trade.
+         */
+        public ItemStack getItemToSell() {
+            return listing.getTrades().getItemToSell(trade);
+        }
+
+        /**
+         * @return A copy of the item charged per trade.
+         */
+        public ItemStack getItemToCharge() {
+            return listing.getTrades().getItemToCharge(trade);
+        }
+
+        public int getSellAmount() {
+            return sellAmount;
+        }
+
+        public int getChargeAmount() {
+            return chargeAmount;
+        }
+
+        /**
+         * @return The stock of the sold item when the offer was last counted.
+         */
+        public int getStock() {
+            return stock;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+import com.marketcraft.util.ItemCodec;
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+
+/**
+ * The trades offered by one shop, all backed by the shop's single vault.
+ * <p>
+ * Trades are stored column-wise in parallel arrays indexed by trade number, so a shop with several trades is one
+ * object with a handful of arrays rather than a listing per trade. Amounts are kept as primitives, so sorting and
+ * pricing never clone an item, and fingerprints are computed once per table on first use.
+ * Stock is not part of the table: each trade's stock is looked up in the vault stock index by its sold item.
+ * <p>
+ * In a shop file the first trade is stored under itemToSell and itemToCharge, as single-trade shops always were,
+ * and any further trades under trades.&lt;number&gt;. Tables are immutable and hand out copies of their items.
+ */
+public final class ShopTradeTable {
+    /**
+     * The most trades a shop can offer, limited by how many fit on the shop screen.
+     */
+    public static final int MAX_TRADES = 4;
+    private static final ShopTradeTable EMPTY = new ShopTradeTable(new ItemStack[0], new ItemStack[0]);
+    private final ItemStack[] itemsToSell;
+    private final ItemStack[] itemsToCharge;
+    private final int[] sellAmounts;
+    private final int[] chargeAmounts;
+    // Computed on first use; volatile as tables are read from the matching and order book threads, and two threads
+    // computing them at once only compute equal arrays
+    private volatile ItemFingerprint[] sellFingerprints;
+    private volatile ItemFingerprint[] chargeFingerprints;
+
+    private ShopTradeTable(ItemStack[] itemsToSell, ItemStack[] itemsToCharge) {
+        this.itemsToSell = itemsToSell;
+        this.itemsToCharge = itemsToCharge;
+        this.sellAmounts = new int[itemsToSell.length];
+        this.chargeAmounts = new int[itemsToCharge.length];
+        for (int i = 0; i < itemsToSell.length; i++) {
+            sellAmounts[i] = itemsToSell[i] != null ? itemsToSell[i].getAmount() : 0;
+            chargeAmounts[i] = itemsToCharge[i] != null ? itemsToCharge[i].getAmount() : 0;
+        }
+    }
+
+    /**
+     * @param itemToSell   The item sold by the only trade, may be null if the shop is not set up.
+     * @param itemToCharge The item charged by the only trade, may be null if the shop is not set up.
+     * @return A table with a single trade.
+     */
+    public static ShopTradeTable of(ItemStack itemToSell, ItemStack itemToCharge) {
+        return new ShopTradeTable(new ItemStack[]{copy(itemToSell)}, new ItemStack[]{copy(itemToCharge)});
+    }
+
+    /**
+     * @param itemsToSell   The items sold, one per trade.
+     * @param itemsToCharge The items charged, one per trade, in the same order.
+     * @return A table with the given trades.
+     * @throws IllegalArgumentException If the lists differ in size or hold more than {@link #MAX_TRADES} trades.
+     */
+    public static ShopTradeTable of(List<ItemStack> itemsToSell, List<ItemStack> itemsToCharge) {
+        if (itemsToSell.size() != itemsToCharge.size() || itemsToSell.size() > MAX_TRADES) {
+            throw new IllegalArgumentException("A shop has between 0 and " + MAX_TRADES + " trades, each with a sold and a charged item");
+        }
+        ItemStack[] sell = new ItemStack[itemsToSell.size()];
+        ItemStack[] charge = new ItemStack[itemsToCharge.size()];
+        for (int i = 0; i < sell.length; i++) {
+            sell[i] = copy(itemsToSell.get(i));
+            charge[i] = copy(itemsToCharge.get(i));
+        }
+        return new ShopTradeTable(sell, charge);
+    }
+
+    /**
+     * @return A table without any trades.
+     */
+    public static ShopTradeTable empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return The number of trades.
+     */
+    public int size() {
+        return itemsToSell.length;
+    }
+
+    /**
+     * @param trade The trade number, starting at 0.
+     * @return A copy of the item sold by the trade, or null if it has none configured.
+     */
+    public ItemStack getItemToSell(int trade) {
+        return copy(itemsToSell[trade]);
+    }
+
+    /**
+     * @param trade The trade number, starting at 0.
+     * @return A copy of the item charged by the trade, or null if it has none configured.
+     */
+    public ItemStack getItemToCharge(int trade) {
+        return copy(itemsToCharge[trade]);
+    }
+
+    public int getSellAmount(int trade) {
+        return sellAmounts[trade];
+    }
+
+    public int getChargeAmount(int trade) {
+        return chargeAmounts[trade];
+    }
+
+    /**
+     * @param trade The trade number, starting at 0.
+     * @return The fingerprint of the sold item, or null if the trade has none configured.
+     */
+    public ItemFingerprint getSellFingerprint(int trade) {
+        ItemFingerprint[] fingerprints = sellFingerprints;
+        if (fingerprints == null) {
+            fingerprints = fingerprints(itemsToSell);
+            sellFingerprints = fingerprints;
+        }
+        return fingerprints[trade];
+    }
+
+    /**
+     * @param trade The trade number, starting at 0.
+     * @return The fingerprint of the charged item, or null if the trade has none configured.
+     */
+    public ItemFingerprint getChargeFingerprint(int trade) {
+        ItemFingerprint[] fingerprints = chargeFingerprints;
+        if (fingerprints == null) {
+            fingerprints = fingerprints(itemsToCharge);
+            chargeFingerprints = fingerprints;
+        }
+        return fingerprints[trade];
+    }
+
+    /**
+     * @param trade The trade number, starting at 0.
+     * @return True if the trade has both items configured with a positive amount.
+     */
+    public boolean isComplete(int trade) {
+        return sellAmounts[trade] > 0 && chargeAmounts[trade] > 0;
+    }
+
+    /**
+     * @param item The item to check.
+     * @return True if any trade sells an item similar to the given one.
+     */
+    public boolean sells(ItemStack item) {
+        for (int i = 0; i < itemsToSell.length; i++) {
+            ItemFingerprint fingerprint = getSellFingerprint(i);
+            if (fingerprint != null && fingerprint.matches(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param item The item to check.
+     * @return True if any trade charges an item similar to the given one.
+     */
+    public boolean charges(ItemStack item) {
+        for (int i = 0; i < itemsToCharge.length; i++) {
+            ItemFingerprint fingerprint = getChargeFingerprint(i);
+            if (fingerprint != null && fingerprint.matches(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param trade        The trade number, starting at 0.
+     * @param chargeAmount The new amount to charge.
+     * @return A copy of this table with the amount charged by one trade changed.
+     */
+    public ShopTradeTable withChargeAmount(int trade, int chargeAmount) {
+        ItemStack[] charge = itemsToCharge.clone();
+        charge[trade] = copy(charge[trade]);
+        charge[trade].setAmount(chargeAmount);
+        return new ShopTradeTable(itemsToSell, charge);
+    }
+
+    /**
+     * Reads the trades of one shop from its section of the shop file.
+     *
+     * @param shopSection The section of the shop.
+     * @return The trades of the shop.
+     */
+    static ShopTradeTable read(ConfigurationSection shopSection) {
+        ConfigurationSection tradesSection = shopSection.getConfigurationSection("trades");
+        int size = 1 + (tradesSection != null ? Math.min(tradesSection.getKeys(false).size(), MAX_TRADES - 1) : 0);
+        ItemStack[] sell = new ItemStack[size];
+        ItemStack[] charge = new ItemStack[size];
+        sell[0] = readItem(shopSection, "itemToSell");
+        charge[0] = readItem(shopSection, "itemToCharge");
+        for (int i = 1; i < size; i++) {
+            sell[i] = readItem(shopSection, "trades." + i + ".itemToSell");
+            charge[i] = readItem(shopSection, "trades." + i + ".itemToCharge");
+        }
+        return new ShopTradeTable(sell, charge);
+    }
+
+    /**
+     * Writes the trades into the section of a shop, replacing any trades it held before.
+     *
+     * @param shopSection The section of the shop.
+     */
+    void write(ConfigurationSection shopSection) {
+        shopSection.set("itemToSell", itemsToSell.length > 0 && itemsToSell[0] != null ? ItemCodec.encode(itemsToSell[0]) : null);
+        shopSection.set("itemToCharge", itemsToCharge.length > 0 && itemsToCharge[0] != null ? ItemCodec.encode(itemsToCharge[0]) : null);
+        shopSection.set("trades", null);
+        for (int i = 1; i < itemsToSell.length; i++) {
+            shopSection.set("trades." + i + ".itemToSell", ItemCodec.encode(itemsToSell[i]));
+            shopSection.set("trades." + i + ".itemToCharge", ItemCodec.encode(itemsToCharge[i]));
+        }
+    }
+
+    private static ItemStack readItem(ConfigurationSection shopSection, String path) {
+        ConfigurationSection itemSection = shopSection.getConfigurationSection(path);
+        return itemSection != null ? ItemCodec.decode(itemSection.getValues(false)) : null;
+    }
+
+    private static ItemFingerprint[] fingerprints(ItemStack[] items) {
+        ItemFingerprint[] fingerprints = new ItemFingerprint[items.length];
+        for (int i = 0; i < items.length; i++) {
+            fingerprints[i] = ItemFingerprint.of(items[i]);
+        }
+        return fingerprints;
+    }
+
+    private static ItemStack copy(ItemStack item) {
+        return item != null ? item.clone() : null;
+    }
+}
@@ -9,17 +9,16 @@
 
 package com.marketcraft.shops;
 
+import com.marketcraft.gui.PlayerOpenShopGUI;
+import com.marketcraft.util.ItemFingerprint;
 import com.marketcraft.vaults.PlayerVaultManager;
-import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.HashMap;
 import java.util.Objects;
 import java.util.UUID;
-
-import static com.marketcraft.util.GUIUtils.createNamedItem;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Handles transactions for player shops in the MarketCraft plugin.
@@ -28,12 +27,13 @@ import static com.marketcraft.util.GUIUtils.createNamedItem;
  */
 public class ShopTransaction {
     private final PlayerVaultManager playerVaultManager;
-    private static final int SELL_SLOT = 11;
-    private static final int CHARGE_SLOT = 15;
-    public static final int STOCK_INDICATOR_SLOT = 20;
+    private final TradeListener tradeListener;
+    private final ShopIndex shopIndex;
 
-    public ShopTransaction(PlayerVaultManager playerVaultManager) {
+    public ShopTransaction(PlayerVaultManager playerVaultManager, TradeListener tradeListener, ShopIndex shopIndex) {
         this.playerVaultManager = playerVaultManager;
+        this.tradeListener = tradeListener;
+        this.shopIndex = shopIndex;
     }
 
     /**
@@ -45,33 +45,95 @@ public class ShopTransaction {
      * @param shopInventory The inventory of the shop where the transaction is occurring.
      * @param shopOwnerUUID The UUID of the shop owner.
      * @param shopName      The name of the shop.
+     * @param trade         The number of the trade being bought, which selects its row of the shop inventory.
      */
-    public void processTransaction(Player player, Inventory shopInventory, UUID shopOwnerUUID, String shopName) {
-        ItemStack itemBeingSold = shopInventory.getItem(SELL_SLOT);
-        ItemStack itemCost = shopInventory.getItem(CHARGE_SLOT);
-        if (shopHasSufficientStock(player, shopOwnerUUID, itemBeingSold, shopName) && shopHasSufficientSpace(player, shopOwnerUUID, itemCost, shopName)) {
-            if (buyerHasEnoughItems(player, Objects.requireNonNull(itemCost)) && buyerHasInventorySpace(player)) {
-                removeItemsFromBuyer(player, itemCost);
-                giveItemsToBuyer(player, Objects.requireNonNull(itemBeingSold));
-                playerVaultManager.removeItemsFromPlayerVault(shopOwnerUUID, itemBeingSold, itemBeingSold.getAmount(), shopName);
-                playerVaultManager.addItemsToPlayerVault(shopOwnerUUID, itemCost, itemCost.getAmount(), shopName);
-                updateStockIndicator(shopInventory, shopOwnerUUID, itemBeingSold, shopName);
+    public void processTransaction(Player player, Inventory shopInventory, UUID shopOwnerUUID, String shopName, int trade) {
+        int rowStart = PlayerOpenShopGUI.getTradeRowStart(trade);
+        ItemStack itemBeingSold = shopInventory.getItem(rowStart + PlayerOpenShopGUI.SELL_COLUMN);
+        ItemStack itemCost = shopInventory.getItem(rowStart + PlayerOpenShopGUI.CHARGE_COLUMN);
+        if (purchase(player, shopOwnerUUID, shopName, trade, Objects.requireNonNull(itemBeingSold), Objects.requireNonNull(itemCost))) {
+            player.sendMessage("Purchase successful!");
+            updateStockIndicator(shopInventory, shopOwnerUUID, itemBeingSold, shopName, rowStart + PlayerOpenShopGUI.STOCK_INDICATOR_COLUMN);
+            return;
+        }
+        // Show the current price if the trade changed since the GUI was opened, such as by dynamic pricing
+        ShopListing listing = shopIndex.getShop(shopOwnerUUID, shopName);
+        if (listing != null && trade < listing.getTrades().size() && listing.getTrades().isComplete(trade)) {
+            shopInventory.setItem(rowStart + PlayerOpenShopGUI.SELL_COLUMN, listing.getTrades().getItemToSell(trade));
+            shopInventory.setItem(rowStart + PlayerOpenShopGUI.CHARGE_COLUMN, listing.getTrades().getItemToCharge(trade));
+        }
+    }
+
+    /**
+     * Performs a single trade with a shop, exchanging the cost item from the buyer for the sold item from the vault.
+     * The owner's vault lock is held for the whole trade, so buyers on different region threads
+     * can't both pass the stock check before either of them has removed the stock.
+     * If any check fails the buyer is told why and nothing is exchanged. Completed trades are reported to the trade listener.
+     * The items are those the buyer was shown, and the trade is refused if the shop changed them since, so a price
+     * changed by dynamic pricing is never charged without the buyer seeing it.
+     *
+     * @param player        The player making the purchase.
+     * @param shopOwnerUUID The UUID of the shop owner.
+     * @param shopName      The name of the shop.
+     * @param trade         The number of the trade being bought.
+     * @param itemBeingSold The item handed out per trade.
+     * @param itemCost      The item charged per trade.
+     * @return True if the trade was carried out, false otherwise.
+     */
+    public boolean purchase(Player player, UUID shopOwnerUUID, String shopName, int trade, ItemStack itemBeingSold, ItemStack itemCost) {
+        ReentrantLock vaultLock = playerVaultManager.getVaultLock(shopOwnerUUID);
+        vaultLock.lock();
+        try {
+            if (tradeIsUnchanged(player, shopOwnerUUID, shopName, trade, itemBeingSold, itemCost) && shopHasSufficientStock(player, shopOwnerUUID, itemBeingSold, shopName) && shopHasSufficientSpace(player, shopOwnerUUID, itemCost, shopName)) {
+                if (buyerHasEnoughItems(player, itemCost) && buyerHasInventorySpace(player)) {
+                    removeItemsFromBuyer(player, itemCost);
+                    giveItemsToBuyer(player, itemBeingSold);
+                    playerVaultManager.removeItemsFromPlayerVault(shopOwnerUUID, itemBeingSold, itemBeingSold.getAmount(), shopName);
+                    playerVaultManager.addItemsToPlayerVault(shopOwnerUUID, itemCost, itemCost.getAmount(), shopName);
+                    tradeListener.onTrade(shopOwnerUUID, shopName, player.getUniqueId(), itemBeingSold, itemCost);
+                    return true;
+                }
             }
+            return false;
+        } finally {
+            vaultLock.unlock();
         }
     }
 
     /**
-     * Updates the stock indicator in the shop's inventory.
+     * Checks if a trade still sells and charges the items the buyer was shown, reading the current trade from the index.
      *
-     * @param shopInventory The shop inventory.
+     * @param player        The player making the purchase.
      * @param shopOwnerUUID UUID of the shop owner.
-     * @param itemBeingSold The item being sold.
      * @param shopName      The name of the shop.
+     * @param trade         The number of the trade being bought.
+     * @param itemBeingSold The item the buyer was shown as sold.
+     * @param itemCost      The item the buyer was shown as charged.
+     * @return True if the trade is unchanged, false otherwise.
+     */
+    private boolean tradeIsUnchanged(Player player, UUID shopOwnerUUID, String shopName, int trade, ItemStack itemBeingSold, ItemStack itemCost) {
+        ShopListing listing = shopIndex.getShop(shopOwnerUUID, shopName);
+        ShopTradeTable trades = listing != null ? listing.getTrades() : null;
+        if (trades == null || trade >= trades.size() || !trades.isComplete(trade)
+                || !trades.getItemToSell(trade).equals(itemBeingSold) || !trades.getItemToCharge(trade).equals(itemCost)) {
+            player.sendMessage("This trade has changed, please check the new price and try again.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Updates the stock indicator of a trade in the shop's inventory.
+     *
+     * @param shopInventory      The shop inventory.
+     * @param shopOwnerUUID      UUID of the shop owner.
+     * @param itemBeingSold      The item being sold.
+     * @param shopName           The name of the shop.
+     * @param stockIndicatorSlot The slot of the trade's stock indicator.
      */
-    private void updateStockIndicator(Inventory shopInventory, UUID shopOwnerUUID, ItemStack itemBeingSold, String shopName) {
+    private void updateStockIndicator(Inventory shopInventory, UUID shopOwnerUUID, ItemStack itemBeingSold, String shopName, int stockIndicatorSlot) {
         int newStockCount = playerVaultManager.getItemCountInPlayerVault(shopOwnerUUID, itemBeingSold, shopName);
-        ItemStack stockIndicator = createNamedItem(Material.NAME_TAG, "Shop has " + newStockCount + " in stock");
-        shopInventory.setItem(STOCK_INDICATOR_SLOT, stockIndicator);
+        shopInventory.setItem(stockIndicatorSlot, PlayerOpenShopGUI.createStockIndicator(newStockCount));
     }
 
     /**
@@ -132,20 +194,25 @@ public class ShopTransaction {
     private void giveItemsToBuyer(Player player, ItemStack itemBeingSold) {
         ItemStack item = itemBeingSold.clone();
         player.getInventory().addItem(item);
-        player.sendMessage("Purchase successful!");
     }
 
     /**
      * Checks if the buyer has enough items for the cost.
+     * Items are matched on their full fingerprint, so items with custom meta are only counted
+     * when they are similar to the cost item and not merely of the same material.
      *
      * @param player The player buying the item.
      * @param cost   The cost of the item.
      * @return True if the buyer has enough items, false otherwise.
      */
     private boolean buyerHasEnoughItems(Player player, ItemStack cost) {
-        Inventory playerInventory = player.getInventory();
-        HashMap<Integer, ? extends ItemStack> allItems = playerInventory.all(cost.getType());
-        int totalAmount = allItems.values().stream().mapToInt(ItemStack::getAmount).sum();
+        ItemFingerprint fingerprint = ItemFingerprint.of(cost);
+        int totalAmount = 0;
+        for (ItemStack itemStack : player.getInventory().getContents()) {
+            if (fingerprint.matches(itemStack)) {
+                totalAmount += itemStack.getAmount();
+            }
+        }
         if (totalAmount < cost.getAmount()) {
             player.sendMessage("You do not have enough items to make this purchase.");
             return false;
@@ -160,9 +227,10 @@ public class ShopTransaction {
      * @param cost   The cost of the item.
      */
     private void removeItemsFromBuyer(Player player, ItemStack cost) {
+        ItemFingerprint fingerprint = ItemFingerprint.of(cost);
         int amountToRemove = cost.getAmount();
         for (ItemStack itemStack : player.getInventory().getContents()) {
-            if (itemStack != null && itemStack.getType() == cost.getType()) {
+            if (fingerprint.matches(itemStack)) {
                 int removed = Math.min(itemStack.getAmount(), amountToRemove);
                 itemStack.setAmount(itemStack.getAmount() - removed);
                 amountToRemove -= removed;
@@ -0,0 +1,48 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.shops;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * Receives every completed trade with a shop, so records and statistics can be updated incrementally.
+ * Callbacks run on the thread that made the trade, often while the owner's vault lock is held, so they must
+ * be quick and must not take other locks that could be waiting on a vault.
+ */
+public interface TradeListener {
+
+    /**
+     * Called after a trade with a shop was completed.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     * @param buyerUUID The UUID of the buyer.
+     * @param sold      The item handed to the buyer, including its amount.
+     * @param cost      The item paid by the buyer, including its amount.
+     */
+    void onTrade(UUID ownerUUID, String shopName, UUID buyerUUID, ItemStack sold, ItemStack cost);
+
+    /**
+     * Combines several listeners into one that calls each of them in order.
+     *
+     * @param listeners The listeners to combine.
+     * @return The combined listener.
+     */
+    static TradeListener of(TradeListener... listeners) {
+        TradeListener[] copy = listeners.clone();
+        return (ownerUUID, shopName, buyerUUID, sold, cost) -> {
+            for (TradeListener listener : copy) {
+                listener.onTrade(ownerUUID, shopName, buyerUUID, sold, cost);
+            }
+        };
+    }
+}
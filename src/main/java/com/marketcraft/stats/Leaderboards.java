@@ -0,0 +1,182 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.stats;
+
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.util.TopK;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * All-time leaderboards of the top-selling shops, the top earning shop owners and the most traded items.
+ * <p>
+ * Every board is a {@link TopK}, updated with each trade as it happens, so the boards never scan the ledger or
+ * the vaults and a query only sorts a fixed number of candidates however many trades were made. Earnings in
+ * different payment items can't be compared, so owners are ranked on a separate board per payment item, created on
+ * the first trade paid with it. The boards are saved to leaderboards.dat periodically and on shutdown.
+ */
+public class Leaderboards implements TradeListener {
+    private static final int FILE_VERSION = 2;
+    private static final int CANDIDATES = 64;
+    private static final int SKETCH_WIDTH = 4096;
+    private static final int SKETCH_DEPTH = 4;
+    // Earner boards only have one key per owner, so they get a smaller sketch, and their number is capped
+    private static final int EARNERS_SKETCH_WIDTH = 1024;
+    private static final int MAX_CURRENCIES = 64;
+    private final File leaderboardsFile;
+    private final Map<Board, TopK> boards = new EnumMap<>(Board.class);
+    private final Map<Long, TopK> earners = new HashMap<>();
+    private final Object fileLock = new Object();
+    private boolean dirty;
+
+    public Leaderboards(File pluginFolder) {
+        this.leaderboardsFile = new File(pluginFolder, "leaderboards.dat");
+        for (Board board : Board.values()) {
+            boards.put(board, new TopK(CANDIDATES, SKETCH_WIDTH, SKETCH_DEPTH));
+        }
+        load();
+    }
+
+    /**
+     * The available leaderboards, apart from the earner boards of {@link #getTopEarners(ItemStack, int)}.
+     */
+    public enum Board {
+        /**
+         * Shops by items sold. Keys are "ownerUUID/shopName".
+         */
+        SHOPS,
+        /**
+         * Items by amount sold. Keys are "type/fingerprint hash".
+         */
+        ITEMS
+    }
+
+    @Override
+    public void onTrade(UUID ownerUUID, String shopName, UUID buyerUUID, ItemStack sold, ItemStack cost) {
+        String itemKey = sold.getType().getKey().getKey() + "/" + Long.toHexString(ItemFingerprint.of(sold).getHash());
+        long costHash = ItemFingerprint.of(cost).getHash();
+        synchronized (this) {
+            boards.get(Board.SHOPS).add(ownerUUID + "/" + shopName, sold.getAmount());
+            TopK earnerBoard = earners.get(costHash);
+            if (earnerBoard == null && earners.size() < MAX_CURRENCIES) {
+                earnerBoard = new TopK(CANDIDATES, EARNERS_SKETCH_WIDTH, SKETCH_DEPTH);
+                earners.put(costHash, earnerBoard);
+            }
+            if (earnerBoard != null) {
+                earnerBoard.add(ownerUUID.toString(), cost.getAmount());
+            }
+            boards.get(Board.ITEMS).add(itemKey, sold.getAmount());
+            dirty = true;
+        }
+    }
+
+    /**
+     * @param board The leaderboard to read.
+     * @param k     The number of entries to return.
+     * @return The top entries of the board, highest first.
+     */
+    public synchronized List<TopK.Entry> getTop(Board board, int k) {
+        return boards.get(board).top(k);
+    }
+
+    /**
+     * @param currency The payment item to rank owners by. The amount of the item is ignored.
+     * @param k        The number of entries to return.
+     * @return The owners who received the most of the payment item, highest first. Keys are owner UUIDs.
+     */
+    public synchronized List<TopK.Entry> getTopEarners(ItemStack currency, int k) {
+        TopK earnerBoard = earners.get(ItemFingerprint.of(currency).getHash());
+        return earnerBoard != null ? earnerBoard.top(k) : List.of();
+    }
+
+    /**
+     * @return True if trades were recorded since the last save.
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Saves the boards, writing a temporary file first and then moving it into place.
+     */
+    public void save() {
+        synchronized (fileLock) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                DataOutputStream out = new DataOutputStream(bytes);
+                synchronized (this) {
+                    out.writeInt(FILE_VERSION);
+                    for (Board board : Board.values()) {
+                        boards.get(board).write(out);
+                    }
+                    out.writeInt(earners.size());
+                    for (Map.Entry<Long, TopK> entry : earners.entrySet()) {
+                        out.writeLong(entry.getKey());
+                        entry.getValue().write(out);
+                    }
+                    dirty = false;
+                }
+                File tempFile = new File(leaderboardsFile.getPath() + ".tmp");
+                Files.write(tempFile.toPath(), bytes.toByteArray());
+                Files.move(tempFile.toPath(), leaderboardsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving the leaderboards: ", e);
+            }
+        }
+    }
+
+    private void load() {
+        if (!leaderboardsFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(leaderboardsFile)))) {
+            int version = in.readInt();
+            if (version == 1) {
+                // The old single earners board mixed up payment items, so it is dropped
+                boards.get(Board.SHOPS).read(in);
+                new TopK(CANDIDATES, SKETCH_WIDTH, SKETCH_DEPTH).read(in);
+                boards.get(Board.ITEMS).read(in);
+                return;
+            }
+            if (version != FILE_VERSION) {
+                Bukkit.getLogger().log(Level.WARNING, "Ignoring leaderboards with an unknown file version.");
+                return;
+            }
+            for (Board board : Board.values()) {
+                boards.get(board).read(in);
+            }
+            int currencies = in.readInt();
+            for (int i = 0; i < currencies; i++) {
+                long costHash = in.readLong();
+                TopK earnerBoard = new TopK(CANDIDATES, EARNERS_SKETCH_WIDTH, SKETCH_DEPTH);
+                earnerBoard.read(in);
+                earners.put(costHash, earnerBoard);
+            }
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while loading the leaderboards: ", e);
+            // Start over rather than keeping a half-read board
+            for (Board board : Board.values()) {
+                boards.put(board, new TopK(CANDIDATES, SKETCH_WIDTH, SKETCH_DEPTH));
+            }
+            earners.clear();
+        }
+    }
+}
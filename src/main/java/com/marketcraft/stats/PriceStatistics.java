@@ -0,0 +1,370 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.stats;
+
+import com.marketcraft.shops.TradeListener;
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * Keeps rolling trade statistics for every pair of sold item and cost item.
+ * <p>
+ * Each pair has one ring buffer of time buckets per {@link Resolution}. A trade is added to the current bucket of
+ * every ring, and a bucket is reset the first time it is reused for a newer period, so updates are O(1) and a
+ * pair never holds more than a fixed number of buckets. Pairs that have not traded for longer than the day ring
+ * covers are dropped when the statistics are saved, which keeps the total memory bounded however long the
+ * server runs.
+ * <p>
+ * The statistics are saved in a compact binary file, price-stats.dat, that only contains the buckets still in range.
+ */
+public class PriceStatistics implements TradeListener {
+    private static final int FILE_VERSION = 1;
+    private final File statsFile;
+    private final Map<Long, Map<Long, PriceSeries>> seriesBySold = new HashMap<>();
+    private final Object fileLock = new Object();
+    private boolean dirty;
+
+    public PriceStatistics(File pluginFolder) {
+        this.statsFile = new File(pluginFolder, "price-stats.dat");
+        load();
+    }
+
+    /**
+     * The resolutions statistics are kept at, and how far back each of them reaches.
+     */
+    public enum Resolution {
+        MINUTE(60_000L, 60, "hour"),
+        HOUR(3_600_000L, 24, "day"),
+        DAY(86_400_000L, 30, "30 days");
+
+        private final long bucketMillis;
+        private final int buckets;
+        private final String span;
+
+        Resolution(long bucketMillis, int buckets, String span) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+            this.span = span;
+        }
+
+        public long getBucketMillis() {
+            return bucketMillis;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        /**
+         * @return A readable name for the window the ring covers, such as "hour".
+         */
+        public String getSpan() {
+            return span;
+        }
+    }
+
+    /**
+     * Adds a completed trade to the statistics.
+     */
+    @Override
+    public void onTrade(UUID ownerUUID, String shopName, UUID buyerUUID, ItemStack sold, ItemStack cost) {
+        long soldHash = ItemFingerprint.of(sold).getHash();
+        long costHash = ItemFingerprint.of(cost).getHash();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            seriesBySold.computeIfAbsent(soldHash, k -> new HashMap<>())
+                    .computeIfAbsent(costHash, k -> new PriceSeries(sold.getType().getKey().getKey(), cost.getType().getKey().getKey()))
+                    .add(now, sold.getAmount(), cost.getAmount());
+            dirty = true;
+        }
+    }
+
+    /**
+     * Summarizes the trades of an item over the whole window of a resolution, once for each cost item it was sold for.
+     *
+     * @param sold       The sold item. The amount of the item is ignored.
+     * @param resolution The resolution whose window is summarized.
+     * @return One summary per cost item with trades in the window, most traded first.
+     */
+    public synchronized List<PriceSummary> getSummaries(ItemStack sold, Resolution resolution) {
+        Map<Long, PriceSeries> seriesByCost = seriesBySold.get(ItemFingerprint.of(sold).getHash());
+        if (seriesByCost == null) {
+            return Collections.emptyList();
+        }
+        long now = System.currentTimeMillis();
+        List<PriceSummary> summaries = new ArrayList<>();
+        for (Map.Entry<Long, PriceSeries> entry : seriesByCost.entrySet()) {
+            PriceSummary summary = entry.getValue().summarize(entry.getKey(), resolution, now, resolution.getBuckets());
+            if (summary.getTradeCount() > 0) {
+                summaries.add(summary);
+            }
+        }
+        summaries.sort(Comparator.comparingLong(PriceSummary::getVolume).reversed());
+        return summaries;
+    }
+
+    /**
+     * Summarizes the trades of an item for a cost item over the last buckets of a resolution.
+     *
+     * @param sold       The sold item. The amount of the item is ignored.
+     * @param cost       The cost item. The amount of the item is ignored.
+     * @param resolution The resolution to read.
+     * @param buckets    How many buckets, counting back from the current one, to include.
+     * @return The summary, which has a trade count of zero if nothing was traded.
+     */
+    public synchronized PriceSummary getSummary(ItemStack sold, ItemStack cost, Resolution resolution, int buckets) {
+        long costHash = ItemFingerprint.of(cost).getHash();
+        Map<Long, PriceSeries> seriesByCost = seriesBySold.get(ItemFingerprint.of(sold).getHash());
+        PriceSeries series = seriesByCost != null ? seriesByCost.get(costHash) : null;
+        if (series == null) {
+            return new PriceSummary(cost.getType().getKey().getKey(), costHash, 0, 0, 0, 0, 0);
+        }
+        return series.summarize(costHash, resolution, System.currentTimeMillis(), buckets);
+    }
+
+    /**
+     * @return True if trades were recorded since the last save.
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Drops pairs that fell out of every ring and saves the rest.
+     * The file is written to a temporary file first and then moved into place, so a crash never leaves it half written.
+     */
+    public void save() {
+        synchronized (fileLock) {
+            byte[] data;
+            try {
+                data = serialize();
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving the price statistics: ", e);
+                return;
+            }
+            File tempFile = new File(statsFile.getPath() + ".tmp");
+            try {
+                Files.write(tempFile.toPath(), data);
+                Files.move(tempFile.toPath(), statsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving the price statistics: ", e);
+            }
+        }
+    }
+
+    private synchronized byte[] serialize() throws IOException {
+        long now = System.currentTimeMillis();
+        long cutoff = now - Resolution.DAY.getBucketMillis() * Resolution.DAY.getBuckets();
+        seriesBySold.values().removeIf(seriesByCost -> {
+            seriesByCost.values().removeIf(series -> series.getLastTrade() < cutoff);
+            return seriesByCost.isEmpty();
+        });
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FILE_VERSION);
+        int seriesCount = 0;
+        for (Map<Long, PriceSeries> seriesByCost : seriesBySold.values()) {
+            seriesCount += seriesByCost.size();
+        }
+        out.writeInt(seriesCount);
+        for (Map.Entry<Long, Map<Long, PriceSeries>> soldEntry : seriesBySold.entrySet()) {
+            for (Map.Entry<Long, PriceSeries> costEntry : soldEntry.getValue().entrySet()) {
+                out.writeLong(soldEntry.getKey());
+                out.writeLong(costEntry.getKey());
+                costEntry.getValue().write(out, now);
+            }
+        }
+        dirty = false;
+        return bytes.toByteArray();
+    }
+
+    private void load() {
+        if (!statsFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(statsFile)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Bukkit.getLogger().log(Level.WARNING, "Ignoring price statistics with an unknown file version.");
+                return;
+            }
+            int seriesCount = in.readInt();
+            for (int i = 0; i < seriesCount; i++) {
+                long soldHash = in.readLong();
+                long costHash = in.readLong();
+                seriesBySold.computeIfAbsent(soldHash, k -> new HashMap<>()).put(costHash, PriceSeries.read(in));
+            }
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while loading the price statistics: ", e);
+        }
+    }
+
+    /**
+     * The ring buffers of one pair of sold item and cost item.
+     */
+    private static final class PriceSeries {
+        private final String soldType;
+        private final String costType;
+        private final Ring[] rings = new Ring[Resolution.values().length];
+        private long lastTrade;
+
+        PriceSeries(String soldType, String costType) {
+            this.soldType = soldType;
+            this.costType = costType;
+            for (Resolution resolution : Resolution.values()) {
+                rings[resolution.ordinal()] = new Ring(resolution);
+            }
+        }
+
+        void add(long now, int soldAmount, int costAmount) {
+            for (Ring ring : rings) {
+                ring.add(now, soldAmount, costAmount);
+            }
+            lastTrade = Math.max(lastTrade, now);
+        }
+
+        long getLastTrade() {
+            return lastTrade;
+        }
+
+        PriceSummary summarize(long costHash, Resolution resolution, long now, int buckets) {
+            return rings[resolution.ordinal()].summarize(costType, costHash, now, buckets);
+        }
+
+        void write(DataOutputStream out, long now) throws IOException {
+            out.writeUTF(soldType);
+            out.writeUTF(costType);
+            out.writeLong(lastTrade);
+            for (Ring ring : rings) {
+                ring.write(out, now);
+            }
+        }
+
+        static PriceSeries read(DataInputStream in) throws IOException {
+            PriceSeries series = new PriceSeries(in.readUTF(), in.readUTF());
+            series.lastTrade = in.readLong();
+            for (Ring ring : series.rings) {
+                ring.read(in);
+            }
+            return series;
+        }
+    }
+
+    /**
+     * A fixed-size ring of time buckets, kept in parallel primitive arrays.
+     * A slot belongs to the period stored in its epoch and is reset when a trade from a newer period lands on it.
+     */
+    private static final class Ring {
+        private final long bucketMillis;
+        private final int size;
+        private final long[] epochs;
+        private final int[] counts;
+        private final long[] volumes;
+        private final long[] costVolumes;
+        private final double[] mins;
+        private final double[] maxs;
+
+        Ring(Resolution resolution) {
+            this.bucketMillis = resolution.getBucketMillis();
+            this.size = resolution.getBuckets();
+            this.epochs = new long[size];
+            this.counts = new int[size];
+            this.volumes = new long[size];
+            this.costVolumes = new long[size];
+            this.mins = new double[size];
+            this.maxs = new double[size];
+            Arrays.fill(epochs, -1);
+        }
+
+        void add(long now, int soldAmount, int costAmount) {
+            long epoch = now / bucketMillis;
+            int slot = (int) (epoch % size);
+            if (epochs[slot] != epoch) {
+                if (epochs[slot] > epoch) {
+                    // The clock went backwards past this bucket, don't overwrite newer data
+                    return;
+                }
+                epochs[slot] = epoch;
+                counts[slot] = 0;
+                volumes[slot] = 0;
+                costVolumes[slot] = 0;
+                mins[slot] = Double.MAX_VALUE;
+                maxs[slot] = 0;
+            }
+            double unitPrice = (double) costAmount / soldAmount;
+            counts[slot]++;
+            volumes[slot] += soldAmount;
+            costVolumes[slot] += costAmount;
+            mins[slot] = Math.min(mins[slot], unitPrice);
+            maxs[slot] = Math.max(maxs[slot], unitPrice);
+        }
+
+        PriceSummary summarize(String costType, long costHash, long now, int buckets) {
+            long currentEpoch = now / bucketMillis;
+            long oldestEpoch = currentEpoch - Math.min(buckets, size) + 1;
+            int count = 0;
+            long volume = 0;
+            long costVolume = 0;
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            for (int slot = 0; slot < size; slot++) {
+                if (epochs[slot] >= oldestEpoch && epochs[slot] <= currentEpoch) {
+                    count += counts[slot];
+                    volume += volumes[slot];
+                    costVolume += costVolumes[slot];
+                    min = Math.min(min, mins[slot]);
+                    max = Math.max(max, maxs[slot]);
+                }
+            }
+            return new PriceSummary(costType, costHash, count, volume, costVolume, count == 0 ? 0 : min, max);
+        }
+
+        void write(DataOutputStream out, long now) throws IOException {
+            long oldestEpoch = now / bucketMillis - size + 1;
+            int live = 0;
+            for (int slot = 0; slot < size; slot++) {
+                if (epochs[slot] >= oldestEpoch) {
+                    live++;
+                }
+            }
+            out.writeByte(live);
+            for (int slot = 0; slot < size; slot++) {
+                if (epochs[slot] >= oldestEpoch) {
+                    out.writeLong(epochs[slot]);
+                    out.writeInt(counts[slot]);
+                    out.writeLong(volumes[slot]);
+                    out.writeLong(costVolumes[slot]);
+                    out.writeDouble(mins[slot]);
+                    out.writeDouble(maxs[slot]);
+                }
+            }
+        }
+
+        void read(DataInputStream in) throws IOException {
+            int live = in.readUnsignedByte();
+            for (int i = 0; i < live; i++) {
+                long epoch = in.readLong();
+                int slot = (int) (epoch % size);
+                epochs[slot] = epoch;
+                counts[slot] = in.readInt();
+                volumes[slot] = in.readLong();
+                costVolumes[slot] = in.readLong();
+                mins[slot] = in.readDouble();
+                maxs[slot] = in.readDouble();
+            }
+        }
+    }
+}
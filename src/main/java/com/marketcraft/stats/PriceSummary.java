@@ -0,0 +1,85 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.stats;
+
+/**
+ * Trade statistics of an item paid for with one cost item over a window of time.
+ * Unit prices are the amount of cost items paid per single sold item.
+ */
+public final class PriceSummary {
+    private final String costType;
+    private final long costHash;
+    private final int tradeCount;
+    private final long volume;
+    private final long costVolume;
+    private final double minUnitPrice;
+    private final double maxUnitPrice;
+
+    PriceSummary(String costType, long costHash, int tradeCount, long volume, long costVolume, double minUnitPrice, double maxUnitPrice) {
+        this.costType = costType;
+        this.costHash = costHash;
+        this.tradeCount = tradeCount;
+        this.volume = volume;
+        this.costVolume = costVolume;
+        this.minUnitPrice = minUnitPrice;
+        this.maxUnitPrice = maxUnitPrice;
+    }
+
+    /**
+     * @return The key of the cost item's type, such as "emerald".
+     */
+    public String getCostType() {
+        return costType;
+    }
+
+    /**
+     * @return The fingerprint hash of the cost item.
+     */
+    public long getCostHash() {
+        return costHash;
+    }
+
+    public int getTradeCount() {
+        return tradeCount;
+    }
+
+    /**
+     * @return The total amount of items sold.
+     */
+    public long getVolume() {
+        return volume;
+    }
+
+    public double getMinUnitPrice() {
+        return minUnitPrice;
+    }
+
+    /**
+     * @return The average unit price, weighted by the amount sold.
+     */
+    public double getAverageUnitPrice() {
+        return volume == 0 ? 0 : (double) costVolume / volume;
+    }
+
+    public double getMaxUnitPrice() {
+        return maxUnitPrice;
+    }
+
+    /**
+     * @return The summary as a single readable line.
+     */
+    public String describe() {
+        if (tradeCount == 0) {
+            return "no trades";
+        }
+        return String.format("%d trades, %d sold, %.2f/%.2f/%.2f %s per item (min/avg/max)", tradeCount, volume,
+                minUnitPrice, getAverageUnitPrice(), maxUnitPrice, costType);
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.storage;
+
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.Bukkit;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold storage for the shops of owners who have been idle for a long time.
+ * <p>
+ * Archiving an owner moves their shop file and vault file out of the Shops and Vaults folders into a single record
+ * in an append-only archive segment, with both files deflated. Like the transaction ledger, records are appended to
+ * the newest segment in the archive folder and a new segment is started once the current one reaches
+ * {@value #SEGMENT_MAX_BYTES} bytes. Segments are never rewritten, one is deleted once none of its records are live.
+ * <p>
+ * Every record starts with a small header holding the owner, the time of archiving and the stock of every item the
+ * owner's shops sell, followed by the compressed files. At startup only the headers are read, skipping over the files,
+ * which builds an in-memory catalog of archived owners. Stock lookups for archived shops are answered from that
+ * catalog, so archived shops stay listed with their stock without touching the archive.
+ * <p>
+ * The first access that needs either file of an archived owner re-hydrates them: both files are written back into
+ * their folders and the owner is dropped from the catalog. Checking whether an owner is archived is a single map
+ * lookup, which is all it costs owners who are not. The shop file is the last file removed when archiving and the last
+ * one written back when re-hydrating, and a record whose owner has a hot shop file is stale. A crash in the middle of
+ * archiving or re-hydrating an owner therefore never loses their data, it only leaves a stale record behind.
+ */
+public class ColdStorage {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final long SEGMENT_MAX_BYTES = 16L * 1024 * 1024;
+    private final File archiveFolder;
+    private final ShardedFolder shopFiles;
+    private final ShardedFolder vaultFiles;
+    private final Map<UUID, ArchivedOwner> catalog = new ConcurrentHashMap<>();
+    // The number of live records per segment, guarded by this
+    private final Map<Integer, Integer> liveRecords = new HashMap<>();
+    private int activeSegment;
+    private long activeSegmentSize;
+
+    /**
+     * @param pluginFolder The data folder of the plugin.
+     * @param shopFiles    The folder of hot shop files.
+     * @param vaultFiles   The folder of hot vault files.
+     */
+    public ColdStorage(File pluginFolder, ShardedFolder shopFiles, ShardedFolder vaultFiles) {
+        this.archiveFolder = new File(pluginFolder, "archive");
+        this.shopFiles = shopFiles;
+        this.vaultFiles = vaultFiles;
+        if (!archiveFolder.exists() && !archiveFolder.mkdirs()) {
+            Bukkit.getLogger().log(Level.SEVERE, "Failed to create the archive directory, idle shops will not be archived!");
+        }
+        load();
+    }
+
+    /**
+     * @param ownerUUID The UUID of the shop owner.
+     * @return True if the owner's shop and vault files are in cold storage.
+     */
+    public boolean isArchived(UUID ownerUUID) {
+        return catalog.containsKey(ownerUUID);
+    }
+
+    /**
+     * @return The UUIDs of every archived owner.
+     */
+    public Set<UUID> getArchivedOwners() {
+        return Collections.unmodifiableSet(catalog.keySet());
+    }
+
+    /**
+     * @param ownerUUID The UUID of the shop owner.
+     * @return The time the owner was archived, or 0 if the owner is not archived.
+     */
+    public long getArchivedAt(UUID ownerUUID) {
+        ArchivedOwner archived = catalog.get(ownerUUID);
+        return archived != null ? archived.archivedAt() : 0;
+    }
+
+    /**
+     * @param ownerUUID The UUID of the shop owner.
+     * @return The last time the owner's hot shop or vault file was written, or 0 if neither exists.
+     */
+    public long getLastModified(UUID ownerUUID) {
+        return Math.max(shopFiles.fileOf(ownerUUID).lastModified(), vaultFiles.fileOf(ownerUUID).lastModified());
+    }
+
+    /**
+     * Looks up the stock of an archived shop, as it was counted when the owner was archived.
+     * Archived vaults can't change, so the counts are exact.
+     *
+     * @param ownerUUID    The UUID of the shop owner.
+     * @param shopName     The name of the shop.
+     * @param fingerprints The items to look up, null entries are counted as zero.
+     * @return The count of each item, or null if the owner is not archived or an item was not counted.
+     */
+    public int[] getArchivedStock(UUID ownerUUID, String shopName, ItemFingerprint[] fingerprints) {
+        ArchivedOwner archived = catalog.get(ownerUUID);
+        ShopStock stock = archived != null ? archived.stock().get(shopName) : null;
+        if (stock == null) {
+            return null;
+        }
+        int[] counts = new int[fingerprints.length];
+        outer:
+        for (int i = 0; i < fingerprints.length; i++) {
+            if (fingerprints[i] == null) {
+                continue;
+            }
+            for (int j = 0; j < stock.itemHashes().length; j++) {
+                if (stock.itemHashes()[j] == fingerprints[i].getHash()) {
+                    counts[i] = stock.counts()[j];
+                    continue outer;
+                }
+            }
+            return null;
+        }
+        return counts;
+    }
+
+    /**
+     * Reads the archived shop file of an owner without re-hydrating it.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @return The contents of the shop file, or null if the owner is not archived or the archive can't be read.
+     */
+    public String readShopFile(UUID ownerUUID) {
+        ArchivedOwner archived = catalog.get(ownerUUID);
+        if (archived == null) {
+            return null;
+        }
+        try {
+            return readPayload(archived)[0];
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while reading an archived shop file: " + ownerUUID, e);
+            return null;
+        }
+    }
+
+    /**
+     * Moves an owner's shop and vault files into cold storage.
+     * The caller must make sure nothing reads or writes either file in the meantime, by holding the shop manager's
+     * monitor and the owner's vault lock.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param stock     The stock of every shop of the owner, served while the owner is archived.
+     * @return The time the owner was archived, or 0 if nothing was archived.
+     */
+    public synchronized long archive(UUID ownerUUID, List<ShopStock> stock) {
+        if (catalog.containsKey(ownerUUID) || !shopFiles.contains(ownerUUID)) {
+            return 0;
+        }
+        File shopFile = shopFiles.fileOf(ownerUUID);
+        File vaultFile = vaultFiles.fileOf(ownerUUID);
+        long archivedAt = System.currentTimeMillis();
+        long offset;
+        try {
+            byte[] record = encode(ownerUUID, archivedAt, stock, Files.readAllBytes(shopFile.toPath()),
+                    vaultFiles.contains(ownerUUID) ? Files.readAllBytes(vaultFile.toPath()) : null);
+            if (activeSegmentSize > 0 && activeSegmentSize + record.length > SEGMENT_MAX_BYTES) {
+                activeSegment++;
+                activeSegmentSize = 0;
+            }
+            offset = activeSegmentSize;
+            try (FileOutputStream out = new FileOutputStream(segmentFile(activeSegment), true)) {
+                out.write(record);
+                // The hot files are deleted next, so the record must really be on disk first
+                out.getFD().sync();
+            }
+            activeSegmentSize += record.length;
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while archiving the shops of " + ownerUUID + ": ", e);
+            // Carry on from whatever actually reached the disk
+            activeSegmentSize = segmentFile(activeSegment).length();
+            return 0;
+        }
+        Map<String, ShopStock> stockByShop = new HashMap<>();
+        for (ShopStock shopStock : stock) {
+            stockByShop.put(shopStock.shopName(), shopStock);
+        }
+        catalog.put(ownerUUID, new ArchivedOwner(activeSegment, offset, archivedAt, stockByShop));
+        liveRecords.merge(activeSegment, 1, Integer::sum);
+        // The shop file goes first, as a hot shop file marks the record as stale
+        try {
+            Files.delete(shopFile.toPath());
+            shopFiles.markDeleted(ownerUUID);
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while removing the archived shop file of " + ownerUUID + ": ", e);
+            catalog.remove(ownerUUID);
+            release(activeSegment);
+            return 0;
+        }
+        try {
+            Files.deleteIfExists(vaultFile.toPath());
+            vaultFiles.markDeleted(ownerUUID);
+        } catch (IOException e) {
+            // The owner stays archived, re-hydrating overwrites the leftover with the same contents
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while removing the archived vault file of " + ownerUUID + ": ", e);
+        }
+        return archivedAt;
+    }
+
+    /**
+     * Writes an archived owner's shop and vault files back into their folders, if the owner is archived.
+     * Callers that are about to read or write either file call this first, which costs a single map lookup
+     * for owners that are not archived.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     */
+    public void rehydrate(UUID ownerUUID) {
+        if (!catalog.containsKey(ownerUUID)) {
+            return;
+        }
+        synchronized (this) {
+            ArchivedOwner archived = catalog.get(ownerUUID);
+            if (archived == null) {
+                return; // Re-hydrated by another thread while waiting
+            }
+            File vaultFile = vaultFiles.fileToWrite(ownerUUID);
+            try {
+                String[] files = readPayload(archived);
+                if (files[1] != null) {
+                    writeFile(vaultFile, files[1]);
+                    vaultFiles.markWritten(ownerUUID);
+                }
+                // The shop file goes last, as a hot shop file marks the record as stale
+                writeFile(shopFiles.fileToWrite(ownerUUID), files[0]);
+                shopFiles.markWritten(ownerUUID);
+            } catch (IOException e) {
+                // The owner stays archived and the next access tries again, so nothing may use a half-restored vault
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while restoring the archived shops of " + ownerUUID + ": ", e);
+                vaultFile.delete();
+                vaultFiles.markDeleted(ownerUUID);
+                return;
+            }
+            catalog.remove(ownerUUID);
+            release(archived.segment());
+        }
+    }
+
+    /**
+     * Builds a record: the header and the compressed files, each prefixed with its length.
+     */
+    private static byte[] encode(UUID ownerUUID, long archivedAt, List<ShopStock> stock, byte[] shopFile, byte[] vaultFile) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeLong(ownerUUID.getMostSignificantBits());
+        headerOut.writeLong(ownerUUID.getLeastSignificantBits());
+        headerOut.writeLong(archivedAt);
+        headerOut.writeInt(stock.size());
+        for (ShopStock shopStock : stock) {
+            headerOut.writeUTF(shopStock.shopName());
+            headerOut.writeInt(shopStock.itemHashes().length);
+            for (int i = 0; i < shopStock.itemHashes().length; i++) {
+                headerOut.writeLong(shopStock.itemHashes()[i]);
+                headerOut.writeInt(shopStock.counts()[i]);
+            }
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        writeCompressed(payloadOut, shopFile);
+        writeCompressed(payloadOut, vaultFile);
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeInt(header.size());
+        header.writeTo(out);
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+        return record.toByteArray();
+    }
+
+    private static void writeCompressed(DataOutputStream out, byte[] data) throws IOException {
+        if (data == null) {
+            out.writeInt(-1);
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            deflater.write(data);
+        }
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+    }
+
+    /**
+     * Reads the files of an archived owner.
+     *
+     * @return The shop file and the vault file, which is null if the owner had none.
+     */
+    private String[] readPayload(ArchivedOwner archived) throws IOException {
+        try (RandomAccessFile segment = new RandomAccessFile(segmentFile(archived.segment()), "r")) {
+            segment.seek(archived.offset());
+            segment.skipBytes(segment.readInt());
+            byte[] payload = new byte[segment.readInt()];
+            segment.readFully(payload);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            return new String[]{readCompressed(in), readCompressed(in)};
+        }
+    }
+
+    private static String readCompressed(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] compressed = new byte[length];
+        in.readFully(compressed);
+        try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(inflater.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void writeFile(File file, String contents) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        Files.writeString(tempFile.toPath(), contents, StandardCharsets.UTF_8);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Drops a record that is no longer live, deleting its segment once the segment holds no live records.
+     * The active segment is kept, since records are still appended to it.
+     */
+    private void release(int segment) {
+        Integer remaining = liveRecords.merge(segment, -1, Integer::sum);
+        if (remaining != null && remaining <= 0) {
+            liveRecords.remove(segment);
+            if (segment != activeSegment && !segmentFile(segment).delete()) {
+                Bukkit.getLogger().log(Level.WARNING, "Failed to delete the unused archive segment " + segment + ".");
+            }
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(archiveFolder, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Builds the catalog with one sequential pass over the record headers of every segment.
+     * Later records of an owner replace earlier ones, and records of owners who have a hot shop file again are stale.
+     */
+    private synchronized void load() {
+        File[] files = archiveFolder.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        TreeSet<Integer> segments = new TreeSet<>();
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException ignored) {
+                // Not one of ours
+            }
+        }
+        boolean tornTail = false;
+        for (int segment : segments) {
+            File segmentFile = segmentFile(segment);
+            long offset = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile)))) {
+                while (offset < segmentFile.length()) {
+                    byte[] header = new byte[in.readInt()];
+                    in.readFully(header);
+                    int payloadLength = in.readInt();
+                    in.skipNBytes(payloadLength);
+                    readHeader(header, segment, offset);
+                    offset += 8L + header.length + payloadLength;
+                }
+                tornTail = false;
+            } catch (IOException e) {
+                // A record cut short by a crash, everything before it is intact
+                Bukkit.getLogger().log(Level.WARNING, "Ignoring an incomplete record at the end of archive segment " + segment + ".");
+                tornTail = true;
+            }
+        }
+        catalog.keySet().removeIf(shopFiles::contains);
+        if (!segments.isEmpty()) {
+            activeSegment = segments.last();
+            activeSegmentSize = segmentFile(activeSegment).length();
+            if (tornTail) {
+                // Never append behind a broken record, start a new segment instead
+                activeSegment++;
+                activeSegmentSize = 0;
+            }
+        }
+        for (ArchivedOwner archived : catalog.values()) {
+            liveRecords.merge(archived.segment(), 1, Integer::sum);
+        }
+        for (int segment : segments) {
+            if (segment != activeSegment && !liveRecords.containsKey(segment) && !segmentFile(segment).delete()) {
+                Bukkit.getLogger().log(Level.WARNING, "Failed to delete the unused archive segment " + segment + ".");
+            }
+        }
+        if (!catalog.isEmpty()) {
+            Bukkit.getLogger().info("[MarketCraft] " + catalog.size() + " idle shop owners are in cold storage.");
+        }
+    }
+
+    private void readHeader(byte[] header, int segment, long offset) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        UUID ownerUUID = new UUID(in.readLong(), in.readLong());
+        long archivedAt = in.readLong();
+        int shopCount = in.readInt();
+        Map<String, ShopStock> stock = new HashMap<>();
+        for (int i = 0; i < shopCount; i++) {
+            String shopName = in.readUTF();
+            int itemCount = in.readInt();
+            long[] itemHashes = new long[itemCount];
+            int[] counts = new int[itemCount];
+            for (int j = 0; j < itemCount; j++) {
+                itemHashes[j] = in.readLong();
+                counts[j] = in.readInt();
+            }
+            stock.put(shopName, new ShopStock(shopName, itemHashes, counts));
+        }
+        catalog.put(ownerUUID, new ArchivedOwner(segment, offset, archivedAt, stock));
+    }
+
+    /**
+     * The stock of the items sold by one archived shop, by the hash of each item's {@link ItemFingerprint}.
+     *
+     * @param shopName   The name of the shop.
+     * @param itemHashes The fingerprint hashes of the items sold.
+     * @param counts     The amount of each item in the shop's vault.
+     */
+    public record ShopStock(String shopName, long[] itemHashes, int[] counts) {
+    }
+
+    /**
+     * Where an archived owner's record is, along with what is kept in memory while the owner is archived.
+     */
+    private record ArchivedOwner(int segment, long offset, long archivedAt, Map<String, ShopStock> stock) {
+    }
+}
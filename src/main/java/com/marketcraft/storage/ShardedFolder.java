@@ -0,0 +1,211 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.storage;
+
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * A folder of per-player files, such as the Shops or Vaults folder, sharded by the start of each player's UUID.
+ * <p>
+ * The file of a player is stored as ab/cd/&lt;uuid&gt;.yml, where ab and cd are the first four hex digits of the UUID,
+ * so no directory holds more than a few files even with tens of thousands of players. The path of a file is computed
+ * from the UUID alone, and whether it exists is answered from an in-memory set of players with a file, which is built
+ * by one scan when the folder is opened and kept current by everything that creates or deletes a file.
+ * <p>
+ * Files left in the folder itself by older versions are migrated online: each one is moved into its shard the first
+ * time it is accessed, and {@link #migrate()} moves the rest in the background. A move is a rename within the same
+ * file system, so the contents and modification time of a file are unchanged by it.
+ */
+public class ShardedFolder {
+    private static final String SUFFIX = ".yml";
+    private final File root;
+    private final Set<UUID> present = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> unmigrated = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param root The folder to shard, which is created if it doesn't exist.
+     */
+    public ShardedFolder(File root) {
+        this.root = root;
+        if (!root.exists() && !root.mkdirs()) {
+            Bukkit.getLogger().log(Level.SEVERE, "Failed to create the " + root.getName() + " directory, the plugin may fail to function correctly!");
+        }
+        scan();
+    }
+
+    /**
+     * Returns the file of a player, moving it into its shard first if it is still in the old flat layout.
+     * Every access to a file in the folder goes through here.
+     *
+     * @param playerUUID The UUID of the player.
+     * @return The file of the player, which may not exist.
+     */
+    public File fileOf(UUID playerUUID) {
+        if (unmigrated.contains(playerUUID)) {
+            return migrate(playerUUID);
+        }
+        return shardedFile(playerUUID);
+    }
+
+    /**
+     * Returns the file of a player that is about to be written, creating its shard directories if needed.
+     *
+     * @param playerUUID The UUID of the player.
+     * @return The file of the player, which may not exist.
+     */
+    public File fileToWrite(UUID playerUUID) {
+        File file = fileOf(playerUUID);
+        if (!present.contains(playerUUID)) {
+            File shard = file.getParentFile();
+            if (!shard.exists() && !shard.mkdirs()) {
+                Bukkit.getLogger().log(Level.WARNING, "Failed to create the shard directory " + shard + ".");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Checks if a player has a file, without touching the disk.
+     *
+     * @param playerUUID The UUID of the player.
+     * @return True if the player's file exists.
+     */
+    public boolean contains(UUID playerUUID) {
+        return present.contains(playerUUID);
+    }
+
+    /**
+     * Records that a player's file was written.
+     *
+     * @param playerUUID The UUID of the player.
+     */
+    public void markWritten(UUID playerUUID) {
+        present.add(playerUUID);
+    }
+
+    /**
+     * Records that a player's file was deleted.
+     *
+     * @param playerUUID The UUID of the player.
+     */
+    public void markDeleted(UUID playerUUID) {
+        present.remove(playerUUID);
+    }
+
+    /**
+     * @return The UUIDs of every player with a file.
+     */
+    public Set<UUID> getPlayers() {
+        return Collections.unmodifiableSet(present);
+    }
+
+    /**
+     * Moves every file that is still in the old flat layout into its shard.
+     * This runs off the main thread once at startup, files accessed before it gets to them are moved on access.
+     */
+    public void migrate() {
+        int migrated = 0;
+        for (UUID playerUUID : unmigrated) {
+            if (migrate(playerUUID).equals(shardedFile(playerUUID))) {
+                migrated++;
+            }
+        }
+        if (migrated > 0) {
+            Bukkit.getLogger().info("[MarketCraft] Moved " + migrated + " files of the " + root.getName() + " folder into sharded directories.");
+        }
+    }
+
+    /**
+     * Moves one file into its shard. Readers only see the sharded path once the move is complete.
+     *
+     * @return The file of the player, which stays in the flat layout if it couldn't be moved.
+     */
+    private synchronized File migrate(UUID playerUUID) {
+        File shardedFile = shardedFile(playerUUID);
+        if (!unmigrated.contains(playerUUID)) {
+            return shardedFile; // Moved by another thread while waiting
+        }
+        File flatFile = new File(root, playerUUID + SUFFIX);
+        try {
+            Files.createDirectories(shardedFile.getParentFile().toPath());
+            Files.move(flatFile.toPath(), shardedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The file is still intact where it was, so keep using it there and try again on the next access
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while moving " + flatFile + " into its shard: ", e);
+            return flatFile;
+        }
+        unmigrated.remove(playerUUID);
+        return shardedFile;
+    }
+
+    private File shardedFile(UUID playerUUID) {
+        String name = playerUUID.toString();
+        return new File(root, name.substring(0, 2) + File.separator + name.substring(2, 4) + File.separator + name + SUFFIX);
+    }
+
+    /**
+     * Builds the set of players with a file, from both the sharded and the old flat layout.
+     */
+    private void scan() {
+        File[] entries = root.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                File[] shards = entry.listFiles(File::isDirectory);
+                if (shards == null) {
+                    continue;
+                }
+                for (File shard : shards) {
+                    File[] files = shard.listFiles((dir, name) -> name.endsWith(SUFFIX));
+                    if (files == null) {
+                        continue;
+                    }
+                    for (File file : files) {
+                        UUID playerUUID = parsePlayer(file);
+                        if (playerUUID != null) {
+                            present.add(playerUUID);
+                        }
+                    }
+                }
+            } else {
+                UUID playerUUID = parsePlayer(entry);
+                // A flat file next to a sharded one is a stale leftover, such as a file restored from an old backup
+                if (playerUUID != null && !shardedFile(playerUUID).exists()) {
+                    present.add(playerUUID);
+                    unmigrated.add(playerUUID);
+                }
+            }
+        }
+    }
+
+    private static UUID parsePlayer(File file) {
+        String name = file.getName();
+        if (!name.endsWith(SUFFIX)) {
+            return null;
+        }
+        try {
+            return UUID.fromString(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.storage;
+
+import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.locks.VaultLockManager;
+import com.marketcraft.shops.PlayerShopManager;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopTradeTable;
+import com.marketcraft.util.ItemFingerprint;
+import com.marketcraft.vaults.PlayerVaultManager;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Periodically moves the shops of idle owners into {@link ColdStorage}.
+ * <p>
+ * An owner is idle once they haven't been online, and neither their shop file nor their vault file has been written,
+ * for the configured number of days. Trades, restocks and price changes all write one of the files, so shops that are
+ * still in use are never archived, however long their owner has been away. Owners with a shop or vault that is open
+ * right now are skipped until the next pass.
+ * <p>
+ * The task runs off the main thread. Each owner is archived while holding the shop manager's monitor and then their
+ * vault lock. Nothing takes them the other way around, as shop writes never wait for a vault while vault writes
+ * only queue work for others.
+ */
+public class ShopArchiveTask implements Runnable {
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private final ColdStorage coldStorage;
+    private final ShopIndex shopIndex;
+    private final PlayerShopManager playerShopManager;
+    private final PlayerVaultManager playerVaultManager;
+    private final ShopLockManager shopLockManager;
+    private final VaultLockManager vaultLockManager;
+    private final long idleMillis;
+
+    /**
+     * @param coldStorage        The cold storage to move idle shops into.
+     * @param shopIndex          The index of every shop, used to find the shop owners.
+     * @param playerShopManager  The manager writing the shop files.
+     * @param playerVaultManager The manager writing the vault files.
+     * @param shopLockManager    The locks of shops opened by their owner.
+     * @param vaultLockManager   The locks of shops being bought from.
+     * @param idleDays           The number of days an owner must be idle for before their shops are archived.
+     */
+    public ShopArchiveTask(ColdStorage coldStorage, ShopIndex shopIndex, PlayerShopManager playerShopManager, PlayerVaultManager playerVaultManager, ShopLockManager shopLockManager, VaultLockManager vaultLockManager, int idleDays) {
+        this.coldStorage = coldStorage;
+        this.shopIndex = shopIndex;
+        this.playerShopManager = playerShopManager;
+        this.playerVaultManager = playerVaultManager;
+        this.shopLockManager = shopLockManager;
+        this.vaultLockManager = vaultLockManager;
+        this.idleMillis = idleDays * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Archives every shop owner who has been idle for long enough.
+     */
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        Set<UUID> owners = new HashSet<>();
+        for (ShopListing listing : shopIndex.getAllShops()) {
+            owners.add(listing.getOwnerUUID());
+        }
+        int archived = 0;
+        for (UUID ownerUUID : owners) {
+            if (coldStorage.isArchived(ownerUUID) || Bukkit.getPlayer(ownerUUID) != null) {
+                continue;
+            }
+            long lastActive = Math.max(Bukkit.getOfflinePlayer(ownerUUID).getLastSeen(), coldStorage.getLastModified(ownerUUID));
+            if (now - lastActive >= idleMillis && archive(ownerUUID)) {
+                archived++;
+            }
+        }
+        if (archived > 0) {
+            Bukkit.getLogger().info("[MarketCraft] Moved the shops of " + archived + " idle owners into cold storage.");
+        }
+    }
+
+    /**
+     * Archives the shops of one owner, along with the stock of every item they sell.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @return True if the owner was archived.
+     */
+    private boolean archive(UUID ownerUUID) {
+        Collection<ShopListing> listings = new ArrayList<>(shopIndex.getShops(ownerUUID));
+        for (ShopListing listing : listings) {
+            if (shopLockManager.isLocked(ownerUUID, listing.getShopName()) || vaultLockManager.isLocked(ownerUUID, listing.getShopName())) {
+                return false;
+            }
+        }
+        synchronized (playerShopManager) {
+            ReentrantLock vaultLock = playerVaultManager.getVaultLock(ownerUUID);
+            vaultLock.lock();
+            try {
+                List<ColdStorage.ShopStock> stock = new ArrayList<>();
+                for (ShopListing listing : listings) {
+                    stock.add(countStock(ownerUUID, listing));
+                }
+                long archivedAt = coldStorage.archive(ownerUUID, stock);
+                if (archivedAt == 0) {
+                    return false;
+                }
+                shopIndex.setFileStamp(ownerUUID, archivedAt);
+                return true;
+            } finally {
+                vaultLock.unlock();
+            }
+        }
+    }
+
+    private ColdStorage.ShopStock countStock(UUID ownerUUID, ShopListing listing) {
+        ShopTradeTable trades = listing.getTrades();
+        List<ItemStack> soldItems = new ArrayList<>();
+        for (int trade = 0; trade < trades.size(); trade++) {
+            ItemStack itemToSell = trades.getItemToSell(trade);
+            if (itemToSell != null) {
+                soldItems.add(itemToSell);
+            }
+        }
+        int[] counts = playerVaultManager.getCachedItemCounts(ownerUUID, soldItems.toArray(new ItemStack[0]), listing.getShopName());
+        long[] itemHashes = new long[soldItems.size()];
+        for (int i = 0; i < itemHashes.length; i++) {
+            itemHashes[i] = ItemFingerprint.of(soldItems.get(i)).getHash();
+        }
+        return new ColdStorage.ShopStock(listing.getShopName(), itemHashes, counts);
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.storefronts;
+
+import com.marketcraft.scheduler.PlatformScheduler;
+import com.marketcraft.scheduler.WorkScheduler;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopIndexListener;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopTradeTable;
+import com.marketcraft.util.LongObjectMap;
+import com.marketcraft.vaults.PlayerVaultManager;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Display;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemDisplay;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.TextDisplay;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Floating storefronts: an item display and a text display anchored above a block, showing a shop's trades
+ * with their live stock.
+ * <p>
+ * Nothing is polled. Vault writes and shop changes only queue the owner, and {@link #update()} renders the queued
+ * owners' storefronts at most once per run, so a busy shop is redrawn once every few ticks however many trades
+ * it makes. Displays only exist while a player is near: {@link #cull()} marks the chunks around every online player
+ * and spawns or removes displays only when a storefront enters or leaves that area, so storefronts nobody can see
+ * cost nothing. The displays are not persistent, the server never saves them with the chunk, and they are
+ * recreated from storefronts.yml.
+ * <p>
+ * The text of a storefront is built off the main thread, where its stock is counted, and only the finished text is
+ * handed to the thread owning its anchor. The displays of a storefront are only touched on that thread, and player
+ * positions are only read on each player's own thread.
+ */
+public class StorefrontManager implements ShopIndexListener {
+    private static final int VIEW_RADIUS_CHUNKS = 3;
+    private static final float VIEW_RANGE = 0.5f;
+    private final File storefrontsFile;
+    private final ShopIndex shopIndex;
+    private final PlayerVaultManager playerVaultManager;
+    private final PlatformScheduler platformScheduler;
+    private final WorkScheduler workScheduler;
+    private final Map<ShopKey, Storefront> storefronts = new ConcurrentHashMap<>();
+    private final Set<UUID> dirtyOwners = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, PlayerChunk> playerChunks = new ConcurrentHashMap<>();
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final Object fileLock = new Object();
+
+    public StorefrontManager(File pluginFolder, ShopIndex shopIndex, PlayerVaultManager playerVaultManager, PlatformScheduler platformScheduler, WorkScheduler workScheduler) {
+        this.storefrontsFile = new File(pluginFolder, "storefronts.yml");
+        this.shopIndex = shopIndex;
+        this.playerVaultManager = playerVaultManager;
+        this.platformScheduler = platformScheduler;
+        this.workScheduler = workScheduler;
+        load();
+        shopIndex.addListener(this);
+        // Stock listeners run while the vault is being written, so only queue the owner here
+        playerVaultManager.addStockListener(dirtyOwners::add);
+    }
+
+    /**
+     * Anchors a shop's storefront above a block, moving it if the shop already had one.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     * @param anchor    The location of the block the storefront floats above.
+     */
+    public void place(UUID ownerUUID, String shopName, Location anchor) {
+        Location blockLocation = new Location(anchor.getWorld(), anchor.getBlockX(), anchor.getBlockY(), anchor.getBlockZ());
+        Storefront previous = storefronts.put(new ShopKey(ownerUUID, shopName), new Storefront(ownerUUID, shopName, blockLocation));
+        if (previous != null) {
+            despawnLater(previous);
+        }
+        requestSave();
+    }
+
+    /**
+     * Removes a shop's storefront.
+     *
+     * @param ownerUUID The UUID of the shop owner.
+     * @param shopName  The name of the shop.
+     * @return True if the shop had a storefront.
+     */
+    public boolean remove(UUID ownerUUID, String shopName) {
+        Storefront removed = storefronts.remove(new ShopKey(ownerUUID, shopName));
+        if (removed == null) {
+            return false;
+        }
+        despawnLater(removed);
+        requestSave();
+        return true;
+    }
+
+    @Override
+    public void onShopSaved(ShopListing listing, ShopListing previous) {
+        dirtyOwners.add(listing.getOwnerUUID());
+    }
+
+    @Override
+    public void onShopRemoved(ShopListing listing) {
+        remove(listing.getOwnerUUID(), listing.getShopName());
+    }
+
+    /**
+     * Redraws the visible storefronts of the owners whose vaults or shops changed since the last run.
+     * Runs on the global region thread.
+     */
+    public void update() {
+        if (dirtyOwners.isEmpty()) {
+            return;
+        }
+        Set<UUID> owners = new HashSet<>();
+        for (Iterator<UUID> iterator = dirtyOwners.iterator(); iterator.hasNext(); ) {
+            owners.add(iterator.next());
+            iterator.remove();
+        }
+        List<Storefront> changed = new ArrayList<>();
+        for (Storefront storefront : storefronts.values()) {
+            // Hidden storefronts are rendered when they are spawned, so only the visible ones need redrawing
+            if (storefront.visible && owners.contains(storefront.ownerUUID)) {
+                changed.add(storefront);
+            }
+        }
+        if (!changed.isEmpty()) {
+            workScheduler.submitAsync(() -> changed.forEach(this::render));
+        }
+    }
+
+    /**
+     * Shows the storefronts in chunks near a player and hides all others. Runs on the global region thread.
+     * Player positions can only be read on each player's own thread, so every run asks the players for their
+     * current chunk and decides with the chunks reported since the last run. Positions are only used to decide
+     * visibility, so a position that is a moment old does no harm.
+     */
+    public void cull() {
+        Set<UUID> onlinePlayers = new HashSet<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            UUID playerUUID = player.getUniqueId();
+            onlinePlayers.add(playerUUID);
+            platformScheduler.runForEntity(player, () -> {
+                Location location = player.getLocation();
+                playerChunks.put(playerUUID, new PlayerChunk(location.getWorld().getUID(), location.getBlockX() >> 4, location.getBlockZ() >> 4));
+            }, () -> playerChunks.remove(playerUUID));
+        }
+        playerChunks.keySet().retainAll(onlinePlayers);
+        Map<UUID, LongObjectMap<Boolean>> activeChunks = new HashMap<>();
+        for (PlayerChunk playerChunk : playerChunks.values()) {
+            LongObjectMap<Boolean> chunks = activeChunks.computeIfAbsent(playerChunk.worldUID(), k -> new LongObjectMap<>());
+            for (int x = playerChunk.chunkX() - VIEW_RADIUS_CHUNKS; x <= playerChunk.chunkX() + VIEW_RADIUS_CHUNKS; x++) {
+                for (int z = playerChunk.chunkZ() - VIEW_RADIUS_CHUNKS; z <= playerChunk.chunkZ() + VIEW_RADIUS_CHUNKS; z++) {
+                    chunks.put(chunkKey(x, z), Boolean.TRUE);
+                }
+            }
+        }
+        for (Storefront storefront : storefronts.values()) {
+            LongObjectMap<Boolean> chunks = activeChunks.get(storefront.anchor.getWorld().getUID());
+            boolean visible = chunks != null && chunks.get(chunkKey(storefront.anchor.getBlockX() >> 4, storefront.anchor.getBlockZ() >> 4)) != null;
+            // Displays also disappear with their chunk, which can only be checked on the anchor's thread,
+            // so visible storefronts are reconciled on every run
+            if (visible || storefront.visible) {
+                storefront.visible = visible;
+                platformScheduler.runAtLocation(storefront.anchor, () -> reconcile(storefront));
+            }
+        }
+    }
+
+    /**
+     * Removes every display that can be removed from the current thread. Called when the plugin is disabled.
+     */
+    public void despawnAll() {
+        for (Storefront storefront : storefronts.values()) {
+            if (storefront.isSpawned() && Bukkit.isOwnedByCurrentRegion(storefront.anchor)) {
+                storefront.despawn();
+            }
+        }
+    }
+
+    private void reconcile(Storefront storefront) {
+        if (!storefront.visible || storefronts.get(new ShopKey(storefront.ownerUUID, storefront.shopName)) != storefront) {
+            storefront.despawn();
+            return;
+        }
+        if (!storefront.isSpawned() && !storefront.rendering && storefront.anchor.isChunkLoaded()) {
+            storefront.rendering = true;
+            workScheduler.submitAsync(() -> render(storefront));
+        }
+    }
+
+    private void despawnLater(Storefront storefront) {
+        storefront.visible = false;
+        platformScheduler.runAtLocation(storefront.anchor, storefront::despawn);
+    }
+
+    /**
+     * Builds the text of a storefront off the main thread, counting its stock, and hands it to the anchor's thread.
+     */
+    private void render(Storefront storefront) {
+        ShopListing listing = shopIndex.getShop(storefront.ownerUUID, storefront.shopName);
+        if (listing == null || !storefront.visible) {
+            storefront.rendering = false;
+            return;
+        }
+        ShopTradeTable trades = listing.getTrades();
+        ItemStack[] itemsToSell = new ItemStack[trades.size()];
+        for (int i = 0; i < itemsToSell.length; i++) {
+            itemsToSell[i] = trades.isComplete(i) ? trades.getItemToSell(i) : null;
+        }
+        int[] stock = playerVaultManager.getCachedItemCounts(storefront.ownerUUID, itemsToSell, storefront.shopName);
+        TextComponent.Builder textBuilder = Component.text();
+        textBuilder.append(Component.text(storefront.shopName));
+        ItemStack displayedItem = null;
+        for (int i = 0; i < trades.size(); i++) {
+            if (itemsToSell[i] == null) {
+                continue;
+            }
+            if (displayedItem == null) {
+                displayedItem = itemsToSell[i];
+            }
+            textBuilder.append(Component.newline()).append(Component.text(trades.getSellAmount(i) + " " + itemName(itemsToSell[i])
+                    + " for " + trades.getChargeAmount(i) + " " + itemName(trades.getItemToCharge(i)) + " (" + stock[i] + " in stock)"));
+        }
+        ItemStack item = displayedItem != null ? displayedItem.asOne() : null;
+        Component text = textBuilder.build();
+        platformScheduler.runAtLocation(storefront.anchor, () -> {
+            storefront.rendering = false;
+            if (item == null || !storefront.visible || storefronts.get(new ShopKey(storefront.ownerUUID, storefront.shopName)) != storefront) {
+                storefront.despawn();
+            } else if (storefront.anchor.isChunkLoaded()) {
+                storefront.show(item, text);
+            }
+        });
+    }
+
+    private static String itemName(ItemStack item) {
+        return item.getType().getKey().getKey().replace('_', ' ');
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+    private void requestSave() {
+        if (savePending.compareAndSet(false, true)) {
+            workScheduler.submitAsync(this::save);
+        }
+    }
+
+    /**
+     * Saves the storefront anchors.
+     */
+    public void save() {
+        synchronized (fileLock) {
+            savePending.set(false);
+            YamlConfiguration config = new YamlConfiguration();
+            for (Storefront storefront : storefronts.values()) {
+                ConfigurationSection section = config.createSection(storefront.ownerUUID + "." + storefront.shopName);
+                section.set("world", storefront.anchor.getWorld().getUID().toString());
+                section.set("x", storefront.anchor.getBlockX());
+                section.set("y", storefront.anchor.getBlockY());
+                section.set("z", storefront.anchor.getBlockZ());
+            }
+            File tempFile = new File(storefrontsFile.getPath() + ".tmp");
+            try {
+                Files.writeString(tempFile.toPath(), config.saveToString(), StandardCharsets.UTF_8);
+                Files.move(tempFile.toPath(), storefrontsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving the storefronts: ", e);
+            }
+        }
+    }
+
+    private void load() {
+        if (!storefrontsFile.exists()) {
+            return;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(storefrontsFile);
+        for (String uuidString : config.getKeys(false)) {
+            ConfigurationSection ownerSection = Objects.requireNonNull(config.getConfigurationSection(uuidString));
+            for (String shopName : ownerSection.getKeys(false)) {
+                ConfigurationSection section = Objects.requireNonNull(ownerSection.getConfigurationSection(shopName));
+                World world = Bukkit.getWorld(UUID.fromString(Objects.requireNonNull(section.getString("world"))));
+                if (world == null) {
+                    Bukkit.getLogger().log(Level.WARNING, "Skipping the storefront of shop " + shopName + ", its world is not loaded.");
+                    continue;
+                }
+                Location anchor = new Location(world, section.getInt("x"), section.getInt("y"), section.getInt("z"));
+                UUID ownerUUID = UUID.fromString(uuidString);
+                storefronts.put(new ShopKey(ownerUUID, shopName), new Storefront(ownerUUID, shopName, anchor));
+            }
+        }
+    }
+
+    private record ShopKey(UUID ownerUUID, String shopName) {
+    }
+
+    private record PlayerChunk(UUID worldUID, int chunkX, int chunkZ) {
+    }
+
+    /**
+     * One storefront and its displays. The visibility is decided on the global region thread,
+     * while the displays are only spawned, changed and removed on the thread owning the anchor.
+     */
+    private static final class Storefront {
+        private final UUID ownerUUID;
+        private final String shopName;
+        private final Location anchor;
+        private volatile boolean visible;
+        // Set while a render for spawning is on its way, so reconciling doesn't start another one meanwhile
+        private volatile boolean rendering;
+        private volatile ItemDisplay itemDisplay;
+        private volatile TextDisplay textDisplay;
+
+        Storefront(UUID ownerUUID, String shopName, Location anchor) {
+            this.ownerUUID = ownerUUID;
+            this.shopName = shopName;
+            this.anchor = anchor;
+        }
+
+        boolean isSpawned() {
+            ItemDisplay item = itemDisplay;
+            TextDisplay text = textDisplay;
+            return item != null && item.isValid() && text != null && text.isValid();
+        }
+
+        void show(ItemStack item, Component text) {
+            if (!isSpawned()) {
+                despawn();
+                World world = anchor.getWorld();
+                itemDisplay = world.spawn(anchor.clone().add(0.5, 1.5, 0.5), ItemDisplay.class, display -> {
+                    display.setPersistent(false);
+                    display.setBillboard(Display.Billboard.VERTICAL);
+                    display.setViewRange(VIEW_RANGE);
+                });
+                textDisplay = world.spawn(anchor.clone().add(0.5, 2.1, 0.5), TextDisplay.class, display -> {
+                    display.setPersistent(false);
+                    display.setBillboard(Display.Billboard.CENTER);
+                    display.setViewRange(VIEW_RANGE);
+                });
+            }
+            itemDisplay.setItemStack(item);
+            textDisplay.text(text);
+        }
+
+        void despawn() {
+            removeEntity(itemDisplay);
+            removeEntity(textDisplay);
+            itemDisplay = null;
+            textDisplay = null;
+        }
+
+        private static void removeEntity(Entity entity) {
+            if (entity != null && entity.isValid()) {
+                entity.remove();
+            }
+        }
+    }
+}
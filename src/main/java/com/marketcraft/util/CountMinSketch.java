@@ -0,0 +1,97 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A count-min sketch, which estimates the total weight added for any number of keys in a fixed amount of memory.
+ * <p>
+ * Each key is hashed to one counter in every row, and its estimate is the smallest of those counters. Estimates
+ * never undercount, and only overcount by what colliding keys added. Updates are conservative: a counter is only
+ * raised as far as the key's new estimate, which keeps the overcounting of small keys low.
+ * This class is not thread-safe.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+
+    /**
+     * @param width The number of counters per row, rounded up to a power of two.
+     * @param depth The number of rows.
+     */
+    public CountMinSketch(int width, int depth) {
+        this.width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.counters = new long[this.width * depth];
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param keyHash A 64-bit hash of the key.
+     * @param weight  The weight to add.
+     * @return The new estimate of the key's total weight.
+     */
+    public long add(long keyHash, long weight) {
+        long estimate = estimate(keyHash) + weight;
+        for (int row = 0; row < depth; row++) {
+            int index = index(keyHash, row);
+            if (counters[index] < estimate) {
+                counters[index] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the total weight added to a key.
+     *
+     * @param keyHash A 64-bit hash of the key.
+     * @return The estimate, which is never lower than the true total.
+     */
+    public long estimate(long keyHash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(keyHash, row)]);
+        }
+        return estimate;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        for (long counter : counters) {
+            out.writeLong(counter);
+        }
+    }
+
+    /**
+     * Reads counters written by {@link #write(DataOutput)} from a sketch of the same size.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the input fails or ends early.
+     */
+    public void read(DataInput in) throws IOException {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = in.readLong();
+        }
+    }
+
+    private int index(long keyHash, int row) {
+        // Double hashing derives an independent-enough hash for every row from the two halves of the key hash
+        long h = (keyHash >>> 32) + row * (keyHash & 0xffffffffL | 1L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return row * width + (int) (h & (width - 1));
+    }
+}
@@ -24,8 +24,9 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The DebugManager class provides a system for managing and logging debug messages within the MarketCraft plugin.
@@ -33,8 +34,9 @@ import java.util.List;
  * and provides a command handler for players to manage debug settings.
  */
 public class DebugManager {
-    private static final EnumSet<Category> activeCategories = EnumSet.noneOf(Category.class);
-    private static DebugDestination globalDebugDestination = DebugDestination.BOTH;
+    // Debug state is read from every region thread on Folia, so it must be safe to share
+    private static final Set<Category> activeCategories = ConcurrentHashMap.newKeySet();
+    private static volatile DebugDestination globalDebugDestination = DebugDestination.BOTH;
 
     /**
      * Enables a specific debug category. When a debug category is enabled, debug messages related to that category
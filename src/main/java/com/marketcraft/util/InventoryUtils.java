@@ -0,0 +1,83 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Utility class for moving amounts of an item in and out of player inventories.
+ * Items are matched on their {@link ItemFingerprint}, so stacks with custom meta are only
+ * counted when they are similar to the requested item.
+ * These methods touch the player's inventory and must run on the thread that owns the player.
+ */
+public class InventoryUtils {
+
+    /**
+     * Counts how many of an item a player carries.
+     *
+     * @param player The player to check.
+     * @param item   The item to count. The amount of the item is ignored.
+     * @return The total amount of matching items.
+     */
+    public static int countItems(Player player, ItemStack item) {
+        ItemFingerprint fingerprint = ItemFingerprint.of(item);
+        int totalAmount = 0;
+        for (ItemStack itemStack : player.getInventory().getContents()) {
+            if (fingerprint.matches(itemStack)) {
+                totalAmount += itemStack.getAmount();
+            }
+        }
+        return totalAmount;
+    }
+
+    /**
+     * Removes an amount of an item from a player's inventory.
+     *
+     * @param player The player to take the items from.
+     * @param item   The item to remove. The amount of the item is ignored.
+     * @param amount The amount to remove.
+     * @return The amount that was actually removed, which is less than requested if the player ran out.
+     */
+    public static int removeItems(Player player, ItemStack item, int amount) {
+        ItemFingerprint fingerprint = ItemFingerprint.of(item);
+        int amountToRemove = amount;
+        for (ItemStack itemStack : player.getInventory().getContents()) {
+            if (amountToRemove <= 0) break;
+            if (fingerprint.matches(itemStack)) {
+                int removed = Math.min(itemStack.getAmount(), amountToRemove);
+                itemStack.setAmount(itemStack.getAmount() - removed);
+                amountToRemove -= removed;
+            }
+        }
+        return amount - amountToRemove;
+    }
+
+    /**
+     * Gives an amount of an item to a player, split into full stacks.
+     * Anything that does not fit in the inventory is dropped at the player's feet, so no items are ever lost.
+     *
+     * @param player The player receiving the items.
+     * @param item   The item to give. The amount of the item is ignored.
+     * @param amount The amount to give.
+     */
+    public static void giveItems(Player player, ItemStack item, int amount) {
+        int maxStackSize = item.getMaxStackSize();
+        int remaining = amount;
+        while (remaining > 0) {
+            ItemStack stack = item.clone();
+            stack.setAmount(Math.min(remaining, maxStackSize));
+            remaining -= stack.getAmount();
+            for (ItemStack leftover : player.getInventory().addItem(stack).values()) {
+                player.getWorld().dropItem(player.getLocation(), leftover);
+            }
+        }
+    }
+}
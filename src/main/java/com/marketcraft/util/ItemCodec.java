@@ -0,0 +1,150 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serializes and deserializes ItemStacks for the plugin's YAML storage while caching the results.
+ * A vault is usually many stacks of the same few items, so deserialized templates are interned by
+ * their serialized content (ignoring the amount) and serialized forms are memoized per distinct item.
+ * Load and save costs therefore scale with the number of distinct items rather than the number of slots.
+ * <p>
+ * Every interned template carries its {@link ItemFingerprint}, which lets slot scans match items
+ * straight from their serialized form without building an ItemStack for every slot.
+ */
+public final class ItemCodec {
+    private static final String AMOUNT_KEY = "amount";
+    private static final String TYPE_KEY = "type";
+    private static final int CACHE_SIZE = 1024;
+    private static final Map<Map<String, Object>, Template> DECODE_CACHE = createCache();
+    private static final Map<ItemStack, Template> ENCODE_CACHE = createCache();
+
+    private ItemCodec() {
+    }
+
+    /**
+     * Deserializes an item from its stored form, reusing the interned template for identical content.
+     *
+     * @param data The serialized item, as returned by {@link ItemStack#serialize()}.
+     * @return A new ItemStack with the stored amount.
+     */
+    public static ItemStack decode(Map<String, Object> data) {
+        ItemStack item = intern(data).item.clone();
+        item.setAmount(amount(data));
+        return item;
+    }
+
+    /**
+     * Returns the fingerprint of a stored item without creating an ItemStack for it.
+     *
+     * @param data The serialized item.
+     * @return The fingerprint of the interned template.
+     */
+    public static ItemFingerprint fingerprint(Map<String, Object> data) {
+        return intern(data).fingerprint;
+    }
+
+    /**
+     * Reads the amount of a stored item.
+     *
+     * @param data The serialized item.
+     * @return The stored amount, defaulting to one as ItemStack serialization omits it for single items.
+     */
+    public static int amount(Map<String, Object> data) {
+        Object amount = data.get(AMOUNT_KEY);
+        return amount instanceof Number number ? number.intValue() : 1;
+    }
+
+    /**
+     * Serializes an item, reusing the memoized serialized form of identical items.
+     *
+     * @param item The item to serialize.
+     * @return The serialized item, in the same shape as {@link ItemStack#serialize()}.
+     */
+    public static Map<String, Object> encode(ItemStack item) {
+        return encode(item, item.getAmount());
+    }
+
+    /**
+     * Serializes an item with a different amount, reusing the memoized serialized form of identical items.
+     *
+     * @param item   The item to serialize.
+     * @param amount The amount to store.
+     * @return The serialized item, in the same shape as {@link ItemStack#serialize()}.
+     */
+    public static Map<String, Object> encode(ItemStack item, int amount) {
+        Template template = ENCODE_CACHE.computeIfAbsent(item.asOne(), ItemCodec::createTemplate);
+        return withAmount(template.serialized, amount);
+    }
+
+    /**
+     * Looks up or creates the interned template for some serialized content.
+     *
+     * @param data The serialized item.
+     * @return The interned template.
+     */
+    private static Template intern(Map<String, Object> data) {
+        Map<String, Object> key = new HashMap<>(data);
+        key.remove(AMOUNT_KEY);
+        Template template = DECODE_CACHE.get(key);
+        if (template == null) {
+            template = createTemplate(ItemStack.deserialize(data).asOne());
+            DECODE_CACHE.put(key, template);
+            // Prime the encode side too, so saving an unchanged item never serializes it again
+            ENCODE_CACHE.putIfAbsent(template.item.clone(), template);
+        }
+        return template;
+    }
+
+    private static Template createTemplate(ItemStack single) {
+        Map<String, Object> serialized = single.serialize();
+        serialized.remove(AMOUNT_KEY);
+        return new Template(single, ItemFingerprint.of(single), Collections.unmodifiableMap(serialized));
+    }
+
+    /**
+     * Builds a fresh serialized map from a memoized one, placing the amount where ItemStack serialization would.
+     *
+     * @param serialized The memoized serialized form without an amount.
+     * @param amount     The amount to store.
+     * @return A new mutable map.
+     */
+    private static Map<String, Object> withAmount(Map<String, Object> serialized, int amount) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : serialized.entrySet()) {
+            result.put(entry.getKey(), entry.getValue());
+            if (amount != 1 && TYPE_KEY.equals(entry.getKey())) {
+                result.put(AMOUNT_KEY, amount);
+            }
+        }
+        return result;
+    }
+
+    private static <K> Map<K, Template> createCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Template> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+    }
+
+    /**
+     * A single-item template together with its fingerprint and serialized form.
+     */
+    private record Template(ItemStack item, ItemFingerprint fingerprint, Map<String, Object> serialized) {
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A canonical fingerprint of an item template, used for fast similarity matching in hot loops.
+ * The fingerprint is a stable 64-bit hash of the item type plus its normalized meta (the item serialized
+ * with an amount of one), so two stacks that only differ in amount share the same fingerprint.
+ * <p>
+ * Fingerprints are computed once per template and cached. Items without meta are cached by type alone, and a
+ * lookup never copies the looked up stack, only a stack that is fingerprinted for the first time is copied into the
+ * cache. Matching a candidate stack first rejects on the cheap checks (type and meta presence), then compares the
+ * 64-bit hashes of both fingerprints, and only falls back to a full {@link ItemStack#isSimilar(ItemStack)}
+ * comparison when the hashes are equal.
+ */
+public final class ItemFingerprint {
+    private static final int CACHE_SIZE = 1024;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final Map<CacheKey, ItemFingerprint> CACHE = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, ItemFingerprint> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+    private static final AtomicReferenceArray<ItemFingerprint> PLAIN = new AtomicReferenceArray<>(Material.values().length);
+    private final ItemStack template;
+    private final Material type;
+    private final boolean hasMeta;
+    private final long hash;
+
+    private ItemFingerprint(ItemStack template) {
+        this.template = template;
+        this.type = template.getType();
+        this.hasMeta = template.hasItemMeta();
+        this.hash = computeHash(template, hasMeta);
+    }
+
+    /**
+     * Returns the fingerprint of the given item, computing and caching it on first use.
+     *
+     * @param item The item to fingerprint. The amount of the item is ignored.
+     * @return The fingerprint of the item, or null if the item is null.
+     */
+    public static ItemFingerprint of(ItemStack item) {
+        if (item == null) {
+            return null;
+        }
+        if (!item.hasItemMeta()) {
+            int ordinal = item.getType().ordinal();
+            ItemFingerprint plain = PLAIN.get(ordinal);
+            if (plain == null) {
+                plain = new ItemFingerprint(item.asOne());
+                PLAIN.compareAndSet(ordinal, null, plain);
+            }
+            return plain;
+        }
+        ItemFingerprint cached = CACHE.get(new CacheKey(item));
+        if (cached != null) {
+            return cached;
+        }
+        // The stored key is a private single-item copy so later changes to the caller's stack can't corrupt the cache
+        ItemStack template = item.asOne();
+        return CACHE.computeIfAbsent(new CacheKey(template), key -> new ItemFingerprint(template));
+    }
+
+    /**
+     * Checks if a candidate stack is similar to this fingerprint's template.
+     * Cheap checks reject most mismatches, and stacks with meta are compared by their cached fingerprints.
+     *
+     * @param candidate The stack to compare against the template.
+     * @return True if the candidate is similar to the template, false otherwise.
+     */
+    public boolean matches(ItemStack candidate) {
+        if (candidate == null || candidate.getType() != type) {
+            return false;
+        }
+        boolean candidateHasMeta = candidate.hasItemMeta();
+        if (candidateHasMeta != hasMeta) {
+            return false;
+        }
+        // Without meta the type alone decides similarity
+        return !hasMeta || matches(of(candidate));
+    }
+
+    /**
+     * Checks if another fingerprinted template is similar to this one.
+     * This is a single long comparison, with a full comparison only when the hashes collide.
+     *
+     * @param other The other fingerprint.
+     * @return True if both templates are similar, false otherwise.
+     */
+    public boolean matches(ItemFingerprint other) {
+        if (other == this) {
+            return true;
+        }
+        if (other == null || other.hash != hash) {
+            return false;
+        }
+        return !hasMeta || template.isSimilar(other.template);
+    }
+
+    /**
+     * @return The stable 64-bit hash of the item type and normalized meta.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The type of the fingerprinted item.
+     */
+    public Material getType() {
+        return type;
+    }
+
+    /**
+     * @return A copy of the single-item template this fingerprint was computed from.
+     */
+    public ItemStack getTemplate() {
+        return template.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ItemFingerprint other && matches(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * Computes the stable hash for a template. Items without meta hash on their type key only,
+     * everything else hashes the normalized serialized form so the result survives restarts.
+     *
+     * @param template The single-item template.
+     * @param hasMeta  Whether the template carries item meta.
+     * @return The 64-bit FNV-1a hash of the template.
+     */
+    private static long computeHash(ItemStack template, boolean hasMeta) {
+        long h = fnv(FNV_OFFSET_BASIS, template.getType().getKey().toString().getBytes(StandardCharsets.UTF_8));
+        if (hasMeta) {
+            h = fnv(h, template.serializeAsBytes());
+        }
+        return h;
+    }
+
+    /**
+     * A cache key that is equal for similar stacks regardless of their amount, so a lookup can wrap the caller's
+     * stack as it is.
+     */
+    private static final class CacheKey {
+        private final ItemStack stack;
+        private final int hash;
+
+        CacheKey(ItemStack stack) {
+            this.stack = stack;
+            this.hash = 31 * stack.getType().hashCode() + stack.getItemMeta().hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CacheKey other && hash == other.hash && stack.isSimilar(other.stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static long fnv(long h, byte[] data) {
+        for (byte b : data) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A hierarchical timing wheel for expiring large numbers of timers without scanning all of them.
+ * <p>
+ * Time advances in fixed ticks. The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots each, where a slot
+ * of level n covers 64^n ticks. A timer is placed on the lowest level whose range covers its deadline, and whenever
+ * the level below wraps around, the next slot of the level above is cascaded down. Adding and cancelling a timer is
+ * O(1), and advancing one tick only touches the timers that are due or being cascaded.
+ * <p>
+ * With one-second ticks the wheel covers about six months. Timers further out are clamped to the last slot and are
+ * re-placed as they cascade down, so they still expire on time. This class is not thread-safe.
+ *
+ * @param <T> The type of value carried by the timers.
+ */
+public class TimingWheel<T> {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private final long tickMillis;
+    private final List<List<Set<Timer<T>>>> wheels = new ArrayList<>(LEVELS);
+    private long currentTick;
+
+    /**
+     * @param tickMillis The length of a tick in milliseconds.
+     * @param nowMillis  The current time in milliseconds.
+     */
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<Timer<T>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new LinkedHashSet<>());
+            }
+            wheels.add(slots);
+        }
+    }
+
+    /**
+     * Schedules a timer.
+     *
+     * @param value          The value handed back when the timer expires.
+     * @param deadlineMillis The time, in milliseconds, at which the timer expires.
+     * @return The timer, which can be passed to {@link #cancel(Timer)}.
+     */
+    public Timer<T> schedule(T value, long deadlineMillis) {
+        Timer<T> timer = new Timer<>(value, deadlineMillis / tickMillis);
+        // The slot of the current tick was already expired, so timers that are due fire on the next tick
+        place(timer, currentTick + 1);
+        return timer;
+    }
+
+    /**
+     * Cancels a timer that has not expired yet.
+     *
+     * @param timer The timer to cancel.
+     */
+    public void cancel(Timer<T> timer) {
+        if (timer.slot != null) {
+            timer.slot.remove(timer);
+            timer.slot = null;
+        }
+    }
+
+    /**
+     * Advances the wheel to the given time and collects every timer that expired on the way.
+     *
+     * @param nowMillis The current time in milliseconds.
+     * @return The values of the expired timers, in the order of their deadlines.
+     */
+    public List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade the levels above whenever the level below wraps around
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                Set<Timer<T>> slot = wheels.get(level).get((int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                List<Timer<T>> cascading = new ArrayList<>(slot);
+                slot.clear();
+                for (Timer<T> timer : cascading) {
+                    place(timer, currentTick);
+                }
+            }
+            Set<Timer<T>> slot = wheels.get(0).get((int) (currentTick & SLOT_MASK));
+            for (Timer<T> timer : slot) {
+                timer.slot = null;
+                expired.add(timer.value);
+            }
+            slot.clear();
+        }
+        return expired;
+    }
+
+    /**
+     * Puts a timer into the slot of the lowest level that covers its deadline.
+     *
+     * @param timer   The timer to place.
+     * @param minTick The earliest tick whose slot has not been expired yet.
+     */
+    private void place(Timer<T> timer, long minTick) {
+        long deadlineTick = Math.max(timer.deadlineTick, minTick);
+        long ticksLeft = deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && ticksLeft >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        long maxTicks = (1L << (SLOT_BITS * (level + 1))) - 1;
+        if (ticksLeft > maxTicks) {
+            // Beyond the range of the top level, park it in the furthest slot and re-place it once it cascades
+            deadlineTick = currentTick + maxTicks;
+        }
+        Set<Timer<T>> slot = wheels.get(level).get((int) ((deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+        slot.add(timer);
+        timer.slot = slot;
+    }
+
+    /**
+     * A scheduled timer.
+     *
+     * @param <T> The type of value carried by the timer.
+     */
+    public static final class Timer<T> {
+        private final T value;
+        private final long deadlineTick;
+        private Set<Timer<T>> slot;
+
+        private Timer(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Tracks the heaviest keys of an unbounded stream of weighted updates in bounded memory.
+ * <p>
+ * Total weights are estimated by a {@link CountMinSketch}, so keys that are not currently ranked are never
+ * forgotten. The current candidates are kept in a min-heap of fixed capacity: an update raises a candidate's
+ * count in place, and a key outside the heap replaces the smallest candidate once its estimate exceeds it.
+ * Updates are O(log capacity) and {@link #top(int)} only looks at the candidates.
+ * This class is not thread-safe.
+ */
+public class TopK {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final int capacity;
+    private final CountMinSketch sketch;
+    private final String[] keys;
+    private final long[] counts;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int size;
+
+    /**
+     * @param capacity    The number of candidates kept, which should be a few times the largest K queried.
+     * @param sketchWidth The number of counters per sketch row.
+     * @param sketchDepth The number of sketch rows.
+     */
+    public TopK(int capacity, int sketchWidth, int sketchDepth) {
+        this.capacity = capacity;
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+    }
+
+    /**
+     * Adds weight to a key and updates the candidates.
+     *
+     * @param key    The key.
+     * @param weight The weight to add.
+     */
+    public void add(String key, long weight) {
+        long estimate = sketch.add(hash(key), weight);
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] = estimate;
+            siftDown(position);
+        } else if (size < capacity) {
+            keys[size] = key;
+            counts[size] = estimate;
+            positions.put(key, size);
+            siftUp(size++);
+        } else if (estimate > counts[0]) {
+            positions.remove(keys[0]);
+            keys[0] = key;
+            counts[0] = estimate;
+            positions.put(key, 0);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @param k The number of keys to return.
+     * @return The heaviest keys with their estimated weights, heaviest first.
+     */
+    public List<Entry> top(int k) {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(keys[i], counts[i]));
+        }
+        entries.sort(Comparator.comparingLong(Entry::count).reversed());
+        return entries.subList(0, Math.min(k, entries.size()));
+    }
+
+    public void write(DataOutput out) throws IOException {
+        sketch.write(out);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(keys[i]);
+            out.writeLong(counts[i]);
+        }
+    }
+
+    /**
+     * Reads the state written by {@link #write(DataOutput)} into an empty instance of the same dimensions.
+     *
+     * @param in The input to read from.
+     * @throws IOException If the input fails or ends early.
+     */
+    public void read(DataInput in) throws IOException {
+        sketch.read(in);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            long estimate = in.readLong();
+            if (size < capacity) {
+                keys[size] = key;
+                counts[size] = estimate;
+                positions.put(key, size);
+                siftUp(size++);
+            }
+        }
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        long count = counts[a];
+        keys[a] = keys[b];
+        counts[a] = counts[b];
+        keys[b] = key;
+        counts[b] = count;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+
+    private static long hash(String key) {
+        long h = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * A ranked key and its estimated total weight.
+     *
+     * @param key   The key.
+     * @param count The estimated total weight.
+     */
+    public record Entry(String key, long count) {
+    }
+}
@@ -9,6 +9,10 @@
 
 package com.marketcraft.vaults;
 
+import com.marketcraft.storage.ColdStorage;
+import com.marketcraft.storage.ShardedFolder;
+import com.marketcraft.util.ItemCodec;
+import com.marketcraft.util.ItemFingerprint;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -20,9 +24,20 @@ import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
-import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
@@ -37,15 +52,55 @@ import java.util.logging.Level;
  * - Listing all vault files for administrative purposes.
  */
 public class PlayerVaultManager {
-    private final File vaultsFolder;
-    private static final Set<Integer> GUI_SLOTS = Set.of(4, 13, 22, 31, 40, 49);
-    private static final Set<Integer> SELLING_SLOTS = Set.of(0, 1, 2, 3, 9, 10, 11, 12, 18, 19, 20, 21, 27, 28, 29, 30, 36, 37, 38, 39, 45, 46, 47, 48);
+    private final ShardedFolder vaultFiles;
+    private final Map<UUID, ReentrantLock> vaultLocks = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<String, CachedStock>> stockCache = new ConcurrentHashMap<>();
+    private final List<Consumer<UUID>> stockListeners = new CopyOnWriteArrayList<>();
+    private final VaultLayout layout;
+    private final ColdStorage coldStorage;
 
-    public PlayerVaultManager(File pluginFolder) {
-        this.vaultsFolder = new File(pluginFolder, "Vaults");
-        if (!vaultsFolder.exists() && !vaultsFolder.mkdirs()) {
-            Bukkit.getLogger().log(Level.SEVERE, "Failed to create the Vaults directory, the plugin may fail to function correctly!");
-        }
+    /**
+     * @param vaultFiles  The folder of vault files.
+     * @param vaultPages  The number of pages of every shop vault.
+     * @param coldStorage The cold storage holding the vaults of idle owners.
+     */
+    public PlayerVaultManager(ShardedFolder vaultFiles, int vaultPages, ColdStorage coldStorage) {
+        this.vaultFiles = vaultFiles;
+        this.layout = new VaultLayout(vaultPages);
+        this.coldStorage = coldStorage;
+    }
+
+    /**
+     * @return The slot layout shared by every shop vault.
+     */
+    public VaultLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the lock guarding a player's vault file.
+     * Every method of this class holds the lock while it reads or writes the file, and callers that need
+     * several operations to happen atomically, such as a shop transaction, can hold it across all of them.
+     * This keeps vault access safe when buyers and owners are ticked on different region threads.
+     *
+     * @param playerUUID The UUID of the vault owner.
+     * @return The reentrant lock for that owner's vault.
+     */
+    public ReentrantLock getVaultLock(UUID playerUUID) {
+        return vaultLocks.computeIfAbsent(playerUUID, k -> new ReentrantLock());
+    }
+
+    /**
+     * Returns the vault file of a player, bringing it back from cold storage first if the player was archived.
+     * Every access to a vault file goes through here, and whether the file exists is then answered by
+     * {@link ShardedFolder#contains(UUID)} without touching the disk.
+     *
+     * @param playerUUID The UUID of the player.
+     * @return The file of the player's vault, which may not exist.
+     */
+    private File vaultFileOf(UUID playerUUID) {
+        coldStorage.rehydrate(playerUUID);
+        return vaultFiles.fileOf(playerUUID);
     }
 
     /**
@@ -55,8 +110,8 @@ public class PlayerVaultManager {
      * @return True if the vault file exists, false otherwise.
      */
     public boolean doesPlayerVaultExist(UUID playerUUID) {
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
-        return playerVaultFile.exists();
+        coldStorage.rehydrate(playerUUID);
+        return vaultFiles.contains(playerUUID);
     }
 
     /**
@@ -66,20 +121,29 @@ public class PlayerVaultManager {
      * @param shopName The name of the shop associated with the vault.
      */
     public void createPlayerVaultFile(Player player, String shopName) {
-        UUID playerUUID = player.getUniqueId();
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
+        ReentrantLock vaultLock = getVaultLock(player.getUniqueId());
+        vaultLock.lock();
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-            boolean isNewFileCreated = playerVaultFile.createNewFile();
-            if (isNewFileCreated) {
-                // Create a section for the shop in the vault
-                config.createSection("vault." + shopName); // Create an empty section for the specific shop
-                // Save the file with the new structure
-                config.save(playerVaultFile);
+            UUID playerUUID = player.getUniqueId();
+            // An archived vault is brought back first, so it isn't mistaken for a missing one
+            coldStorage.rehydrate(playerUUID);
+            try {
+                if (!vaultFiles.contains(playerUUID)) {
+                    File playerVaultFile = vaultFiles.fileToWrite(playerUUID);
+                    YamlConfiguration config = new YamlConfiguration();
+                    // Create a section for the shop in the vault
+                    config.createSection("vault." + shopName); // Create an empty section for the specific shop
+                    // Save the file with the new structure
+                    config.save(playerVaultFile);
+                    vaultFiles.markWritten(playerUUID);
+                    invalidateStock(playerUUID);
+                }
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while creating" + player.getName() + "'s vault for " + shopName + ": ", e);
+                player.sendMessage(Component.text("An error occurred while creating your vault for " + shopName + ". Please try again later."));
             }
-        } catch (IOException e) {
-            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while creating" + player.getName() + "'s vault for " + shopName + ": ", e);
-            player.sendMessage(Component.text("An error occurred while creating your vault for " + shopName + ". Please try again later."));
+        } finally {
+            vaultLock.unlock();
         }
     }
 
@@ -92,30 +156,225 @@ public class PlayerVaultManager {
      * @return The count of the specified item in the vault.
      */
     public int getItemCountInPlayerVault(UUID playerUUID, ItemStack itemToCheck, String shopName) {
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
-        if (!playerVaultFile.exists()) {
-            return 0;
+        return countItemsInPlayerVault(playerUUID, new ItemFingerprint[]{ItemFingerprint.of(itemToCheck)}, shopName)[0];
+    }
+
+    /**
+     * Counts several items in a player's vault for a given shop, reading the vault only once.
+     *
+     * @param playerUUID   The UUID of the player owning the vault.
+     * @param fingerprints The fingerprints of the items to count.
+     * @param shopName     The name of the shop associated with the vault.
+     * @return The count of each item, in the order of the fingerprints.
+     */
+    private int[] countItemsInPlayerVault(UUID playerUUID, ItemFingerprint[] fingerprints, String shopName) {
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return new int[fingerprints.length];
+            }
+            return countItems(YamlConfiguration.loadConfiguration(playerVaultFile), fingerprints, shopName);
+        } finally {
+            vaultLock.unlock();
         }
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-        int itemCount = 0;
-        String shopVaultPath = "vault." + shopName;
-        // Check if the shopVaultPath exists in the config
-        if (config.contains(shopVaultPath)) {
-            ConfigurationSection shopVaultSection = config.getConfigurationSection(shopVaultPath);
-            for (String key : Objects.requireNonNull(shopVaultSection).getKeys(false)) {
-                // Determine the slot index from the key and skip GUI slots
-                int slotIndex = Integer.parseInt(key.replace("slot_", ""));
-                if (GUI_SLOTS.contains(slotIndex)) {
-                    continue;
-                }
-                ItemStack item = ItemStack.deserialize(Objects.requireNonNull(shopVaultSection.getConfigurationSection(key)).getValues(false));
-                // Check if the item is similar to the one we are looking for
-                if (item.isSimilar(itemToCheck)) {
-                    itemCount += item.getAmount();
+    }
+
+    /**
+     * Returns the stock of an item in a player's vault, served from memory when the vault has not changed since it was last counted.
+     * Every write to the vault invalidates the owner's cached counts, so the result is always current.
+     * This lets listings show live stock without reading a vault file for every render.
+     *
+     * @param playerUUID  The UUID of the player owning the vault.
+     * @param itemToCheck The item to count in the vault.
+     * @param shopName    The name of the shop associated with the vault.
+     * @return The count of the specified item in the vault.
+     */
+    public int getCachedItemCount(UUID playerUUID, ItemStack itemToCheck, String shopName) {
+        return getCachedItemCounts(playerUUID, new ItemStack[]{itemToCheck}, shopName)[0];
+    }
+
+    /**
+     * Returns the stock of several items in a player's vault, such as the items sold by every trade of a shop.
+     * Counts are served from memory like {@link #getCachedItemCount}, and all items that are not cached yet
+     * are counted together in a single read of the vault. The stock of archived shops is served from cold storage.
+     *
+     * @param playerUUID   The UUID of the player owning the vault.
+     * @param itemsToCheck The items to count in the vault.
+     * @param shopName     The name of the shop associated with the vault.
+     * @return The count of each item, in the order of the items.
+     */
+    public int[] getCachedItemCounts(UUID playerUUID, ItemStack[] itemsToCheck, String shopName) {
+        ItemFingerprint[] fingerprints = new ItemFingerprint[itemsToCheck.length];
+        for (int i = 0; i < itemsToCheck.length; i++) {
+            fingerprints[i] = ItemFingerprint.of(itemsToCheck[i]);
+        }
+        int[] counts = new int[fingerprints.length];
+        Map<String, CachedStock> ownerStock = stockCache.get(playerUUID);
+        if (ownerStock != null && lookupStock(ownerStock.get(shopName), fingerprints, counts)) {
+            return counts;
+        }
+        // Archived vaults can't change, so their stock is served from the archive without bringing them back
+        int[] archivedCounts = coldStorage.getArchivedStock(playerUUID, shopName, fingerprints);
+        if (archivedCounts != null) {
+            return archivedCounts;
+        }
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            counts = countItemsInPlayerVault(playerUUID, fingerprints, shopName);
+            // Writes invalidate under the same lock, so counts taken here can't be stale once stored
+            Map<String, CachedStock> shopStock = stockCache.computeIfAbsent(playerUUID, k -> new ConcurrentHashMap<>());
+            shopStock.put(shopName, CachedStock.merge(shopStock.get(shopName), fingerprints, counts));
+            return counts;
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+
+    /**
+     * Fills in the cached count of every fingerprint.
+     *
+     * @return True if all fingerprints were cached.
+     */
+    private static boolean lookupStock(CachedStock cached, ItemFingerprint[] fingerprints, int[] counts) {
+        if (cached == null) {
+            return false;
+        }
+        outer:
+        for (int i = 0; i < fingerprints.length; i++) {
+            if (fingerprints[i] == null) {
+                continue;
+            }
+            for (int j = 0; j < cached.fingerprints().length; j++) {
+                if (cached.fingerprints()[j].matches(fingerprints[i])) {
+                    counts[i] = cached.counts()[j];
+                    continue outer;
                 }
             }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the cached stock counts of a player's vault after it was written.
+     *
+     * @param playerUUID The UUID of the player owning the vault.
+     */
+    private void invalidateStock(UUID playerUUID) {
+        stockCache.remove(playerUUID);
+        for (Consumer<UUID> listener : stockListeners) {
+            listener.accept(playerUUID);
+        }
+    }
+
+    /**
+     * Registers a listener that is told the owner of every vault that was written.
+     * The listener is called while the vault lock is held, so it must not block or take other locks.
+     *
+     * @param listener The listener receiving the UUID of the vault owner.
+     */
+    public void addStockListener(Consumer<UUID> listener) {
+        stockListeners.add(listener);
+    }
+
+    /**
+     * Starts a transaction on a player's vault, reading the vault file once.
+     * The caller must hold the owner's vault lock from here until the transaction is committed or dropped,
+     * so no one else can write the file in between.
+     *
+     * @param playerUUID The UUID of the player owning the vault.
+     * @return The transaction, or null if the player has no vault.
+     * @throws IllegalStateException If the vault lock is not held by the current thread.
+     */
+    public VaultTransaction beginTransaction(UUID playerUUID) {
+        if (!getVaultLock(playerUUID).isHeldByCurrentThread()) {
+            throw new IllegalStateException("The vault lock must be held to start a vault transaction");
+        }
+        File playerVaultFile = vaultFileOf(playerUUID);
+        if (!vaultFiles.contains(playerUUID)) {
+            return null;
+        }
+        return new VaultTransaction(playerUUID, playerVaultFile, YamlConfiguration.loadConfiguration(playerVaultFile), layout);
+    }
+
+    /**
+     * Writes the changed vaults of several transactions, with a single write per vault.
+     * Every vault is first written to a temporary file, and only once all of them were written are they moved
+     * into place, so a failed write leaves every vault as it was. If moving a vault into place fails, the vaults
+     * already moved are put back the way they were read, so the transactions are still all or nothing.
+     * The caller must still hold all the vault locks.
+     *
+     * @param transactions The transactions to commit.
+     * @return True if every vault was written, false if nothing was changed because a write failed.
+     */
+    public boolean commitTransactions(List<VaultTransaction> transactions) {
+        List<VaultTransaction> changed = new ArrayList<>();
+        for (VaultTransaction transaction : transactions) {
+            if (transaction.isChanged()) {
+                changed.add(transaction);
+            }
+        }
+        List<File> tempFiles = new ArrayList<>();
+        List<byte[]> originals = new ArrayList<>();
+        try {
+            for (VaultTransaction transaction : changed) {
+                File tempFile = new File(transaction.getVaultFile().getPath() + ".tmp");
+                tempFiles.add(tempFile);
+                Files.writeString(tempFile.toPath(), transaction.getConfig().saveToString(), StandardCharsets.UTF_8);
+                // Unchanged since the transaction read it, as the caller holds the vault lock
+                originals.add(Files.readAllBytes(transaction.getVaultFile().toPath()));
+            }
+        } catch (IOException e) {
+            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while writing a vault transaction: ", e);
+            deleteTempFiles(tempFiles, 0);
+            return false;
+        }
+        for (int i = 0; i < changed.size(); i++) {
+            VaultTransaction transaction = changed.get(i);
+            try {
+                Files.move(tempFiles.get(i).toPath(), transaction.getVaultFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.SEVERE, "An error has occurred while moving a vault transaction into place: " + transaction.getOwnerUUID(), e);
+                deleteTempFiles(tempFiles, i);
+                rollBack(changed.subList(0, i), originals);
+                return false;
+            }
+        }
+        for (VaultTransaction transaction : changed) {
+            invalidateStock(transaction.getOwnerUUID());
+        }
+        return true;
+    }
+
+    private static void deleteTempFiles(List<File> tempFiles, int from) {
+        for (File tempFile : tempFiles.subList(from, tempFiles.size())) {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Puts vaults that were already moved into place by a failed commit back the way they were read.
+     *
+     * @param moved     The transactions whose vaults were moved into place.
+     * @param originals The contents of the vault files before the commit, in the same order.
+     */
+    private void rollBack(List<VaultTransaction> moved, List<byte[]> originals) {
+        for (int i = 0; i < moved.size(); i++) {
+            VaultTransaction transaction = moved.get(i);
+            File vaultFile = transaction.getVaultFile();
+            File tempFile = new File(vaultFile.getPath() + ".tmp");
+            try {
+                Files.write(tempFile.toPath(), originals.get(i));
+                Files.move(tempFile.toPath(), vaultFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Nothing more can be done here, the vault keeps the committed contents
+                Bukkit.getLogger().log(Level.SEVERE, "An error has occurred while rolling back a vault transaction: " + transaction.getOwnerUUID(), e);
+            }
+            invalidateStock(transaction.getOwnerUUID());
         }
-        return itemCount;
     }
 
     /**
@@ -127,50 +386,25 @@ public class PlayerVaultManager {
      * @param shopName   The name of the shop associated with the vault.
      */
     public void addItemsToPlayerVault(UUID playerUUID, ItemStack itemToAdd, int amount, String shopName) {
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
-        if (!playerVaultFile.exists()) {
-            return;
-        }
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-            boolean itemAdded = false;
-            String shopVaultPath = "vault." + shopName;
-            // Check existing slots within the specific shop's vault
-            for (int i = 0; i < 54; i++) { // This is currently a hardcoded vault size limit
-                // We ignore the menu slots since they are menu items
-                // We ignore the selling slots since this method is only ever used to add payment items
-                // from a successful sell, those items should be put into the payment slots instead
-                if (GUI_SLOTS.contains(i) || (SELLING_SLOTS.contains(i))) {
-                    // Skip GUI slots
-                    continue;
-                }
-                String slotKey = shopVaultPath + ".slot_" + i;
-                if (config.contains(slotKey)) {
-                    ItemStack existingItem = ItemStack.deserialize(Objects.requireNonNull(config.getConfigurationSection(slotKey)).getValues(false));
-                    if (existingItem.isSimilar(itemToAdd)) {
-                        // Increase amount if similar item found
-                        int newAmount = existingItem.getAmount() + amount;
-                        if (newAmount <= existingItem.getMaxStackSize()) {
-                            existingItem.setAmount(newAmount);
-                            config.set(slotKey, existingItem.serialize());
-                            itemAdded = true;
-                            break;
-                        }
-                    }
-                } else {
-                    // Add item to a new empty slot
-                    itemToAdd.setAmount(amount);
-                    config.set(slotKey, itemToAdd.serialize());
-                    itemAdded = true;
-                    break;
-                }
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return;
             }
-            // Save changes if an item was added
-            if (itemAdded) {
-                config.save(playerVaultFile);
+            try {
+                YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+                // Save changes if an item was added
+                if (addItems(config, layout, itemToAdd, amount, shopName)) {
+                    config.save(playerVaultFile);
+                    invalidateStock(playerUUID);
+                }
+            } catch (Exception e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while adding items to a player's vault: " + shopName, e);
             }
-        } catch (Exception e) {
-            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while adding items to a player's vault: " + shopName, e);
+        } finally {
+            vaultLock.unlock();
         }
     }
 
@@ -183,45 +417,25 @@ public class PlayerVaultManager {
      * @param shopName       The name of the shop associated with the vault.
      */
     public void removeItemsFromPlayerVault(UUID playerUUID, ItemStack itemToRemove, int amountToRemove, String shopName) {
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
-        if (!playerVaultFile.exists()) {
-            return;
-        }
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-            String shopVaultPath = "vault." + shopName;
-            // Track the remaining amount to remove
-            int remainingAmount = amountToRemove;
-            ConfigurationSection shopVaultSection = config.getConfigurationSection(shopVaultPath);
-            for (String key : Objects.requireNonNull(shopVaultSection).getKeys(false)) {
-                // Determine the slot index from the key
-                int slotIndex = Integer.parseInt(key.replace("slot_", ""));
-                // Skip GUI slots
-                if (GUI_SLOTS.contains(slotIndex)) {
-                    continue;
-                }
-                if (remainingAmount <= 0) break; // Stop if the required amount has been removed
-                String fullKeyPath = shopVaultPath + "." + key;
-                ItemStack item = ItemStack.deserialize(Objects.requireNonNull(shopVaultSection.getConfigurationSection(key)).getValues(false));
-                if (item.isSimilar(itemToRemove)) {
-                    int currentAmount = item.getAmount();
-                    if (currentAmount > remainingAmount) {
-                        item.setAmount(currentAmount - remainingAmount);
-                        config.set(fullKeyPath, item.serialize());
-                        remainingAmount = 0;
-                    } else {
-                        // Remove the entire stack and decrement the remaining amount
-                        remainingAmount -= currentAmount;
-                        config.set(fullKeyPath, null); // Remove the item stack from the slot
-                    }
-                }
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return;
             }
-            // Save changes if any items were removed
-            if (remainingAmount < amountToRemove) {
-                config.save(playerVaultFile);
+            try {
+                YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+                // Save changes if any items were removed
+                if (removeItems(config, itemToRemove, amountToRemove, shopName) > 0) {
+                    config.save(playerVaultFile);
+                    invalidateStock(playerUUID);
+                }
+            } catch (Exception e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while removing items from a player's vault: " + shopName, e);
             }
-        } catch (Exception e) {
-            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while removing items from a player's vault: " + shopName, e);
+        } finally {
+            vaultLock.unlock();
         }
     }
 
@@ -235,38 +449,224 @@ public class PlayerVaultManager {
      * @return True if the item can be added, false otherwise.
      */
     public boolean canAddItemToPlayerVault(UUID playerUUID, ItemStack itemToAdd, int amount, String shopName) {
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
-        if (!playerVaultFile.exists()) {
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return false;
+            }
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+            return findPaymentSlot(config, layout, itemToAdd, amount, shopName) >= 0;
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+
+    /**
+     * Counts several items in one shop's section of a loaded vault file, on every page, skipping the divider slots.
+     *
+     * @param config       The loaded vault file.
+     * @param fingerprints The fingerprints of the items to count, null entries are counted as zero.
+     * @param shopName     The name of the shop associated with the vault.
+     * @return The count of each item, in the order of the fingerprints.
+     */
+    static int[] countItems(YamlConfiguration config, ItemFingerprint[] fingerprints, String shopName) {
+        int[] itemCounts = new int[fingerprints.length];
+        ConfigurationSection shopVaultSection = config.getConfigurationSection("vault." + shopName);
+        if (shopVaultSection == null) {
+            return itemCounts;
+        }
+        for (String key : shopVaultSection.getKeys(false)) {
+            // Determine the slot index from the key and skip the divider slots
+            if (VaultLayout.isDividerSlot(VaultLayout.parseSlot(key))) {
+                continue;
+            }
+            Map<String, Object> itemData = Objects.requireNonNull(shopVaultSection.getConfigurationSection(key)).getValues(false);
+            // Check if the item is similar to the ones we are looking for, without building a stack for the slot
+            ItemFingerprint slotFingerprint = ItemCodec.fingerprint(itemData);
+            for (int i = 0; i < fingerprints.length; i++) {
+                if (fingerprints[i] != null && fingerprints[i].matches(slotFingerprint)) {
+                    itemCounts[i] += ItemCodec.amount(itemData);
+                }
+            }
+        }
+        return itemCounts;
+    }
+
+    /**
+     * Finds the payment slot an item would be added to: the first slot holding a similar item with room for the
+     * whole amount, or an empty slot, whichever comes first, going through the pages in order.
+     * The selling slots are skipped, since items are only ever added to a vault as payment for a sale.
+     *
+     * @param config    The loaded vault file.
+     * @param layout    The slot layout of the vault.
+     * @param itemToAdd The item to add.
+     * @param amount    The amount of the item to add.
+     * @param shopName  The name of the shop associated with the vault.
+     * @return The slot index, or -1 if there is no room.
+     */
+    private static int findPaymentSlot(YamlConfiguration config, VaultLayout layout, ItemStack itemToAdd, int amount, String shopName) {
+        String shopVaultPath = "vault." + shopName;
+        ItemFingerprint fingerprint = ItemFingerprint.of(itemToAdd);
+        for (int i : layout.getPaymentSlots()) {
+            String slotKey = shopVaultPath + ".slot_" + i;
+            if (!config.contains(slotKey)) {
+                return i;
+            }
+            Map<String, Object> existingData = Objects.requireNonNull(config.getConfigurationSection(slotKey)).getValues(false);
+            if (fingerprint.matches(ItemCodec.fingerprint(existingData)) && ItemCodec.amount(existingData) + amount <= itemToAdd.getMaxStackSize()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds an item to the payment slots of one shop's section of a loaded vault file.
+     *
+     * @param config    The loaded vault file.
+     * @param layout    The slot layout of the vault.
+     * @param itemToAdd The item to add.
+     * @param amount    The amount of the item to add.
+     * @param shopName  The name of the shop associated with the vault.
+     * @return True if the item was added, false if there was no room.
+     */
+    static boolean addItems(YamlConfiguration config, VaultLayout layout, ItemStack itemToAdd, int amount, String shopName) {
+        int slot = findPaymentSlot(config, layout, itemToAdd, amount, shopName);
+        if (slot < 0) {
             return false;
         }
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+        String slotKey = "vault." + shopName + ".slot_" + slot;
+        ConfigurationSection existing = config.getConfigurationSection(slotKey);
+        int newAmount = existing != null ? ItemCodec.amount(existing.getValues(false)) + amount : amount;
+        config.set(slotKey, ItemCodec.encode(itemToAdd, newAmount));
+        return true;
+    }
+
+    /**
+     * Adds stock to the selling slots of one shop's section of a loaded vault file, topping up similar stacks
+     * before filling empty slots. Pages are filled in order.
+     *
+     * @param config   The loaded vault file.
+     * @param layout   The slot layout of the vault.
+     * @param item     The item to add.
+     * @param amount   The amount of the item to add.
+     * @param shopName The name of the shop associated with the vault.
+     * @return The amount that was added, which is less than requested if the selling slots ran out of room.
+     */
+    static int addStock(YamlConfiguration config, VaultLayout layout, ItemStack item, int amount, String shopName) {
         String shopVaultPath = "vault." + shopName;
-        // Check existing slots for a match or an empty slot
-        for (int i = 0; i < 54; i++) { // This is currently a hardcoded vault size limit
-            // We ignore the menu slots since they are menu items
-            // We ignore the selling slots since this method is only ever used to add payment items
-            // from a successful sell, those items should be put into the payment slots instead
-            if (GUI_SLOTS.contains(i) || (SELLING_SLOTS.contains(i))) {
-                // Skip GUI slots
+        ItemFingerprint fingerprint = ItemFingerprint.of(item);
+        int maxStackSize = item.getMaxStackSize();
+        int remaining = amount;
+        // Top up similar stacks first, so stock stays packed
+        for (int slot : layout.getSellingSlots()) {
+            if (remaining <= 0) break;
+            ConfigurationSection existing = config.getConfigurationSection(shopVaultPath + ".slot_" + slot);
+            if (existing == null) {
                 continue;
             }
-            String slotKey = shopVaultPath + ".slot_" + i;
-            if (config.contains(slotKey)) {
-                ItemStack existingItem = ItemStack.deserialize(Objects.requireNonNull(config.getConfigurationSection(slotKey)).getValues(false));
-                if (existingItem.isSimilar(itemToAdd)) {
-                    // Check if the existing similar item can hold more
-                    int totalAmount = existingItem.getAmount() + amount;
-                    if (totalAmount <= existingItem.getMaxStackSize()) {
-                        return true;
-                    }
+            Map<String, Object> existingData = existing.getValues(false);
+            int existingAmount = ItemCodec.amount(existingData);
+            if (fingerprint.matches(ItemCodec.fingerprint(existingData)) && existingAmount < maxStackSize) {
+                int added = Math.min(remaining, maxStackSize - existingAmount);
+                config.set(shopVaultPath + ".slot_" + slot, ItemCodec.encode(item, existingAmount + added));
+                remaining -= added;
+            }
+        }
+        for (int slot : layout.getSellingSlots()) {
+            if (remaining <= 0) break;
+            if (!config.contains(shopVaultPath + ".slot_" + slot)) {
+                int added = Math.min(remaining, maxStackSize);
+                config.set(shopVaultPath + ".slot_" + slot, ItemCodec.encode(item, added));
+                remaining -= added;
+            }
+        }
+        return amount - remaining;
+    }
+
+    /**
+     * Reads the payment slots of one shop's section of a loaded vault file, which hold the items paid for trades.
+     *
+     * @param config   The loaded vault file.
+     * @param shopName The name of the shop associated with the vault.
+     * @return The items in the payment slots of every page by stored slot number, in slot order.
+     */
+    static Map<Integer, ItemStack> getPayments(YamlConfiguration config, String shopName) {
+        Map<Integer, ItemStack> payments = new TreeMap<>();
+        ConfigurationSection shopVaultSection = config.getConfigurationSection("vault." + shopName);
+        if (shopVaultSection == null) {
+            return payments;
+        }
+        for (String key : shopVaultSection.getKeys(false)) {
+            int slotIndex = VaultLayout.parseSlot(key);
+            if (!VaultLayout.isPaymentSlot(slotIndex)) {
+                continue;
+            }
+            payments.put(slotIndex, ItemCodec.decode(Objects.requireNonNull(shopVaultSection.getConfigurationSection(key)).getValues(false)));
+        }
+        return payments;
+    }
+
+    /**
+     * Takes an amount out of a single slot of one shop's section of a loaded vault file.
+     *
+     * @param config   The loaded vault file.
+     * @param shopName The name of the shop associated with the vault.
+     * @param slot     The slot number as stored in the vault file.
+     * @param amount   The amount to take, at most the amount in the slot.
+     */
+    static void takeFromSlot(YamlConfiguration config, String shopName, int slot, int amount) {
+        String slotKey = "vault." + shopName + ".slot_" + slot;
+        ConfigurationSection slotSection = config.getConfigurationSection(slotKey);
+        if (slotSection == null) {
+            return;
+        }
+        Map<String, Object> itemData = slotSection.getValues(false);
+        int remaining = ItemCodec.amount(itemData) - amount;
+        config.set(slotKey, remaining > 0 ? ItemCodec.encode(ItemCodec.decode(itemData), remaining) : null);
+    }
+
+    /**
+     * Removes up to an amount of an item from one shop's section of a loaded vault file.
+     *
+     * @param config         The loaded vault file.
+     * @param itemToRemove   The item to remove.
+     * @param amountToRemove The amount of the item to remove.
+     * @param shopName       The name of the shop associated with the vault.
+     * @return The amount that was removed, which is less than requested if the vault ran out.
+     */
+    static int removeItems(YamlConfiguration config, ItemStack itemToRemove, int amountToRemove, String shopName) {
+        String shopVaultPath = "vault." + shopName;
+        ConfigurationSection shopVaultSection = config.getConfigurationSection(shopVaultPath);
+        if (shopVaultSection == null) {
+            return 0;
+        }
+        ItemFingerprint fingerprint = ItemFingerprint.of(itemToRemove);
+        // Track the remaining amount to remove
+        int remainingAmount = amountToRemove;
+        for (String key : shopVaultSection.getKeys(false)) {
+            // Skip the divider slots
+            if (VaultLayout.isDividerSlot(VaultLayout.parseSlot(key))) {
+                continue;
+            }
+            if (remainingAmount <= 0) break; // Stop if the required amount has been removed
+            String fullKeyPath = shopVaultPath + "." + key;
+            Map<String, Object> itemData = Objects.requireNonNull(shopVaultSection.getConfigurationSection(key)).getValues(false);
+            if (fingerprint.matches(ItemCodec.fingerprint(itemData))) {
+                int currentAmount = ItemCodec.amount(itemData);
+                if (currentAmount > remainingAmount) {
+                    config.set(fullKeyPath, ItemCodec.encode(itemToRemove, currentAmount - remainingAmount));
+                    remainingAmount = 0;
+                } else {
+                    // Remove the entire stack and decrement the remaining amount
+                    remainingAmount -= currentAmount;
+                    config.set(fullKeyPath, null); // Remove the item stack from the slot
                 }
-            } else {
-                // Found an empty slot
-                return true;
             }
         }
-        // No available slot found
-        return false;
+        return amountToRemove - remainingAmount;
     }
 
     /**
@@ -276,41 +676,239 @@ public class PlayerVaultManager {
      * @return The file of the player's vault, or null if it doesn't exist.
      */
     public File getPlayerVaultFile(UUID playerUUID) {
-        if (doesPlayerVaultExist(playerUUID)) {
-            return new File(vaultsFolder, playerUUID + ".yml");
+        File playerVaultFile = vaultFileOf(playerUUID);
+        if (vaultFiles.contains(playerUUID)) {
+            return playerVaultFile;
         }
         return null;
     }
 
     /**
-     * Saves the contents of a player's vault to a file.
+     * Reads a single page of a player's vault for a given shop.
+     * Only the slots of that page are turned into items, so opening one page of a large vault doesn't pay for the others.
+     *
+     * @param playerUUID The UUID of the player owning the vault.
+     * @param shopName   The name of the shop associated with the vault.
+     * @param page       The page number, starting at 0.
+     * @return The items of the page by slot index within the page, with null for empty slots.
+     */
+    public ItemStack[] getPlayerVaultPage(UUID playerUUID, String shopName, int page) {
+        ItemStack[] items = new ItemStack[VaultLayout.PAGE_SIZE];
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return items;
+            }
+            ConfigurationSection shopVaultSection = YamlConfiguration.loadConfiguration(playerVaultFile).getConfigurationSection("vault." + shopName);
+            if (shopVaultSection == null) {
+                return items;
+            }
+            int firstSlot = VaultLayout.storedSlot(page, 0);
+            for (String key : shopVaultSection.getKeys(false)) {
+                int slot = VaultLayout.parseSlot(key) - firstSlot;
+                // Slots of other pages are skipped by their number, before anything is deserialized
+                if (slot < 0 || slot >= VaultLayout.PAGE_SIZE || VaultLayout.isDividerSlot(slot)) {
+                    continue;
+                }
+                items[slot] = ItemCodec.decode(Objects.requireNonNull(shopVaultSection.getConfigurationSection(key)).getValues(false));
+            }
+            return items;
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+
+    /**
+     * Saves the contents of one page of a player's vault to a file.
      *
      * @param player         The player whose vault is being saved.
-     * @param vaultInventory The inventory of the vault.
+     * @param vaultInventory The inventory of the vault page.
      * @param shopName       The name of the shop associated with the vault.
+     * @param page           The page number, starting at 0.
      */
-    public void savePlayerVault(Player player, Inventory vaultInventory, String shopName) {
-        File playerVaultFile = getPlayerVaultFile(player.getUniqueId());
-        if (playerVaultFile == null) return;
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-        String shopVaultPath = "vault." + shopName;
-        for (int i = 0; i < 54; i++) { // This is currently a hardcoded vault size limit
-            if (GUI_SLOTS.contains(i)) {
-                // Skip the loop iteration if the slot is in the set
-                continue;
+    public void savePlayerVault(Player player, Inventory vaultInventory, String shopName, int page) {
+        ReentrantLock vaultLock = getVaultLock(player.getUniqueId());
+        vaultLock.lock();
+        try {
+            File playerVaultFile = getPlayerVaultFile(player.getUniqueId());
+            if (playerVaultFile == null) return;
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+            String shopVaultPath = "vault." + shopName;
+            for (int i = 0; i < VaultLayout.PAGE_SIZE; i++) {
+                if (VaultLayout.isDividerSlot(i)) {
+                    // Skip the loop iteration if the slot holds a menu item
+                    continue;
+                }
+                ItemStack item = vaultInventory.getItem(i);
+                String slotKey = shopVaultPath + ".slot_" + VaultLayout.storedSlot(page, i);
+                if (item != null) {
+                    config.set(slotKey, ItemCodec.encode(item));
+                } else {
+                    config.set(slotKey, null);
+                }
             }
-            ItemStack item = vaultInventory.getItem(i);
-            if (item != null) {
-                config.set(shopVaultPath + ".slot_" + i, item.serialize());
-            } else {
-                config.set(shopVaultPath + ".slot_" + i, null);
+            // TODO: Need better error handling here, otherwise people may lose items or even duplicate them!
+            try {
+                config.save(playerVaultFile);
+                invalidateStock(player.getUniqueId());
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving " + player.getName() + "'s vault: " + shopName, e);
             }
+        } finally {
+            vaultLock.unlock();
         }
-        // TODO: Need better error handling here, otherwise people may lose items or even duplicate them!
+    }
+
+    /**
+     * Saves only the given slots of one page of a player's vault to a file.
+     * This is used when the vault contents were diffed against a snapshot, so unchanged slots are left untouched.
+     *
+     * @param player       The player whose vault is being saved.
+     * @param shopName     The name of the shop associated with the vault.
+     * @param page         The page number, starting at 0.
+     * @param changedSlots A map of slot index within the page to the new item, where a null item clears the slot.
+     * @return True if the changes were saved, false otherwise.
+     */
+    public boolean savePlayerVaultSlots(Player player, String shopName, int page, Map<Integer, ItemStack> changedSlots) {
+        ReentrantLock vaultLock = getVaultLock(player.getUniqueId());
+        vaultLock.lock();
         try {
-            config.save(playerVaultFile);
-        } catch (IOException e) {
-            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving " + player.getName() + "'s vault: " + shopName, e);
+            File playerVaultFile = getPlayerVaultFile(player.getUniqueId());
+            if (playerVaultFile == null) return false;
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+            String shopVaultPath = "vault." + shopName;
+            for (Map.Entry<Integer, ItemStack> entry : changedSlots.entrySet()) {
+                int slot = entry.getKey();
+                if (VaultLayout.isDividerSlot(slot)) {
+                    continue;
+                }
+                ItemStack item = entry.getValue();
+                config.set(shopVaultPath + ".slot_" + VaultLayout.storedSlot(page, slot), item != null ? ItemCodec.encode(item) : null);
+            }
+            try {
+                config.save(playerVaultFile);
+                invalidateStock(player.getUniqueId());
+                return true;
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while saving " + player.getName() + "'s vault: " + shopName, e);
+                return false;
+            }
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+
+    /**
+     * Stores a batch of items in a storage section of a player's vault file with a single write.
+     * Storage sections are not shown in a vault GUI, so they have no size limit and no GUI or selling slots.
+     * The vault file is created if the player does not have one yet.
+     * <p>
+     * Every item carries a sequence number, and the highest number deposited into the storage section is saved in
+     * the same write as the items. Items whose number is not above it were already deposited and are skipped, so a
+     * caller that crashed before it could forget a deposit can safely replay it.
+     *
+     * @param playerUUID  The UUID of the player owning the vault.
+     * @param storageName The name of the storage section.
+     * @param items       The items to store, keyed by their sequence numbers, which increase with every deposit.
+     * @return True if the items are saved, including when all of them already were, false otherwise.
+     */
+    public boolean depositItems(UUID playerUUID, String storageName, NavigableMap<Long, ItemStack> items) {
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            coldStorage.rehydrate(playerUUID);
+            File playerVaultFile = vaultFiles.fileToWrite(playerUUID);
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+            String storagePath = "vault." + storageName;
+            // Kept outside the storage section, since withdrawing clears the whole section
+            String sequencePath = "deposits." + storageName;
+            NavigableMap<Long, ItemStack> newItems = items.tailMap(config.getLong(sequencePath, 0), false);
+            if (newItems.isEmpty()) {
+                return true;
+            }
+            int slot = 0;
+            for (ItemStack item : newItems.values()) {
+                while (config.contains(storagePath + ".slot_" + slot)) {
+                    slot++;
+                }
+                config.set(storagePath + ".slot_" + slot, ItemCodec.encode(item));
+            }
+            config.set(sequencePath, newItems.lastKey());
+            try {
+                config.save(playerVaultFile);
+                vaultFiles.markWritten(playerUUID);
+                invalidateStock(playerUUID);
+                return true;
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while depositing items into a player's vault: " + storageName, e);
+                return false;
+            }
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+
+    /**
+     * Reads a sequence number recorded in a player's vault file, by {@link #depositItems} or by a committed
+     * {@link VaultTransaction#recordSequence}, so a caller can tell whether a change reached the vault before a crash.
+     *
+     * @param playerUUID The UUID of the player owning the vault.
+     * @param name       The name the sequence number was recorded under.
+     * @return The highest sequence number recorded under the name, or 0 if there is none.
+     */
+    public long getRecordedSequence(UUID playerUUID, String name) {
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return 0;
+            }
+            return YamlConfiguration.loadConfiguration(playerVaultFile).getLong("deposits." + name, 0);
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+
+    /**
+     * Takes every item out of a storage section of a player's vault file.
+     *
+     * @param playerUUID  The UUID of the player owning the vault.
+     * @param storageName The name of the storage section.
+     * @return The stored items, which are removed from the file, or an empty list if there are none.
+     */
+    public List<ItemStack> withdrawItems(UUID playerUUID, String storageName) {
+        ReentrantLock vaultLock = getVaultLock(playerUUID);
+        vaultLock.lock();
+        try {
+            List<ItemStack> items = new ArrayList<>();
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return items;
+            }
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+            String storagePath = "vault." + storageName;
+            ConfigurationSection storageSection = config.getConfigurationSection(storagePath);
+            if (storageSection == null) {
+                return items;
+            }
+            for (String key : storageSection.getKeys(false)) {
+                items.add(ItemCodec.decode(Objects.requireNonNull(storageSection.getConfigurationSection(key)).getValues(false)));
+            }
+            config.set(storagePath, null);
+            try {
+                config.save(playerVaultFile);
+                invalidateStock(playerUUID);
+                return items;
+            } catch (IOException e) {
+                // Nothing was removed from the file, so hand nothing out either
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while withdrawing items from a player's vault: " + storageName, e);
+                return new ArrayList<>();
+            }
+        } finally {
+            vaultLock.unlock();
         }
     }
 
@@ -322,29 +920,35 @@ public class PlayerVaultManager {
      * @return True if the vault is empty, false if it contains any items.
      */
     public boolean isPlayerVaultEmpty(String uuidString, String vaultName) {
-        UUID playerUUID = UUID.fromString(uuidString);
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
-        if (!playerVaultFile.exists()) {
-            return true; // Vault file does not exist, hence empty
-        }
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-        String basePath = "vault." + vaultName;
-        if (!config.contains(basePath)) {
-            return true; // Vault does not exist, hence empty
-        }
-        ConfigurationSection vaultSection = config.getConfigurationSection(basePath);
-        if (vaultSection == null || vaultSection.getKeys(false).isEmpty()) {
-            return true; // Vault exists but has no items, hence empty
-        }
-        for (String key : vaultSection.getKeys(false)) {
-            if (!GUI_SLOTS.contains(Integer.parseInt(key.replace("slot_", "")))) {
-                ItemStack item = ItemStack.deserialize(Objects.requireNonNull(vaultSection.getConfigurationSection(key)).getValues(false));
-                if (item.getType() != Material.AIR) {
-                    return false; // Found a non-empty slot, hence not empty
+        ReentrantLock vaultLock = getVaultLock(UUID.fromString(uuidString));
+        vaultLock.lock();
+        try {
+            UUID playerUUID = UUID.fromString(uuidString);
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return true; // Vault file does not exist, hence empty
+            }
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+            String basePath = "vault." + vaultName;
+            if (!config.contains(basePath)) {
+                return true; // Vault does not exist, hence empty
+            }
+            ConfigurationSection vaultSection = config.getConfigurationSection(basePath);
+            if (vaultSection == null || vaultSection.getKeys(false).isEmpty()) {
+                return true; // Vault exists but has no items, hence empty
+            }
+            for (String key : vaultSection.getKeys(false)) {
+                if (!VaultLayout.isDividerSlot(VaultLayout.parseSlot(key))) {
+                    ItemFingerprint fingerprint = ItemCodec.fingerprint(Objects.requireNonNull(vaultSection.getConfigurationSection(key)).getValues(false));
+                    if (fingerprint.getType() != Material.AIR) {
+                        return false; // Found a non-empty slot, hence not empty
+                    }
                 }
             }
+            return true; // No non-empty slots found, hence empty
+        } finally {
+            vaultLock.unlock();
         }
-        return true; // No non-empty slots found, hence empty
     }
 
     /**
@@ -359,23 +963,69 @@ public class PlayerVaultManager {
      * or an error occurring during the file update.
      */
     public boolean removePlayerVault(String uuidString, String vaultName) {
-        UUID playerUUID = UUID.fromString(uuidString);
-        File playerVaultFile = new File(vaultsFolder, playerUUID + ".yml");
-        if (!playerVaultFile.exists()) {
-            return false;
-        }
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
-        String basePath = "vault." + vaultName;
-        if (!config.contains(basePath)) {
-            return false;
-        }
-        config.set(basePath, null);
+        ReentrantLock vaultLock = getVaultLock(UUID.fromString(uuidString));
+        vaultLock.lock();
         try {
-            config.save(playerVaultFile);
-            return true;
-        } catch (IOException e) {
-            Bukkit.getLogger().log(Level.WARNING, "An error has occurred while deleting a player's vault: ", e);
-            return false;
+            UUID playerUUID = UUID.fromString(uuidString);
+            File playerVaultFile = vaultFileOf(playerUUID);
+            if (!vaultFiles.contains(playerUUID)) {
+                return false;
+            }
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerVaultFile);
+            String basePath = "vault." + vaultName;
+            if (!config.contains(basePath)) {
+                return false;
+            }
+            config.set(basePath, null);
+            try {
+                config.save(playerVaultFile);
+                invalidateStock(playerUUID);
+                return true;
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.WARNING, "An error has occurred while deleting a player's vault: ", e);
+                return false;
+            }
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+
+    /**
+     * The last counted stock of the items sold by a shop, kept in small parallel arrays since a shop only sells a few.
+     */
+    private record CachedStock(ItemFingerprint[] fingerprints, int[] counts) {
+        private static final int MAX_ITEMS = 8;
+
+        /**
+         * @return The cached counts extended with fresh counts, dropping the oldest entries beyond {@value #MAX_ITEMS}.
+         */
+        static CachedStock merge(CachedStock cached, ItemFingerprint[] fingerprints, int[] counts) {
+            List<ItemFingerprint> mergedFingerprints = new ArrayList<>();
+            List<Integer> mergedCounts = new ArrayList<>();
+            for (int i = 0; i < fingerprints.length; i++) {
+                if (fingerprints[i] != null) {
+                    mergedFingerprints.add(fingerprints[i]);
+                    mergedCounts.add(counts[i]);
+                }
+            }
+            if (cached != null) {
+                outer:
+                for (int j = cached.fingerprints.length - 1; j >= 0; j--) {
+                    for (ItemFingerprint fingerprint : mergedFingerprints) {
+                        if (fingerprint.matches(cached.fingerprints[j])) {
+                            continue outer;
+                        }
+                    }
+                    mergedFingerprints.add(cached.fingerprints[j]);
+                    mergedCounts.add(cached.counts[j]);
+                }
+            }
+            int size = Math.min(mergedFingerprints.size(), MAX_ITEMS);
+            int[] mergedCountArray = new int[size];
+            for (int i = 0; i < size; i++) {
+                mergedCountArray[i] = mergedCounts.get(i);
+            }
+            return new CachedStock(mergedFingerprints.subList(0, size).toArray(new ItemFingerprint[0]), mergedCountArray);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.vaults;
+
+import com.marketcraft.scheduler.PlatformScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Periodically persists the changed slots of open vault sessions.
+ * Without this, vault edits only reach disk when the vault is closed, so a crash while the vault is open
+ * loses the whole session. The task runs every tick and spreads one autosave cycle over the configured
+ * interval, saving a small slice of the open sessions each tick instead of all of them at once.
+ * <p>
+ * The task itself runs on the global region thread, while each session is diffed and saved on the
+ * thread that owns its player, as the vault inventory belongs to that player's region.
+ */
+public class VaultAutosaveTask implements Runnable {
+    private final PlayerVaultManager playerVaultManager;
+    private final VaultSessionManager vaultSessionManager;
+    private final PlatformScheduler platformScheduler;
+    private final int intervalTicks;
+    private final Deque<VaultSession> pendingSessions = new ArrayDeque<>();
+    private int sessionsPerTick;
+    private int ticksSinceCycleStart;
+
+    /**
+     * @param playerVaultManager  The manager used to persist vault slots.
+     * @param vaultSessionManager The manager holding the open vault sessions.
+     * @param platformScheduler   The scheduler used to run each save on the owner's thread.
+     * @param intervalTicks       The number of ticks between two autosaves of the same session.
+     */
+    public VaultAutosaveTask(PlayerVaultManager playerVaultManager, VaultSessionManager vaultSessionManager, PlatformScheduler platformScheduler, int intervalTicks) {
+        this.playerVaultManager = playerVaultManager;
+        this.vaultSessionManager = vaultSessionManager;
+        this.platformScheduler = platformScheduler;
+        this.intervalTicks = Math.max(1, intervalTicks);
+        this.ticksSinceCycleStart = this.intervalTicks;
+    }
+
+    /**
+     * Saves the next slice of open sessions, starting a new cycle once the previous one has finished
+     * and the interval has elapsed.
+     */
+    @Override
+    public void run() {
+        ticksSinceCycleStart++;
+        if (pendingSessions.isEmpty()) {
+            if (ticksSinceCycleStart < intervalTicks) {
+                return;
+            }
+            pendingSessions.addAll(vaultSessionManager.getOpenSessions());
+            // Spread the cycle evenly over the interval
+            sessionsPerTick = (pendingSessions.size() + intervalTicks - 1) / intervalTicks;
+            ticksSinceCycleStart = 0;
+        }
+        for (int i = 0; i < sessionsPerTick && !pendingSessions.isEmpty(); i++) {
+            VaultSession session = pendingSessions.poll();
+            Player owner = Bukkit.getPlayer(session.getOwnerUUID());
+            if (owner != null) {
+                platformScheduler.runForEntity(owner, () -> {
+                    // The vault may have been closed since the cycle started, closing already saved it
+                    if (vaultSessionManager.isOpen(session)) {
+                        saveSession(owner, session);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Immediately persists every open session. Used when the plugin shuts down.
+     */
+    public void saveAll() {
+        pendingSessions.clear();
+        for (VaultSession session : vaultSessionManager.getOpenSessions()) {
+            Player owner = Bukkit.getPlayer(session.getOwnerUUID());
+            if (owner != null) {
+                saveSession(owner, session);
+            }
+        }
+    }
+
+    /**
+     * Persists the slots of a session that changed since it was last saved.
+     *
+     * @param owner   The player owning the vault.
+     * @param session The session to save.
+     */
+    private void saveSession(Player owner, VaultSession session) {
+        Map<Integer, ItemStack> changedSlots = session.collectChanges();
+        if (changedSlots.isEmpty()) {
+            return;
+        }
+        if (playerVaultManager.savePlayerVaultSlots(owner, session.getShopName(), session.getPage(), changedSlots)) {
+            session.markPersisted(changedSlots);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.vaults;
+
+/**
+ * The slot layout of a shop vault, which spans one or more pages of a double chest each.
+ * <p>
+ * Every page is laid out the same way: the selling side in columns 0 to 3, the divider with the menu items in
+ * column 4 and the payment side in columns 5 to 8. A slot is stored in the vault file as slot_&lt;page * 54 + slot&gt;,
+ * so the first page is stored exactly as single-page vaults always were and a page can be read on its own by the
+ * range of its slot numbers.
+ * <p>
+ * The role of each slot of a page is precomputed into a table, and the selling and payment slots of all pages into
+ * arrays in the order they are filled, so routing an item never builds or searches a set of slots.
+ */
+public final class VaultLayout {
+    /**
+     * The number of slots on a page, one double chest.
+     */
+    public static final int PAGE_SIZE = 54;
+    private static final int ROW_SIZE = 9;
+    private static final int DIVIDER_COLUMN = 4;
+    private static final byte DIVIDER = 0;
+    private static final byte SELLING = 1;
+    private static final byte PAYMENT = 2;
+    private static final byte[] ROLES = new byte[PAGE_SIZE];
+    private final int pages;
+    private final int[] sellingSlots;
+    private final int[] paymentSlots;
+
+    static {
+        for (int slot = 0; slot < PAGE_SIZE; slot++) {
+            int column = slot % ROW_SIZE;
+            ROLES[slot] = column < DIVIDER_COLUMN ? SELLING : column > DIVIDER_COLUMN ? PAYMENT : DIVIDER;
+        }
+    }
+
+    /**
+     * @param pages The number of pages of every vault, at least one.
+     */
+    public VaultLayout(int pages) {
+        this.pages = Math.max(1, pages);
+        this.sellingSlots = slotsWithRole(this.pages, SELLING);
+        this.paymentSlots = slotsWithRole(this.pages, PAYMENT);
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * @param storedSlot A slot number as stored in the vault file.
+     * @return The page the slot is on, starting at 0.
+     */
+    public static int pageOf(int storedSlot) {
+        return storedSlot / PAGE_SIZE;
+    }
+
+    /**
+     * @param page The page number, starting at 0.
+     * @param slot The slot index within the page's inventory.
+     * @return The slot number as stored in the vault file.
+     */
+    public static int storedSlot(int page, int slot) {
+        return page * PAGE_SIZE + slot;
+    }
+
+    /**
+     * @param storedSlot A slot number as stored in the vault file.
+     * @return True if the slot is in the divider column, which only holds menu items.
+     */
+    public static boolean isDividerSlot(int storedSlot) {
+        return ROLES[storedSlot % PAGE_SIZE] == DIVIDER;
+    }
+
+    /**
+     * @param storedSlot A slot number as stored in the vault file.
+     * @return True if the slot is on the selling side.
+     */
+    public static boolean isSellingSlot(int storedSlot) {
+        return ROLES[storedSlot % PAGE_SIZE] == SELLING;
+    }
+
+    /**
+     * @param storedSlot A slot number as stored in the vault file.
+     * @return True if the slot is on the payment side.
+     */
+    public static boolean isPaymentSlot(int storedSlot) {
+        return ROLES[storedSlot % PAGE_SIZE] == PAYMENT;
+    }
+
+    /**
+     * Reads the slot number from a key of a shop's vault section.
+     *
+     * @param key The key, such as slot_12.
+     * @return The slot number as stored in the vault file.
+     */
+    static int parseSlot(String key) {
+        return Integer.parseInt(key.replace("slot_", ""));
+    }
+
+    /**
+     * @return The selling slots of every page, in the order stock fills them. Must not be modified.
+     */
+    int[] getSellingSlots() {
+        return sellingSlots;
+    }
+
+    /**
+     * @return The payment slots of every page, in the order payments fill them. Must not be modified.
+     */
+    int[] getPaymentSlots() {
+        return paymentSlots;
+    }
+
+    private static int[] slotsWithRole(int pages, byte role) {
+        int perPage = 0;
+        for (byte slotRole : ROLES) {
+            if (slotRole == role) {
+                perPage++;
+            }
+        }
+        int[] slots = new int[pages * perPage];
+        int index = 0;
+        for (int page = 0; page < pages; page++) {
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                if (ROLES[slot] == role) {
+                    slots[index++] = storedSlot(page, slot);
+                }
+            }
+        }
+        return slots;
+    }
+}
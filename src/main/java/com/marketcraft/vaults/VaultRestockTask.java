@@ -0,0 +1,149 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.vaults;
+
+import com.marketcraft.locks.ShopLockManager;
+import com.marketcraft.scheduler.PlatformScheduler;
+import com.marketcraft.shops.ShopBlockIndex;
+import com.marketcraft.shops.ShopIndex;
+import com.marketcraft.shops.ShopListing;
+import com.marketcraft.shops.ShopTradeTable;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.Container;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves the stock that hoppers feed into shop-bound containers over to the shops' vaults.
+ * <p>
+ * Item moves only mark the receiving container as pending, which costs a map insert and no I/O. Once per interval
+ * the task takes the pending containers of each shop, moves every item the shop sells from them into the selling
+ * slots of its vault in memory, and writes the vault once. A hopper chain feeding a shop several times a second
+ * therefore costs a single vault write per interval instead of one per item.
+ * <p>
+ * Items are only taken out of a container after the vault was written, so a failed write leaves them where they
+ * were, and items that don't fit in the vault simply stay in the container. Shops whose owner is editing the vault
+ * are retried on the next run.
+ */
+public class VaultRestockTask implements Runnable {
+    private final PlayerVaultManager playerVaultManager;
+    private final ShopIndex shopIndex;
+    private final ShopBlockIndex shopBlockIndex;
+    private final ShopLockManager shopLockManager;
+    private final PlatformScheduler platformScheduler;
+    private final Map<ShopBlockIndex.ShopBinding, Set<Location>> pending = new ConcurrentHashMap<>();
+
+    public VaultRestockTask(PlayerVaultManager playerVaultManager, ShopIndex shopIndex, ShopBlockIndex shopBlockIndex, ShopLockManager shopLockManager, PlatformScheduler platformScheduler) {
+        this.playerVaultManager = playerVaultManager;
+        this.shopIndex = shopIndex;
+        this.shopBlockIndex = shopBlockIndex;
+        this.shopLockManager = shopLockManager;
+        this.platformScheduler = platformScheduler;
+    }
+
+    /**
+     * Marks a shop-bound container as having received items.
+     *
+     * @param binding   The shop the container is bound to.
+     * @param container The location of the container block.
+     */
+    public void markPending(ShopBlockIndex.ShopBinding binding, Location container) {
+        pending.computeIfAbsent(binding, k -> ConcurrentHashMap.newKeySet()).add(container);
+    }
+
+    /**
+     * Restocks every shop with pending containers, on the thread owning the shop's first pending container.
+     */
+    @Override
+    public void run() {
+        for (ShopBlockIndex.ShopBinding binding : pending.keySet()) {
+            Set<Location> containers = pending.remove(binding);
+            if (containers == null || containers.isEmpty()) {
+                continue;
+            }
+            List<Location> locations = new ArrayList<>(containers);
+            platformScheduler.runAtLocation(locations.get(0), () -> restock(binding, locations));
+        }
+    }
+
+    private void restock(ShopBlockIndex.ShopBinding binding, List<Location> locations) {
+        ShopListing listing = shopIndex.getShop(binding.ownerUUID(), binding.shopName());
+        if (listing == null) {
+            return;
+        }
+        if (shopLockManager.isLocked(binding.ownerUUID(), binding.shopName())) {
+            locations.forEach(location -> markPending(binding, location));
+            return;
+        }
+        ShopTradeTable trades = listing.getTrades();
+        ReentrantLock vaultLock = playerVaultManager.getVaultLock(binding.ownerUUID());
+        vaultLock.lock();
+        try {
+            VaultTransaction transaction = playerVaultManager.beginTransaction(binding.ownerUUID());
+            if (transaction == null) {
+                return;
+            }
+            List<Inventory> inventories = new ArrayList<>();
+            List<int[]> removals = new ArrayList<>();
+            for (Location location : locations) {
+                // Containers in another region are picked up by a run on their own thread
+                if (!Bukkit.isOwnedByCurrentRegion(location)) {
+                    markPending(binding, location);
+                    continue;
+                }
+                if (!location.isChunkLoaded()) {
+                    continue;
+                }
+                Block block = location.getBlock();
+                if (!binding.equals(shopBlockIndex.getBinding(block)) || !(block.getState() instanceof Container container)) {
+                    continue;
+                }
+                Inventory inventory = container.getInventory();
+                for (int slot = 0; slot < inventory.getSize(); slot++) {
+                    ItemStack item = inventory.getItem(slot);
+                    if (item == null || !trades.sells(item)) {
+                        continue;
+                    }
+                    int added = transaction.addStock(item, item.getAmount(), binding.shopName());
+                    if (added > 0) {
+                        inventories.add(inventory);
+                        removals.add(new int[]{slot, added});
+                    }
+                }
+            }
+            if (removals.isEmpty() || !playerVaultManager.commitTransactions(List.of(transaction))) {
+                return;
+            }
+            for (int i = 0; i < removals.size(); i++) {
+                Inventory inventory = inventories.get(i);
+                int slot = removals.get(i)[0];
+                ItemStack item = inventory.getItem(slot);
+                int remaining = item.getAmount() - removals.get(i)[1];
+                if (remaining > 0) {
+                    item.setAmount(remaining);
+                    inventory.setItem(slot, item);
+                } else {
+                    inventory.setItem(slot, null);
+                }
+            }
+        } finally {
+            vaultLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.vaults;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Represents a single open vault GUI for a shop, which shows one page of the vault.
+ * The session keeps a snapshot of the vault contents as they were last persisted, which allows the
+ * changes made by the owner to be diffed slot by slot instead of rewriting the whole vault on close.
+ */
+public class VaultSession {
+    private final UUID ownerUUID;
+    private final String shopName;
+    private final int page;
+    private final Inventory inventory;
+    private final ItemStack[] snapshot;
+
+    /**
+     * Creates a new session and snapshots the current contents of the vault inventory.
+     *
+     * @param ownerUUID The UUID of the vault owner.
+     * @param shopName  The name of the shop associated with the vault.
+     * @param page      The page of the vault that was opened, starting at 0.
+     * @param inventory The vault inventory that was opened.
+     */
+    public VaultSession(UUID ownerUUID, String shopName, int page, Inventory inventory) {
+        this.ownerUUID = ownerUUID;
+        this.shopName = shopName;
+        this.page = page;
+        this.inventory = inventory;
+        this.snapshot = new ItemStack[inventory.getSize()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = copyOf(inventory.getItem(i));
+        }
+    }
+
+    /**
+     * Collects the slots whose contents differ from the last persisted snapshot.
+     * Empty slots are reported with a null value so they can be cleared in storage.
+     *
+     * @return A map of slot index to current item for every changed slot, empty if nothing changed.
+     */
+    public Map<Integer, ItemStack> collectChanges() {
+        Map<Integer, ItemStack> changedSlots = new HashMap<>();
+        for (int i = 0; i < snapshot.length; i++) {
+            ItemStack current = inventory.getItem(i);
+            if (current != null && current.getType() == Material.AIR) {
+                current = null;
+            }
+            // Only changed slots are copied, unchanged ones cost a single comparison
+            if (!Objects.equals(snapshot[i], current)) {
+                changedSlots.put(i, copyOf(current));
+            }
+        }
+        return changedSlots;
+    }
+
+    /**
+     * Records that the given changes have been persisted, so they are not reported again.
+     *
+     * @param changedSlots The changes returned by {@link #collectChanges()} that were written to storage.
+     */
+    public void markPersisted(Map<Integer, ItemStack> changedSlots) {
+        for (Map.Entry<Integer, ItemStack> entry : changedSlots.entrySet()) {
+            snapshot[entry.getKey()] = entry.getValue();
+        }
+    }
+
+    public UUID getOwnerUUID() {
+        return ownerUUID;
+    }
+
+    public String getShopName() {
+        return shopName;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Copies a slot's item, normalizing empty slots to null so air and missing items compare equal.
+     *
+     * @param item The item in the slot.
+     * @return A copy of the item, or null if the slot is empty.
+     */
+    private static ItemStack copyOf(ItemStack item) {
+        if (item == null || item.getType() == Material.AIR) {
+            return null;
+        }
+        return item.clone();
+    }
+}
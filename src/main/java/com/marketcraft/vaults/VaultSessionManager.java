@@ -0,0 +1,74 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.vaults;
+
+import org.bukkit.inventory.Inventory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the vault GUIs that are currently open.
+ * A session is started when an owner opens a vault and ended when the vault is closed,
+ * at which point its snapshot is used to work out which slots need to be persisted.
+ */
+public class VaultSessionManager {
+    private final Map<UUID, VaultSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a session for an opened vault, replacing any previous session of the same player.
+     *
+     * @param ownerUUID The UUID of the vault owner.
+     * @param shopName  The name of the shop associated with the vault.
+     * @param page      The page of the vault that was opened, starting at 0.
+     * @param inventory The vault inventory that was opened.
+     * @return The new session.
+     */
+    public VaultSession startSession(UUID ownerUUID, String shopName, int page, Inventory inventory) {
+        VaultSession session = new VaultSession(ownerUUID, shopName, page, inventory);
+        sessions.put(ownerUUID, session);
+        return session;
+    }
+
+    /**
+     * Ends the session of a player for a specific shop vault.
+     *
+     * @param ownerUUID The UUID of the vault owner.
+     * @param shopName  The name of the shop associated with the vault.
+     * @return The ended session, or null if the player had no session for this shop.
+     */
+    public VaultSession endSession(UUID ownerUUID, String shopName) {
+        VaultSession session = sessions.get(ownerUUID);
+        if (session == null || !session.getShopName().equals(shopName)) {
+            return null;
+        }
+        sessions.remove(ownerUUID, session);
+        return session;
+    }
+
+    /**
+     * Checks if a session is still the open session of its owner.
+     *
+     * @param session The session to check.
+     * @return True if the session has not been ended or replaced, false otherwise.
+     */
+    public boolean isOpen(VaultSession session) {
+        return sessions.get(session.getOwnerUUID()) == session;
+    }
+
+    /**
+     * @return A view of all currently open vault sessions.
+     */
+    public Collection<VaultSession> getOpenSessions() {
+        return sessions.values();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.vaults;
+
+import com.marketcraft.util.ItemFingerprint;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A batch of changes to one player's vault, made against a copy of the vault file held in memory.
+ * <p>
+ * A transaction is started with {@link PlayerVaultManager#beginTransaction(UUID)} while the owner's vault lock is
+ * held, which reads the file once. Every check and change after that only touches the in-memory copy, so several
+ * trades can be validated and applied without any further file I/O, and nothing reaches the disk until the
+ * transaction is committed with {@link PlayerVaultManager#commitTransactions}. A transaction that is never
+ * committed is simply dropped, leaving the vault file as it was.
+ */
+public final class VaultTransaction {
+    private final UUID ownerUUID;
+    private final File vaultFile;
+    private final YamlConfiguration config;
+    private final VaultLayout layout;
+    private boolean changed;
+
+    VaultTransaction(UUID ownerUUID, File vaultFile, YamlConfiguration config, VaultLayout layout) {
+        this.ownerUUID = ownerUUID;
+        this.vaultFile = vaultFile;
+        this.config = config;
+        this.layout = layout;
+    }
+
+    public UUID getOwnerUUID() {
+        return ownerUUID;
+    }
+
+    /**
+     * @param item     The item to count. The amount of the item is ignored.
+     * @param shopName The name of the shop associated with the vault.
+     * @return The amount of the item in the shop's vault, including the changes made so far.
+     */
+    public int countItems(ItemStack item, String shopName) {
+        return PlayerVaultManager.countItems(config, new ItemFingerprint[]{ItemFingerprint.of(item)}, shopName)[0];
+    }
+
+    /**
+     * Removes an amount of an item from the shop's vault, or nothing at all if the vault holds less than that.
+     *
+     * @param item     The item to remove. The amount of the item is ignored.
+     * @param amount   The amount to remove.
+     * @param shopName The name of the shop associated with the vault.
+     * @return True if the items were removed, false if there were not enough.
+     */
+    public boolean removeItems(ItemStack item, int amount, String shopName) {
+        if (countItems(item, shopName) < amount) {
+            return false;
+        }
+        PlayerVaultManager.removeItems(config, item, amount, shopName);
+        changed = true;
+        return true;
+    }
+
+    /**
+     * Adds an amount of an item to the payment slots of the shop's vault.
+     *
+     * @param item     The item to add. The amount of the item is ignored.
+     * @param amount   The amount to add, at most one stack of the item.
+     * @param shopName The name of the shop associated with the vault.
+     * @return True if the items were added, false if there was no room.
+     */
+    public boolean addItems(ItemStack item, int amount, String shopName) {
+        if (!PlayerVaultManager.addItems(config, layout, item, amount, shopName)) {
+            return false;
+        }
+        changed = true;
+        return true;
+    }
+
+    /**
+     * Adds stock to the selling slots of the shop's vault, as much of the amount as there is room for.
+     *
+     * @param item     The item to add. The amount of the item is ignored.
+     * @param amount   The amount to add.
+     * @param shopName The name of the shop associated with the vault.
+     * @return The amount that was added.
+     */
+    public int addStock(ItemStack item, int amount, String shopName) {
+        int added = PlayerVaultManager.addStock(config, layout, item, amount, shopName);
+        if (added > 0) {
+            changed = true;
+        }
+        return added;
+    }
+
+    /**
+     * @param shopName The name of the shop associated with the vault.
+     * @return Copies of the items in the payment slots of the shop's vault by stored slot number, in slot order.
+     */
+    public Map<Integer, ItemStack> getPayments(String shopName) {
+        return PlayerVaultManager.getPayments(config, shopName);
+    }
+
+    /**
+     * Takes an amount out of a single slot of the shop's vault.
+     *
+     * @param shopName The name of the shop associated with the vault.
+     * @param slot     The slot number as stored in the vault file, as returned by {@link #getPayments}.
+     * @param amount   The amount to take, at most the amount in the slot.
+     */
+    public void takeFromSlot(String shopName, int slot, int amount) {
+        PlayerVaultManager.takeFromSlot(config, shopName, slot, amount);
+        changed = true;
+    }
+
+    /**
+     * Records a sequence number in the vault file, written together with the rest of the transaction, so whether the
+     * transaction was committed can be read back with {@link PlayerVaultManager#getRecordedSequence}.
+     *
+     * @param name     The name to record the sequence number under.
+     * @param sequence The sequence number, higher than any recorded under the name before.
+     */
+    public void recordSequence(String name, long sequence) {
+        config.set("deposits." + name, sequence);
+        changed = true;
+    }
+
+    boolean isChanged() {
+        return changed;
+    }
+
+    File getVaultFile() {
+        return vaultFile;
+    }
+
+    YamlConfiguration getConfig() {
+        return config;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.auctions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettlementQueueTest {
+    private static final UUID ALICE = new UUID(0, 1);
+    private static final UUID BOB = new UUID(0, 2);
+
+    @Test
+    void settlementsAreOnlyDroppedAfterTheirDepositSucceeded() {
+        SettlementQueue<String> queue = new SettlementQueue<>();
+        queue.add(ALICE, "diamond");
+        queue.add(BOB, "emerald");
+        Map<UUID, NavigableMap<Long, String>> saved = queue.snapshot();
+
+        assertTrue(queue.deposit(saved, (playerUUID, items) -> playerUUID.equals(BOB)));
+
+        Map<UUID, NavigableMap<Long, String>> left = queue.snapshot();
+        assertEquals(Set.of(ALICE), left.keySet());
+        assertEquals(List.of("diamond"), new ArrayList<>(left.get(ALICE).values()));
+    }
+
+    @Test
+    void settlementsQueuedDuringADepositAreKept() {
+        SettlementQueue<String> queue = new SettlementQueue<>();
+        queue.add(ALICE, "diamond");
+        Map<UUID, NavigableMap<Long, String>> saved = queue.snapshot();
+
+        queue.deposit(saved, (playerUUID, items) -> {
+            queue.add(ALICE, "gold");
+            return true;
+        });
+
+        assertEquals(List.of("gold"), new ArrayList<>(queue.snapshot().get(ALICE).values()));
+    }
+
+    @Test
+    void nothingIsDroppedWhenEveryDepositFails() {
+        SettlementQueue<String> queue = new SettlementQueue<>();
+        queue.add(ALICE, "diamond");
+
+        assertFalse(queue.deposit(queue.snapshot(), (playerUUID, items) -> false));
+        assertFalse(queue.isEmpty());
+    }
+
+    @Test
+    void replayingASavedSnapshotAfterACrashDepositsEverySettlementOnce() {
+        SequencedVault vault = new SequencedVault();
+        SettlementQueue<String> queue = new SettlementQueue<>();
+        queue.add(ALICE, "diamond");
+        queue.add(ALICE, "emerald");
+        // The snapshot is saved to the auctions file, deposited, and the server crashes before the file is saved again
+        Map<UUID, NavigableMap<Long, String>> savedFile = queue.snapshot();
+        queue.deposit(savedFile, vault);
+        long nextSequence = queue.getNextSequence();
+
+        SettlementQueue<String> restarted = new SettlementQueue<>();
+        restarted.setNextSequence(nextSequence);
+        for (Map.Entry<UUID, NavigableMap<Long, String>> entry : savedFile.entrySet()) {
+            entry.getValue().forEach((sequence, item) -> restarted.restore(entry.getKey(), sequence, item));
+        }
+        restarted.add(ALICE, "gold");
+        restarted.deposit(restarted.snapshot(), vault);
+
+        assertEquals(List.of("diamond", "emerald", "gold"), vault.stored.get(ALICE));
+        assertTrue(restarted.isEmpty());
+    }
+
+    @Test
+    void restoredSequenceNumbersAreNeverHandedOutAgain() {
+        SettlementQueue<String> queue = new SettlementQueue<>();
+        queue.restore(ALICE, 41, "diamond");
+        queue.add(BOB, "emerald");
+
+        assertEquals(42, queue.snapshot().get(BOB).firstKey());
+        queue.setNextSequence(10);
+        assertEquals(43, queue.getNextSequence());
+    }
+
+    /**
+     * Stores items like the auction storage of a vault, skipping sequence numbers it has already seen.
+     */
+    private static final class SequencedVault implements SettlementQueue.Depositor<String> {
+        private final Map<UUID, Long> lastSequence = new HashMap<>();
+        private final Map<UUID, List<String>> stored = new HashMap<>();
+
+        @Override
+        public boolean deposit(UUID playerUUID, NavigableMap<Long, String> items) {
+            NavigableMap<Long, String> newItems = items.tailMap(lastSequence.getOrDefault(playerUUID, 0L), false);
+            if (!newItems.isEmpty()) {
+                stored.computeIfAbsent(playerUUID, k -> new ArrayList<>()).addAll(newItems.values());
+                lastSequence.put(playerUUID, newItems.lastKey());
+            }
+            return true;
+        }
+    }
+}
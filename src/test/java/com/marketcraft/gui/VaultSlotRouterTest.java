@@ -0,0 +1,60 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.gui;
+
+import com.marketcraft.vaults.VaultLayout;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VaultSlotRouterTest {
+
+    @Test
+    void eachSideHasFourColumnsOfSixRows() {
+        assertEquals(24, Long.bitCount(VaultSlotRouter.SELLING_MASK));
+        assertEquals(24, Long.bitCount(VaultSlotRouter.BUYING_MASK));
+        assertEquals(0, VaultSlotRouter.SELLING_MASK & VaultSlotRouter.BUYING_MASK);
+        // Nothing past the last slot of a double chest
+        assertEquals(0, (VaultSlotRouter.SELLING_MASK | VaultSlotRouter.BUYING_MASK) >>> VaultLayout.PAGE_SIZE);
+    }
+
+    @Test
+    void theMasksMatchTheRolesOfTheVaultLayout() {
+        for (int slot = 0; slot < VaultLayout.PAGE_SIZE; slot++) {
+            long bit = 1L << slot;
+            assertEquals(VaultLayout.isSellingSlot(slot), (VaultSlotRouter.SELLING_MASK & bit) != 0, "slot " + slot);
+            assertEquals(VaultLayout.isPaymentSlot(slot), (VaultSlotRouter.BUYING_MASK & bit) != 0, "slot " + slot);
+        }
+    }
+
+    @Test
+    void theDividerColumnBelongsToNeitherSide() {
+        for (int row = 0; row < 6; row++) {
+            int slot = row * 9 + 4;
+            assertEquals(0, VaultSlotRouter.sideOf(slot));
+            assertEquals(0, (VaultSlotRouter.SELLING_MASK | VaultSlotRouter.BUYING_MASK) & (1L << slot));
+        }
+    }
+
+    @Test
+    void sideOfReturnsTheMaskOfTheSlotsSide() {
+        assertEquals(VaultSlotRouter.SELLING_MASK, VaultSlotRouter.sideOf(0));
+        assertEquals(VaultSlotRouter.SELLING_MASK, VaultSlotRouter.sideOf(48));
+        assertEquals(VaultSlotRouter.BUYING_MASK, VaultSlotRouter.sideOf(5));
+        assertEquals(VaultSlotRouter.BUYING_MASK, VaultSlotRouter.sideOf(53));
+    }
+
+    @Test
+    void slotsOutsideTheVaultHaveNoSide() {
+        assertEquals(0, VaultSlotRouter.sideOf(-1));
+        assertEquals(0, VaultSlotRouter.sideOf(54));
+        assertEquals(0, VaultSlotRouter.sideOf(64));
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.ledger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionLedgerTest {
+    private static final UUID OWNER = new UUID(0, 1);
+    private static final UUID OTHER_OWNER = new UUID(0, 2);
+    private static final UUID BUYER = new UUID(0, 3);
+
+    @TempDir
+    File pluginFolder;
+
+    /**
+     * The ledger logs the damage it skips through {@link Bukkit#getLogger()}, so give it a server that only has a logger.
+     */
+    @BeforeAll
+    static void installServer() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+        Logger logger = Logger.getLogger("MarketCraftTest");
+        Bukkit.setServer((Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getLogger")) {
+                        return logger;
+                    }
+                    if (method.getReturnType() == String.class) {
+                        return "test";
+                    }
+                    return null;
+                }));
+    }
+
+    @Test
+    void aTornRecordAtTheEndOfASegmentIsCutOffOnLoad() throws IOException {
+        TransactionLedger ledger = new TransactionLedger(pluginFolder, 1 << 20);
+        ledger.record(entry(1, OWNER, "first"));
+        ledger.record(entry(2, OTHER_OWNER, "second"));
+        ledger.record(entry(3, OWNER, "third"));
+        ledger.flush();
+        File segment = segment(0);
+        long intact = segment.length();
+        appendTornRecord(segment);
+
+        TransactionLedger reopened = new TransactionLedger(pluginFolder, 1 << 20);
+
+        assertEquals(3, reopened.getEntryCount());
+        assertEquals(intact, segment.length());
+        assertEquals(List.of("third", "first"), shopNames(reopened.findByOwner(OWNER, 10)));
+        assertEquals(List.of("third", "second", "first"), shopNames(reopened.findByBuyer(BUYER, 10)));
+        assertEquals(List.of("third", "second"), shopNames(reopened.findByBuyer(BUYER, 2)));
+    }
+
+    @Test
+    void entriesWrittenAfterARepairSurviveTheNextLoad() throws IOException {
+        TransactionLedger ledger = new TransactionLedger(pluginFolder, 1 << 20);
+        ledger.record(entry(1, OWNER, "first"));
+        ledger.flush();
+        appendTornRecord(segment(0));
+
+        TransactionLedger repaired = new TransactionLedger(pluginFolder, 1 << 20);
+        repaired.record(entry(2, OWNER, "second"));
+        repaired.flush();
+        TransactionLedger reopened = new TransactionLedger(pluginFolder, 1 << 20);
+
+        assertEquals(2, reopened.getEntryCount());
+        assertEquals(List.of("second", "first"), shopNames(reopened.findByOwner(OWNER, 10)));
+        LedgerEntry second = reopened.findByOwner(OWNER, 1).get(0);
+        assertEquals(2, second.getTimestamp());
+        assertEquals(BUYER, second.getBuyerUUID());
+        assertEquals(16, second.getSoldAmount());
+        assertEquals(2, second.getCostAmount());
+    }
+
+    @Test
+    void onlyTheTornTailOfTheNewestSegmentIsLostAcrossSegments() throws IOException {
+        // Small segments so every few entries start a new one
+        TransactionLedger ledger = new TransactionLedger(pluginFolder, 256);
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ledger.record(entry(i, OWNER, "shop" + i));
+            written.add("shop" + i);
+        }
+        ledger.flush();
+        int newest = 0;
+        while (segment(newest + 1).exists()) {
+            newest++;
+        }
+        assertTrue(newest > 0);
+        for (int i = 0; i <= newest; i++) {
+            assertTrue(segment(i).length() <= 256);
+        }
+        appendTornRecord(segment(newest));
+
+        TransactionLedger reopened = new TransactionLedger(pluginFolder, 256);
+        reopened.record(entry(20, OWNER, "shop20"));
+        reopened.flush();
+        written.add("shop20");
+        TransactionLedger again = new TransactionLedger(pluginFolder, 256);
+
+        Collections.reverse(written);
+        assertEquals(21, again.getEntryCount());
+        assertEquals(written, shopNames(again.findByOwner(OWNER, 100)));
+    }
+
+    @Test
+    void aRecordWithAnImpossibleLengthIsTreatedAsTorn() throws IOException {
+        TransactionLedger ledger = new TransactionLedger(pluginFolder, 1 << 20);
+        ledger.record(entry(1, OWNER, "first"));
+        ledger.flush();
+        File segment = segment(0);
+        long intact = segment.length();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(segment, true))) {
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeLong(42);
+        }
+
+        TransactionLedger reopened = new TransactionLedger(pluginFolder, 1 << 20);
+
+        assertEquals(1, reopened.getEntryCount());
+        assertEquals(intact, segment.length());
+    }
+
+    @Test
+    void aDamagedRecordInASealedSegmentIsSkippedWithoutLosingTheRest() throws IOException {
+        TransactionLedger ledger = new TransactionLedger(pluginFolder, 256);
+        for (int i = 0; i < 20; i++) {
+            ledger.record(entry(i, OWNER, "shop" + i));
+        }
+        ledger.flush();
+        assertTrue(segment(1).exists());
+        File sealed = segment(0);
+        long sealedLength = sealed.length();
+        // Scribble over the body of the first record, keeping its length intact
+        try (RandomAccessFile file = new RandomAccessFile(sealed, "rw")) {
+            int length = file.readInt();
+            byte[] garbage = new byte[length];
+            Arrays.fill(garbage, (byte) 0xFF);
+            file.write(garbage);
+        }
+
+        TransactionLedger reopened = new TransactionLedger(pluginFolder, 256);
+
+        assertEquals(19, reopened.getEntryCount());
+        assertEquals(sealedLength, sealed.length());
+        List<String> names = shopNames(reopened.findByOwner(OWNER, 100));
+        assertFalse(names.contains("shop0"));
+        assertEquals("shop19", names.get(0));
+        assertEquals("shop1", names.get(names.size() - 1));
+    }
+
+    @Test
+    void aTornTailInASealedSegmentIsNotTruncated() throws IOException {
+        TransactionLedger ledger = new TransactionLedger(pluginFolder, 256);
+        for (int i = 0; i < 20; i++) {
+            ledger.record(entry(i, OWNER, "shop" + i));
+        }
+        ledger.flush();
+        assertTrue(segment(1).exists());
+        File sealed = segment(0);
+        appendTornRecord(sealed);
+        long damagedLength = sealed.length();
+
+        TransactionLedger reopened = new TransactionLedger(pluginFolder, 256);
+
+        assertEquals(20, reopened.getEntryCount());
+        assertEquals(damagedLength, sealed.length());
+    }
+
+    @Test
+    void queuedEntriesAreOnlyQueryableOnceFlushed() {
+        TransactionLedger ledger = new TransactionLedger(pluginFolder, 1 << 20);
+        ledger.record(entry(1, OWNER, "first"));
+
+        assertTrue(ledger.hasPending());
+        assertEquals(0, ledger.getEntryCount());
+        assertTrue(ledger.findByOwner(OWNER, 10).isEmpty());
+
+        ledger.flush();
+
+        assertFalse(ledger.hasPending());
+        assertEquals(List.of("first"), shopNames(ledger.findByOwner(OWNER, 10)));
+    }
+
+    private File segment(int segment) {
+        return new File(pluginFolder, String.format("ledger/segment-%06d.dat", segment));
+    }
+
+    /**
+     * Appends the start of a record, as if the server crashed in the middle of writing it.
+     */
+    private static void appendTornRecord(File segment) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        entry(99, OWNER, "torn").write(new DataOutputStream(record));
+        byte[] bytes = record.toByteArray();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(segment, true))) {
+            out.writeInt(bytes.length);
+            out.write(bytes, 0, bytes.length / 2);
+        }
+    }
+
+    private static LedgerEntry entry(long timestamp, UUID ownerUUID, String shopName) {
+        return new LedgerEntry(timestamp, ownerUUID, shopName, BUYER, "diamond", 17, 16, "emerald", 23, 2);
+    }
+
+    private static List<String> shopNames(List<LedgerEntry> entries) {
+        List<String> names = new ArrayList<>();
+        for (LedgerEntry entry : entries) {
+            names.add(entry.getShopName());
+        }
+        return names;
+    }
+}
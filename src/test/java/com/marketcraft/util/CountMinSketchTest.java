@@ -0,0 +1,135 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+    private static final int WIDTH = 64;
+    private static final int DEPTH = 4;
+
+    @Test
+    void estimatesNeverUndercount() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        Map<Long, Long> totals = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(7);
+        long[] keys = random.longs(500).toArray();
+        for (int i = 0; i < 20_000; i++) {
+            long key = keys[random.nextInt(keys.length)];
+            long weight = 1 + random.nextInt(100);
+            sketch.add(key, weight);
+            totals.merge(key, weight, Long::sum);
+        }
+
+        for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+            assertTrue(sketch.estimate(entry.getKey()) >= entry.getValue());
+        }
+    }
+
+    @Test
+    void conservativeUpdatesOnlyRaiseCountersToTheNewEstimate() throws IOException {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        SplittableRandom random = new SplittableRandom(11);
+        long[] keys = random.longs(300).toArray();
+        long[] before = counters(sketch);
+        for (int i = 0; i < 5_000; i++) {
+            long key = keys[random.nextInt(keys.length)];
+            long weight = 1 + random.nextInt(50);
+            long previousEstimate = sketch.estimate(key);
+
+            long estimate = sketch.add(key, weight);
+
+            assertEquals(previousEstimate + weight, estimate);
+            assertEquals(estimate, sketch.estimate(key));
+            long[] after = counters(sketch);
+            int raised = 0;
+            for (int j = 0; j < after.length; j++) {
+                if (after[j] != before[j]) {
+                    // A counter is raised exactly to the estimate, and only if it was below it
+                    assertTrue(before[j] < estimate);
+                    assertEquals(estimate, after[j]);
+                    raised++;
+                }
+            }
+            assertTrue(raised <= DEPTH);
+            before = after;
+        }
+    }
+
+    @Test
+    void overcountingStaysWithinTheExpectedBound() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        Map<Long, Long> totals = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(3);
+        long[] keys = random.longs(1_000).toArray();
+        long totalWeight = 0;
+        for (int i = 0; i < 50_000; i++) {
+            long key = keys[random.nextInt(keys.length)];
+            sketch.add(key, 1);
+            totals.merge(key, 1L, Long::sum);
+            totalWeight++;
+        }
+
+        // A count-min sketch overcounts by at most e * N / width with probability 1 - e^-depth
+        long bound = (long) Math.ceil(Math.E * totalWeight / WIDTH);
+        int withinBound = 0;
+        for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+            if (sketch.estimate(entry.getKey()) - entry.getValue() <= bound) {
+                withinBound++;
+            }
+        }
+        assertTrue(withinBound >= totals.size() * (1 - Math.exp(-DEPTH)));
+    }
+
+    @Test
+    void widthIsRoundedUpToAPowerOfTwo() throws IOException {
+        assertEquals(128 * DEPTH, counters(new CountMinSketch(100, DEPTH)).length);
+        assertEquals(64 * DEPTH, counters(new CountMinSketch(64, DEPTH)).length);
+    }
+
+    @Test
+    void countersSurviveAWriteAndRead() throws IOException {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        for (long key = 0; key < 100; key++) {
+            sketch.add(key * 0x9E3779B97F4A7C15L, key);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.write(new DataOutputStream(bytes));
+
+        CountMinSketch restored = new CountMinSketch(WIDTH, DEPTH);
+        restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertArrayEquals(counters(sketch), counters(restored));
+    }
+
+    private static long[] counters(CountMinSketch sketch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            sketch.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        long[] counters = new long[bytes.size() / Long.BYTES];
+        try {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = in.readLong();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongObjectMapTest {
+
+    @Test
+    void behavesLikeAHashMapUnderRandomPutsAndRemoves() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(99);
+        // A small key range so removals often hit keys in the middle of a probe run
+        long[] keys = new long[500];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextBoolean() ? random.nextInt(1000) : random.nextLong();
+        }
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key : keys) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    void keysThatOnlyDifferInTheirHighBitsAreKeptApart() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        for (long i = 0; i < 1_000; i++) {
+            map.put(i << 40, i);
+        }
+
+        assertEquals(1_000, map.size());
+        for (long i = 0; i < 1_000; i++) {
+            assertEquals(i, map.get(i << 40));
+        }
+        assertNull(map.get(1L << 39));
+    }
+
+    @Test
+    void zeroAndNegativeKeysAreOrdinaryKeys() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.get(0));
+        map.put(0, "zero");
+        map.put(-1, "minus one");
+        map.put(Long.MIN_VALUE, "min");
+        map.put(Long.MAX_VALUE, "max");
+
+        assertEquals("zero", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("min", map.get(Long.MIN_VALUE));
+        assertEquals("max", map.get(Long.MAX_VALUE));
+        assertEquals("zero", map.remove(0));
+        assertNull(map.get(0));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void everyEntrySurvivesResizing() {
+        LongObjectMap<Integer> map = new LongObjectMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i * 31L, i);
+        }
+
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, map.get(i * 31L));
+        }
+    }
+
+    @Test
+    void clearRemovesEverything() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (long i = 0; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertNull(map.get(5));
+        map.put(5, "again");
+        assertEquals("again", map.get(5));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void removingAMissingKeyChangesNothing() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(1, "one");
+
+        assertNull(map.remove(2));
+        assertEquals(1, map.size());
+        assertEquals("one", map.get(1));
+    }
+
+    @Test
+    void nullValuesAreRejected() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+        assertEquals(0, map.size());
+    }
+}
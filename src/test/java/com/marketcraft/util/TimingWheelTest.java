@@ -0,0 +1,121 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private static final long TICK = 1000;
+
+    @Test
+    void timersFireAtTheirDeadlineOnEveryLevel() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        // Deadlines on the first, second, third and fourth level
+        long[] deadlines = {5, 64, 100, 4095, 4096, 70_000, 262_144, 5_000_000};
+        for (long deadline : deadlines) {
+            wheel.schedule("t" + deadline, deadline * TICK);
+        }
+
+        for (long deadline : deadlines) {
+            assertEquals(List.of(), wheel.advance((deadline - 1) * TICK));
+            assertEquals(List.of("t" + deadline), wheel.advance(deadline * TICK));
+        }
+    }
+
+    @Test
+    void timersThatAreAlreadyDueFireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 10 * TICK);
+        wheel.schedule("past", 3 * TICK);
+        wheel.schedule("now", 10 * TICK);
+
+        assertEquals(List.of(), wheel.advance(10 * TICK));
+        assertEquals(List.of("past", "now"), wheel.advance(11 * TICK));
+    }
+
+    @Test
+    void cancelledTimersNeverFire() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        TimingWheel.Timer<String> near = wheel.schedule("near", 5 * TICK);
+        TimingWheel.Timer<String> far = wheel.schedule("far", 10_000 * TICK);
+        wheel.schedule("kept", 20_000 * TICK);
+        wheel.cancel(near);
+        wheel.cancel(far);
+        // Cancelling twice, or after the wheel moved on, is harmless
+        wheel.cancel(far);
+
+        assertEquals(List.of("kept"), wheel.advance(20_000 * TICK));
+        wheel.cancel(near);
+    }
+
+    @Test
+    void timersBeyondTheTopLevelStillFireOnTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        long deadline = (1L << 24) + 1000; // 64^4 ticks is the range of the wheel
+        wheel.schedule("far", deadline);
+
+        assertEquals(List.of(), wheel.advance(deadline - 1));
+        assertEquals(List.of("far"), wheel.advance(deadline));
+    }
+
+    @Test
+    void randomTimersFireInTheAdvanceThatReachesTheirDeadline() {
+        Random random = new Random(1234);
+        long start = 987_654 * TICK;
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, start);
+        Map<Integer, Long> deadlineTicks = new HashMap<>();
+        Map<Integer, TimingWheel.Timer<Integer>> timers = new HashMap<>();
+        Set<Integer> cancelled = new HashSet<>();
+        int next = 0;
+        long nowTick = start / TICK;
+
+        for (int round = 0; round < 2_000; round++) {
+            for (int i = random.nextInt(20); i > 0; i--) {
+                // Mostly near deadlines, some far ones and some that are already due
+                long offset = switch (random.nextInt(4)) {
+                    case 0 -> random.nextInt(64);
+                    case 1 -> random.nextInt(5_000);
+                    case 2 -> random.nextInt(300_000);
+                    default -> -random.nextInt(100);
+                };
+                long deadlineMillis = (nowTick + offset) * TICK + random.nextInt((int) TICK);
+                int id = next++;
+                timers.put(id, wheel.schedule(id, deadlineMillis));
+                // A timer that is already due fires on the next tick
+                deadlineTicks.put(id, Math.max(deadlineMillis / TICK, nowTick + 1));
+            }
+            if (!timers.isEmpty() && random.nextInt(3) == 0) {
+                Integer id = timers.keySet().iterator().next();
+                wheel.cancel(timers.remove(id));
+                cancelled.add(id);
+            }
+
+            long previousTick = nowTick;
+            nowTick += random.nextInt(round % 100 == 0 ? 50_000 : 200);
+            List<Integer> expired = wheel.advance(nowTick * TICK + random.nextInt((int) TICK));
+
+            long lastDeadline = Long.MIN_VALUE;
+            for (Integer id : expired) {
+                assertFalse(cancelled.contains(id));
+                assertNotNull(timers.remove(id), "fired twice");
+                long deadlineTick = deadlineTicks.get(id);
+                assertTrue(deadlineTick > previousTick && deadlineTick <= nowTick);
+                assertTrue(deadlineTick >= lastDeadline);
+                lastDeadline = deadlineTick;
+            }
+            for (Integer id : timers.keySet()) {
+                assertTrue(deadlineTicks.get(id) > nowTick);
+            }
+        }
+    }
+}
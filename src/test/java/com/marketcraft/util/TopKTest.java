@@ -0,0 +1,99 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKTest {
+
+    @Test
+    void candidatesAreTheHeaviestKeysWhenTheSketchIsExact() {
+        // A sketch this wide has no collisions for a few hundred keys, so every estimate is the true total
+        TopK topK = new TopK(20, 1 << 16, 4);
+        Map<String, Long> totals = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            String key = "key" + random.nextInt(300);
+            long weight = 1 + random.nextInt(1000);
+            topK.add(key, weight);
+            totals.merge(key, weight, Long::sum);
+        }
+
+        List<Map.Entry<String, Long>> expected = new ArrayList<>(totals.entrySet());
+        expected.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        List<TopK.Entry> top = topK.top(20);
+        assertEquals(20, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(expected.get(i).getKey(), top.get(i).key());
+            assertEquals(expected.get(i).getValue(), top.get(i).count());
+        }
+    }
+
+    @Test
+    void aKeyReplacesTheSmallestCandidateOnceItIsHeavier() {
+        TopK topK = new TopK(2, 1024, 4);
+        topK.add("a", 10);
+        topK.add("b", 5);
+        topK.add("c", 3);
+        assertEquals(List.of(new TopK.Entry("a", 10), new TopK.Entry("b", 5)), topK.top(3));
+
+        topK.add("c", 3);
+
+        assertEquals(List.of(new TopK.Entry("a", 10), new TopK.Entry("c", 6)), topK.top(3));
+    }
+
+    @Test
+    void raisingTheSmallestCandidateKeepsTheHeapOrdered() {
+        TopK topK = new TopK(3, 1024, 4);
+        topK.add("a", 1);
+        topK.add("b", 2);
+        topK.add("c", 3);
+        // a is the root of the min-heap, raising it must sift it down so b becomes the smallest candidate
+        topK.add("a", 10);
+        topK.add("d", 4);
+
+        assertEquals(List.of(new TopK.Entry("a", 11), new TopK.Entry("d", 4), new TopK.Entry("c", 3)), topK.top(3));
+    }
+
+    @Test
+    void topReturnsAtMostTheRequestedNumberOfKeys() {
+        TopK topK = new TopK(8, 1024, 4);
+        assertTrue(topK.top(5).isEmpty());
+        topK.add("a", 1);
+        topK.add("b", 2);
+
+        assertEquals(List.of(new TopK.Entry("b", 2)), topK.top(1));
+        assertEquals(2, topK.top(5).size());
+    }
+
+    @Test
+    void stateSurvivesAWriteAndRead() throws IOException {
+        TopK topK = new TopK(4, 256, 3);
+        for (int i = 0; i < 50; i++) {
+            topK.add("key" + i % 7, i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        topK.write(new DataOutputStream(bytes));
+
+        TopK restored = new TopK(4, 256, 3);
+        restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(topK.top(4), restored.top(4));
+        // The sketch is restored too, so a key keeps counting from its total
+        topK.add("key0", 1);
+        restored.add("key0", 1);
+        assertEquals(topK.top(4), restored.top(4));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Marketcraft is licensed under the MIT License.
+ *
+ * Please view the full license here for more information:
+ * https://github.com/Slimerblue22/MarketCraft/blob/main/LICENSE
+ *
+ * Copyright (c) 2024 Slimerblue22
+ */
+
+package com.marketcraft.vaults;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VaultLayoutTest {
+
+    @Test
+    void everySlotHasExactlyOneRoleByColumn() {
+        for (int storedSlot = 0; storedSlot < 3 * VaultLayout.PAGE_SIZE; storedSlot++) {
+            int column = storedSlot % VaultLayout.PAGE_SIZE % 9;
+            boolean divider = VaultLayout.isDividerSlot(storedSlot);
+            boolean selling = VaultLayout.isSellingSlot(storedSlot);
+            boolean payment = VaultLayout.isPaymentSlot(storedSlot);
+            assertEquals(1, (divider ? 1 : 0) + (selling ? 1 : 0) + (payment ? 1 : 0), "slot " + storedSlot);
+            assertEquals(column == 4, divider);
+            assertEquals(column < 4, selling);
+            assertEquals(column > 4, payment);
+        }
+    }
+
+    @Test
+    void storedSlotsConvertToAndFromPages() {
+        assertEquals(0, VaultLayout.storedSlot(0, 0));
+        assertEquals(53, VaultLayout.storedSlot(0, 53));
+        assertEquals(54, VaultLayout.storedSlot(1, 0));
+        assertEquals(120, VaultLayout.storedSlot(2, 12));
+        for (int page = 0; page < 4; page++) {
+            for (int slot = 0; slot < VaultLayout.PAGE_SIZE; slot++) {
+                int storedSlot = VaultLayout.storedSlot(page, slot);
+                assertEquals(page, VaultLayout.pageOf(storedSlot));
+                assertEquals(storedSlot % VaultLayout.PAGE_SIZE, slot);
+            }
+        }
+    }
+
+    @Test
+    void slotArraysListEveryPageInOrder() {
+        VaultLayout layout = new VaultLayout(3);
+        int[] selling = layout.getSellingSlots();
+        int[] payment = layout.getPaymentSlots();
+
+        assertEquals(3 * 24, selling.length);
+        assertEquals(3 * 24, payment.length);
+        for (int i = 0; i < selling.length; i++) {
+            assertTrue(VaultLayout.isSellingSlot(selling[i]));
+            assertTrue(VaultLayout.isPaymentSlot(payment[i]));
+            assertEquals(i / 24, VaultLayout.pageOf(selling[i]));
+            assertEquals(i / 24, VaultLayout.pageOf(payment[i]));
+            if (i > 0) {
+                assertTrue(selling[i] > selling[i - 1]);
+                assertTrue(payment[i] > payment[i - 1]);
+            }
+        }
+        assertEquals(0, selling[0]);
+        assertEquals(5, payment[0]);
+        assertEquals(VaultLayout.PAGE_SIZE, selling[24]);
+    }
+
+    @Test
+    void aVaultHasAtLeastOnePage() {
+        assertEquals(1, new VaultLayout(0).getPages());
+        assertEquals(1, new VaultLayout(-3).getPages());
+        assertEquals(24, new VaultLayout(0).getSellingSlots().length);
+        assertEquals(4, new VaultLayout(4).getPages());
+    }
+
+    @Test
+    void slotKeysAreParsedToStoredSlots() {
+        assertEquals(0, VaultLayout.parseSlot("slot_0"));
+        assertEquals(12, VaultLayout.parseSlot("slot_12"));
+        assertEquals(170, VaultLayout.parseSlot("slot_170"));
+        assertThrows(NumberFormatException.class, () -> VaultLayout.parseSlot("slot_x"));
+    }
+}